@@ -0,0 +1,51 @@
+package com.example.bankcards.cache;
+
+import com.example.bankcards.entity.card.Card;
+import com.example.bankcards.entity.card.CardStatus;
+
+import java.time.LocalDate;
+
+/**
+ * Неизменяемый снимок карты для проверок владельца, статуса и срока действия без обращения к БД.
+ * Баланс в снимок намеренно не входит и всегда читается из БД.
+ *
+ * @param number         номер карты
+ * @param userEmail      email владельца карты
+ * @param status         статус карты
+ * @param expirationDate дата окончания действия карты
+ * @param balanceSlots   количество слотов зачислений (0 - зачисления идут в основной баланс)
+ */
+public record CardSnapshot(String number, String userEmail, CardStatus status, LocalDate expirationDate,
+                           int balanceSlots) {
+
+    /**
+     * Создает снимок из загруженной сущности карты.
+     *
+     * @param card сущность карты
+     * @return снимок карты
+     */
+    public static CardSnapshot of(Card card) {
+        return new CardSnapshot(card.getNumber(), card.getUser().getEmail(), card.getStatus(), card.getExpirationDate(),
+                card.getBalanceSlots());
+    }
+
+    /**
+     * Проверяет, принадлежит ли карта пользователю.
+     *
+     * @param email email пользователя
+     * @return true если пользователь является владельцем карты
+     */
+    public boolean isOwnedBy(String email) {
+        return userEmail.equals(email);
+    }
+
+    /**
+     * Проверяет, истек ли срок действия карты на указанную дату.
+     *
+     * @param today текущая дата
+     * @return true если срок действия истек или карта уже помечена как EXPIRED
+     */
+    public boolean isExpired(LocalDate today) {
+        return status == CardStatus.EXPIRED || expirationDate.isBefore(today);
+    }
+}
@@ -0,0 +1,94 @@
+package com.example.bankcards.cache;
+
+import com.example.bankcards.entity.card.Card;
+import com.example.bankcards.repository.CardRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Optional;
+
+/**
+ * Локальный (на каждом узле) ограниченный кэш снимков карт с чтением через БД.
+ * Позволяет проверять владельца, статус и срок действия карты без запроса к таблице cards.
+ * Любое изменение статуса, удаление карты или смена владельца должны вызывать {@link #evict(String)}.
+ * Метрики попаданий и промахов публикуются в Micrometer под именем кэша "cards".
+ */
+@Component
+public class CardSnapshotCache {
+
+    private final Cache<String, CardSnapshot> cache;
+
+    private final CardRepository cardRepository;
+
+    public CardSnapshotCache(
+            CardRepository cardRepository,
+            MeterRegistry meterRegistry,
+            @Value("${cache.cards.maximum_size:100000}") long maximumSize,
+            @Value("${cache.cards.expire_after_write:5m}") Duration expireAfterWrite) {
+        this.cardRepository = cardRepository;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireAfterWrite)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "cards");
+    }
+
+    /**
+     * Возвращает снимок карты из кэша, при промахе загружает его из БД.
+     * Отсутствующие карты не кэшируются.
+     *
+     * @param number номер карты
+     * @return снимок карты или пустой Optional, если карта не найдена
+     */
+    public Optional<CardSnapshot> get(String number) {
+        return Optional.ofNullable(cache.get(number,
+                key -> cardRepository.findSnapshotByNumber(key).orElse(null)));
+    }
+
+    /**
+     * Обновляет снимок по уже загруженной сущности карты.
+     *
+     * @param card сущность карты
+     */
+    public void put(Card card) {
+        cache.put(card.getNumber(), CardSnapshot.of(card));
+    }
+
+    /**
+     * Удаляет снимок карты из кэша.
+     * Внутри транзакции снимок удаляется повторно после ее завершения,
+     * чтобы параллельное чтение не вернуло в кэш незафиксированное состояние.
+     *
+     * @param number номер карты
+     */
+    public void evict(String number) {
+        cache.invalidate(number);
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    cache.invalidate(number);
+                }
+            });
+        }
+    }
+
+    /**
+     * Удаляет снимки нескольких карт из кэша.
+     *
+     * @param numbers номера карт
+     */
+    public void evictAll(Collection<String> numbers) {
+        numbers.forEach(this::evict);
+    }
+}
@@ -3,6 +3,7 @@ package com.example.bankcards.config;
 import com.example.bankcards.security.handler.CustomAccessDeniedHandler;
 import com.example.bankcards.security.handler.CustomLogoutHandler;
 import com.example.bankcards.security.impl.UserDetailsServiceImpl;
+import jakarta.servlet.DispatcherType;
 import lombok.RequiredArgsConstructor;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -48,7 +49,8 @@ public class SecurityConfig {
     // Список endpoints для роли USER
     private static final String[] USER_LIST = {
             "/api/transfers/my/**",
-            "/api/cards/my/**"
+            "/api/cards/my/**",
+            "/api/events/my/**"
 
     };
 
@@ -71,6 +73,8 @@ public class SecurityConfig {
 
         http.csrf(AbstractHttpConfigurer::disable)
                 .authorizeHttpRequests(auth -> auth
+                        // повторная (асинхронная) диспетчеризация потоковых ответов уже прошла авторизацию
+                        .dispatcherTypeMatchers(DispatcherType.ASYNC).permitAll()
                         .requestMatchers(SWAGGER_WHITELIST).permitAll()
                         .requestMatchers(AUTH_WHITELIST).permitAll()
                         .requestMatchers(ADMIN_LIST).hasAuthority("ADMIN")
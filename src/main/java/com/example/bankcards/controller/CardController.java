@@ -1,11 +1,20 @@
 package com.example.bankcards.controller;
 
+import com.example.bankcards.dto.card.CardBalanceSlotsDtoRequest;
+import com.example.bankcards.dto.card.CardBlockDecisionDtoRequest;
+import com.example.bankcards.dto.card.CardBlockDecisionDtoResponse;
+import com.example.bankcards.dto.card.CardBlockRequestDtoResponse;
 import com.example.bankcards.dto.card.CardCreateDtoRequest;
 import com.example.bankcards.dto.card.CardDtoResponse;
 import com.example.bankcards.dto.card.CardNumberDtoRequest;
+import com.example.bankcards.dto.card.LedgerBalanceDtoResponse;
 import com.example.bankcards.dto.card.TotalBalanceDtoResponse;
+import com.example.bankcards.dto.export.ExportFormat;
+import com.example.bankcards.dto.page.KeysetPageDtoResponse;
 import com.example.bankcards.dto.page.PageDtoResponse;
 import com.example.bankcards.service.CardService;
+import com.example.bankcards.service.ExportService;
+import com.example.bankcards.service.LedgerService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.media.Content;
@@ -16,26 +25,37 @@ import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 @RestController
 @RequestMapping("/api/cards")
 @RequiredArgsConstructor
+@Validated
 @Tag(name = "Card Management", description = "API для управления банковскими картами")
 @SecurityRequirement(name = "Bearer Authentication")
 public class CardController {
 
     private final CardService cardService;
+    private final ExportService exportService;
+    private final LedgerService ledgerService;
 
     @PostMapping("/admin")
     @PreAuthorize("hasRole('ADMIN')")
     @Operation(
             summary = "Создать новую карту (админ)",
-            description = "Администратор создает новую банковскую карту для пользователя",
+            description = "Администратор создает новую банковскую карту для пользователя. " +
+                    "Номер карты выпускается сервером",
             requestBody = @io.swagger.v3.oas.annotations.parameters.RequestBody(
                     description = "Данные для создания карты",
                     required = true,
@@ -45,7 +65,6 @@ public class CardController {
                             examples = @ExampleObject(
                                     value = """
                                             {
-                                              "number": "1234567812345678",
                                               "user_email": "user@example.com",
                                               "count_month": 36,
                                               "amount": 1000.00
@@ -130,6 +149,10 @@ public class CardController {
                     responseCode = "404",
                     description = "Карта не найдена"
             ),
+            @ApiResponse(
+                    responseCode = "409",
+                    description = "Карта с истекшим сроком не может быть заблокирована"
+            ),
             @ApiResponse(
                     responseCode = "403",
                     description = "Доступ запрещен. Требуются права администратора"
@@ -293,11 +316,284 @@ public class CardController {
         return ResponseEntity.ok(cardService.getAll(page, size));
     }
 
+    @GetMapping("/admin/export")
+    @PreAuthorize("hasRole('ADMIN')")
+    @Operation(
+            summary = "Выгрузить все карты (админ)",
+            description = "Администратор выгружает все карты системы файлом в формате CSV или NDJSON. " +
+                    "Данные передаются потоком по мере чтения из БД, номера карт маскируются",
+            parameters = @Parameter(
+                    name = "format",
+                    description = "Формат выгрузки",
+                    example = "CSV"
+            )
+    )
+    @ApiResponses({
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Выгрузка успешно сформирована",
+                    content = {
+                            @Content(
+                                    mediaType = "text/csv",
+                                    examples = @ExampleObject(
+                                            value = """
+                                                    maskedCardNumber,email,fullNameUser,expirationDate,status,balance
+                                                    **** **** **** 5670,user@example.com,John Doe,2027-01-15,ACTIVE,1000.00
+                                                    """
+                                    )
+                            ),
+                            @Content(
+                                    mediaType = "application/x-ndjson",
+                                    examples = @ExampleObject(
+                                            value = """
+                                                    {"maskedCardNumber":"**** **** **** 5670","email":"user@example.com","fullNameUser":"John Doe","expirationDate":"2027-01-15","status":"ACTIVE","balance":1000.00}
+                                                    """
+                                    )
+                            )
+                    }
+            ),
+            @ApiResponse(
+                    responseCode = "400",
+                    description = "Неизвестный формат выгрузки"
+            ),
+            @ApiResponse(
+                    responseCode = "403",
+                    description = "Доступ запрещен. Требуются права администратора"
+            )
+    })
+    public ResponseEntity<StreamingResponseBody> exportCards(
+            @RequestParam(defaultValue = "CSV") ExportFormat format) {
+
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(format.getContentType()))
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=cards." + format.getExtension())
+                .body(outputStream -> exportService.exportCards(format, outputStream));
+    }
+
+    @GetMapping("/admin/block-requests")
+    @PreAuthorize("hasRole('ADMIN')")
+    @Operation(
+            summary = "Получить очередь запросов на блокировку (админ)",
+            description = "Администратор получает карты с ожидающими запросами на блокировку. " +
+                    "Для следующей страницы передается курсор nextCursor из предыдущего ответа",
+            parameters = {
+                    @Parameter(
+                            name = "after",
+                            description = "Курсор: номер последней карты предыдущей страницы",
+                            example = "1234567812345670"
+                    ),
+                    @Parameter(
+                            name = "size",
+                            description = "Размер страницы (от 1 до 100)",
+                            example = "50"
+                    )
+            }
+    )
+    @ApiResponses({
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Очередь запросов успешно получена",
+                    content = @Content(
+                            mediaType = "application/json",
+                            schema = @Schema(implementation = KeysetPageDtoResponse.class),
+                            examples = @ExampleObject(
+                                    value = """
+                                            {
+                                              "content": [
+                                                {
+                                                  "cardNumber": "1234567812345670",
+                                                  "email": "user@example.com",
+                                                  "fullNameUser": "John Doe",
+                                                  "expirationDate": "2027-01-15",
+                                                  "status": "ACTIVE"
+                                                }
+                                              ],
+                                              "nextCursor": null
+                                            }
+                                            """
+                            )
+                    )
+            ),
+            @ApiResponse(
+                    responseCode = "400",
+                    description = "Некорректный размер страницы"
+            ),
+            @ApiResponse(
+                    responseCode = "403",
+                    description = "Доступ запрещен. Требуются права администратора"
+            )
+    })
+    public ResponseEntity<KeysetPageDtoResponse<CardBlockRequestDtoResponse>> getBlockRequests(
+            @RequestParam(required = false) String after,
+            @RequestParam(defaultValue = "50")
+            @Min(value = 1, message = "Размер страницы должен быть не менее 1")
+            @Max(value = 100, message = "Размер страницы должен быть не более 100") int size) {
+
+        return ResponseEntity.ok(cardService.getBlockRequests(after, size));
+    }
+
+    @PatchMapping("/admin/block-requests")
+    @PreAuthorize("hasRole('ADMIN')")
+    @Operation(
+            summary = "Обработать запросы на блокировку (админ)",
+            description = "Администратор одобряет (блокирует карты) или отклоняет запросы на блокировку списком",
+            requestBody = @io.swagger.v3.oas.annotations.parameters.RequestBody(
+                    description = "Номера карт и решение по запросам",
+                    required = true,
+                    content = @Content(
+                            mediaType = "application/json",
+                            schema = @Schema(implementation = CardBlockDecisionDtoRequest.class),
+                            examples = @ExampleObject(
+                                    value = """
+                                            {
+                                              "card_numbers": ["1234567812345670", "4111111111111111"],
+                                              "approve": true
+                                            }
+                                            """
+                            )
+                    )
+            )
+    )
+    @ApiResponses({
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Запросы успешно обработаны",
+                    content = @Content(
+                            mediaType = "application/json",
+                            schema = @Schema(implementation = CardBlockDecisionDtoResponse.class),
+                            examples = @ExampleObject(
+                                    value = """
+                                            {
+                                              "processed": 2
+                                            }
+                                            """
+                            )
+                    )
+            ),
+            @ApiResponse(
+                    responseCode = "400",
+                    description = "Невалидные данные запроса"
+            ),
+            @ApiResponse(
+                    responseCode = "403",
+                    description = "Доступ запрещен. Требуются права администратора"
+            )
+    })
+    public ResponseEntity<CardBlockDecisionDtoResponse> processBlockRequests(
+            @Valid @RequestBody CardBlockDecisionDtoRequest request) {
+
+        return ResponseEntity.ok(cardService.processBlockRequests(request.getCardNumbers(), request.getApprove()));
+    }
+
+    @PostMapping("/admin/ledger-balance")
+    @PreAuthorize("hasRole('ADMIN')")
+    @Operation(
+            summary = "Сверить баланс карты с журналом проводок (админ)",
+            description = "Администратор восстанавливает баланс карты по журналу проводок и сравнивает его " +
+                    "с текущим балансом. Строка карты при этом не блокируется",
+            requestBody = @io.swagger.v3.oas.annotations.parameters.RequestBody(
+                    description = "Номер карты",
+                    required = true,
+                    content = @Content(
+                            mediaType = "application/json",
+                            schema = @Schema(implementation = CardNumberDtoRequest.class),
+                            examples = @ExampleObject(
+                                    value = """
+                                            {
+                                              "number": "1234567812345678"
+                                            }
+                                            """
+                            )
+                    )
+            )
+    )
+    @ApiResponses({
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Сверка выполнена",
+                    content = @Content(
+                            mediaType = "application/json",
+                            schema = @Schema(implementation = LedgerBalanceDtoResponse.class),
+                            examples = @ExampleObject(
+                                    value = """
+                                            {
+                                              "maskedCardNumber": "**** **** **** 5678",
+                                              "balance": 1000.00,
+                                              "ledgerBalance": 1000.00,
+                                              "consistent": true
+                                            }
+                                            """
+                            )
+                    )
+            ),
+            @ApiResponse(
+                    responseCode = "404",
+                    description = "Карта не найдена"
+            ),
+            @ApiResponse(
+                    responseCode = "403",
+                    description = "Доступ запрещен. Требуются права администратора"
+            )
+    })
+    public ResponseEntity<LedgerBalanceDtoResponse> getLedgerBalance(
+            @Valid @RequestBody CardNumberDtoRequest request) {
+
+        return ResponseEntity.ok(ledgerService.getLedgerBalance(request.getNumber()));
+    }
+
+    @PatchMapping("/admin/balance-slots")
+    @PreAuthorize("hasRole('ADMIN')")
+    @Operation(
+            summary = "Изменить количество слотов зачислений карты (админ)",
+            description = "Администратор включает распределение зачислений по слотам для карты с частыми " +
+                    "входящими переводами или отключает его (0 слотов). Остатки слотов переносятся в баланс карты",
+            requestBody = @io.swagger.v3.oas.annotations.parameters.RequestBody(
+                    description = "Номер карты и количество слотов",
+                    required = true,
+                    content = @Content(
+                            mediaType = "application/json",
+                            schema = @Schema(implementation = CardBalanceSlotsDtoRequest.class),
+                            examples = @ExampleObject(
+                                    value = """
+                                            {
+                                              "card_number": "1234567812345678",
+                                              "slots": 8
+                                            }
+                                            """
+                            )
+                    )
+            )
+    )
+    @ApiResponses({
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Количество слотов успешно изменено"
+            ),
+            @ApiResponse(
+                    responseCode = "400",
+                    description = "Невалидные данные запроса"
+            ),
+            @ApiResponse(
+                    responseCode = "404",
+                    description = "Карта не найдена"
+            ),
+            @ApiResponse(
+                    responseCode = "403",
+                    description = "Доступ запрещен. Требуются права администратора"
+            )
+    })
+    public ResponseEntity<Void> changeBalanceSlots(@Valid @RequestBody CardBalanceSlotsDtoRequest request) {
+
+        cardService.changeBalanceSlots(request.getNumber(), request.getSlots());
+        return ResponseEntity.ok().build();
+    }
+
     @GetMapping("/my/all")
     @PreAuthorize("hasRole('USER')")
     @Operation(
             summary = "Получить мои карты",
-            description = "Пользователь получает список всех своих карт с пагинацией",
+            description = "Пользователь получает список всех своих карт с пагинацией. " +
+                    "Ответ содержит ETag, при совпадении If-None-Match возвращается 304 без тела",
             parameters = {
                     @Parameter(
                             name = "page",
@@ -347,6 +643,10 @@ public class CardController {
                             )
                     )
             ),
+            @ApiResponse(
+                    responseCode = "304",
+                    description = "Карты не изменились с версии из заголовка If-None-Match"
+            ),
             @ApiResponse(
                     responseCode = "403",
                     description = "Доступ запрещен. Требуется аутентификация"
@@ -354,9 +654,15 @@ public class CardController {
     })
     public ResponseEntity<PageDtoResponse<CardDtoResponse>> getMyCards(
             @RequestParam(defaultValue = "0") int page,
-            @RequestParam(defaultValue = "10") int size) {
+            @RequestParam(defaultValue = "10") int size,
+            WebRequest webRequest) {
 
-        return ResponseEntity.ok(cardService.getAllByUser(page, size));
+        String eTag = cardsETag(cardService.getCardsVersionTag() + "-" + page + "-" + size);
+        if (webRequest.checkNotModified(eTag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag).build();
+        }
+
+        return ResponseEntity.ok().eTag(eTag).body(cardService.getAllByUser(page, size));
     }
 
     @PostMapping("/my")
@@ -445,6 +751,10 @@ public class CardController {
                     responseCode = "404",
                     description = "Карта не найдена или не принадлежит пользователю"
             ),
+            @ApiResponse(
+                    responseCode = "409",
+                    description = "Карта с истекшим сроком"
+            ),
             @ApiResponse(
                     responseCode = "403",
                     description = "Доступ запрещен. Требуется аутентификация"
@@ -460,7 +770,8 @@ public class CardController {
     @PreAuthorize("hasRole('USER')")
     @Operation(
             summary = "Получить общий баланс",
-            description = "Пользователь получает общий баланс со всех своих активных карт"
+            description = "Пользователь получает общий баланс со всех своих активных карт. " +
+                    "Ответ содержит ETag, при совпадении If-None-Match возвращается 304 без тела"
     )
     @ApiResponses({
             @ApiResponse(
@@ -479,13 +790,27 @@ public class CardController {
                             )
                     )
             ),
+            @ApiResponse(
+                    responseCode = "304",
+                    description = "Баланс не изменился с версии из заголовка If-None-Match"
+            ),
             @ApiResponse(
                     responseCode = "403",
                     description = "Доступ запрещен. Требуется аутентификация"
             )
     })
-    public ResponseEntity<TotalBalanceDtoResponse> getTotalBalance() {
+    public ResponseEntity<TotalBalanceDtoResponse> getTotalBalance(WebRequest webRequest) {
+
+        String eTag = cardsETag(cardService.getCardsVersionTag());
+        if (webRequest.checkNotModified(eTag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag).build();
+        }
+
+        return ResponseEntity.ok().eTag(eTag).body(cardService.getTotalBalanceUser());
+    }
 
-        return ResponseEntity.ok(cardService.getTotalBalanceUser());
+    // Версия читается до данных: изменение между двумя чтениями даст новый ETag при следующем запросе
+    private static String cardsETag(String versionTag) {
+        return "\"" + versionTag + "\"";
     }
 }
@@ -0,0 +1,59 @@
+package com.example.bankcards.controller;
+
+import com.example.bankcards.service.EventService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.ExampleObject;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+@RestController
+@RequestMapping("/api/events")
+@RequiredArgsConstructor
+@Tag(name = "Events", description = "API для получения событий об изменении карт и переводах")
+@SecurityRequirement(name = "Bearer Authentication")
+public class EventController {
+
+    private final EventService eventService;
+
+    @GetMapping(value = "/my", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @PreAuthorize("hasRole('USER')")
+    @Operation(
+            summary = "Подписаться на мои события",
+            description = "Пользователь получает поток Server-Sent Events об изменениях своих карт " +
+                    "(card-created, card-status, card-balance, card-deleted) и о выполненных переводах (transfer). " +
+                    "Если клиент не успевает читать события, соединение закрывается и его нужно открыть заново"
+    )
+    @ApiResponses({
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Поток событий открыт",
+                    content = @Content(
+                            mediaType = "text/event-stream",
+                            examples = @ExampleObject(
+                                    value = """
+                                            event:card-balance
+                                            data:{"maskedCardNumber":"**** **** **** 5678","email":"user@example.com","fullNameUser":"John Doe","expirationDate":"2027-01-15","status":"ACTIVE","balance":900.00}
+                                            """
+                            )
+                    )
+            ),
+            @ApiResponse(
+                    responseCode = "403",
+                    description = "Доступ запрещен. Требуется аутентификация"
+            )
+    })
+    public SseEmitter subscribe() {
+
+        return eventService.subscribe();
+    }
+}
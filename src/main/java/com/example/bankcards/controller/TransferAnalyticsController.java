@@ -0,0 +1,251 @@
+package com.example.bankcards.controller;
+
+import com.example.bankcards.dto.analytics.CardTransferRollupDtoResponse;
+import com.example.bankcards.dto.analytics.RollupPeriod;
+import com.example.bankcards.dto.analytics.RollupRebuildDtoResponse;
+import com.example.bankcards.dto.analytics.TransferRollupDtoResponse;
+import com.example.bankcards.service.TransferAnalyticsService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.media.ArraySchema;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.ExampleObject;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/transfers")
+@RequiredArgsConstructor
+@Tag(name = "Transfer Analytics", description = "API для получения дневных и месячных итогов переводов")
+@SecurityRequirement(name = "Bearer Authentication")
+public class TransferAnalyticsController {
+
+    private final TransferAnalyticsService transferAnalyticsService;
+
+    @GetMapping("/my/analytics")
+    @PreAuthorize("hasRole('USER')")
+    @Operation(
+            summary = "Получить итоги моих переводов",
+            description = "Пользователь получает количество и сумму своих переводов по дням или месяцам. " +
+                    "Периоды без переводов не возвращаются",
+            parameters = {
+                    @Parameter(name = "period", description = "Период агрегации: DAY или MONTH", example = "DAY"),
+                    @Parameter(name = "from", description = "Начало интервала (включительно)", example = "2024-01-01"),
+                    @Parameter(name = "to", description = "Конец интервала (не включительно)", example = "2024-02-01")
+            }
+    )
+    @ApiResponses({
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Итоги переводов успешно получены",
+                    content = @Content(
+                            mediaType = "application/json",
+                            array = @ArraySchema(schema = @Schema(implementation = TransferRollupDtoResponse.class)),
+                            examples = @ExampleObject(
+                                    value = """
+                                            [
+                                              {
+                                                "periodStart": "2024-01-15",
+                                                "transferCount": 3,
+                                                "amount": 1500.00
+                                              },
+                                              {
+                                                "periodStart": "2024-01-16",
+                                                "transferCount": 1,
+                                                "amount": 200.00
+                                              }
+                                            ]
+                                            """
+                            )
+                    )
+            ),
+            @ApiResponse(
+                    responseCode = "400",
+                    description = "Некорректный интервал или слишком много периодов"
+            )
+    })
+    public ResponseEntity<List<TransferRollupDtoResponse>> getMyRollups(
+            @RequestParam(defaultValue = "DAY") RollupPeriod period,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+
+        return ResponseEntity.ok(transferAnalyticsService.getMyRollups(period, from, to));
+    }
+
+    @GetMapping("/my/analytics/card")
+    @PreAuthorize("hasRole('USER')")
+    @Operation(
+            summary = "Получить итоги переводов по моей карте",
+            description = "Пользователь получает количество и сумму исходящих и входящих переводов по своей карте " +
+                    "по дням или месяцам. Периоды без переводов не возвращаются",
+            parameters = {
+                    @Parameter(name = "number", description = "Номер карты", example = "1234567812345678"),
+                    @Parameter(name = "period", description = "Период агрегации: DAY или MONTH", example = "MONTH"),
+                    @Parameter(name = "from", description = "Начало интервала (включительно)", example = "2024-01-01"),
+                    @Parameter(name = "to", description = "Конец интервала (не включительно)", example = "2025-01-01")
+            }
+    )
+    @ApiResponses({
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Итоги переводов по карте успешно получены",
+                    content = @Content(
+                            mediaType = "application/json",
+                            array = @ArraySchema(schema = @Schema(implementation = CardTransferRollupDtoResponse.class)),
+                            examples = @ExampleObject(
+                                    value = """
+                                            [
+                                              {
+                                                "periodStart": "2024-01-01",
+                                                "outgoingCount": 12,
+                                                "outgoingAmount": 4000.00,
+                                                "incomingCount": 3,
+                                                "incomingAmount": 1500.00
+                                              }
+                                            ]
+                                            """
+                            )
+                    )
+            ),
+            @ApiResponse(
+                    responseCode = "400",
+                    description = "Карта не принадлежит пользователю, некорректный интервал или слишком много периодов"
+            ),
+            @ApiResponse(
+                    responseCode = "404",
+                    description = "Карта не найдена"
+            )
+    })
+    public ResponseEntity<List<CardTransferRollupDtoResponse>> getMyCardRollups(
+            @RequestParam String number,
+            @RequestParam(defaultValue = "DAY") RollupPeriod period,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+
+        return ResponseEntity.ok(transferAnalyticsService.getMyCardRollups(number, period, from, to));
+    }
+
+    @GetMapping("/all/analytics")
+    @PreAuthorize("hasRole('ADMIN')")
+    @Operation(
+            summary = "Получить итоги переводов пользователя (админ)",
+            description = "Администратор получает количество и сумму переводов пользователя по дням или месяцам",
+            parameters = {
+                    @Parameter(name = "email", description = "Email пользователя", example = "user@example.com"),
+                    @Parameter(name = "period", description = "Период агрегации: DAY или MONTH", example = "MONTH"),
+                    @Parameter(name = "from", description = "Начало интервала (включительно)", example = "2024-01-01"),
+                    @Parameter(name = "to", description = "Конец интервала (не включительно)", example = "2025-01-01")
+            }
+    )
+    @ApiResponses({
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Итоги переводов пользователя успешно получены",
+                    content = @Content(
+                            mediaType = "application/json",
+                            array = @ArraySchema(schema = @Schema(implementation = TransferRollupDtoResponse.class))
+                    )
+            ),
+            @ApiResponse(
+                    responseCode = "400",
+                    description = "Некорректный интервал или слишком много периодов"
+            ),
+            @ApiResponse(
+                    responseCode = "403",
+                    description = "Доступ запрещен. Требуются права администратора"
+            )
+    })
+    public ResponseEntity<List<TransferRollupDtoResponse>> getUserRollups(
+            @RequestParam String email,
+            @RequestParam(defaultValue = "DAY") RollupPeriod period,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+
+        return ResponseEntity.ok(transferAnalyticsService.getUserRollups(email, period, from, to));
+    }
+
+    @GetMapping("/all/analytics/card")
+    @PreAuthorize("hasRole('ADMIN')")
+    @Operation(
+            summary = "Получить итоги переводов по карте (админ)",
+            description = "Администратор получает количество и сумму исходящих и входящих переводов по карте " +
+                    "по дням или месяцам",
+            parameters = {
+                    @Parameter(name = "number", description = "Номер карты", example = "1234567812345678"),
+                    @Parameter(name = "period", description = "Период агрегации: DAY или MONTH", example = "DAY"),
+                    @Parameter(name = "from", description = "Начало интервала (включительно)", example = "2024-01-01"),
+                    @Parameter(name = "to", description = "Конец интервала (не включительно)", example = "2024-02-01")
+            }
+    )
+    @ApiResponses({
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Итоги переводов по карте успешно получены",
+                    content = @Content(
+                            mediaType = "application/json",
+                            array = @ArraySchema(schema = @Schema(implementation = CardTransferRollupDtoResponse.class))
+                    )
+            ),
+            @ApiResponse(
+                    responseCode = "400",
+                    description = "Некорректный интервал или слишком много периодов"
+            ),
+            @ApiResponse(
+                    responseCode = "403",
+                    description = "Доступ запрещен. Требуются права администратора"
+            )
+    })
+    public ResponseEntity<List<CardTransferRollupDtoResponse>> getCardRollups(
+            @RequestParam String number,
+            @RequestParam(defaultValue = "DAY") RollupPeriod period,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+
+        return ResponseEntity.ok(transferAnalyticsService.getCardRollups(number, period, from, to));
+    }
+
+    @PostMapping("/all/analytics/rebuild")
+    @PreAuthorize("hasRole('ADMIN')")
+    @Operation(
+            summary = "Пересчитать итоги переводов (админ)",
+            description = "Администратор пересчитывает все итоги по таблице переводов. " +
+                    "Переводы ожидают только пересчета текущего месяца"
+    )
+    @ApiResponses({
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Итоги переводов пересчитаны",
+                    content = @Content(
+                            mediaType = "application/json",
+                            schema = @Schema(implementation = RollupRebuildDtoResponse.class),
+                            examples = @ExampleObject(
+                                    value = """
+                                            {
+                                              "userRows": 1200,
+                                              "cardRows": 3400
+                                            }
+                                            """
+                            )
+                    )
+            ),
+            @ApiResponse(
+                    responseCode = "403",
+                    description = "Доступ запрещен. Требуются права администратора"
+            )
+    })
+    public ResponseEntity<RollupRebuildDtoResponse> rebuildRollups() {
+
+        return ResponseEntity.ok(transferAnalyticsService.rebuild());
+    }
+}
@@ -1,11 +1,20 @@
 package com.example.bankcards.controller;
 
+import com.example.bankcards.dto.export.ExportFormat;
+import com.example.bankcards.dto.page.KeysetPageDtoResponse;
 import com.example.bankcards.dto.page.PageDtoResponse;
+import com.example.bankcards.dto.transfer.TransferBatchDtoRequest;
+import com.example.bankcards.dto.transfer.TransferBatchDtoResponse;
 import com.example.bankcards.dto.transfer.TransferDtoRequest;
 import com.example.bankcards.dto.transfer.TransferDtoResponse;
+import com.example.bankcards.dto.transfer.TransferFilterDtoRequest;
+import com.example.bankcards.dto.transfer.TransferStatusDtoResponse;
+import com.example.bankcards.service.AsyncTransferService;
+import com.example.bankcards.service.ExportService;
 import com.example.bankcards.service.TransferService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.enums.ParameterIn;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.ExampleObject;
 import io.swagger.v3.oas.annotations.media.Schema;
@@ -14,26 +23,51 @@ import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
 import lombok.RequiredArgsConstructor;
+import org.springdoc.core.annotations.ParameterObject;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.net.URI;
+import java.time.Duration;
+import java.time.LocalDateTime;
 
 @RestController
 @RequestMapping("/api/transfers")
 @RequiredArgsConstructor
+@Validated
 @Tag(name = "Transfer Management", description = "API для управления переводами средств между картами")
 @SecurityRequirement(name = "Bearer Authentication")
 public class TransferController {
 
+    private static final int MAX_WAIT_SECONDS = 30;
+
     private final TransferService transferService;
+    private final AsyncTransferService asyncTransferService;
+    private final ExportService exportService;
 
     @PostMapping("/my/between-cards")
     @PreAuthorize("hasRole('USER')")
     @Operation(
             summary = "Перевод между своими картами",
-            description = "Пользователь осуществляет перевод средств между своими картами",
+            description = "Пользователь осуществляет перевод средств между своими картами. " +
+                    "Повторный запрос с тем же заголовком Idempotency-Key возвращает результат первого перевода",
+            parameters = @Parameter(
+                    name = "Idempotency-Key",
+                    in = ParameterIn.HEADER,
+                    description = "Уникальный ключ запроса (до 64 символов) для безопасного повтора",
+                    example = "3f1c9a52-8d2e-4b7a-9c61-5e0f2d4a7b13"
+            ),
             requestBody = @io.swagger.v3.oas.annotations.parameters.RequestBody(
                     description = "Данные для перевода",
                     required = true,
@@ -83,21 +117,233 @@ public class TransferController {
             @ApiResponse(
                     responseCode = "403",
                     description = "Доступ запрещен. Карта не принадлежит пользователю"
+            ),
+            @ApiResponse(
+                    responseCode = "409",
+                    description = "Ключ идемпотентности использован для другого перевода"
             )
     })
     public ResponseEntity<TransferDtoResponse> transferBetweenOwnCards(
-            @Valid @RequestBody TransferDtoRequest request) {
+            @Valid @RequestBody TransferDtoRequest request,
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey) {
 
         return ResponseEntity
                 .status(HttpStatus.CREATED)
-                .body(transferService.transferBetweenCardsOneUser(request));
+                .body(transferService.transferBetweenCardsOneUser(request, idempotencyKey));
+    }
+
+    @PostMapping("/my/between-cards/async")
+    @PreAuthorize("hasRole('USER')")
+    @Operation(
+            summary = "Асинхронный перевод между своими картами",
+            description = "Перевод проверяется и ставится в очередь карты-отправителя, ответ возвращается сразу. " +
+                    "Результат доступен по адресу из заголовка Location",
+            requestBody = @io.swagger.v3.oas.annotations.parameters.RequestBody(
+                    description = "Данные для перевода",
+                    required = true,
+                    content = @Content(
+                            mediaType = "application/json",
+                            schema = @Schema(implementation = TransferDtoRequest.class),
+                            examples = @ExampleObject(
+                                    value = """
+                                            {
+                                              "from_card_number": "1234567812345678",
+                                              "to_card_number": "8765432187654321",
+                                              "amount": 1000.00
+                                            }
+                                            """
+                            )
+                    )
+            )
+    )
+    @ApiResponses({
+            @ApiResponse(
+                    responseCode = "202",
+                    description = "Перевод поставлен в очередь",
+                    content = @Content(
+                            mediaType = "application/json",
+                            schema = @Schema(implementation = TransferStatusDtoResponse.class),
+                            examples = @ExampleObject(
+                                    value = """
+                                            {
+                                              "id": "3f1c9a52-8d2e-4b7a-9c61-5e0f2d4a7b13",
+                                              "status": "PENDING",
+                                              "transfer": null,
+                                              "error": null
+                                            }
+                                            """
+                            )
+                    )
+            ),
+            @ApiResponse(
+                    responseCode = "400",
+                    description = "Невалидные данные запроса"
+            ),
+            @ApiResponse(
+                    responseCode = "404",
+                    description = "Карта не найдена"
+            ),
+            @ApiResponse(
+                    responseCode = "429",
+                    description = "Очередь переводов с карты переполнена"
+            )
+    })
+    public ResponseEntity<TransferStatusDtoResponse> submitTransferBetweenOwnCards(
+            @Valid @RequestBody TransferDtoRequest request) {
+
+        TransferStatusDtoResponse response = asyncTransferService.submit(request);
+        return ResponseEntity
+                .accepted()
+                .location(URI.create("/api/transfers/my/async/" + response.getId()))
+                .body(response);
+    }
+
+    @GetMapping("/my/async/{id}")
+    @PreAuthorize("hasRole('USER')")
+    @Operation(
+            summary = "Получить состояние асинхронного перевода",
+            description = "Если перевод еще выполняется, ответ откладывается до его завершения, " +
+                    "но не дольше указанного времени ожидания (long polling)",
+            parameters = {
+                    @Parameter(
+                            name = "id",
+                            description = "Идентификатор перевода",
+                            example = "3f1c9a52-8d2e-4b7a-9c61-5e0f2d4a7b13"
+                    ),
+                    @Parameter(
+                            name = "wait",
+                            description = "Максимальное время ожидания в секундах (от 0 до 30)",
+                            example = "30"
+                    )
+            }
+    )
+    @ApiResponses({
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Состояние перевода",
+                    content = @Content(
+                            mediaType = "application/json",
+                            schema = @Schema(implementation = TransferStatusDtoResponse.class),
+                            examples = @ExampleObject(
+                                    value = """
+                                            {
+                                              "id": "3f1c9a52-8d2e-4b7a-9c61-5e0f2d4a7b13",
+                                              "status": "COMPLETED",
+                                              "transfer": {
+                                                "userEmail": "user@example.com",
+                                                "fromCardNumber": "1234567812345678",
+                                                "toCardNumber": "8765432187654321",
+                                                "amount": 1000.00,
+                                                "time": "2024-01-15T14:30:00"
+                                              },
+                                              "error": null
+                                            }
+                                            """
+                            )
+                    )
+            ),
+            @ApiResponse(
+                    responseCode = "404",
+                    description = "Перевод не найден или срок хранения его состояния истек"
+            )
+    })
+    public DeferredResult<TransferStatusDtoResponse> getTransferStatus(
+            @PathVariable String id,
+            @RequestParam(defaultValue = "0") int wait) {
+
+        return asyncTransferService.getStatus(id, Duration.ofSeconds(Math.max(0, Math.min(wait, MAX_WAIT_SECONDS))));
+    }
+
+    @PostMapping("/my/batch")
+    @PreAuthorize("hasRole('USER')")
+    @Operation(
+            summary = "Пакет переводов между своими картами",
+            description = "Пользователь выполняет несколько переводов между своими картами в одной транзакции. " +
+                    "В атомарном режиме выполняются все переводы или ни одного",
+            requestBody = @io.swagger.v3.oas.annotations.parameters.RequestBody(
+                    description = "Переводы и режим выполнения",
+                    required = true,
+                    content = @Content(
+                            mediaType = "application/json",
+                            schema = @Schema(implementation = TransferBatchDtoRequest.class),
+                            examples = @ExampleObject(
+                                    value = """
+                                            {
+                                              "transfers": [
+                                                {
+                                                  "from_card_number": "1234567812345678",
+                                                  "to_card_number": "8765432187654321",
+                                                  "amount": 1000.00
+                                                },
+                                                {
+                                                  "from_card_number": "8765432187654321",
+                                                  "to_card_number": "9999888877776666",
+                                                  "amount": 250.75
+                                                }
+                                              ],
+                                              "atomic": false
+                                            }
+                                            """
+                            )
+                    )
+            )
+    )
+    @ApiResponses({
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Пакет обработан",
+                    content = @Content(
+                            mediaType = "application/json",
+                            schema = @Schema(implementation = TransferBatchDtoResponse.class),
+                            examples = @ExampleObject(
+                                    value = """
+                                            {
+                                              "completed": 1,
+                                              "rejected": 1,
+                                              "items": [
+                                                {
+                                                  "index": 0,
+                                                  "transfer": {
+                                                    "userEmail": "user@example.com",
+                                                    "fromCardNumber": "1234567812345678",
+                                                    "toCardNumber": "8765432187654321",
+                                                    "amount": 1000.00,
+                                                    "time": "2024-01-15T14:30:00"
+                                                  },
+                                                  "error": null
+                                                },
+                                                {
+                                                  "index": 1,
+                                                  "transfer": null,
+                                                  "error": "The cards have no active status"
+                                                }
+                                              ]
+                                            }
+                                            """
+                            )
+                    )
+            ),
+            @ApiResponse(
+                    responseCode = "400",
+                    description = "Невалидные данные запроса или отклонен перевод в атомарном режиме"
+            ),
+            @ApiResponse(
+                    responseCode = "403",
+                    description = "Доступ запрещен. Требуется аутентификация"
+            )
+    })
+    public ResponseEntity<TransferBatchDtoResponse> transferBatch(
+            @Valid @RequestBody TransferBatchDtoRequest request) {
+
+        return ResponseEntity.ok(transferService.transferBatch(request));
     }
 
     @GetMapping("/all")
     @PreAuthorize("hasRole('ADMIN')")
     @Operation(
             summary = "Получить все переводы (админ)",
-            description = "Администратор получает список всех переводов в системе с пагинацией",
+            description = "Администратор получает список всех переводов в системе с пагинацией. " +
+                    "Переводы можно отфильтровать по периоду, картам, сумме и направлению",
             parameters = {
                     @Parameter(
                             name = "page",
@@ -145,23 +391,180 @@ public class TransferController {
                             )
                     )
             ),
+            @ApiResponse(
+                    responseCode = "400",
+                    description = "Некорректные фильтры"
+            ),
             @ApiResponse(
                     responseCode = "403",
                     description = "Доступ запрещен. Требуются права администратора"
             )
     })
     public ResponseEntity<PageDtoResponse<TransferDtoResponse>> getAllTransfers(
+            @Valid @ParameterObject TransferFilterDtoRequest filter,
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "10") int size) {
 
-        return ResponseEntity.ok(transferService.getAll(page, size));
+        return ResponseEntity.ok(transferService.getAll(filter, page, size));
+    }
+
+    @GetMapping("/all/history")
+    @PreAuthorize("hasRole('ADMIN')")
+    @Operation(
+            summary = "Получить историю всех переводов по курсору (админ)",
+            description = "Администратор получает историю всех переводов в системе с фильтрами. " +
+                    "Переводы упорядочены от новых к старым, для следующей страницы передается курсор " +
+                    "nextCursor из предыдущего ответа",
+            parameters = {
+                    @Parameter(
+                            name = "after",
+                            description = "Курсор: nextCursor предыдущей страницы (не указывается для первой)",
+                            example = "MjAyNC0wMS0xNVQxNDozMDowMF8xMDI0"
+                    ),
+                    @Parameter(
+                            name = "size",
+                            description = "Размер страницы (от 1 до 100)",
+                            example = "10"
+                    )
+            }
+    )
+    @ApiResponses({
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "История переводов успешно получена",
+                    content = @Content(
+                            mediaType = "application/json",
+                            schema = @Schema(implementation = KeysetPageDtoResponse.class),
+                            examples = @ExampleObject(
+                                    value = """
+                                            {
+                                              "content": [
+                                                {
+                                                  "userEmail": "user1@example.com",
+                                                  "fromCardNumber": "1234567812345678",
+                                                  "toCardNumber": "8765432187654321",
+                                                  "amount": 1000.00,
+                                                  "time": "2024-01-15T15:45:00"
+                                                },
+                                                {
+                                                  "userEmail": "user2@example.com",
+                                                  "fromCardNumber": "1111222233334444",
+                                                  "toCardNumber": "5555666677778888",
+                                                  "amount": 500.50,
+                                                  "time": "2024-01-15T14:30:00"
+                                                }
+                                              ],
+                                              "nextCursor": "MjAyNC0wMS0xNVQxNDozMDowMF8xMDI0"
+                                            }
+                                            """
+                            )
+                    )
+            ),
+            @ApiResponse(
+                    responseCode = "400",
+                    description = "Некорректный курсор, фильтры или размер страницы"
+            ),
+            @ApiResponse(
+                    responseCode = "403",
+                    description = "Доступ запрещен. Требуются права администратора"
+            )
+    })
+    public ResponseEntity<KeysetPageDtoResponse<TransferDtoResponse>> getTransferHistory(
+            @Valid @ParameterObject TransferFilterDtoRequest filter,
+            @RequestParam(required = false) String after,
+            @RequestParam(defaultValue = "10")
+            @Min(value = 1, message = "Размер страницы должен быть не менее 1")
+            @Max(value = 100, message = "Размер страницы должен быть не более 100") int size) {
+
+        return ResponseEntity.ok(transferService.getHistory(filter, after, size));
+    }
+
+    @GetMapping("/all/export")
+    @PreAuthorize("hasRole('ADMIN')")
+    @Operation(
+            summary = "Выгрузить переводы за период (админ)",
+            description = "Администратор выгружает переводы файлом в формате CSV или NDJSON, при необходимости " +
+                    "сжатым gzip. Данные передаются потоком по мере чтения из БД в порядке времени выполнения; " +
+                    "вся выгрузка соответствует одному моменту времени",
+            parameters = {
+                    @Parameter(
+                            name = "format",
+                            description = "Формат выгрузки",
+                            example = "CSV"
+                    ),
+                    @Parameter(
+                            name = "fromTime",
+                            description = "Начало периода (включительно)",
+                            example = "2024-01-01T00:00:00"
+                    ),
+                    @Parameter(
+                            name = "toTime",
+                            description = "Конец периода (не включительно)",
+                            example = "2024-02-01T00:00:00"
+                    ),
+                    @Parameter(
+                            name = "gzip",
+                            description = "Сжать выгрузку gzip",
+                            example = "true"
+                    )
+            }
+    )
+    @ApiResponses({
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Выгрузка успешно сформирована",
+                    content = {
+                            @Content(
+                                    mediaType = "text/csv",
+                                    examples = @ExampleObject(
+                                            value = """
+                                                    id,userEmail,fromCardNumber,toCardNumber,amount,time
+                                                    1024,user@example.com,1234567812345678,8765432187654321,1000.00,2024-01-15T14:30:00
+                                                    """
+                                    )
+                            ),
+                            @Content(
+                                    mediaType = "application/x-ndjson",
+                                    examples = @ExampleObject(
+                                            value = """
+                                                    {"id":1024,"userEmail":"user@example.com","fromCardNumber":"1234567812345678","toCardNumber":"8765432187654321","amount":1000.00,"time":"2024-01-15T14:30:00"}
+                                                    """
+                                    )
+                            ),
+                            @Content(mediaType = "application/gzip")
+                    }
+            ),
+            @ApiResponse(
+                    responseCode = "400",
+                    description = "Неизвестный формат выгрузки или некорректный период"
+            ),
+            @ApiResponse(
+                    responseCode = "403",
+                    description = "Доступ запрещен. Требуются права администратора"
+            )
+    })
+    public ResponseEntity<StreamingResponseBody> exportTransfers(
+            @RequestParam(defaultValue = "CSV") ExportFormat format,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime fromTime,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime toTime,
+            @RequestParam(defaultValue = "false") boolean gzip) {
+
+        // после возврата тела ответа тип содержимого уже задан, и ошибку нельзя вернуть в JSON
+        exportService.validateTransfersPeriod(fromTime, toTime);
+
+        String filename = "transfers." + format.getExtension() + (gzip ? ".gz" : "");
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(gzip ? "application/gzip" : format.getContentType()))
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=" + filename)
+                .body(outputStream -> exportService.exportTransfers(format, fromTime, toTime, gzip, outputStream));
     }
 
     @GetMapping("/my")
     @PreAuthorize("hasRole('USER')")
     @Operation(
             summary = "Получить мои переводы",
-            description = "Пользователь получает список своих переводов с пагинацией",
+            description = "Пользователь получает список своих переводов с пагинацией. " +
+                    "Переводы можно отфильтровать по периоду, картам, сумме и направлению",
             parameters = {
                     @Parameter(
                             name = "page",
@@ -209,15 +612,91 @@ public class TransferController {
                             )
                     )
             ),
+            @ApiResponse(
+                    responseCode = "400",
+                    description = "Некорректные фильтры"
+            ),
             @ApiResponse(
                     responseCode = "403",
                     description = "Доступ запрещен. Требуется аутентификация"
             )
     })
     public ResponseEntity<PageDtoResponse<TransferDtoResponse>> getMyTransfers(
+            @Valid @ParameterObject TransferFilterDtoRequest filter,
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "10") int size) {
 
-        return ResponseEntity.ok(transferService.getAllByUser(page, size));
+        return ResponseEntity.ok(transferService.getAllByUser(filter, page, size));
+    }
+
+    @GetMapping("/my/history")
+    @PreAuthorize("hasRole('USER')")
+    @Operation(
+            summary = "Получить историю моих переводов по курсору",
+            description = "Пользователь получает историю своих переводов с фильтрами. " +
+                    "Переводы упорядочены от новых к старым, для следующей страницы передается курсор " +
+                    "nextCursor из предыдущего ответа",
+            parameters = {
+                    @Parameter(
+                            name = "after",
+                            description = "Курсор: nextCursor предыдущей страницы (не указывается для первой)",
+                            example = "MjAyNC0wMS0xNVQxNDozMDowMF8xMDI0"
+                    ),
+                    @Parameter(
+                            name = "size",
+                            description = "Размер страницы (от 1 до 100)",
+                            example = "10"
+                    )
+            }
+    )
+    @ApiResponses({
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "История переводов пользователя успешно получена",
+                    content = @Content(
+                            mediaType = "application/json",
+                            schema = @Schema(implementation = KeysetPageDtoResponse.class),
+                            examples = @ExampleObject(
+                                    value = """
+                                            {
+                                              "content": [
+                                                {
+                                                  "userEmail": "user@example.com",
+                                                  "fromCardNumber": "1234567812345678",
+                                                  "toCardNumber": "8765432187654321",
+                                                  "amount": 1000.00,
+                                                  "time": "2024-01-15T15:45:00"
+                                                },
+                                                {
+                                                  "userEmail": "user@example.com",
+                                                  "fromCardNumber": "1111222233334444",
+                                                  "toCardNumber": "5555666677778888",
+                                                  "amount": 500.50,
+                                                  "time": "2024-01-15T14:30:00"
+                                                }
+                                              ],
+                                              "nextCursor": "MjAyNC0wMS0xNVQxNDozMDowMF8xMDI0"
+                                            }
+                                            """
+                            )
+                    )
+            ),
+            @ApiResponse(
+                    responseCode = "400",
+                    description = "Некорректный курсор, фильтры или размер страницы"
+            ),
+            @ApiResponse(
+                    responseCode = "403",
+                    description = "Доступ запрещен. Требуется аутентификация"
+            )
+    })
+    public ResponseEntity<KeysetPageDtoResponse<TransferDtoResponse>> getMyTransferHistory(
+            @Valid @ParameterObject TransferFilterDtoRequest filter,
+            @RequestParam(required = false) String after,
+            @RequestParam(defaultValue = "10")
+            @Min(value = 1, message = "Размер страницы должен быть не менее 1")
+            @Max(value = 100, message = "Размер страницы должен быть не более 100") int size) {
+
+        return ResponseEntity.ok(transferService.getHistoryByUser(filter, after, size));
     }
 }
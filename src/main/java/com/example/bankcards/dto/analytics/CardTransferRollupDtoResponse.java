@@ -0,0 +1,29 @@
+package com.example.bankcards.dto.analytics;
+
+import com.example.bankcards.entity.money.Money;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.LocalDate;
+
+@Data
+@Builder
+@Schema(description = "Итоги переводов по карте за период")
+public class CardTransferRollupDtoResponse {
+
+    @Schema(description = "Первый день периода", example = "2024-01-01")
+    private LocalDate periodStart;
+
+    @Schema(description = "Количество исходящих переводов", example = "12")
+    private long outgoingCount;
+
+    @Schema(description = "Сумма исходящих переводов", example = "4000.00", type = "number")
+    private Money outgoingAmount;
+
+    @Schema(description = "Количество входящих переводов", example = "3")
+    private long incomingCount;
+
+    @Schema(description = "Сумма входящих переводов", example = "1500.00", type = "number")
+    private Money incomingAmount;
+}
@@ -0,0 +1,24 @@
+package com.example.bankcards.dto.analytics;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Период агрегации итогов переводов.
+ */
+@Getter
+@RequiredArgsConstructor
+public enum RollupPeriod {
+    DAY("day", 366),
+    MONTH("month", 120);
+
+    /**
+     * Единица date_trunc в PostgreSQL.
+     */
+    private final String unit;
+
+    /**
+     * Наибольшее количество периодов в одном запросе.
+     */
+    private final int maxPeriods;
+}
@@ -0,0 +1,17 @@
+package com.example.bankcards.dto.analytics;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@Builder
+@Schema(description = "Результат пересчета итогов переводов")
+public class RollupRebuildDtoResponse {
+
+    @Schema(description = "Количество строк итогов пользователей", example = "1200")
+    private int userRows;
+
+    @Schema(description = "Количество строк итогов карт", example = "3400")
+    private int cardRows;
+}
@@ -0,0 +1,23 @@
+package com.example.bankcards.dto.analytics;
+
+import com.example.bankcards.entity.money.Money;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.LocalDate;
+
+@Data
+@Builder
+@Schema(description = "Итоги переводов пользователя за период")
+public class TransferRollupDtoResponse {
+
+    @Schema(description = "Первый день периода", example = "2024-01-01")
+    private LocalDate periodStart;
+
+    @Schema(description = "Количество переводов", example = "42")
+    private long transferCount;
+
+    @Schema(description = "Сумма переводов", example = "15000.00", type = "number")
+    private Money amount;
+}
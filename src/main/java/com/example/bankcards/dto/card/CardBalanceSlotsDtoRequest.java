@@ -0,0 +1,27 @@
+package com.example.bankcards.dto.card;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.Data;
+
+@Data
+@Schema(description = "Запрос на изменение количества слотов зачислений карты")
+public class CardBalanceSlotsDtoRequest {
+
+    @JsonProperty("card_number")
+    @NotBlank
+    @Size(min = 16, max = 16, message = "Номер карты должен состоять из 16 цифр")
+    @Schema(description = "Номер карты", example = "1234567812345678")
+    private String number;
+
+    @NotNull
+    @Min(value = 0, message = "Количество слотов не может быть отрицательным")
+    @Max(value = 64, message = "Количество слотов не может быть больше 64")
+    @Schema(description = "Количество слотов зачислений (0 - без слотов)", example = "8")
+    private Integer slots;
+}
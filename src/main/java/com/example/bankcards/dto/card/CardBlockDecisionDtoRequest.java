@@ -0,0 +1,25 @@
+package com.example.bankcards.dto.card;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@Schema(description = "Запрос на одобрение или отклонение запросов на блокировку карт")
+public class CardBlockDecisionDtoRequest {
+
+    @JsonProperty("card_numbers")
+    @NotEmpty
+    @Size(max = 500, message = "За один запрос можно обработать не более 500 карт")
+    @Schema(description = "Номера карт из очереди запросов на блокировку", example = "[\"1234567812345670\"]")
+    private List<@Size(min = 16, max = 16, message = "Номер карты должен состоять из 16 цифр") String> cardNumbers;
+
+    @NotNull
+    @Schema(description = "true - заблокировать карты, false - отклонить запросы", example = "true")
+    private Boolean approve;
+}
@@ -0,0 +1,14 @@
+package com.example.bankcards.dto.card;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@Builder
+@Schema(description = "Ответ с результатом обработки запросов на блокировку карт")
+public class CardBlockDecisionDtoResponse {
+
+    @Schema(description = "Количество обработанных запросов", example = "10")
+    private int processed;
+}
@@ -0,0 +1,29 @@
+package com.example.bankcards.dto.card;
+
+import com.example.bankcards.entity.card.CardStatus;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.LocalDate;
+
+@Data
+@Builder
+@Schema(description = "Ответ с информацией о карте, ожидающей блокировки")
+public class CardBlockRequestDtoResponse {
+
+    @Schema(description = "Номер карты", example = "1234567812345670")
+    private String cardNumber;
+
+    @Schema(description = "Email владельца карты", example = "user@example.com")
+    private String email;
+
+    @Schema(description = "Полное имя владельца карты", example = "John Doe")
+    private String fullNameUser;
+
+    @Schema(description = "Дата окончания действия карты", example = "2027-01-15")
+    private LocalDate expirationDate;
+
+    @Schema(description = "Текущий статус карты", example = "ACTIVE")
+    private CardStatus status;
+}
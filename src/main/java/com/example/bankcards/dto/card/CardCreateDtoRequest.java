@@ -11,11 +11,6 @@ import java.math.BigDecimal;
 @Schema(description = "Запрос на создание новой карты")
 public class CardCreateDtoRequest {
 
-    @NotBlank
-    @Size(min = 16, max = 16, message = "Номер карты должен состоять из 16 цифр")
-    @Schema(description = "Номер карты", example = "1234567812345678")
-    private String number;
-
     @JsonProperty("user_email")
     @NotBlank
     @Email
@@ -28,6 +23,7 @@ public class CardCreateDtoRequest {
     private int countMonth;
 
     @DecimalMin(value = "0.00", message = "Сумма не может быть отрицательной")
+    @Digits(integer = 10, fraction = 2, message = "Сумма должна содержать не более двух знаков после запятой")
     @Schema(description = "Начальный баланс карты", example = "1000.00")
     private BigDecimal amount;
 }
@@ -1,11 +1,11 @@
 package com.example.bankcards.dto.card;
 
 import com.example.bankcards.entity.card.CardStatus;
+import com.example.bankcards.entity.money.Money;
 import io.swagger.v3.oas.annotations.media.Schema;
 import lombok.Builder;
 import lombok.Data;
 
-import java.math.BigDecimal;
 import java.time.LocalDate;
 
 @Data
@@ -28,6 +28,6 @@ public class CardDtoResponse {
     @Schema(description = "Статус карты", example = "ACTIVE")
     private CardStatus status;
 
-    @Schema(description = "Баланс карты", example = "1000.00")
-    private BigDecimal balance;
+    @Schema(description = "Баланс карты", example = "1000.00", type = "number")
+    private Money balance;
 }
@@ -0,0 +1,24 @@
+package com.example.bankcards.dto.card;
+
+import com.example.bankcards.entity.money.Money;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@Builder
+@Schema(description = "Ответ со сверкой баланса карты с журналом проводок")
+public class LedgerBalanceDtoResponse {
+
+    @Schema(description = "Замаскированный номер карты", example = "**** **** **** 5678")
+    private String maskedCardNumber;
+
+    @Schema(description = "Текущий баланс карты", example = "1000.00", type = "number")
+    private Money balance;
+
+    @Schema(description = "Баланс, восстановленный по журналу проводок", example = "1000.00", type = "number")
+    private Money ledgerBalance;
+
+    @Schema(description = "Совпадает ли текущий баланс с журналом", example = "true")
+    private boolean consistent;
+}
@@ -0,0 +1,20 @@
+package com.example.bankcards.dto.page;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@Schema(description = "Ответ со страницей списка, продолжаемой по курсору (без подсчета общего количества)")
+public class KeysetPageDtoResponse<T> {
+
+    @Schema(description = "Содержимое страницы")
+    private List<T> content;
+
+    @Schema(description = "Курсор для получения следующей страницы, null если страница последняя",
+            example = "1234567812345670")
+    private String nextCursor;
+}
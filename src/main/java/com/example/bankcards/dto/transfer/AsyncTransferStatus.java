@@ -0,0 +1,10 @@
+package com.example.bankcards.dto.transfer;
+
+/**
+ * Состояние асинхронно выполняемого перевода.
+ */
+public enum AsyncTransferStatus {
+    PENDING,
+    COMPLETED,
+    FAILED
+}
@@ -0,0 +1,25 @@
+package com.example.bankcards.dto.transfer;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@Schema(description = "Запрос на пакет переводов между картами пользователя")
+public class TransferBatchDtoRequest {
+
+    @NotEmpty
+    @Size(max = 500, message = "За один запрос можно выполнить не более 500 переводов")
+    @Schema(description = "Переводы в порядке выполнения")
+    private List<@Valid @NotNull TransferDtoRequest> transfers;
+
+    @NotNull
+    @Schema(description = "true - все переводы или ни одного, false - каждый перевод выполняется независимо",
+            example = "true")
+    private Boolean atomic;
+}
@@ -0,0 +1,22 @@
+package com.example.bankcards.dto.transfer;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@Builder
+@Schema(description = "Ответ с результатами пакета переводов")
+public class TransferBatchDtoResponse {
+
+    @Schema(description = "Количество выполненных переводов", example = "2")
+    private int completed;
+
+    @Schema(description = "Количество отклоненных переводов", example = "0")
+    private int rejected;
+
+    @Schema(description = "Результаты переводов в порядке запроса")
+    private List<TransferBatchItemDtoResponse> items;
+}
@@ -0,0 +1,21 @@
+package com.example.bankcards.dto.transfer;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@Builder
+@Schema(description = "Результат перевода из пакета")
+public class TransferBatchItemDtoResponse {
+
+    @Schema(description = "Порядковый номер перевода в запросе (начиная с 0)", example = "0")
+    private int index;
+
+    @Schema(description = "Выполненный перевод (отсутствует, если перевод отклонен)")
+    private TransferDtoResponse transfer;
+
+    @Schema(description = "Причина отклонения (отсутствует, если перевод выполнен)",
+            example = "There are not enough funds on the card from which the transfer is being made")
+    private String error;
+}
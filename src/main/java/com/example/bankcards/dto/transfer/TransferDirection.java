@@ -0,0 +1,9 @@
+package com.example.bankcards.dto.transfer;
+
+/**
+ * Направление перевода относительно карты из фильтра истории.
+ */
+public enum TransferDirection {
+    INCOMING,
+    OUTGOING
+}
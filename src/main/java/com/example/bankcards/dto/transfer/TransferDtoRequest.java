@@ -3,7 +3,9 @@ package com.example.bankcards.dto.transfer;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import io.swagger.v3.oas.annotations.media.Schema;
 import jakarta.validation.constraints.DecimalMin;
+import jakarta.validation.constraints.Digits;
 import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Size;
 import lombok.Data;
 
@@ -25,8 +27,9 @@ public class TransferDtoRequest {
     @Schema(description = "Номер карты на которую переводятся средства", example = "8765432187654321")
     private String toCardNumber;
 
-    @NotBlank
+    @NotNull
     @DecimalMin(value = "0.01", message = "Сумма должна быть больше 0")
+    @Digits(integer = 10, fraction = 2, message = "Сумма должна содержать не более двух знаков после запятой")
     @Schema(description = "Сумма перевода", example = "1000.00")
     private BigDecimal amount;
 }
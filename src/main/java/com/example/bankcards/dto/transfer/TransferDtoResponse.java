@@ -1,10 +1,10 @@
 package com.example.bankcards.dto.transfer;
 
+import com.example.bankcards.entity.money.Money;
 import io.swagger.v3.oas.annotations.media.Schema;
 import lombok.Builder;
 import lombok.Data;
 
-import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
 @Data
@@ -21,8 +21,8 @@ public class TransferDtoResponse {
     @Schema(description = "Номер карты на которую произведен перевод средств", example = "1234567812345678")
     private String toCardNumber;
 
-    @Schema(description = "Сумма перевода", example = "1000.00")
-    private BigDecimal amount;
+    @Schema(description = "Сумма перевода", example = "1000.00", type = "number")
+    private Money amount;
 
     @Schema(description = "Время выполнения перевода", example = "2024-01-15T14:30:00")
     private LocalDateTime time;
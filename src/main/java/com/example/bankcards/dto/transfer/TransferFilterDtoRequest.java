@@ -0,0 +1,47 @@
+package com.example.bankcards.dto.transfer;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.constraints.DecimalMin;
+import jakarta.validation.constraints.Size;
+import lombok.Data;
+import org.springframework.format.annotation.DateTimeFormat;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+@Data
+@Schema(description = "Фильтры истории переводов, все параметры необязательны")
+public class TransferFilterDtoRequest {
+
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+    @Schema(description = "Начало периода (включительно)", example = "2024-01-01T00:00:00")
+    private LocalDateTime fromTime;
+
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+    @Schema(description = "Конец периода (не включительно)", example = "2024-02-01T00:00:00")
+    private LocalDateTime toTime;
+
+    @Size(min = 16, max = 16, message = "Номер карты должен состоять из 16 цифр")
+    @Schema(description = "Номер карты, с которой произведен перевод", example = "1234567812345678")
+    private String fromCardNumber;
+
+    @Size(min = 16, max = 16, message = "Номер карты должен состоять из 16 цифр")
+    @Schema(description = "Номер карты, на которую произведен перевод", example = "8765432187654321")
+    private String toCardNumber;
+
+    @Size(min = 16, max = 16, message = "Номер карты должен состоять из 16 цифр")
+    @Schema(description = "Номер карты, участвующей в переводе с любой стороны или в направлении direction",
+            example = "1234567812345678")
+    private String cardNumber;
+
+    @Schema(description = "Направление перевода относительно cardNumber", example = "INCOMING")
+    private TransferDirection direction;
+
+    @DecimalMin(value = "0.01", message = "Сумма должна быть положительной")
+    @Schema(description = "Минимальная сумма перевода (включительно)", example = "100.00")
+    private BigDecimal minAmount;
+
+    @DecimalMin(value = "0.01", message = "Сумма должна быть положительной")
+    @Schema(description = "Максимальная сумма перевода (включительно)", example = "5000.00")
+    private BigDecimal maxAmount;
+}
@@ -0,0 +1,24 @@
+package com.example.bankcards.dto.transfer;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@Builder
+@Schema(description = "Ответ с состоянием асинхронного перевода")
+public class TransferStatusDtoResponse {
+
+    @Schema(description = "Идентификатор перевода", example = "3f1c9a52-8d2e-4b7a-9c61-5e0f2d4a7b13")
+    private String id;
+
+    @Schema(description = "Состояние перевода", example = "COMPLETED")
+    private AsyncTransferStatus status;
+
+    @Schema(description = "Выполненный перевод (только в состоянии COMPLETED)")
+    private TransferDtoResponse transfer;
+
+    @Schema(description = "Причина отказа (только в состоянии FAILED)",
+            example = "There are not enough funds on the card from which the transfer is being made")
+    private String error;
+}
@@ -1,10 +1,12 @@
 package com.example.bankcards.entity.card;
 
+import com.example.bankcards.entity.money.Money;
 import com.example.bankcards.entity.user.User;
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.annotations.Formula;
+import org.springframework.data.domain.Persistable;
 
-import java.math.BigDecimal;
 import java.time.LocalDate;
 
 @Entity
@@ -13,7 +15,7 @@ import java.time.LocalDate;
 @Getter
 @NoArgsConstructor
 @EqualsAndHashCode(of = "number")
-public class Card {
+public class Card implements Persistable<String> {
 
     @Id
     @Column(nullable = false)
@@ -34,10 +36,25 @@ public class Card {
     private CardStatus status;
 
     @Column(nullable = false)
-    private BigDecimal balance;
+    private Money balance;
 
     @Column(nullable = false)
-    private Boolean requestToBlocked;
+    private Boolean requestToBlocked = false;
+
+    // 0 - зачисления идут в основной баланс, иначе распределяются по слотам card_balance_slots
+    @Column(nullable = false)
+    private int balanceSlots;
+
+    // зачисления в слотах, еще не перенесенные в основной баланс
+    @Formula("(SELECT COALESCE(SUM(s.balance), 0) FROM card_balance_slots s WHERE s.card_number = number)")
+    private Money slotsBalance;
+
+    // номер выдается сервисом заранее, поэтому новизна определяется флагом, а не пустым идентификатором:
+    // save() новой карты выполняет один INSERT без предварительного SELECT
+    @Transient
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private boolean newCard = true;
 
     public Card(
             String number,
@@ -45,7 +62,7 @@ public class Card {
             String fullNameUser,
             LocalDate expirationDate,
             CardStatus status,
-            BigDecimal balance) {
+            Money balance) {
         this.number = number;
         this.user = user;
         this.fullNameUser = fullNameUser;
@@ -53,4 +70,24 @@ public class Card {
         this.status = status;
         this.balance = balance;
     }
+
+    public Money getTotalBalance() {
+        return slotsBalance == null ? balance : balance.plus(slotsBalance);
+    }
+
+    @Override
+    public String getId() {
+        return number;
+    }
+
+    @Override
+    public boolean isNew() {
+        return newCard;
+    }
+
+    @PostLoad
+    @PostPersist
+    void markNotNew() {
+        this.newCard = false;
+    }
 }
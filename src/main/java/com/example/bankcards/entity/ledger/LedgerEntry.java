@@ -0,0 +1,50 @@
+package com.example.bankcards.entity.ledger;
+
+import com.example.bankcards.entity.money.Money;
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+@Entity
+@Table(name = "ledger_entries")
+@Getter
+@NoArgsConstructor
+@EqualsAndHashCode(of = "id")
+public class LedgerEntry {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "ledger_entries_id_seq")
+    @SequenceGenerator(name = "ledger_entries_id_seq", sequenceName = "ledger_entries_id_seq", allocationSize = 50)
+    private Long id;
+
+    @Column(nullable = false)
+    private UUID transactionId;
+
+    @Column(nullable = false)
+    private String cardNumber;
+
+    @Column(nullable = false)
+    @Enumerated(EnumType.STRING)
+    private LedgerEntryType entryType;
+
+    @Column(nullable = false)
+    private Money amount;
+
+    @Column(nullable = false)
+    private LocalDateTime createdAt;
+
+    public LedgerEntry(
+            UUID transactionId,
+            String cardNumber,
+            LedgerEntryType entryType,
+            Money amount,
+            LocalDateTime createdAt) {
+        this.transactionId = transactionId;
+        this.cardNumber = cardNumber;
+        this.entryType = entryType;
+        this.amount = amount;
+        this.createdAt = createdAt;
+    }
+}
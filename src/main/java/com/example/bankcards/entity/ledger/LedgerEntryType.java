@@ -0,0 +1,8 @@
+package com.example.bankcards.entity.ledger;
+
+/**
+ * Тип проводки журнала.
+ */
+public enum LedgerEntryType {
+    OPENING, DEBIT, CREDIT
+}
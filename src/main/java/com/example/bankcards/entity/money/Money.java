@@ -0,0 +1,97 @@
+package com.example.bankcards.entity.money;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonValue;
+
+import java.math.BigDecimal;
+
+/**
+ * Неизменяемая денежная сумма, хранящаяся в минимальных единицах (копейках) в примитиве long.
+ * Арифметика не создает промежуточных BigDecimal и проверяет переполнение.
+ * В JSON и в БД сумма представлена десятичным числом с двумя знаками после запятой.
+ *
+ * @param minorUnits сумма в минимальных единицах
+ */
+public record Money(long minorUnits) implements Comparable<Money> {
+
+    /**
+     * Количество знаков после запятой.
+     */
+    public static final int SCALE = 2;
+
+    public static final Money ZERO = new Money(0);
+
+    /**
+     * Создает сумму из десятичного значения.
+     *
+     * @param amount десятичное значение суммы
+     * @return сумма в минимальных единицах
+     * @throws ArithmeticException если у суммы больше двух значащих знаков после запятой или она не помещается в long
+     */
+    @JsonCreator
+    public static Money of(BigDecimal amount) {
+        return new Money(amount.movePointRight(SCALE).longValueExact());
+    }
+
+    /**
+     * Создает сумму из количества минимальных единиц.
+     *
+     * @param minorUnits сумма в минимальных единицах
+     * @return сумма
+     */
+    public static Money ofMinor(long minorUnits) {
+        return minorUnits == 0 ? ZERO : new Money(minorUnits);
+    }
+
+    /**
+     * Складывает суммы.
+     *
+     * @param other слагаемое
+     * @return сумма
+     * @throws ArithmeticException при переполнении
+     */
+    public Money plus(Money other) {
+        return new Money(Math.addExact(minorUnits, other.minorUnits));
+    }
+
+    /**
+     * Вычитает сумму.
+     *
+     * @param other вычитаемое
+     * @return разность
+     * @throws ArithmeticException при переполнении
+     */
+    public Money minus(Money other) {
+        return new Money(Math.subtractExact(minorUnits, other.minorUnits));
+    }
+
+    /**
+     * Проверяет, меньше ли сумма указанной.
+     *
+     * @param other сумма для сравнения
+     * @return true если сумма меньше
+     */
+    public boolean isLessThan(Money other) {
+        return minorUnits < other.minorUnits;
+    }
+
+    /**
+     * Преобразует сумму в десятичное значение с двумя знаками после запятой.
+     *
+     * @return десятичное значение суммы
+     */
+    @JsonValue
+    public BigDecimal toBigDecimal() {
+        return BigDecimal.valueOf(minorUnits, SCALE);
+    }
+
+    @Override
+    public int compareTo(Money other) {
+        return Long.compare(minorUnits, other.minorUnits);
+    }
+
+    @Override
+    public String toString() {
+        return toBigDecimal().toPlainString();
+    }
+}
@@ -1,10 +1,10 @@
 package com.example.bankcards.entity.transfer;
 
+import com.example.bankcards.entity.money.Money;
 import com.example.bankcards.entity.user.User;
 import jakarta.persistence.*;
 import lombok.*;
 
-import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
 @Entity
@@ -17,7 +17,8 @@ import java.time.LocalDateTime;
 public class Transfer {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "transfers_id_seq")
+    @SequenceGenerator(name = "transfers_id_seq", sequenceName = "transfers_id_seq", allocationSize = 50)
     private Long id;
 
     @ManyToOne
@@ -31,12 +32,12 @@ public class Transfer {
     private String toCardNumber;
 
     @Column(nullable = false)
-    private BigDecimal amount;
+    private Money amount;
 
     @Column(nullable = false)
     private LocalDateTime time;
 
-    public Transfer(User user, String fromCardNumber, String toCardNumber, BigDecimal amount, LocalDateTime time) {
+    public Transfer(User user, String fromCardNumber, String toCardNumber, Money amount, LocalDateTime time) {
         this.user = user;
         this.fromCardNumber = fromCardNumber;
         this.toCardNumber = toCardNumber;
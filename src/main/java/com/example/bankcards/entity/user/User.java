@@ -39,6 +39,10 @@ public class User implements UserDetails {
     @Column(nullable = false)
     private String password;
 
+    // изменяется только запросом UserRepository.incrementCardsVersion, чтобы сохранение пользователя не затирало версию
+    @Column(nullable = false, insertable = false, updatable = false)
+    private long cardsVersion;
+
     @OneToMany(mappedBy = "user", cascade = CascadeType.REMOVE)
     public List<Card> cards;
 
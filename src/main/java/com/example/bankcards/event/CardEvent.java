@@ -0,0 +1,30 @@
+package com.example.bankcards.event;
+
+import com.example.bankcards.dto.card.CardDtoResponse;
+
+/**
+ * Изменение карты пользователя: создание, смена статуса, изменение баланса или удаление.
+ *
+ * @param userEmail  email владельца карты
+ * @param cardNumber номер карты
+ * @param type       тип изменения
+ * @param card       состояние карты после изменения
+ */
+public record CardEvent(String userEmail, String cardNumber, CardEventType type, CardDtoResponse card)
+        implements UserEvent {
+
+    @Override
+    public String eventName() {
+        return type.getEventName();
+    }
+
+    @Override
+    public Object payload() {
+        return card;
+    }
+
+    @Override
+    public String orderingKey() {
+        return cardNumber;
+    }
+}
@@ -0,0 +1,18 @@
+package com.example.bankcards.event;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Тип изменения карты и соответствующее ему имя события SSE.
+ */
+@Getter
+@RequiredArgsConstructor
+public enum CardEventType {
+    CREATED("card-created"),
+    STATUS_CHANGED("card-status"),
+    BALANCE_CHANGED("card-balance"),
+    DELETED("card-deleted");
+
+    private final String eventName;
+}
@@ -0,0 +1,21 @@
+package com.example.bankcards.event;
+
+import com.fasterxml.jackson.annotation.JsonRawValue;
+
+import java.time.LocalDateTime;
+
+/**
+ * Событие карты или перевода, записанное в outbox и доставляемое получателям после фиксации транзакции.
+ * Доставка выполняется не менее одного раза, поэтому получатель должен распознавать повторы по id.
+ *
+ * @param id          порядковый номер события; возрастает в порядке изменений одной карты,
+ *                    кроме параллельных зачислений на карту со слотами
+ * @param orderingKey номер карты, в порядке изменений которой доставляется событие
+ * @param userEmail   email пользователя-получателя
+ * @param eventName   имя события
+ * @param payload     данные события в JSON
+ * @param createdAt   время записи события
+ */
+public record OutboxMessage(long id, String orderingKey, String userEmail, String eventName,
+                            @JsonRawValue String payload, LocalDateTime createdAt) {
+}
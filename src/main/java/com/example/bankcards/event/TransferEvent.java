@@ -0,0 +1,27 @@
+package com.example.bankcards.event;
+
+import com.example.bankcards.dto.transfer.TransferDtoResponse;
+
+/**
+ * Выполненный перевод между картами пользователя.
+ *
+ * @param userEmail email пользователя, выполнившего перевод
+ * @param transfer  данные перевода
+ */
+public record TransferEvent(String userEmail, TransferDtoResponse transfer) implements UserEvent {
+
+    @Override
+    public String eventName() {
+        return "transfer";
+    }
+
+    @Override
+    public Object payload() {
+        return transfer;
+    }
+
+    @Override
+    public String orderingKey() {
+        return transfer.getFromCardNumber();
+    }
+}
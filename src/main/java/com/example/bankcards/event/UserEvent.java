@@ -0,0 +1,29 @@
+package com.example.bankcards.event;
+
+/**
+ * Событие, адресованное одному пользователю и доставляемое ему через SSE.
+ * Публикуется сервисами через ApplicationEventPublisher и рассылается только после фиксации транзакции.
+ * Кроме того, событие записывается в outbox в той же транзакции и доставляется внешним получателям.
+ */
+public interface UserEvent {
+
+    /**
+     * @return email пользователя-получателя
+     */
+    String userEmail();
+
+    /**
+     * @return имя события SSE (поле event)
+     */
+    String eventName();
+
+    /**
+     * @return данные события (поле data), сериализуются в JSON
+     */
+    Object payload();
+
+    /**
+     * @return номер карты, в порядке изменений которой событие доставляется потребителям outbox
+     */
+    String orderingKey();
+}
@@ -4,7 +4,9 @@ import com.example.bankcards.dto.exception.ErrorDtoResponse;
 import com.example.bankcards.exception.exceptions.ConflictRequestException;
 import com.example.bankcards.exception.exceptions.InvalidRequestException;
 import com.example.bankcards.exception.exceptions.ResourceNotFoundException;
+import com.example.bankcards.exception.exceptions.TooManyRequestsException;
 import com.example.bankcards.exception.exceptions.UnauthorizedException;
+import jakarta.validation.ConstraintViolationException;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -24,7 +26,7 @@ public class GlobalExceptionHandler {
                 .body(createErrorResponse(HttpStatus.NOT_FOUND.value(), ex.getMessage()));
     }
 
-    @ExceptionHandler({InvalidRequestException.class})
+    @ExceptionHandler({InvalidRequestException.class, ConstraintViolationException.class})
     public ResponseEntity<ErrorDtoResponse> handleBadRequest(Exception ex) {
         log.warn(ex.getMessage(), ex);
         return ResponseEntity.status(HttpStatus.BAD_REQUEST)
@@ -45,6 +47,13 @@ public class GlobalExceptionHandler {
                 .body(createErrorResponse(HttpStatus.UNAUTHORIZED.value(), ex.getMessage()));
     }
 
+    @ExceptionHandler({TooManyRequestsException.class})
+    public ResponseEntity<ErrorDtoResponse> handleTooManyRequests(Exception ex) {
+        log.warn(ex.getMessage(), ex);
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .body(createErrorResponse(HttpStatus.TOO_MANY_REQUESTS.value(), ex.getMessage()));
+    }
+
     private ErrorDtoResponse createErrorResponse(int code, String message) {
         return ErrorDtoResponse.builder()
                 .code(code)
@@ -0,0 +1,7 @@
+package com.example.bankcards.exception.exceptions;
+
+import lombok.experimental.StandardException;
+
+@StandardException
+public class TooManyRequestsException extends RuntimeException {
+}
@@ -0,0 +1,163 @@
+package com.example.bankcards.lock;
+
+import com.example.bankcards.exception.exceptions.InvalidRequestException;
+import com.example.bankcards.exception.exceptions.TooManyRequestsException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Локальный (на каждом узле) менеджер блокировок карт с фиксированным набором полос.
+ * Операции над одной картой ожидают друг друга в JVM до открытия транзакции и не занимают соединение пула,
+ * пока стоят в очереди. Полосы захватываются в порядке возрастания их номеров, поэтому встречные операции
+ * не взаимоблокируются; при превышении времени ожидания операция сразу отклоняется.
+ * Количество полос, захватываемых одной операцией, ограничено, чтобы одна операция с множеством карт
+ * не могла занять большую часть полос и остановить остальные операции узла.
+ * Время ожидания, количество ожидающих потоков и отказы публикуются в Micrometer.
+ */
+@Component
+public class CardLockManager {
+
+    private final ReentrantLock[] stripes;
+
+    private final long timeoutNanos;
+
+    private final int maxStripesPerCall;
+
+    private final AtomicInteger waiting = new AtomicInteger();
+
+    private final Timer waitTimer;
+
+    private final Counter timeoutCounter;
+
+    public CardLockManager(
+            MeterRegistry meterRegistry,
+            @Value("${card_lock.stripes:1024}") int stripeCount,
+            @Value("${card_lock.timeout:2s}") Duration timeout,
+            @Value("${card_lock.max_stripes_per_call:128}") int maxStripesPerCall) {
+        this.stripes = new ReentrantLock[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+        this.timeoutNanos = timeout.toNanos();
+        this.maxStripesPerCall = maxStripesPerCall;
+        this.waitTimer = Timer.builder("cards.lock.wait")
+                .description("Время ожидания блокировки карт")
+                .register(meterRegistry);
+        this.timeoutCounter = Counter.builder("cards.lock.timeouts")
+                .description("Операции, не дождавшиеся блокировки карт")
+                .register(meterRegistry);
+        Gauge.builder("cards.lock.waiting", waiting, AtomicInteger::get)
+                .description("Потоки, ожидающие блокировки карт")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Захватывает блокировки карт в каноническом порядке.
+     *
+     * @param numbers номера карт
+     * @return захваченные блокировки, освобождаемые методом {@link Locks#close()}
+     * @throws TooManyRequestsException если блокировки не удалось захватить за время ожидания
+     * @throws InvalidRequestException   если карты занимают больше полос, чем допустимо для одной операции
+     */
+    public Locks lock(Collection<String> numbers) {
+        int[] indexes = numbers.stream()
+                .mapToInt(this::stripeIndex)
+                .distinct()
+                .sorted()
+                .toArray();
+        if (indexes.length > maxStripesPerCall) {
+            throw new InvalidRequestException("One operation can involve no more than " +
+                    maxStripesPerCall + " cards");
+        }
+
+        long startedAt = System.nanoTime();
+        long deadline = startedAt + timeoutNanos;
+        waiting.incrementAndGet();
+        try {
+            for (int i = 0; i < indexes.length; i++) {
+                if (!tryLock(stripes[indexes[i]], deadline - System.nanoTime())) {
+                    unlock(indexes, i);
+                    timeoutCounter.increment();
+                    throw new TooManyRequestsException("The card is busy with other operations, try again later");
+                }
+            }
+        } finally {
+            waiting.decrementAndGet();
+            waitTimer.record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+        }
+
+        return new Locks(indexes);
+    }
+
+    /**
+     * Возвращает номер полосы для карты.
+     *
+     * @param number номер карты
+     * @return номер полосы
+     */
+    private int stripeIndex(String number) {
+        int hash = number.hashCode();
+        return Math.floorMod(hash ^ (hash >>> 16), stripes.length);
+    }
+
+    /**
+     * Пытается захватить блокировку полосы до истечения оставшегося времени.
+     *
+     * @param lock          блокировка полосы
+     * @param remainingNanos оставшееся время ожидания
+     * @return true если блокировка захвачена
+     */
+    private static boolean tryLock(ReentrantLock lock, long remainingNanos) {
+        try {
+            return lock.tryLock(Math.max(remainingNanos, 0), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * Освобождает первые захваченные полосы в обратном порядке.
+     *
+     * @param indexes номера полос
+     * @param count   количество захваченных полос
+     */
+    private void unlock(int[] indexes, int count) {
+        for (int i = count - 1; i >= 0; i--) {
+            stripes[indexes[i]].unlock();
+        }
+    }
+
+    /**
+     * Захваченные блокировки карт. Освобождаются в том же потоке, в котором захвачены.
+     */
+    public final class Locks implements AutoCloseable {
+
+        private final int[] indexes;
+
+        private Locks(int[] indexes) {
+            this.indexes = indexes;
+        }
+
+        @Override
+        public void close() {
+            unlock(indexes, indexes.length);
+        }
+
+        @Override
+        public String toString() {
+            return "Locks" + Arrays.toString(indexes);
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package com.example.bankcards.outbox;
+
+import com.example.bankcards.event.OutboxMessage;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Получатель, публикующий исходящие события внутри приложения через ApplicationEventPublisher.
+ * Слушатели {@link OutboxMessage} вызываются синхронно в потоке ретранслятора;
+ * исключение слушателя приводит к повторной доставке пакета.
+ */
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "outbox.sinks.in_process.enabled", havingValue = "true", matchIfMissing = true)
+public class InProcessOutboxSink implements OutboxSink {
+
+    private final ApplicationEventPublisher eventPublisher;
+
+    @Override
+    public void send(List<OutboxMessage> messages) {
+        messages.forEach(eventPublisher::publishEvent);
+    }
+}
@@ -0,0 +1,195 @@
+package com.example.bankcards.outbox;
+
+import com.example.bankcards.event.OutboxMessage;
+import com.example.bankcards.repository.OutboxRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Ретранслятор исходящих событий.
+ * Выделенный поток в транзакции блокирует свободный сегмент с событиями (FOR UPDATE SKIP LOCKED),
+ * передает его первые события пакетом всем получателям и удаляет их только после успешной доставки.
+ * При ошибке транзакция откатывается и пакет доставляется повторно, поэтому доставка выполняется
+ * не менее одного раза. Сегмент, пакет которого не доставлен, откладывается в отдельной транзакции
+ * с растущей задержкой, поэтому недоставляемое событие не мешает доставке других сегментов.
+ * Сегмент в каждый момент обрабатывает один узел, поэтому события одной карты
+ * доставляются в порядке записи, а узлы делят между собой разные сегменты.
+ */
+@Slf4j
+@Component
+public class OutboxRelay {
+
+    private final OutboxRepository outboxRepository;
+
+    private final List<OutboxSink> sinks;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final boolean enabled;
+
+    private final long intervalMillis;
+
+    private final int batchSize;
+
+    private final long backoffMillis;
+
+    private final long maxBackoffMillis;
+
+    private final Counter relayedCounter;
+
+    private final Counter failedCounter;
+
+    private final Timer dispatchTimer;
+
+    private volatile boolean running;
+
+    private Thread relay;
+
+    public OutboxRelay(
+            OutboxRepository outboxRepository,
+            List<OutboxSink> sinks,
+            TransactionTemplate transactionTemplate,
+            MeterRegistry meterRegistry,
+            @Value("${outbox.relay.enabled:true}") boolean enabled,
+            @Value("${outbox.relay.interval:200ms}") Duration interval,
+            @Value("${outbox.relay.batch_size:100}") int batchSize,
+            @Value("${outbox.relay.backoff:1s}") Duration backoff,
+            @Value("${outbox.relay.max_backoff:5m}") Duration maxBackoff) {
+        this.outboxRepository = outboxRepository;
+        this.sinks = sinks;
+        this.transactionTemplate = transactionTemplate;
+        this.enabled = enabled;
+        this.intervalMillis = interval.toMillis();
+        this.batchSize = batchSize;
+        this.backoffMillis = backoff.toMillis();
+        this.maxBackoffMillis = maxBackoff.toMillis();
+        this.relayedCounter = Counter.builder("outbox.relayed")
+                .description("Количество доставленных исходящих событий")
+                .register(meterRegistry);
+        this.failedCounter = Counter.builder("outbox.failed_batches")
+                .description("Количество пакетов исходящих событий, доставка которых завершилась ошибкой")
+                .register(meterRegistry);
+        this.dispatchTimer = Timer.builder("outbox.dispatch")
+                .description("Время доставки пакета исходящих событий всем получателям")
+                .register(meterRegistry);
+        Gauge.builder("outbox.lag", this, OutboxRelay::lagSeconds)
+                .description("Возраст самого старого недоставленного исходящего события")
+                .baseUnit("seconds")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Запускает поток ретрансляции после старта приложения, если ретрансляция включена.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void start() {
+        if (!enabled || relay != null) {
+            return;
+        }
+        running = true;
+        relay = new Thread(this::run, "outbox-relay");
+        relay.setDaemon(true);
+        relay.start();
+    }
+
+    @PreDestroy
+    public synchronized void stop() throws InterruptedException {
+        running = false;
+        if (relay != null) {
+            relay.interrupt();
+            relay.join(TimeUnit.SECONDS.toMillis(10));
+        }
+    }
+
+    /**
+     * Доставляет пакеты, пока есть свободные сегменты с событиями, затем ожидает интервал опроса.
+     */
+    private void run() {
+        while (running) {
+            if (relayBatch() == 0) {
+                try {
+                    Thread.sleep(intervalMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Доставляет один пакет событий свободного сегмента.
+     * Ошибка записывается в журнал; события остаются в outbox, а сегмент откладывается до повторной доставки.
+     *
+     * @return количество доставленных событий; 0, если событий нет или доставка не удалась
+     */
+    int relayBatch() {
+        AtomicReference<Integer> claimed = new AtomicReference<>();
+        try {
+            Integer relayed = transactionTemplate.execute(status -> {
+                Optional<Integer> shard = outboxRepository.claimShard();
+                if (shard.isEmpty()) {
+                    return 0;
+                }
+                claimed.set(shard.get());
+
+                List<OutboxMessage> batch = outboxRepository.findBatch(shard.get(), batchSize);
+                if (batch.isEmpty()) {
+                    return 0;
+                }
+                dispatchTimer.record(() -> sinks.forEach(sink -> sink.send(batch)));
+                outboxRepository.markRelayed(shard.get(), batch.stream().map(OutboxMessage::id).toList());
+                return batch.size();
+            });
+            int count = relayed == null ? 0 : relayed;
+            relayedCounter.increment(count);
+            return count;
+        } catch (RuntimeException e) {
+            failedCounter.increment();
+            log.warn("Outbox batch of shard {} was not relayed", claimed.get(), e);
+            if (claimed.get() != null) {
+                postpone(claimed.get());
+            }
+            return 0;
+        }
+    }
+
+    /**
+     * Откладывает сегмент после неудачной доставки.
+     * Если отложить не удалось, сегмент будет выбран снова, что не нарушает доставку.
+     *
+     * @param shard номер сегмента
+     */
+    private void postpone(int shard) {
+        try {
+            transactionTemplate.executeWithoutResult(status ->
+                    outboxRepository.markFailed(shard, backoffMillis, maxBackoffMillis));
+        } catch (RuntimeException e) {
+            log.warn("Outbox shard {} was not postponed", shard, e);
+        }
+    }
+
+    private double lagSeconds() {
+        try {
+            return outboxRepository.findLagSeconds();
+        } catch (DataAccessException e) {
+            return Double.NaN;
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package com.example.bankcards.outbox;
+
+import com.example.bankcards.event.OutboxMessage;
+
+import java.util.List;
+
+/**
+ * Получатель исходящих событий.
+ * Пакет считается доставленным, только если все получатели приняли его без ошибки; иначе весь пакет
+ * доставляется повторно, в том числе получателям, уже принявшим его. События одной карты
+ * передаются в порядке записи.
+ */
+public interface OutboxSink {
+
+    /**
+     * Доставляет пакет событий.
+     *
+     * @param messages события в порядке записи
+     * @throws RuntimeException если пакет не доставлен
+     */
+    void send(List<OutboxMessage> messages);
+}
@@ -0,0 +1,93 @@
+package com.example.bankcards.outbox;
+
+import com.example.bankcards.event.OutboxMessage;
+import com.example.bankcards.event.UserEvent;
+import com.example.bankcards.repository.OutboxRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Запись событий карт и переводов в outbox.
+ * События транзакции накапливаются и записываются одним пакетом перед её фиксацией, поэтому
+ * они фиксируются вместе с переводом или изменением карты и не записываются при откате.
+ * Номера событий назначаются при записи, после блокировки строк карт транзакцией,
+ * поэтому события одной карты получают номера в порядке её изменений.
+ * Исключение - зачисления на карту со слотами: они не блокируют строку карты, поэтому события
+ * параллельных зачислений на неё могут получить номера не в порядке фиксации, а баланс в таких
+ * событиях не обязательно возрастает вместе с номером. Списания с такой карты блокируют её строку
+ * и упорядочены относительно друг друга.
+ */
+@Component
+@RequiredArgsConstructor
+public class OutboxWriter {
+
+    private final OutboxRepository outboxRepository;
+    private final ObjectMapper objectMapper;
+
+    /**
+     * Добавляет событие к событиям текущей транзакции.
+     * Событие, опубликованное вне транзакции, записывается сразу.
+     *
+     * @param event событие карты или перевода
+     */
+    @EventListener
+    public void onUserEvent(UserEvent event) {
+        OutboxMessage message = new OutboxMessage(0, event.orderingKey(), event.userEmail(), event.eventName(),
+                toJson(event.payload()), null);
+
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            outboxRepository.saveAll(List.of(message));
+            return;
+        }
+        pendingMessages().add(message);
+    }
+
+    /**
+     * Возвращает события текущей транзакции, ожидающие записи.
+     * При первом обращении в транзакции регистрирует их запись перед фиксацией.
+     *
+     * @return изменяемый список событий транзакции
+     */
+    @SuppressWarnings("unchecked")
+    private List<OutboxMessage> pendingMessages() {
+        List<OutboxMessage> pending = (List<OutboxMessage>) TransactionSynchronizationManager.getResource(this);
+        if (pending != null) {
+            return pending;
+        }
+
+        List<OutboxMessage> messages = new ArrayList<>();
+        TransactionSynchronizationManager.bindResource(this, messages);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+
+            @Override
+            public void beforeCommit(boolean readOnly) {
+                if (!messages.isEmpty()) {
+                    outboxRepository.saveAll(messages);
+                }
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                TransactionSynchronizationManager.unbindResourceIfPossible(OutboxWriter.this);
+            }
+        });
+        return messages;
+    }
+
+    private String toJson(Object payload) {
+        try {
+            return objectMapper.writeValueAsString(payload);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.example.bankcards.outbox;
+
+import com.example.bankcards.event.OutboxMessage;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestClient;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Получатель, отправляющий пакет исходящих событий POST-запросом с JSON-массивом на заданный адрес.
+ * Пакет считается доставленным при ответе 2xx; ответ с ошибкой или истечение таймаута
+ * приводит к повторной доставке. Создается, только если задан адрес outbox.sinks.webhook.url.
+ */
+@Component
+@ConditionalOnProperty(name = "outbox.sinks.webhook.url")
+public class WebhookOutboxSink implements OutboxSink {
+
+    private final RestClient restClient;
+
+    public WebhookOutboxSink(
+            RestClient.Builder restClientBuilder,
+            @Value("${outbox.sinks.webhook.url}") String url,
+            @Value("${outbox.sinks.webhook.timeout:5s}") Duration timeout) {
+        // таймаут ограничивает время, на которое ретранслятор удерживает блокировку сегмента
+        SimpleClientHttpRequestFactory requestFactory = new SimpleClientHttpRequestFactory();
+        requestFactory.setConnectTimeout(timeout);
+        requestFactory.setReadTimeout(timeout);
+        this.restClient = restClientBuilder
+                .baseUrl(url)
+                .requestFactory(requestFactory)
+                .build();
+    }
+
+    @Override
+    public void send(List<OutboxMessage> messages) {
+        restClient.post()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(messages)
+                .retrieve()
+                .toBodilessEntity();
+    }
+}
@@ -0,0 +1,222 @@
+package com.example.bankcards.repository;
+
+import com.example.bankcards.entity.card.Card;
+import com.example.bankcards.entity.money.Money;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Репозиторий изменений баланса карт.
+ * Списание и зачисление выполняются условными запросами UPDATE: владелец, статус и достаточность средств
+ * проверяются в WHERE под блокировкой строки, поэтому между проверкой и изменением нет окна для потерянного обновления.
+ * Измененная строка возвращается через RETURNING; пустой результат означает, что условие не выполнено.
+ * Зачисления на карты со слотами распределяются по строкам card_balance_slots, чтобы не упираться
+ * в блокировку одной строки cards; накопленное в слотах переносится в основной баланс при нехватке средств
+ * для списания и фоновым уплотнением.
+ */
+@Repository
+public class CardBalanceRepository {
+
+    private static final String DEBIT = """
+            UPDATE cards SET balance = balance - ?
+            WHERE number = ? AND user_email = ? AND status = 'ACTIVE' AND balance >= ?
+            RETURNING number, user_email, full_name_user, expiration_date, status, balance, %s
+            """.formatted(CardStatusRepository.SLOTS_BALANCE);
+
+    private static final String CREDIT = """
+            UPDATE cards SET balance = balance + ?
+            WHERE number = ? AND user_email = ? AND status = 'ACTIVE'
+            RETURNING number, user_email, full_name_user, expiration_date, status, balance, %s
+            """.formatted(CardStatusRepository.SLOTS_BALANCE);
+
+    // статус проверяется без блокировки строки cards: параллельные зачисления в разные слоты не ждут друг друга
+    private static final String CREDIT_SLOT = """
+            UPDATE card_balance_slots s SET balance = s.balance + ?
+            FROM cards c
+            WHERE s.card_number = c.number AND s.slot = ?
+              AND c.number = ? AND c.user_email = ? AND c.status = 'ACTIVE'
+            RETURNING c.number, c.user_email, c.full_name_user, c.expiration_date, c.status, c.balance,
+                (SELECT COALESCE(SUM(o.balance), 0) FROM card_balance_slots o
+                 WHERE o.card_number = c.number AND o.slot <> s.slot) + s.balance AS slots_balance
+            """;
+
+    private static final String SWEEP_SLOTS = """
+            WITH swept AS (
+                SELECT slot, balance FROM card_balance_slots
+                WHERE card_number = ? AND balance <> 0
+                FOR UPDATE
+            ), cleared AS (
+                UPDATE card_balance_slots s SET balance = 0
+                FROM swept
+                WHERE s.card_number = ? AND s.slot = swept.slot
+            )
+            UPDATE cards SET balance = balance + (SELECT SUM(balance) FROM swept)
+            WHERE number = ? AND EXISTS (SELECT 1 FROM swept)
+            """;
+
+    // удаление блокирует все слоты карты, включая пустые: зачисление, выполняемое параллельно,
+    // дожидается удаления и не находит слота, а уже зафиксированное попадает в RETURNING
+    private static final String FOLD_SLOTS = """
+            WITH deleted AS (
+                DELETE FROM card_balance_slots WHERE card_number = ?
+                RETURNING balance
+            )
+            UPDATE cards SET balance = balance + (SELECT COALESCE(SUM(balance), 0) FROM deleted),
+                             balance_slots = ?
+            WHERE number = ?
+            """;
+
+    private static final String CREATE_SLOTS = """
+            INSERT INTO card_balance_slots (card_number, slot)
+            SELECT ?, generate_series(0, ? - 1)
+            """;
+
+    private static final String FIND_CARDS_WITH_SLOT_BALANCE = """
+            SELECT DISTINCT card_number FROM card_balance_slots
+            WHERE balance <> 0
+            LIMIT ?
+            """;
+
+    private static final String FIND_ALL_FOR_UPDATE = """
+            SELECT number, user_email, full_name_user, expiration_date, status, balance, %s
+            FROM cards
+            WHERE number IN (%%s) AND user_email = ?
+            ORDER BY number
+            FOR UPDATE OF cards
+            """.formatted(CardStatusRepository.SLOTS_BALANCE);
+
+    private static final String ADD_BALANCE = "UPDATE cards SET balance = balance + ? WHERE number = ?";
+
+    private static final int BATCH_SIZE = 100;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public CardBalanceRepository(DataSource dataSource) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+    }
+
+    /**
+     * Списывает сумму с активной карты владельца, если на ней достаточно средств.
+     *
+     * @param number номер карты
+     * @param email  email владельца карты
+     * @param amount сумма списания
+     * @return состояние карты после списания (владелец содержит только email) или пустой Optional
+     */
+    public Optional<Card> debit(String number, String email, Money amount) {
+        return jdbcTemplate.query(DEBIT, CardStatusRepository.CARD_ROW_MAPPER,
+                        amount.toBigDecimal(), number, email, amount.toBigDecimal())
+                .stream()
+                .findFirst();
+    }
+
+    /**
+     * Загружает и блокирует строки карт владельца одним запросом.
+     * Строки блокируются в порядке номеров карт, поэтому пакеты с пересекающимися картами
+     * ожидают друг друга, а не взаимоблокируются. Карты других пользователей не блокируются и не возвращаются.
+     *
+     * @param numbers номера карт
+     * @param email   email владельца карт
+     * @return заблокированные карты в порядке номеров (владелец содержит только email)
+     */
+    public List<Card> findAllForUpdate(Collection<String> numbers, String email) {
+        if (numbers.isEmpty()) {
+            return List.of();
+        }
+        String placeholders = String.join(", ", Collections.nCopies(numbers.size(), "?"));
+        List<Object> args = new ArrayList<>(numbers);
+        args.add(email);
+        return jdbcTemplate.query(FIND_ALL_FOR_UPDATE.formatted(placeholders), CardStatusRepository.CARD_ROW_MAPPER,
+                args.toArray());
+    }
+
+    /**
+     * Изменяет балансы заблокированных карт на итоговые суммы, по одному запросу в пакете на карту.
+     *
+     * @param deltas изменение баланса по номеру карты
+     */
+    public void addBalances(Map<String, Money> deltas) {
+        jdbcTemplate.batchUpdate(ADD_BALANCE, deltas.entrySet(), BATCH_SIZE, (ps, delta) -> {
+            ps.setBigDecimal(1, delta.getValue().toBigDecimal());
+            ps.setString(2, delta.getKey());
+        });
+    }
+
+    /**
+     * Зачисляет сумму на активную карту владельца.
+     *
+     * @param number номер карты
+     * @param email  email владельца карты
+     * @param amount сумма зачисления
+     * @return состояние карты после зачисления (владелец содержит только email) или пустой Optional
+     */
+    public Optional<Card> credit(String number, String email, Money amount) {
+        return jdbcTemplate.query(CREDIT, CardStatusRepository.CARD_ROW_MAPPER, amount.toBigDecimal(), number, email)
+                .stream()
+                .findFirst();
+    }
+
+    /**
+     * Зачисляет сумму в слот активной карты владельца.
+     *
+     * @param number номер карты
+     * @param email  email владельца карты
+     * @param slot   номер слота
+     * @param amount сумма зачисления
+     * @return состояние карты после зачисления (владелец содержит только email) или пустой Optional,
+     * если карта не активна или у неё нет такого слота
+     */
+    public Optional<Card> creditSlot(String number, String email, int slot, Money amount) {
+        return jdbcTemplate.query(CREDIT_SLOT, CardStatusRepository.CARD_ROW_MAPPER,
+                        amount.toBigDecimal(), slot, number, email)
+                .stream()
+                .findFirst();
+    }
+
+    /**
+     * Переносит накопленные в слотах зачисления в основной баланс карты одним запросом.
+     *
+     * @param number номер карты
+     * @return true если баланс карты изменился
+     */
+    public boolean sweepSlots(String number) {
+        return jdbcTemplate.update(SWEEP_SLOTS, number, number, number) > 0;
+    }
+
+    /**
+     * Задает количество слотов зачислений карты.
+     * Существующие слоты удаляются, а их остатки переносятся в основной баланс тем же запросом,
+     * поэтому зачисление в слот не может быть удалено без переноса. Новые слоты создаются с нулевым балансом.
+     *
+     * @param number номер карты
+     * @param slots  количество слотов (0 - зачисления в основной баланс)
+     * @return true если карта найдена
+     */
+    public boolean resizeSlots(String number, int slots) {
+        if (jdbcTemplate.update(FOLD_SLOTS, number, slots, number) == 0) {
+            return false;
+        }
+        if (slots > 0) {
+            jdbcTemplate.update(CREATE_SLOTS, number, slots);
+        }
+        return true;
+    }
+
+    /**
+     * Находит карты с зачислениями в слотах, еще не перенесенными в основной баланс.
+     *
+     * @param limit максимальное количество карт
+     * @return номера карт
+     */
+    public List<String> findCardsWithSlotBalance(int limit) {
+        return jdbcTemplate.queryForList(FIND_CARDS_WITH_SLOT_BALANCE, String.class, limit);
+    }
+}
@@ -0,0 +1,40 @@
+package com.example.bankcards.repository;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+
+import javax.sql.DataSource;
+
+/**
+ * Репозиторий для потокового чтения всех карт через однонаправленный JDBC-курсор.
+ * Строки передаются обработчику по мере чтения и не накапливаются в памяти.
+ * Вызывать внутри транзакции: драйвер PostgreSQL использует курсор с fetch size только при выключенном autocommit.
+ */
+@Repository
+public class CardExportRepository {
+
+    private static final String SELECT_ALL_CARDS = """
+            SELECT number, user_email, full_name_user, expiration_date, status,
+                balance + (SELECT COALESCE(SUM(s.balance), 0) FROM card_balance_slots s
+                           WHERE s.card_number = cards.number) AS balance
+            FROM cards
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public CardExportRepository(DataSource dataSource, @Value("${export.fetch_size:1000}") int fetchSize) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.jdbcTemplate.setFetchSize(fetchSize);
+    }
+
+    /**
+     * Последовательно передает обработчику все строки таблицы cards.
+     *
+     * @param handler обработчик строки результата
+     */
+    public void forEachCard(RowCallbackHandler handler) {
+        jdbcTemplate.query(SELECT_ALL_CARDS, handler);
+    }
+}
@@ -0,0 +1,46 @@
+package com.example.bankcards.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.sql.DataSource;
+
+/**
+ * Репозиторий диапазонов номеров карт.
+ * Каждый узел резервирует блок номеров одним запросом и выдает их из памяти.
+ */
+@Repository
+public class CardNumberRangeRepository {
+
+    private static final String RESERVE_BLOCK = """
+            INSERT INTO card_number_ranges (bin, next_value) VALUES (?, ?)
+            ON CONFLICT (bin) DO UPDATE SET next_value = card_number_ranges.next_value + EXCLUDED.next_value
+            RETURNING next_value
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public CardNumberRangeRepository(DataSource dataSource) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+    }
+
+    /**
+     * Резервирует следующий блок номеров счетов для BIN.
+     * Выполняется в отдельной транзакции: откат транзакции выпуска карты не должен возвращать блок,
+     * который уже выдается из памяти этого узла.
+     *
+     * @param bin       BIN (первые 6 цифр номера карты)
+     * @param blockSize размер блока
+     * @return номер счета, следующий за зарезервированным блоком (блок: [результат - blockSize, результат))
+     */
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public long reserveBlock(String bin, long blockSize) {
+        Long end = jdbcTemplate.queryForObject(RESERVE_BLOCK, Long.class, bin, blockSize);
+        if (end == null) {
+            throw new IllegalStateException("Card number range for BIN " + bin + " was not reserved");
+        }
+        return end;
+    }
+}
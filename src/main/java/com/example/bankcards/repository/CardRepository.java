@@ -1,10 +1,14 @@
 package com.example.bankcards.repository;
 
+import com.example.bankcards.cache.CardSnapshot;
 import com.example.bankcards.entity.card.Card;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -12,9 +16,30 @@ public interface CardRepository extends JpaRepository<Card, String> {
 
     Optional<Card> findByNumber(String number);
 
+    @Query("""
+            SELECT new com.example.bankcards.cache.CardSnapshot(
+                c.number, c.user.email, c.status, c.expirationDate, c.balanceSlots)
+            FROM Card c
+            WHERE c.number = :number
+            """)
+    Optional<CardSnapshot> findSnapshotByNumber(String number);
+
     Page<Card> findAllByUser_Email(String email, Pageable pageable);
 
     List<Card> findAllByUser_Email(String email);
 
-    boolean existsByNumber(String cardNumber);
+    @Query("""
+            SELECT c FROM Card c JOIN FETCH c.user
+            WHERE c.requestToBlocked = true AND c.number > :afterNumber
+            ORDER BY c.number
+            """)
+    List<Card> findBlockRequestsAfter(String afterNumber, Pageable pageable);
+
+    @Modifying
+    @Query("""
+            UPDATE Card c
+            SET c.requestToBlocked = false
+            WHERE c.number IN :numbers AND c.requestToBlocked = true
+            """)
+    int rejectBlockRequests(Collection<String> numbers);
 }
@@ -0,0 +1,147 @@
+package com.example.bankcards.repository;
+
+import com.example.bankcards.entity.card.Card;
+import com.example.bankcards.entity.card.CardStatus;
+import com.example.bankcards.entity.money.Money;
+import com.example.bankcards.entity.user.User;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import javax.sql.DataSource;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Репозиторий точечных изменений статуса карт.
+ * Каждое изменение выполняется одним запросом: предусловия (владелец, срок действия, текущий статус)
+ * находятся в WHERE, версия карт владельца увеличивается в том же запросе,
+ * а измененная строка возвращается через RETURNING без загрузки сущности в контекст персистентности.
+ * Пустой результат означает, что карта не найдена или предусловие не выполнено.
+ * Вместе со строкой возвращается сумма слотов зачислений, чтобы события содержали полный баланс карты.
+ */
+@Repository
+public class CardStatusRepository {
+
+    /**
+     * Столбец slots_balance для запросов, возвращающих строки cards.
+     */
+    static final String SLOTS_BALANCE = "(SELECT COALESCE(SUM(s.balance), 0) FROM card_balance_slots s " +
+            "WHERE s.card_number = cards.number) AS slots_balance";
+
+    private static final String BLOCK = """
+            WITH updated AS (
+                UPDATE cards SET status = 'BLOCKED', request_to_blocked = false
+                WHERE number = ? AND status <> 'EXPIRED' AND (status <> 'BLOCKED' OR request_to_blocked)
+                RETURNING number, user_email, full_name_user, expiration_date, status, balance, %s
+            ), bumped AS (
+                UPDATE users SET cards_version = cards_version + 1
+                WHERE email IN (SELECT user_email FROM updated)
+            )
+            SELECT * FROM updated
+            """.formatted(SLOTS_BALANCE);
+
+    private static final String ACTIVATE = """
+            WITH updated AS (
+                UPDATE cards SET status = 'ACTIVE'
+                WHERE number = ? AND status <> 'EXPIRED' AND status <> 'ACTIVE' AND expiration_date >= ?
+                RETURNING number, user_email, full_name_user, expiration_date, status, balance, %s
+            ), bumped AS (
+                UPDATE users SET cards_version = cards_version + 1
+                WHERE email IN (SELECT user_email FROM updated)
+            )
+            SELECT * FROM updated
+            """.formatted(SLOTS_BALANCE);
+
+    private static final String APPROVE_BLOCK_REQUESTS = """
+            WITH updated AS (
+                UPDATE cards SET status = 'BLOCKED', request_to_blocked = false
+                WHERE number = ANY (?) AND request_to_blocked
+                RETURNING number, user_email, full_name_user, expiration_date, status, balance, %s
+            ), bumped AS (
+                UPDATE users SET cards_version = cards_version + 1
+                WHERE email IN (SELECT user_email FROM updated)
+            )
+            SELECT * FROM updated
+            """.formatted(SLOTS_BALANCE);
+
+    private static final String REQUEST_BLOCK = """
+            UPDATE cards SET request_to_blocked = true
+            WHERE number = ? AND user_email = ? AND status <> 'EXPIRED' AND expiration_date >= ?
+            """;
+
+    static final RowMapper<Card> CARD_ROW_MAPPER = (rs, rowNum) -> {
+        User user = new User();
+        user.setEmail(rs.getString("user_email"));
+        Card card = new Card(
+                rs.getString("number"),
+                user,
+                rs.getString("full_name_user"),
+                rs.getTimestamp("expiration_date").toLocalDateTime().toLocalDate(),
+                CardStatus.valueOf(rs.getString("status")),
+                Money.of(rs.getBigDecimal("balance")));
+        card.setSlotsBalance(Money.of(rs.getBigDecimal("slots_balance")));
+        return card;
+    };
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public CardStatusRepository(DataSource dataSource) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+    }
+
+    /**
+     * Блокирует карту и снимает запрос на блокировку. Карта с истекшим сроком не блокируется,
+     * уже заблокированная карта без запроса на блокировку не изменяется.
+     *
+     * @param number номер карты
+     * @return состояние карты после изменения (владелец содержит только email) или пустой Optional
+     */
+    public Optional<Card> block(String number) {
+        return jdbcTemplate.query(BLOCK, CARD_ROW_MAPPER, number).stream().findFirst();
+    }
+
+    /**
+     * Блокирует карты с ожидающим запросом на блокировку и снимает отметку о запросе.
+     * Версия карт увеличивается только у владельцев измененных карт.
+     *
+     * @param numbers номера карт
+     * @return состояния измененных карт (владелец содержит только email); карты без запроса не возвращаются
+     */
+    public List<Card> approveBlockRequests(Collection<String> numbers) {
+        return jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(APPROVE_BLOCK_REQUESTS);
+            ps.setArray(1, con.createArrayOf("varchar", numbers.toArray()));
+            return ps;
+        }, CARD_ROW_MAPPER);
+    }
+
+    /**
+     * Активирует карту, если её срок действия не истек. Уже активная карта не изменяется.
+     *
+     * @param number номер карты
+     * @param today  текущая дата
+     * @return состояние карты после изменения (владелец содержит только email) или пустой Optional
+     */
+    public Optional<Card> activate(String number, LocalDate today) {
+        return jdbcTemplate.query(ACTIVATE, CARD_ROW_MAPPER, number, Timestamp.valueOf(today.atStartOfDay()))
+                .stream()
+                .findFirst();
+    }
+
+    /**
+     * Отмечает запрос владельца на блокировку карты, если её срок действия не истек.
+     *
+     * @param number номер карты
+     * @param email  email владельца карты
+     * @param today  текущая дата
+     * @return true если отметка установлена
+     */
+    public boolean requestBlock(String number, String email, LocalDate today) {
+        return jdbcTemplate.update(REQUEST_BLOCK, number, email, Timestamp.valueOf(today.atStartOfDay())) > 0;
+    }
+}
@@ -0,0 +1,111 @@
+package com.example.bankcards.repository;
+
+import com.example.bankcards.dto.transfer.TransferDtoResponse;
+import com.example.bankcards.entity.money.Money;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import javax.sql.DataSource;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+/**
+ * Репозиторий ключей идемпотентности переводов.
+ * Ключ занимается вставкой в той же транзакции, что и перевод: параллельный запрос с тем же ключом
+ * ожидает на уникальном индексе завершения первой транзакции, после фиксации получает сохраненный результат,
+ * а после отката занимает ключ сам. Блокировки строк карт при этом берет только один запрос.
+ */
+@Repository
+public class IdempotencyKeyRepository {
+
+    private static final String CLAIM = """
+            INSERT INTO idempotency_keys
+                (user_email, idempotency_key, from_card_number, to_card_number, amount, created_at)
+            VALUES (?, ?, ?, ?, ?, ?)
+            ON CONFLICT (user_email, idempotency_key) DO NOTHING
+            """;
+
+    private static final String COMPLETE = """
+            UPDATE idempotency_keys SET transfer_time = ?
+            WHERE user_email = ? AND idempotency_key = ?
+            """;
+
+    private static final String FIND = """
+            SELECT user_email, from_card_number, to_card_number, amount, transfer_time
+            FROM idempotency_keys
+            WHERE user_email = ? AND idempotency_key = ?
+            """;
+
+    private static final String DELETE_CREATED_BEFORE = """
+            DELETE FROM idempotency_keys WHERE ctid IN (
+                SELECT ctid FROM idempotency_keys WHERE created_at < ? LIMIT ?
+            )
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public IdempotencyKeyRepository(DataSource dataSource) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+    }
+
+    /**
+     * Занимает ключ для перевода. Если ключ занят незавершенной транзакцией, ожидает её завершения.
+     *
+     * @param email          email пользователя
+     * @param idempotencyKey ключ идемпотентности
+     * @param fromCardNumber номер карты-отправителя
+     * @param toCardNumber   номер карты-получателя
+     * @param amount         сумма перевода
+     * @return true если ключ занят этим запросом, false если ключ уже использован
+     */
+    public boolean claim(String email, String idempotencyKey, String fromCardNumber, String toCardNumber,
+                         Money amount) {
+        return jdbcTemplate.update(CLAIM, email, idempotencyKey, fromCardNumber, toCardNumber,
+                amount.toBigDecimal(), Timestamp.valueOf(LocalDateTime.now())) > 0;
+    }
+
+    /**
+     * Сохраняет результат перевода для ключа.
+     *
+     * @param email          email пользователя
+     * @param idempotencyKey ключ идемпотентности
+     * @param time           время выполненного перевода
+     */
+    public void complete(String email, String idempotencyKey, LocalDateTime time) {
+        jdbcTemplate.update(COMPLETE, Timestamp.valueOf(time), email, idempotencyKey);
+    }
+
+    /**
+     * Находит сохраненный результат перевода по ключу.
+     *
+     * @param email          email пользователя
+     * @param idempotencyKey ключ идемпотентности
+     * @return перевод, запрошенный с этим ключом (время пустое, если перевод еще не завершен)
+     */
+    public Optional<TransferDtoResponse> find(String email, String idempotencyKey) {
+        return jdbcTemplate.query(FIND, (rs, rowNum) -> {
+                    Timestamp time = rs.getTimestamp("transfer_time");
+                    return TransferDtoResponse.builder()
+                            .userEmail(rs.getString("user_email"))
+                            .fromCardNumber(rs.getString("from_card_number"))
+                            .toCardNumber(rs.getString("to_card_number"))
+                            .amount(Money.of(rs.getBigDecimal("amount")))
+                            .time(time != null ? time.toLocalDateTime() : null)
+                            .build();
+                }, email, idempotencyKey)
+                .stream()
+                .findFirst();
+    }
+
+    /**
+     * Удаляет порцию ключей, созданных раньше указанного времени.
+     *
+     * @param time      граница времени создания
+     * @param batchSize максимальное количество удаляемых ключей
+     * @return количество удаленных ключей
+     */
+    public int deleteCreatedBefore(LocalDateTime time, int batchSize) {
+        return jdbcTemplate.update(DELETE_CREATED_BEFORE, Timestamp.valueOf(time), batchSize);
+    }
+}
@@ -0,0 +1,14 @@
+package com.example.bankcards.repository;
+
+import com.example.bankcards.entity.ledger.LedgerEntry;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+
+import java.math.BigDecimal;
+
+public interface LedgerEntryRepository extends JpaRepository<LedgerEntry, Long> {
+
+    @Query(value = "SELECT COALESCE(SUM(amount), 0) FROM ledger_entries WHERE card_number = :cardNumber",
+            nativeQuery = true)
+    BigDecimal sumAmountByCardNumber(String cardNumber);
+}
@@ -0,0 +1,170 @@
+package com.example.bankcards.repository;
+
+import com.example.bankcards.event.OutboxMessage;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import javax.sql.DataSource;
+import java.sql.PreparedStatement;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Репозиторий исходящих событий (outbox).
+ * События распределены по сегментам по номеру карты. Ретранслятор блокирует строку сегмента
+ * с SKIP LOCKED на время доставки пакета, поэтому сегмент обрабатывает один узел,
+ * а события одной карты доставляются в порядке записи.
+ */
+@Repository
+public class OutboxRepository {
+
+    /**
+     * Количество сегментов; совпадает с количеством строк таблицы outbox_shards.
+     */
+    public static final int SHARDS = 16;
+
+    private static final int BATCH_SIZE = 100;
+
+    private static final String INSERT = """
+            INSERT INTO outbox_events (shard, ordering_key, user_email, event_name, payload)
+            VALUES (?, ?, ?, ?, ?)
+            """;
+
+    // сегмент, дольше всех не обслуживавшийся, выбирается первым, чтобы сегменты не простаивали;
+    // отложенные после неудачной доставки сегменты пропускаются до истечения задержки
+    private static final String CLAIM_SHARD = """
+            SELECT s.shard
+            FROM outbox_shards s
+            WHERE EXISTS (SELECT 1 FROM outbox_events e WHERE e.shard = s.shard)
+              AND (s.retry_at IS NULL OR s.retry_at <= localtimestamp)
+            ORDER BY s.relayed_at NULLS FIRST
+            LIMIT 1
+            FOR UPDATE SKIP LOCKED
+            """;
+
+    private static final String FIND_BATCH = """
+            SELECT id, ordering_key, user_email, event_name, payload, created_at
+            FROM outbox_events
+            WHERE shard = ?
+            ORDER BY id
+            LIMIT ?
+            """;
+
+    // удаление по номерам, а не по диапазону: событие с меньшим номером может быть зафиксировано позже
+    private static final String DELETE = "DELETE FROM outbox_events WHERE id = ANY (?)";
+
+    private static final String MARK_RELAYED = """
+            UPDATE outbox_shards SET relayed_at = localtimestamp, failures = 0, retry_at = NULL
+            WHERE shard = ?
+            """;
+
+    // задержка удваивается с каждой неудачей подряд и ограничена сверху
+    private static final String MARK_FAILED = """
+            UPDATE outbox_shards
+            SET relayed_at = localtimestamp,
+                failures = failures + 1,
+                retry_at = localtimestamp + LEAST(? * power(2, LEAST(failures, 30)), ?) * interval '1 millisecond'
+            WHERE shard = ?
+            """;
+
+    private static final String FIND_LAG = """
+            SELECT EXTRACT(EPOCH FROM localtimestamp - created_at)
+            FROM outbox_events
+            ORDER BY id
+            LIMIT 1
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public OutboxRepository(DataSource dataSource) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+    }
+
+    /**
+     * Записывает события в порядке списка.
+     *
+     * @param messages события; id и время записи назначаются базой данных
+     */
+    public void saveAll(List<OutboxMessage> messages) {
+        jdbcTemplate.batchUpdate(INSERT, messages, BATCH_SIZE, (ps, message) -> {
+            ps.setInt(1, shard(message.orderingKey()));
+            ps.setString(2, message.orderingKey());
+            ps.setString(3, message.userEmail());
+            ps.setString(4, message.eventName());
+            ps.setString(5, message.payload());
+        });
+    }
+
+    /**
+     * Блокирует до конца транзакции сегмент с недоставленными событиями, не заблокированный другим узлом.
+     *
+     * @return номер сегмента или пустой Optional, если свободных сегментов с событиями нет
+     */
+    public Optional<Integer> claimShard() {
+        return jdbcTemplate.queryForList(CLAIM_SHARD, Integer.class).stream().findFirst();
+    }
+
+    /**
+     * Находит первые недоставленные события сегмента.
+     *
+     * @param shard номер сегмента
+     * @param limit максимальное количество событий
+     * @return события в порядке записи
+     */
+    public List<OutboxMessage> findBatch(int shard, int limit) {
+        return jdbcTemplate.query(FIND_BATCH, (rs, rowNum) -> new OutboxMessage(
+                        rs.getLong("id"),
+                        rs.getString("ordering_key"),
+                        rs.getString("user_email"),
+                        rs.getString("event_name"),
+                        rs.getString("payload"),
+                        rs.getTimestamp("created_at").toLocalDateTime()),
+                shard, limit);
+    }
+
+    /**
+     * Удаляет доставленные события и отмечает время обслуживания сегмента.
+     *
+     * @param shard номер сегмента
+     * @param ids   номера доставленных событий
+     */
+    public void markRelayed(int shard, List<Long> ids) {
+        jdbcTemplate.update(con -> {
+            PreparedStatement ps = con.prepareStatement(DELETE);
+            ps.setArray(1, con.createArrayOf("bigint", ids.toArray()));
+            return ps;
+        });
+        jdbcTemplate.update(MARK_RELAYED, shard);
+    }
+
+    /**
+     * Откладывает сегмент после неудачной доставки. Вызывать в отдельной транзакции:
+     * транзакция доставки откатывается вместе с отметками сегмента.
+     *
+     * @param shard            номер сегмента
+     * @param backoffMillis    задержка после первой неудачи
+     * @param maxBackoffMillis максимальная задержка
+     */
+    public void markFailed(int shard, long backoffMillis, long maxBackoffMillis) {
+        jdbcTemplate.update(MARK_FAILED, backoffMillis, maxBackoffMillis, shard);
+    }
+
+    /**
+     * Возвращает возраст самого старого недоставленного события.
+     *
+     * @return возраст в секундах или 0, если недоставленных событий нет
+     */
+    public double findLagSeconds() {
+        return jdbcTemplate.queryForList(FIND_LAG, Double.class).stream().findFirst().orElse(0.0);
+    }
+
+    /**
+     * Возвращает сегмент событий карты.
+     *
+     * @param orderingKey номер карты
+     * @return номер сегмента от 0 до {@link #SHARDS} - 1
+     */
+    public static int shard(String orderingKey) {
+        return Math.floorMod(orderingKey.hashCode(), SHARDS);
+    }
+}
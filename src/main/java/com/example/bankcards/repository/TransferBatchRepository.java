@@ -0,0 +1,70 @@
+package com.example.bankcards.repository;
+
+import com.example.bankcards.entity.transfer.Transfer;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.Savepoint;
+import java.sql.Timestamp;
+import java.util.List;
+
+/**
+ * Репозиторий пакетной записи переводов.
+ * Строки вставляются пакетами JDBC, а не отдельными запросами через контекст персистентности.
+ * Точки сохранения позволяют отменить один перевод группы, не отменяя общую транзакцию.
+ */
+@Repository
+public class TransferBatchRepository {
+
+    private static final int BATCH_SIZE = 100;
+
+    private static final String INSERT = """
+            INSERT INTO transfers (user_email, from_card_number, to_card_number, amount, time)
+            VALUES (?, ?, ?, ?, ?)
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public TransferBatchRepository(DataSource dataSource) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+    }
+
+    /**
+     * Записывает переводы пакетами.
+     *
+     * @param transfers переводы для записи
+     */
+    public void insertAll(List<Transfer> transfers) {
+        jdbcTemplate.batchUpdate(INSERT, transfers, BATCH_SIZE, (ps, transfer) -> {
+            ps.setString(1, transfer.getUser().getEmail());
+            ps.setString(2, transfer.getFromCardNumber());
+            ps.setString(3, transfer.getToCardNumber());
+            ps.setBigDecimal(4, transfer.getAmount().toBigDecimal());
+            ps.setTimestamp(5, Timestamp.valueOf(transfer.getTime()));
+        });
+    }
+
+    /**
+     * Создает точку сохранения в текущей транзакции.
+     *
+     * @return точка сохранения
+     */
+    public Savepoint setSavepoint() {
+        return jdbcTemplate.execute((ConnectionCallback<Savepoint>) Connection::setSavepoint);
+    }
+
+    /**
+     * Отменяет изменения текущей транзакции, выполненные после точки сохранения.
+     *
+     * @param savepoint точка сохранения
+     */
+    public void rollbackToSavepoint(Savepoint savepoint) {
+        jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+            connection.rollback(savepoint);
+            return null;
+        });
+    }
+}
@@ -0,0 +1,62 @@
+package com.example.bankcards.repository;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+
+import javax.sql.DataSource;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Репозиторий для потокового чтения переводов через однонаправленный JDBC-курсор.
+ * Переводы читаются в порядке (time, id) по индексу, поэтому секции таблицы переводов
+ * обходятся от старых к новым без сортировки, а секции вне периода отсекаются.
+ * Вызывать внутри транзакции: драйвер PostgreSQL использует курсор с fetch size только при выключенном autocommit.
+ */
+@Repository
+public class TransferExportRepository {
+
+    private static final String SELECT_TRANSFERS = """
+            SELECT id, user_email, from_card_number, to_card_number, amount, time
+            FROM transfers
+            """;
+
+    private static final String ORDER = " ORDER BY time, id";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public TransferExportRepository(DataSource dataSource, @Value("${export.fetch_size:1000}") int fetchSize) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.jdbcTemplate.setFetchSize(fetchSize);
+    }
+
+    /**
+     * Последовательно передает обработчику переводы за период.
+     *
+     * @param fromTime начало периода (включительно), может отсутствовать
+     * @param toTime   конец периода (не включительно), может отсутствовать
+     * @param handler  обработчик строки результата
+     */
+    public void forEachTransfer(LocalDateTime fromTime, LocalDateTime toTime, RowCallbackHandler handler) {
+        // условия добавляются только для заданных границ, чтобы секции отсекались при планировании запроса
+        List<String> conditions = new ArrayList<>(2);
+        List<Object> args = new ArrayList<>(2);
+        if (fromTime != null) {
+            conditions.add("time >= ?");
+            args.add(Timestamp.valueOf(fromTime));
+        }
+        if (toTime != null) {
+            conditions.add("time < ?");
+            args.add(Timestamp.valueOf(toTime));
+        }
+
+        String sql = conditions.isEmpty()
+                ? SELECT_TRANSFERS + ORDER
+                : SELECT_TRANSFERS + "WHERE " + String.join(" AND ", conditions) + ORDER;
+        jdbcTemplate.query(sql, handler, args.toArray());
+    }
+}
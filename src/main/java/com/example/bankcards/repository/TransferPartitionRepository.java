@@ -0,0 +1,91 @@
+package com.example.bankcards.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import javax.sql.DataSource;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.Objects;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Репозиторий месячных секций таблицы переводов.
+ * Секция месяца называется transfers_yYYYYmMM и содержит переводы с первого дня месяца (включительно)
+ * до первого дня следующего месяца. Отсоединенная секция остается отдельной таблицей с тем же именем
+ * и может быть выгружена в архив или удалена без блокировки таблицы переводов.
+ */
+@Repository
+public class TransferPartitionRepository {
+
+    private static final Pattern PARTITION_NAME = Pattern.compile("transfers_y(\\d{4})m(\\d{2})");
+
+    private static final String FIND_ATTACHED = """
+            SELECT c.relname
+            FROM pg_inherits i
+            JOIN pg_class c ON c.oid = i.inhrelid
+            WHERE i.inhparent = 'transfers'::regclass
+            """;
+
+    private static final String CREATE = "CREATE TABLE IF NOT EXISTS %s PARTITION OF transfers " +
+            "FOR VALUES FROM ('%s') TO ('%s')";
+
+    // отсоединение без блокировки таблицы на запись; выполняется только вне транзакции
+    private static final String DETACH = "ALTER TABLE transfers DETACH PARTITION %s CONCURRENTLY";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public TransferPartitionRepository(DataSource dataSource) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+    }
+
+    /**
+     * Находит месяцы присоединенных секций таблицы переводов.
+     *
+     * @return месяцы секций в порядке возрастания
+     */
+    public List<YearMonth> findAttached() {
+        return jdbcTemplate.queryForList(FIND_ATTACHED, String.class).stream()
+                .map(TransferPartitionRepository::parse)
+                .filter(Objects::nonNull)
+                .sorted()
+                .toList();
+    }
+
+    /**
+     * Создает секцию месяца, если её еще нет.
+     *
+     * @param month месяц секции
+     */
+    public void create(YearMonth month) {
+        jdbcTemplate.execute(CREATE.formatted(name(month), month.atDay(1), month.plusMonths(1).atDay(1)));
+    }
+
+    /**
+     * Отсоединяет секцию месяца от таблицы переводов.
+     * Переводы секции перестают попадать в запросы к таблице переводов.
+     *
+     * @param month месяц секции
+     */
+    public void detach(YearMonth month) {
+        jdbcTemplate.execute(DETACH.formatted(name(month)));
+    }
+
+    /**
+     * Возвращает имя секции месяца.
+     *
+     * @param month месяц секции
+     * @return имя таблицы секции
+     */
+    public static String name(YearMonth month) {
+        return "transfers_y%04dm%02d".formatted(month.getYear(), month.getMonthValue());
+    }
+
+    private static YearMonth parse(String name) {
+        Matcher matcher = PARTITION_NAME.matcher(name);
+        return matcher.matches()
+                ? YearMonth.of(Integer.parseInt(matcher.group(1)), Integer.parseInt(matcher.group(2)))
+                : null;
+    }
+}
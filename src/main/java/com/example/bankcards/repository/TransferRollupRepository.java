@@ -0,0 +1,283 @@
+package com.example.bankcards.repository;
+
+import com.example.bankcards.dto.analytics.CardTransferRollupDtoResponse;
+import com.example.bankcards.dto.analytics.RollupPeriod;
+import com.example.bankcards.dto.analytics.TransferRollupDtoResponse;
+import com.example.bankcards.entity.money.Money;
+import com.example.bankcards.entity.transfer.Transfer;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import javax.sql.DataSource;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+
+/**
+ * Репозиторий дневных и месячных итогов переводов пользователей и карт.
+ * Итоги увеличиваются при каждом переводе запросами INSERT ... ON CONFLICT DO UPDATE, поэтому
+ * чтение итогов за период не зависит от размера истории переводов. Строки изменяются в порядке ключей,
+ * чтобы транзакции, изменяющие одни и те же итоги, не взаимоблокировались.
+ */
+@Repository
+public class TransferRollupRepository {
+
+    private static final int BATCH_SIZE = 100;
+
+    private static final String UPSERT_USER = """
+            INSERT INTO transfer_user_rollups (user_email, period, period_start, slot, transfer_count, amount)
+            VALUES (?, ?, ?, ?, ?, ?)
+            ON CONFLICT (user_email, period, period_start, slot) DO UPDATE
+            SET transfer_count = transfer_user_rollups.transfer_count + EXCLUDED.transfer_count,
+                amount = transfer_user_rollups.amount + EXCLUDED.amount
+            """;
+
+    private static final String UPSERT_CARD = """
+            INSERT INTO transfer_card_rollups (card_number, period, period_start, slot,
+                                               outgoing_count, outgoing_amount, incoming_count, incoming_amount)
+            VALUES (?, ?, ?, ?, ?, ?, ?, ?)
+            ON CONFLICT (card_number, period, period_start, slot) DO UPDATE
+            SET outgoing_count = transfer_card_rollups.outgoing_count + EXCLUDED.outgoing_count,
+                outgoing_amount = transfer_card_rollups.outgoing_amount + EXCLUDED.outgoing_amount,
+                incoming_count = transfer_card_rollups.incoming_count + EXCLUDED.incoming_count,
+                incoming_amount = transfer_card_rollups.incoming_amount + EXCLUDED.incoming_amount
+            """;
+
+    private static final String FIND_USER = """
+            SELECT period_start, SUM(transfer_count) AS transfer_count, SUM(amount) AS amount
+            FROM transfer_user_rollups
+            WHERE user_email = ? AND period = ? AND period_start >= ? AND period_start < ?
+            GROUP BY period_start
+            ORDER BY period_start
+            """;
+
+    private static final String FIND_CARD = """
+            SELECT period_start,
+                   SUM(outgoing_count) AS outgoing_count, SUM(outgoing_amount) AS outgoing_amount,
+                   SUM(incoming_count) AS incoming_count, SUM(incoming_amount) AS incoming_amount
+            FROM transfer_card_rollups
+            WHERE card_number = ? AND period = ? AND period_start >= ? AND period_start < ?
+            GROUP BY period_start
+            ORDER BY period_start
+            """;
+
+    // новые переводы ожидают пересчета на блокировке, а не попадают в удаляемые строки
+    private static final String LOCK_ROLLUPS =
+            "LOCK TABLE transfer_user_rollups, transfer_card_rollups IN EXCLUSIVE MODE";
+
+    // итоги месяцев, секции которых отсоединены от таблицы переводов, не пересчитываются и сохраняются
+    private static final String FIND_FIRST_MONTH = "SELECT date_trunc('month', min(time))::date FROM transfers";
+
+    private static final String DELETE_USER_ROLLUPS = """
+            DELETE FROM transfer_user_rollups
+            WHERE period_start >= ? AND period_start < ?
+            """;
+
+    private static final String DELETE_CARD_ROLLUPS = """
+            DELETE FROM transfer_card_rollups
+            WHERE period_start >= ? AND period_start < ?
+            """;
+
+    private static final String REBUILD_USER_ROLLUPS = """
+            INSERT INTO transfer_user_rollups (user_email, period, period_start, slot, transfer_count, amount)
+            SELECT t.user_email, p.period, date_trunc(p.unit, t.time)::date, 0, COUNT(*), SUM(t.amount)
+            FROM transfers t
+            CROSS JOIN (VALUES ('DAY', 'day'), ('MONTH', 'month')) AS p (period, unit)
+            WHERE t.time >= ? AND t.time < ?
+            GROUP BY t.user_email, p.period, date_trunc(p.unit, t.time)::date
+            """;
+
+    private static final String REBUILD_CARD_ROLLUPS = """
+            INSERT INTO transfer_card_rollups (card_number, period, period_start, slot,
+                                               outgoing_count, outgoing_amount, incoming_count, incoming_amount)
+            SELECT t.card_number, p.period, date_trunc(p.unit, t.time)::date, 0,
+                   COUNT(*) FILTER (WHERE t.outgoing), COALESCE(SUM(t.amount) FILTER (WHERE t.outgoing), 0),
+                   COUNT(*) FILTER (WHERE NOT t.outgoing), COALESCE(SUM(t.amount) FILTER (WHERE NOT t.outgoing), 0)
+            FROM (SELECT from_card_number AS card_number, true AS outgoing, amount, time FROM transfers
+                  WHERE time >= ? AND time < ?
+                  UNION ALL
+                  SELECT to_card_number, false, amount, time FROM transfers
+                  WHERE time >= ? AND time < ?) t
+            CROSS JOIN (VALUES ('DAY', 'day'), ('MONTH', 'month')) AS p (period, unit)
+            GROUP BY t.card_number, p.period, date_trunc(p.unit, t.time)::date
+            """;
+
+    private static final Comparator<RollupKey> KEY_ORDER = Comparator.comparing(RollupKey::owner)
+            .thenComparing(RollupKey::period)
+            .thenComparing(RollupKey::periodStart)
+            .thenComparingInt(RollupKey::slot);
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public TransferRollupRepository(DataSource dataSource) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+    }
+
+    /**
+     * Добавляет переводы к дневным и месячным итогам пользователей и карт.
+     * Переводы сначала суммируются в памяти, поэтому каждая строка итогов изменяется одним запросом.
+     *
+     * @param items переводы со слотами строк итогов
+     */
+    public void addAll(List<RollupItem> items) {
+        Map<RollupKey, long[]> users = new TreeMap<>(KEY_ORDER);
+        Map<RollupKey, long[]> cards = new TreeMap<>(KEY_ORDER);
+        for (RollupItem item : items) {
+            Transfer transfer = item.transfer();
+            long amount = transfer.getAmount().minorUnits();
+            for (RollupPeriod period : RollupPeriod.values()) {
+                LocalDate start = periodStart(period, transfer.getTime().toLocalDate());
+                add(users, new RollupKey(transfer.getUser().getEmail(), period, start, item.slot()), 0, amount);
+                add(cards, new RollupKey(transfer.getFromCardNumber(), period, start, item.slot()), 0, amount);
+                add(cards, new RollupKey(transfer.getToCardNumber(), period, start, item.slot()), 2, amount);
+            }
+        }
+
+        jdbcTemplate.batchUpdate(UPSERT_USER, new ArrayList<>(users.entrySet()), BATCH_SIZE, (ps, entry) -> {
+            setKey(ps, entry.getKey());
+            ps.setLong(5, entry.getValue()[0]);
+            ps.setBigDecimal(6, Money.ofMinor(entry.getValue()[1]).toBigDecimal());
+        });
+        jdbcTemplate.batchUpdate(UPSERT_CARD, new ArrayList<>(cards.entrySet()), BATCH_SIZE, (ps, entry) -> {
+            setKey(ps, entry.getKey());
+            ps.setLong(5, entry.getValue()[0]);
+            ps.setBigDecimal(6, Money.ofMinor(entry.getValue()[1]).toBigDecimal());
+            ps.setLong(7, entry.getValue()[2]);
+            ps.setBigDecimal(8, Money.ofMinor(entry.getValue()[3]).toBigDecimal());
+        });
+    }
+
+    /**
+     * Получает итоги переводов пользователя за периоды, начинающиеся в заданном интервале.
+     *
+     * @param email  email пользователя
+     * @param period период агрегации
+     * @param from   начало интервала (включительно)
+     * @param to     конец интервала (не включительно)
+     * @return итоги по периодам в порядке возрастания
+     */
+    public List<TransferRollupDtoResponse> findUserRollups(String email, RollupPeriod period, LocalDate from,
+                                                           LocalDate to) {
+        return jdbcTemplate.query(FIND_USER, (rs, rowNum) -> TransferRollupDtoResponse.builder()
+                        .periodStart(rs.getDate("period_start").toLocalDate())
+                        .transferCount(rs.getLong("transfer_count"))
+                        .amount(Money.of(rs.getBigDecimal("amount")))
+                        .build(),
+                email, period.name(), Date.valueOf(from), Date.valueOf(to));
+    }
+
+    /**
+     * Получает итоги переводов по карте за периоды, начинающиеся в заданном интервале.
+     *
+     * @param cardNumber номер карты
+     * @param period     период агрегации
+     * @param from       начало интервала (включительно)
+     * @param to         конец интервала (не включительно)
+     * @return итоги по периодам в порядке возрастания
+     */
+    public List<CardTransferRollupDtoResponse> findCardRollups(String cardNumber, RollupPeriod period,
+                                                               LocalDate from, LocalDate to) {
+        return jdbcTemplate.query(FIND_CARD, (rs, rowNum) -> CardTransferRollupDtoResponse.builder()
+                        .periodStart(rs.getDate("period_start").toLocalDate())
+                        .outgoingCount(rs.getLong("outgoing_count"))
+                        .outgoingAmount(Money.of(rs.getBigDecimal("outgoing_amount")))
+                        .incomingCount(rs.getLong("incoming_count"))
+                        .incomingAmount(Money.of(rs.getBigDecimal("incoming_amount")))
+                        .build(),
+                cardNumber, period.name(), Date.valueOf(from), Date.valueOf(to));
+    }
+
+    /**
+     * Находит месяц самого раннего перевода, хранящегося в таблице переводов.
+     *
+     * @return первый день месяца или пустой Optional, если переводов нет
+     */
+    public Optional<LocalDate> findFirstMonth() {
+        return Optional.ofNullable(jdbcTemplate.queryForObject(FIND_FIRST_MONTH, LocalDate.class));
+    }
+
+    /**
+     * Пересчитывает итоги закрытого месяца по его секции таблицы переводов без блокировки таблиц итогов.
+     * Переводы закрытого месяца больше не выполняются, поэтому его строки итогов никто не изменяет.
+     * Вызывать в отдельной транзакции на каждый месяц.
+     *
+     * @param month первый день месяца
+     * @return количество строк итогов пользователей и карт
+     */
+    public int[] rebuildMonth(LocalDate month) {
+        return rebuildRange(month, month.plusMonths(1));
+    }
+
+    /**
+     * Пересчитывает итоги за интервал под блокировкой таблиц итогов.
+     * Используется для месяцев, в которые еще выполняются переводы: они ожидают блокировку
+     * до завершения транзакции и добавляются к новым итогам. Вызывать в транзакции.
+     *
+     * @param from начало интервала (включительно)
+     * @param to   конец интервала (не включительно)
+     * @return количество строк итогов пользователей и карт
+     */
+    public int[] rebuildLocked(LocalDate from, LocalDate to) {
+        jdbcTemplate.execute(LOCK_ROLLUPS);
+        return rebuildRange(from, to);
+    }
+
+    /**
+     * Возвращает первый день периода, в который попадает дата.
+     *
+     * @param period период агрегации
+     * @param date   дата
+     * @return первый день периода
+     */
+    public static LocalDate periodStart(RollupPeriod period, LocalDate date) {
+        return period == RollupPeriod.MONTH ? date.with(TemporalAdjusters.firstDayOfMonth()) : date;
+    }
+
+    private int[] rebuildRange(LocalDate from, LocalDate to) {
+        Date start = Date.valueOf(from);
+        Date end = Date.valueOf(to);
+        jdbcTemplate.update(DELETE_USER_ROLLUPS, start, end);
+        jdbcTemplate.update(DELETE_CARD_ROLLUPS, start, end);
+        return new int[]{
+                jdbcTemplate.update(REBUILD_USER_ROLLUPS, start, end),
+                jdbcTemplate.update(REBUILD_CARD_ROLLUPS, start, end, start, end)
+        };
+    }
+
+    private static void add(Map<RollupKey, long[]> rollups, RollupKey key, int offset, long amount) {
+        long[] totals = rollups.computeIfAbsent(key, k -> new long[4]);
+        totals[offset]++;
+        totals[offset + 1] += amount;
+    }
+
+    private static void setKey(PreparedStatement ps, RollupKey key) throws SQLException {
+        ps.setString(1, key.owner());
+        ps.setString(2, key.period().name());
+        ps.setDate(3, Date.valueOf(key.periodStart()));
+        ps.setInt(4, key.slot());
+    }
+
+    /**
+     * Перевод, добавляемый к итогам.
+     *
+     * @param transfer перевод
+     * @param slot     слот строк итогов; строки горячих карт распределяются по слотам,
+     *                 чтобы параллельные переводы не ожидали блокировки одной строки
+     */
+    public record RollupItem(Transfer transfer, int slot) {
+    }
+
+    /**
+     * Ключ строки итогов: пользователь или карта, период и слот.
+     */
+    private record RollupKey(String owner, RollupPeriod period, LocalDate periodStart, int slot) {
+    }
+}
@@ -0,0 +1,108 @@
+package com.example.bankcards.repository;
+
+import com.example.bankcards.dto.transfer.TransferDirection;
+import com.example.bankcards.dto.transfer.TransferFilterDtoRequest;
+import com.example.bankcards.entity.money.Money;
+import com.example.bankcards.entity.transfer.Transfer;
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.Predicate;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Условия выборки истории переводов.
+ * Все условия сравнивают столбцы напрямую, без функций над ними, поэтому выполняются
+ * по индексам (user_email, time, id), (time, id), (from_card_number, time, id) и (to_card_number, time, id).
+ * Таблица переводов секционирована по месяцам: условия по time отсекают секции вне интервала,
+ * а выборка по индексу в порядке (time DESC, id DESC) с ограничением читает секции от новых к старым
+ * и останавливается, как только страница заполнена.
+ */
+public final class TransferSpecifications {
+
+    private TransferSpecifications() {
+    }
+
+    /**
+     * Загружает пользователя вместе с переводом, не затрагивая запрос подсчета количества.
+     *
+     * @return условие без ограничений выборки
+     */
+    public static Specification<Transfer> fetchUser() {
+        return (root, query, cb) -> {
+            if (query != null && query.getResultType() != Long.class && query.getResultType() != long.class) {
+                root.fetch("user");
+            }
+            return null;
+        };
+    }
+
+    /**
+     * Ограничивает выборку переводами пользователя.
+     *
+     * @param email email пользователя
+     * @return условие выборки
+     */
+    public static Specification<Transfer> ownedBy(String email) {
+        return (root, query, cb) -> cb.equal(root.get("user").get("email"), email);
+    }
+
+    /**
+     * Ограничивает выборку переводами, идущими после курсора в порядке (time DESC, id DESC).
+     * Условие time <= :time дублирует курсор, чтобы поиск по индексу начинался с позиции курсора.
+     *
+     * @param time время последнего перевода предыдущей страницы
+     * @param id   идентификатор последнего перевода предыдущей страницы
+     * @return условие выборки
+     */
+    public static Specification<Transfer> before(LocalDateTime time, long id) {
+        return (root, query, cb) -> cb.and(
+                cb.lessThanOrEqualTo(root.get("time"), time),
+                cb.or(cb.lessThan(root.get("time"), time), cb.lessThan(root.get("id"), id)));
+    }
+
+    /**
+     * Строит условие выборки по фильтрам истории. Незаданные фильтры не ограничивают выборку.
+     *
+     * @param filter фильтры истории
+     * @return условие выборки
+     */
+    public static Specification<Transfer> matching(TransferFilterDtoRequest filter) {
+        return (root, query, cb) -> {
+            List<Predicate> predicates = new ArrayList<>();
+            if (filter.getFromTime() != null) {
+                predicates.add(cb.greaterThanOrEqualTo(root.get("time"), filter.getFromTime()));
+            }
+            if (filter.getToTime() != null) {
+                predicates.add(cb.lessThan(root.get("time"), filter.getToTime()));
+            }
+            if (filter.getFromCardNumber() != null) {
+                predicates.add(cb.equal(root.get("fromCardNumber"), filter.getFromCardNumber()));
+            }
+            if (filter.getToCardNumber() != null) {
+                predicates.add(cb.equal(root.get("toCardNumber"), filter.getToCardNumber()));
+            }
+            if (filter.getCardNumber() != null) {
+                Path<String> toCard = root.get("toCardNumber");
+                Path<String> fromCard = root.get("fromCardNumber");
+                if (filter.getDirection() == TransferDirection.INCOMING) {
+                    predicates.add(cb.equal(toCard, filter.getCardNumber()));
+                } else if (filter.getDirection() == TransferDirection.OUTGOING) {
+                    predicates.add(cb.equal(fromCard, filter.getCardNumber()));
+                } else {
+                    predicates.add(cb.or(cb.equal(toCard, filter.getCardNumber()),
+                            cb.equal(fromCard, filter.getCardNumber())));
+                }
+            }
+            if (filter.getMinAmount() != null) {
+                predicates.add(cb.greaterThanOrEqualTo(root.get("amount"), Money.of(filter.getMinAmount())));
+            }
+            if (filter.getMaxAmount() != null) {
+                predicates.add(cb.lessThanOrEqualTo(root.get("amount"), Money.of(filter.getMaxAmount())));
+            }
+            return cb.and(predicates.toArray(Predicate[]::new));
+        };
+    }
+}
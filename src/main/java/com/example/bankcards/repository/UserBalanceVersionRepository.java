@@ -0,0 +1,64 @@
+package com.example.bankcards.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.TreeSet;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Репозиторий версий балансов пользователей для построения ETag.
+ * Версия пользователя хранится в нескольких строках (слотах) и равна их сумме: каждое изменение балансов
+ * увеличивает случайный слот, поэтому параллельные переводы одного пользователя редко ожидают одну строку,
+ * а строка users не изменяется вовсе. Чтение суммирует слоты по первичному ключу без обращения к таблице cards.
+ */
+@Repository
+public class UserBalanceVersionRepository {
+
+    private static final int SLOTS = 8;
+
+    private static final String BUMP = """
+            INSERT INTO user_balance_versions (user_email, slot, version) VALUES (?, ?, 1)
+            ON CONFLICT (user_email, slot) DO UPDATE SET version = user_balance_versions.version + 1
+            """;
+
+    private static final String FIND_VERSION = """
+            SELECT COALESCE(SUM(version), 0) FROM user_balance_versions WHERE user_email = ?
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public UserBalanceVersionRepository(DataSource dataSource) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+    }
+
+    /**
+     * Увеличивает версии балансов пользователей.
+     * Строки изменяются в порядке email, чтобы транзакции с несколькими пользователями не взаимоблокировались.
+     *
+     * @param emails email пользователей, балансы которых изменены
+     */
+    public void bump(Collection<String> emails) {
+        if (emails.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(BUMP, new ArrayList<>(new TreeSet<>(emails)), emails.size(), (ps, email) -> {
+            ps.setString(1, email);
+            ps.setInt(2, ThreadLocalRandom.current().nextInt(SLOTS));
+        });
+    }
+
+    /**
+     * Получает версию балансов пользователя.
+     *
+     * @param email email пользователя
+     * @return сумма слотов версии (0, если балансы не изменялись)
+     */
+    public long findVersion(String email) {
+        Long version = jdbcTemplate.queryForObject(FIND_VERSION, Long.class, email);
+        return version == null ? 0 : version;
+    }
+}
@@ -2,10 +2,21 @@ package com.example.bankcards.repository;
 
 import com.example.bankcards.entity.user.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.Optional;
 
 public interface UserRepository extends JpaRepository<User, String> {
 
     Optional<User> findByEmail(String email);
+
+    @Query("SELECT u.cardsVersion FROM User u WHERE u.email = :email")
+    Optional<Long> findCardsVersionByEmail(String email);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE User u SET u.cardsVersion = u.cardsVersion + 1 WHERE u.email = :email")
+    int incrementCardsVersion(String email);
 }
@@ -0,0 +1,38 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.transfer.TransferDtoRequest;
+import com.example.bankcards.dto.transfer.TransferStatusDtoResponse;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import java.time.Duration;
+
+/**
+ * Сервис асинхронного выполнения переводов между картами пользователя.
+ * Переводы выполняются в однопоточных очередях узла, выбираемых по карте-отправителю.
+ */
+public interface AsyncTransferService {
+
+    /**
+     * Проверяет перевод и ставит его в очередь карты-отправителя.
+     *
+     * @param request объект TransferDtoRequest с данными для перевода
+     * @return TransferStatusDtoResponse с идентификатором перевода в состоянии PENDING
+     * @throws com.example.bankcards.exception.exceptions.ResourceNotFoundException если карта не найдена
+     * @throws com.example.bankcards.exception.exceptions.InvalidRequestException   если перевод заведомо невозможен
+     * @throws com.example.bankcards.exception.exceptions.TooManyRequestsException  если очередь карты переполнена
+     */
+    TransferStatusDtoResponse submit(TransferDtoRequest request);
+
+    /**
+     * Возвращает состояние перевода текущего пользователя.
+     * Если перевод еще выполняется, ответ откладывается до его завершения, но не дольше времени ожидания.
+     * Ожидающие и отклоненные переводы известны только принявшему их узлу,
+     * завершенные находятся на любом узле, пока хранится ключ идемпотентности.
+     *
+     * @param id   идентификатор перевода
+     * @param wait максимальное время ожидания завершения
+     * @return DeferredResult с состоянием перевода
+     * @throws com.example.bankcards.exception.exceptions.ResourceNotFoundException если перевод не найден
+     */
+    DeferredResult<TransferStatusDtoResponse> getStatus(String id, Duration wait);
+}
@@ -0,0 +1,15 @@
+package com.example.bankcards.service;
+
+/**
+ * Сервис выпуска номеров банковских карт.
+ */
+public interface CardNumberAllocator {
+
+    /**
+     * Выдает новый уникальный номер карты с настроенным BIN и корректной контрольной цифрой по алгоритму Луна.
+     * Номера уникальны между узлами без проверки по таблице cards.
+     *
+     * @return номер карты из 16 цифр
+     */
+    String allocate();
+}
@@ -1,10 +1,15 @@
 package com.example.bankcards.service;
 
+import com.example.bankcards.dto.card.CardBlockDecisionDtoResponse;
+import com.example.bankcards.dto.card.CardBlockRequestDtoResponse;
 import com.example.bankcards.dto.card.CardCreateDtoRequest;
 import com.example.bankcards.dto.card.CardDtoResponse;
 import com.example.bankcards.dto.card.TotalBalanceDtoResponse;
+import com.example.bankcards.dto.page.KeysetPageDtoResponse;
 import com.example.bankcards.dto.page.PageDtoResponse;
 
+import java.util.List;
+
 /**
  * Сервис для управления банковскими картами.
  * Предоставляет методы для создания, блокировки, активации, удаления карт и получения информации о них.
@@ -12,14 +17,12 @@ import com.example.bankcards.dto.page.PageDtoResponse;
 public interface CardService {
 
     /**
-     * Создает новую банковскую карту.
+     * Создает новую банковскую карту с номером, выпущенным сервером.
      * Метод доступен только для администраторов.
      *
      * @param request объект CardCreateDtoRequest с данными для создания карты
      * @return CardDtoResponse с информацией о созданной карте
      * @throws com.example.bankcards.exception.exceptions.ResourceNotFoundException если пользователь не найден
-     * @throws com.example.bankcards.exception.exceptions.InvalidRequestException   если номер карты не валиден
-     * @throws com.example.bankcards.exception.exceptions.ConflictRequestException  если карта с таким номером уже существует
      */
     CardDtoResponse create(CardCreateDtoRequest request);
 
@@ -29,6 +32,7 @@ public interface CardService {
      *
      * @param number номер карты для блокировки
      * @throws com.example.bankcards.exception.exceptions.ResourceNotFoundException если карта не найдена
+     * @throws com.example.bankcards.exception.exceptions.ConflictRequestException  если карта с истекшим сроком
      */
     void blocked(String number);
 
@@ -84,11 +88,11 @@ public interface CardService {
 
     /**
      * Отправляет запрос на блокировку карты.
-     * Пользователь может запросить блокировку только своих карт.
+     * Пользователь может запросить блокировку только своих карт с действующим сроком.
      *
      * @param cardNumber номер карты для блокировки
-     * @throws com.example.bankcards.exception.exceptions.ResourceNotFoundException если карта не найдена
-     * @throws com.example.bankcards.exception.exceptions.InvalidRequestException   если карта не принадлежит пользователю
+     * @throws com.example.bankcards.exception.exceptions.ResourceNotFoundException если карта не найдена или не принадлежит пользователю
+     * @throws com.example.bankcards.exception.exceptions.ConflictRequestException  если карта с истекшим сроком
      */
     void requestToBlocked(String cardNumber);
 
@@ -99,4 +103,49 @@ public interface CardService {
      * @return TotalBalanceDtoResponse с общей суммой баланса всех активных карт
      */
     TotalBalanceDtoResponse getTotalBalanceUser();
+
+    /**
+     * Получает метку версии карт и балансов текущего пользователя для построения ETag.
+     * Метка состоит из версии карт пользователя, которая увеличивается при изменении карт,
+     * и версии их балансов, которая увеличивается при переводах; обе читаются по первичному ключу.
+     *
+     * @return метка версии карт пользователя
+     * @throws com.example.bankcards.exception.exceptions.ResourceNotFoundException если пользователь не найден
+     */
+    String getCardsVersionTag();
+
+    /**
+     * Получает очередь карт с ожидающими запросами на блокировку.
+     * Страницы продолжаются по курсору (номер последней карты предыдущей страницы).
+     * Метод доступен только для администраторов.
+     *
+     * @param afterCardNumber номер карты, после которой начинается страница (null для первой страницы)
+     * @param pageSize        количество карт на странице
+     * @return KeysetPageDtoResponse<CardBlockRequestDtoResponse> страница очереди запросов
+     */
+    KeysetPageDtoResponse<CardBlockRequestDtoResponse> getBlockRequests(String afterCardNumber, int pageSize);
+
+    /**
+     * Одобряет или отклоняет запросы на блокировку карт одним запросом к БД.
+     * Одобрение блокирует карты, в обоих случаях отметка о запросе снимается.
+     * Карты без ожидающего запроса пропускаются.
+     * Метод доступен только для администраторов.
+     *
+     * @param cardNumbers номера карт
+     * @param approve     true для блокировки, false для отклонения
+     * @return CardBlockDecisionDtoResponse с количеством обработанных запросов
+     */
+    CardBlockDecisionDtoResponse processBlockRequests(List<String> cardNumbers, boolean approve);
+
+    /**
+     * Задает количество слотов зачислений карты.
+     * Зачисления на карту со слотами распределяются по отдельным строкам, чтобы частые переводы
+     * на одну карту не ожидали блокировки её строки. Остатки слотов переносятся в основной баланс.
+     * Значение 0 отключает слоты. Метод доступен только для администраторов.
+     *
+     * @param number номер карты
+     * @param slots  количество слотов
+     * @throws com.example.bankcards.exception.exceptions.ResourceNotFoundException если карта не найдена
+     */
+    void changeBalanceSlots(String number, int slots);
 }
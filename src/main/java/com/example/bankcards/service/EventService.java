@@ -0,0 +1,17 @@
+package com.example.bankcards.service;
+
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+/**
+ * Сервис доставки событий об изменении карт и переводах пользователю через Server-Sent Events.
+ */
+public interface EventService {
+
+    /**
+     * Подписывает текущего пользователя на события его карт и переводов.
+     * Соединение не занимает поток, пока нет событий для отправки.
+     *
+     * @return SseEmitter для потока событий
+     */
+    SseEmitter subscribe();
+}
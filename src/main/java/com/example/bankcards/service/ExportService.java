@@ -0,0 +1,51 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.export.ExportFormat;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.LocalDateTime;
+
+/**
+ * Сервис потоковой выгрузки данных для сверки.
+ * Данные пишутся в выходной поток по мере чтения из БД, объем памяти не зависит от размера таблицы.
+ */
+public interface ExportService {
+
+    /**
+     * Выгружает все карты системы в выходной поток.
+     * Номера карт выгружаются в маскированном виде.
+     * Метод доступен только для администраторов.
+     *
+     * @param format       формат выгрузки
+     * @param outputStream поток для записи
+     * @throws IOException при ошибке записи в поток
+     */
+    void exportCards(ExportFormat format, OutputStream outputStream) throws IOException;
+
+    /**
+     * Проверяет период выгрузки переводов.
+     * Вызывается до начала потоковой выгрузки, пока ответ еще может вернуть ошибку в JSON.
+     *
+     * @param fromTime начало периода (включительно), может отсутствовать
+     * @param toTime   конец периода (не включительно), может отсутствовать
+     * @throws com.example.bankcards.exception.exceptions.InvalidRequestException если начало периода не раньше конца
+     */
+    void validateTransfersPeriod(LocalDateTime fromTime, LocalDateTime toTime);
+
+    /**
+     * Выгружает переводы за период в выходной поток в порядке времени выполнения.
+     * Вся выгрузка читается из одного снимка данных, поэтому переводы, выполненные во время выгрузки, в нее не попадают.
+     * Метод доступен только для администраторов.
+     *
+     * @param format       формат выгрузки
+     * @param fromTime     начало периода (включительно), может отсутствовать
+     * @param toTime       конец периода (не включительно), может отсутствовать
+     * @param gzip         сжимать ли выгрузку в формате gzip
+     * @param outputStream поток для записи
+     * @throws IOException                                                       при ошибке записи в поток
+     * @throws com.example.bankcards.exception.exceptions.InvalidRequestException если начало периода не раньше конца
+     */
+    void exportTransfers(ExportFormat format, LocalDateTime fromTime, LocalDateTime toTime, boolean gzip,
+                         OutputStream outputStream) throws IOException;
+}
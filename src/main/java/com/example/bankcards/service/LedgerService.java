@@ -0,0 +1,51 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.card.LedgerBalanceDtoResponse;
+import com.example.bankcards.entity.money.Money;
+import com.example.bankcards.entity.transfer.Transfer;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Сервис журнала проводок по картам.
+ * Каждое изменение баланса записывается в журнал, в который только добавляются записи;
+ * баланс карты в таблице cards является снимком журнала и может быть восстановлен по нему.
+ */
+public interface LedgerService {
+
+    /**
+     * Записывает начальную проводку новой карты.
+     * Выполняется в транзакции, создающей карту.
+     *
+     * @param cardNumber номер карты
+     * @param amount     начальный баланс
+     * @param time       время проводки
+     */
+    void recordOpening(String cardNumber, Money amount, LocalDateTime time);
+
+    /**
+     * Записывает проводки списания и зачисления перевода.
+     * Выполняется в транзакции, изменяющей балансы карт.
+     *
+     * @param transfer перевод
+     */
+    void recordTransfer(Transfer transfer);
+
+    /**
+     * Записывает проводки пакета переводов.
+     * Выполняется в транзакции, изменяющей балансы карт.
+     *
+     * @param transfers переводы
+     */
+    void recordTransfers(List<Transfer> transfers);
+
+    /**
+     * Восстанавливает баланс карты по журналу и сверяет его с текущим балансом.
+     * Метод доступен только для администраторов.
+     *
+     * @param cardNumber номер карты
+     * @return LedgerBalanceDtoResponse с текущим и восстановленным балансом
+     */
+    LedgerBalanceDtoResponse getLedgerBalance(String cardNumber);
+}
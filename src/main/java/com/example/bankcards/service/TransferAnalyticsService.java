@@ -0,0 +1,91 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.analytics.CardTransferRollupDtoResponse;
+import com.example.bankcards.dto.analytics.RollupPeriod;
+import com.example.bankcards.dto.analytics.RollupRebuildDtoResponse;
+import com.example.bankcards.dto.analytics.TransferRollupDtoResponse;
+import com.example.bankcards.entity.transfer.Transfer;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Сервис аналитики переводов.
+ * Дневные и месячные итоги переводов пользователей и карт обновляются в транзакции перевода,
+ * поэтому запросы аналитики читают только строки итогов запрошенных периодов.
+ */
+public interface TransferAnalyticsService {
+
+    /**
+     * Добавляет переводы к итогам. Итоги записываются перед фиксацией транзакции перевода
+     * одним пакетом, поэтому строки итогов блокируются только на время фиксации.
+     *
+     * @param transfers выполненные переводы
+     * @param slot      слот строк итогов
+     */
+    void recordTransfers(List<Transfer> transfers, int slot);
+
+    /**
+     * Получает итоги переводов текущего пользователя.
+     *
+     * @param period период агрегации
+     * @param from   начало интервала (включительно)
+     * @param to     конец интервала (не включительно)
+     * @return итоги по периодам в порядке возрастания
+     * @throws com.example.bankcards.exception.exceptions.InvalidRequestException если интервал некорректен
+     */
+    List<TransferRollupDtoResponse> getMyRollups(RollupPeriod period, LocalDate from, LocalDate to);
+
+    /**
+     * Получает итоги переводов по карте текущего пользователя.
+     *
+     * @param cardNumber номер карты
+     * @param period     период агрегации
+     * @param from       начало интервала (включительно)
+     * @param to         конец интервала (не включительно)
+     * @return итоги по периодам в порядке возрастания
+     * @throws com.example.bankcards.exception.exceptions.ResourceNotFoundException если карта не найдена
+     * @throws com.example.bankcards.exception.exceptions.InvalidRequestException   если карта не принадлежит
+     *                                                                              пользователю или интервал некорректен
+     */
+    List<CardTransferRollupDtoResponse> getMyCardRollups(String cardNumber, RollupPeriod period, LocalDate from,
+                                                         LocalDate to);
+
+    /**
+     * Получает итоги переводов пользователя.
+     * Метод доступен только для администраторов.
+     *
+     * @param email  email пользователя
+     * @param period период агрегации
+     * @param from   начало интервала (включительно)
+     * @param to     конец интервала (не включительно)
+     * @return итоги по периодам в порядке возрастания
+     * @throws com.example.bankcards.exception.exceptions.InvalidRequestException если интервал некорректен
+     */
+    List<TransferRollupDtoResponse> getUserRollups(String email, RollupPeriod period, LocalDate from, LocalDate to);
+
+    /**
+     * Получает итоги переводов по карте.
+     * Метод доступен только для администраторов.
+     *
+     * @param cardNumber номер карты
+     * @param period     период агрегации
+     * @param from       начало интервала (включительно)
+     * @param to         конец интервала (не включительно)
+     * @return итоги по периодам в порядке возрастания
+     * @throws com.example.bankcards.exception.exceptions.InvalidRequestException если интервал некорректен
+     */
+    List<CardTransferRollupDtoResponse> getCardRollups(String cardNumber, RollupPeriod period, LocalDate from,
+                                                       LocalDate to);
+
+    /**
+     * Пересчитывает итоги по таблице переводов.
+     * Используется для восстановления итогов. Закрытые месяцы пересчитываются по одному в отдельных транзакциях
+     * без блокировки, переводы ожидают только пересчета текущего месяца.
+     * Итоги месяцев, секции которых отсоединены по сроку хранения, не изменяются.
+     * Метод доступен только для администраторов.
+     *
+     * @return RollupRebuildDtoResponse с количеством пересчитанных строк
+     */
+    RollupRebuildDtoResponse rebuild();
+}
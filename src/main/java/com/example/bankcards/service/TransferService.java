@@ -1,8 +1,12 @@
 package com.example.bankcards.service;
 
+import com.example.bankcards.dto.page.KeysetPageDtoResponse;
 import com.example.bankcards.dto.page.PageDtoResponse;
+import com.example.bankcards.dto.transfer.TransferBatchDtoRequest;
+import com.example.bankcards.dto.transfer.TransferBatchDtoResponse;
 import com.example.bankcards.dto.transfer.TransferDtoRequest;
 import com.example.bankcards.dto.transfer.TransferDtoResponse;
+import com.example.bankcards.dto.transfer.TransferFilterDtoRequest;
 
 /**
  * Сервис для управления переводами между картами.
@@ -13,32 +17,79 @@ public interface TransferService {
     /**
      * Выполняет перевод между двумя картами одного пользователя.
      * Проверяет принадлежность карт пользователю и достаточность средств на карте-отправителе.
+     * При наличии ключа идемпотентности повторный запрос с тем же ключом возвращает
+     * результат первого перевода без повторного списания.
      *
-     * @param request объект TransferDtoRequest с данными для перевода
+     * @param request        объект TransferDtoRequest с данными для перевода
+     * @param idempotencyKey ключ идемпотентности (может отсутствовать)
      * @return TransferDtoResponse с информацией о выполненном переводе
      * @throws com.example.bankcards.exception.exceptions.ResourceNotFoundException если карта не найдена
      * @throws com.example.bankcards.exception.exceptions.InvalidRequestException   если карты не принадлежат пользователю
-     * @throws com.example.bankcards.exception.exceptions.ConflictRequestException  если попытка перевода на ту же карту
+     * @throws com.example.bankcards.exception.exceptions.ConflictRequestException  если ключ использован для другого перевода
      */
-    TransferDtoResponse transferBetweenCardsOneUser(TransferDtoRequest request);
+    TransferDtoResponse transferBetweenCardsOneUser(TransferDtoRequest request, String idempotencyKey);
 
     /**
-     * Получает записи о всех переводах в системе с пагинацией.
+     * Выполняет пакет переводов между картами пользователя в одной транзакции.
+     * В атомарном режиме выполняются все переводы или ни одного,
+     * иначе отклоненные переводы пропускаются, а остальные выполняются.
+     *
+     * @param request объект TransferBatchDtoRequest с переводами и режимом выполнения
+     * @return TransferBatchDtoResponse с результатом каждого перевода
+     * @throws com.example.bankcards.exception.exceptions.InvalidRequestException если в атомарном режиме
+     *                                                                            какой-либо перевод отклонен
+     */
+    TransferBatchDtoResponse transferBatch(TransferBatchDtoRequest request);
+
+    /**
+     * Получает записи о всех переводах в системе с пагинацией и фильтрами.
      * Метод доступен только для администраторов.
      *
+     * @param filter     фильтры истории
      * @param pageNumber номер страницы (начинается с 0)
      * @param pageSize   количество записей на странице
      * @return PageDtoResponse<TransferDtoResponse> страница с историей переводов
+     * @throws com.example.bankcards.exception.exceptions.InvalidRequestException если фильтры противоречат друг другу
      */
-    PageDtoResponse<TransferDtoResponse> getAll(int pageNumber, int pageSize);
+    PageDtoResponse<TransferDtoResponse> getAll(TransferFilterDtoRequest filter, int pageNumber, int pageSize);
 
     /**
-     * Получает записи о всех переводах текущего пользователя с пагинацией.
+     * Получает записи о всех переводах текущего пользователя с пагинацией и фильтрами.
      * Пользователь может видеть только свои собственные переводы.
      *
+     * @param filter     фильтры истории
      * @param pageNumber номер страницы (начинается с 0)
      * @param pageSize   количество записей на странице
      * @return PageDtoResponse<TransferDtoResponse> страница с историей переводов пользователя
+     * @throws com.example.bankcards.exception.exceptions.InvalidRequestException если фильтры противоречат друг другу
+     */
+    PageDtoResponse<TransferDtoResponse> getAllByUser(TransferFilterDtoRequest filter, int pageNumber, int pageSize);
+
+    /**
+     * Получает записи о всех переводах в системе, начиная с самых новых, с фильтрами.
+     * Страницы продолжаются по курсору из предыдущего ответа.
+     * Метод доступен только для администраторов.
+     *
+     * @param filter   фильтры истории
+     * @param cursor   курсор из предыдущего ответа (null для первой страницы)
+     * @param pageSize количество записей на странице
+     * @return KeysetPageDtoResponse<TransferDtoResponse> страница с историей переводов
+     * @throws com.example.bankcards.exception.exceptions.InvalidRequestException если курсор некорректен
+     *                                                                            или фильтры противоречат друг другу
+     */
+    KeysetPageDtoResponse<TransferDtoResponse> getHistory(TransferFilterDtoRequest filter, String cursor, int pageSize);
+
+    /**
+     * Получает записи о переводах текущего пользователя, начиная с самых новых, с фильтрами.
+     * Страницы продолжаются по курсору из предыдущего ответа.
+     *
+     * @param filter   фильтры истории
+     * @param cursor   курсор из предыдущего ответа (null для первой страницы)
+     * @param pageSize количество записей на странице
+     * @return KeysetPageDtoResponse<TransferDtoResponse> страница с историей переводов пользователя
+     * @throws com.example.bankcards.exception.exceptions.InvalidRequestException если курсор некорректен
+     *                                                                            или фильтры противоречат друг другу
      */
-    PageDtoResponse<TransferDtoResponse> getAllByUser(int pageNumber, int pageSize);
+    KeysetPageDtoResponse<TransferDtoResponse> getHistoryByUser(TransferFilterDtoRequest filter, String cursor,
+                                                                int pageSize);
 }
@@ -0,0 +1,317 @@
+package com.example.bankcards.service.impl;
+
+import com.example.bankcards.cache.CardSnapshot;
+import com.example.bankcards.cache.CardSnapshotCache;
+import com.example.bankcards.dto.transfer.AsyncTransferStatus;
+import com.example.bankcards.dto.transfer.TransferDtoRequest;
+import com.example.bankcards.dto.transfer.TransferDtoResponse;
+import com.example.bankcards.dto.transfer.TransferStatusDtoResponse;
+import com.example.bankcards.entity.money.Money;
+import com.example.bankcards.exception.exceptions.ConflictRequestException;
+import com.example.bankcards.exception.exceptions.InvalidRequestException;
+import com.example.bankcards.exception.exceptions.ResourceNotFoundException;
+import com.example.bankcards.exception.exceptions.TooManyRequestsException;
+import com.example.bankcards.repository.IdempotencyKeyRepository;
+import com.example.bankcards.service.AsyncTransferService;
+import com.example.bankcards.service.TransferService;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.concurrent.DelegatingSecurityContextRunnable;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.stereotype.Service;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Реализация сервиса асинхронных переводов.
+ * Каждый перевод попадает в одну из однопоточных очередей (полос), выбираемую по номеру карты-отправителя,
+ * поэтому списания с одной карты выполняются последовательно и не ожидают блокировок строк друг друга,
+ * а потоки Tomcat освобождаются сразу после постановки в очередь.
+ * Полоса упорядочивает только переводы с одной карты и только на одном узле: зачисления на карту из других полос
+ * и переводы, принятые другими узлами, выполняются параллельно и упорядочиваются блокировками строк карт.
+ * Идентификатор перевода используется как ключ идемпотентности, поэтому перевод не выполняется дважды.
+ * Состояния переводов хранятся в памяти принявшего их узла ограниченное время и в ограниченном количестве
+ * (при переполнении редко запрашиваемые состояния вытесняются); завершенный перевод
+ * находится по ключу идемпотентности и на других узлах, пока ключ хранится, а ожидающий и отклоненный
+ * видны только принявшему узлу.
+ */
+@Slf4j
+@Service
+public class AsyncTransferServiceImpl implements AsyncTransferService {
+
+    private final TransferService transferService;
+
+    private final CardSnapshotCache cardSnapshotCache;
+
+    private final IdempotencyKeyRepository idempotencyKeyRepository;
+
+    private final List<? extends Executor> lanes;
+
+    private final Cache<String, Submission> submissions;
+
+    private final AtomicInteger pendingCount = new AtomicInteger();
+
+    @Autowired
+    public AsyncTransferServiceImpl(
+            TransferService transferService,
+            CardSnapshotCache cardSnapshotCache,
+            IdempotencyKeyRepository idempotencyKeyRepository,
+            MeterRegistry meterRegistry,
+            @Value("${transfers.async.lanes:8}") int laneCount,
+            @Value("${transfers.async.queue_capacity:1000}") int queueCapacity,
+            @Value("${transfers.async.result_ttl:10m}") Duration resultTtl,
+            @Value("${transfers.async.max_results:100000}") long maxResults) {
+        this(transferService, cardSnapshotCache, idempotencyKeyRepository, meterRegistry,
+                createLanes(laneCount, queueCapacity), resultTtl, maxResults);
+    }
+
+    AsyncTransferServiceImpl(TransferService transferService, CardSnapshotCache cardSnapshotCache,
+                             IdempotencyKeyRepository idempotencyKeyRepository, MeterRegistry meterRegistry,
+                             List<? extends Executor> lanes, Duration resultTtl, long maxResults) {
+        this.transferService = transferService;
+        this.cardSnapshotCache = cardSnapshotCache;
+        this.idempotencyKeyRepository = idempotencyKeyRepository;
+        this.lanes = lanes;
+        this.submissions = Caffeine.newBuilder()
+                .maximumSize(maxResults)
+                .expireAfterWrite(resultTtl)
+                .build();
+        Gauge.builder("transfers.async.pending", pendingCount, AtomicInteger::get)
+                .description("Асинхронные переводы, ожидающие выполнения")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Проверяет перевод и ставит его в очередь карты-отправителя.
+     * Заранее отклоняются только переводы, невозможные по данным из кэша снимков карт;
+     * окончательные проверки выполняются при переводе.
+     *
+     * @param request объект TransferDtoRequest с данными для перевода
+     * @return TransferStatusDtoResponse с идентификатором перевода в состоянии PENDING
+     * @throws ResourceNotFoundException если карта не найдена
+     * @throws InvalidRequestException   если перевод заведомо невозможен
+     * @throws TooManyRequestsException  если очередь карты переполнена
+     */
+    @Override
+    public TransferStatusDtoResponse submit(TransferDtoRequest request) {
+        UserDetails principal = (UserDetails) SecurityContextHolder.getContext().getAuthentication().getPrincipal();
+        String email = principal.getUsername();
+
+        checkTransfer(request, email);
+
+        String id = UUID.randomUUID().toString();
+        TransferStatusDtoResponse pending = TransferStatusDtoResponse.builder()
+                .id(id)
+                .status(AsyncTransferStatus.PENDING)
+                .build();
+        Submission submission = new Submission(email, pending);
+        submissions.put(id, submission);
+
+        // контекст копируется, так как исходный очищается по завершении запроса
+        SecurityContext context = SecurityContextHolder.createEmptyContext();
+        context.setAuthentication(SecurityContextHolder.getContext().getAuthentication());
+        Runnable task = new DelegatingSecurityContextRunnable(() -> execute(id, request, submission), context);
+
+        pendingCount.incrementAndGet();
+        try {
+            lanes.get(Math.floorMod(request.getFromCardNumber().hashCode(), lanes.size())).execute(task);
+        } catch (RejectedExecutionException e) {
+            pendingCount.decrementAndGet();
+            submissions.invalidate(id);
+            throw new TooManyRequestsException("Too many pending transfers from the card, try again later");
+        }
+
+        return pending;
+    }
+
+    /**
+     * Возвращает состояние перевода текущего пользователя.
+     * Если перевод еще выполняется, ответ откладывается до его завершения, но не дольше времени ожидания.
+     * Если состояния нет в памяти узла (перевод принят другим узлом или срок хранения истек),
+     * завершенный перевод находится по ключу идемпотентности.
+     *
+     * @param id   идентификатор перевода
+     * @param wait максимальное время ожидания завершения
+     * @return DeferredResult с состоянием перевода
+     * @throws ResourceNotFoundException если перевод не найден
+     */
+    @Override
+    public DeferredResult<TransferStatusDtoResponse> getStatus(String id, Duration wait) {
+        UserDetails principal = (UserDetails) SecurityContextHolder.getContext().getAuthentication().getPrincipal();
+
+        Submission submission = submissions.getIfPresent(id);
+        if (submission == null || !submission.email.equals(principal.getUsername())) {
+            TransferDtoResponse transfer = idempotencyKeyRepository.find(principal.getUsername(), id)
+                    .filter(completed -> completed.getTime() != null)
+                    .orElseThrow(() -> new ResourceNotFoundException("Transfer with id= " + id + " was not found"));
+            DeferredResult<TransferStatusDtoResponse> result = new DeferredResult<>();
+            result.setResult(TransferStatusDtoResponse.builder()
+                    .id(id)
+                    .status(AsyncTransferStatus.COMPLETED)
+                    .transfer(transfer)
+                    .build());
+            return result;
+        }
+
+        DeferredResult<TransferStatusDtoResponse> result =
+                new DeferredResult<>(wait.toMillis(), () -> submission.status);
+        synchronized (submission) {
+            if (submission.status.getStatus() != AsyncTransferStatus.PENDING || wait.isZero()) {
+                result.setResult(submission.status);
+                return result;
+            }
+            submission.waiters.add(result);
+        }
+        result.onCompletion(() -> {
+            synchronized (submission) {
+                submission.waiters.remove(result);
+            }
+        });
+
+        return result;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        lanes.forEach(lane -> {
+            if (lane instanceof ExecutorService executorService) {
+                executorService.shutdown();
+            }
+        });
+    }
+
+    /**
+     * Выполняет перевод в потоке полосы и сохраняет результат.
+     *
+     * @param id         идентификатор перевода
+     * @param request    данные перевода
+     * @param submission ожидающий перевод
+     */
+    private void execute(String id, TransferDtoRequest request, Submission submission) {
+        TransferStatusDtoResponse.TransferStatusDtoResponseBuilder status = TransferStatusDtoResponse.builder().id(id);
+        try {
+            TransferDtoResponse transfer = transferService.transferBetweenCardsOneUser(request, id);
+            status.status(AsyncTransferStatus.COMPLETED).transfer(transfer);
+        } catch (InvalidRequestException | ResourceNotFoundException | ConflictRequestException e) {
+            status.status(AsyncTransferStatus.FAILED).error(e.getMessage());
+        } catch (RuntimeException e) {
+            log.error("Asynchronous transfer {} failed", id, e);
+            status.status(AsyncTransferStatus.FAILED).error("The transfer could not be completed");
+        } finally {
+            pendingCount.decrementAndGet();
+        }
+
+        complete(id, submission, status.build());
+    }
+
+    /**
+     * Сохраняет итоговое состояние перевода и отвечает всем ожидающим запросам.
+     *
+     * @param id         идентификатор перевода
+     * @param submission ожидающий перевод
+     * @param status     итоговое состояние
+     */
+    private void complete(String id, Submission submission, TransferStatusDtoResponse status) {
+        List<DeferredResult<TransferStatusDtoResponse>> waiters;
+        synchronized (submission) {
+            submission.status = status;
+            waiters = new ArrayList<>(submission.waiters);
+            submission.waiters.clear();
+        }
+        // запись обновляется, чтобы срок хранения результата отсчитывался от завершения перевода
+        submissions.put(id, submission);
+        waiters.forEach(waiter -> waiter.setResult(status));
+    }
+
+    /**
+     * Проверяет перевод по данным из кэша снимков карт.
+     *
+     * @param request данные перевода
+     * @param email   email пользователя
+     * @throws ResourceNotFoundException если карта не найдена
+     * @throws InvalidRequestException   если перевод заведомо невозможен
+     */
+    private void checkTransfer(TransferDtoRequest request, String email) {
+        if (request.getFromCardNumber().equals(request.getToCardNumber())) {
+            throw new InvalidRequestException("You can't make a transfer between the same card");
+        }
+
+        try {
+            Money.of(request.getAmount());
+        } catch (ArithmeticException e) {
+            throw new InvalidRequestException("The amount must have no more than two decimal places");
+        }
+
+        CardSnapshot fromSnapshot = findSnapshotByNumber(request.getFromCardNumber());
+        CardSnapshot toSnapshot = findSnapshotByNumber(request.getToCardNumber());
+
+        if (!fromSnapshot.isOwnedBy(email) || !toSnapshot.isOwnedBy(email)) {
+            throw new InvalidRequestException("One or both of the cards do not belong to the user");
+        }
+    }
+
+    /**
+     * Находит снимок карты по её номеру через кэш.
+     *
+     * @param cardNumber номер карты для поиска
+     * @return снимок карты
+     * @throws ResourceNotFoundException если карта с указанным номером не найдена
+     */
+    private CardSnapshot findSnapshotByNumber(String cardNumber) {
+        return cardSnapshotCache.get(cardNumber)
+                .orElseThrow(() -> new ResourceNotFoundException("Card with number= " + cardNumber + " was not found"));
+    }
+
+    /**
+     * Создает однопоточные полосы выполнения с ограниченными очередями.
+     *
+     * @param laneCount     количество полос
+     * @param queueCapacity емкость очереди каждой полосы
+     * @return полосы выполнения
+     */
+    private static List<ThreadPoolExecutor> createLanes(int laneCount, int queueCapacity) {
+        List<ThreadPoolExecutor> lanes = new ArrayList<>(laneCount);
+        for (int i = 0; i < laneCount; i++) {
+            String name = "transfer-lane-" + i;
+            lanes.add(new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(queueCapacity), runnable -> new Thread(runnable, name)));
+        }
+        return lanes;
+    }
+
+    /**
+     * Поставленный в очередь перевод и запросы, ожидающие его завершения.
+     */
+    private static final class Submission {
+
+        private final String email;
+
+        private final List<DeferredResult<TransferStatusDtoResponse>> waiters = new ArrayList<>();
+
+        private volatile TransferStatusDtoResponse status;
+
+        private Submission(String email, TransferStatusDtoResponse status) {
+            this.email = email;
+            this.status = status;
+        }
+    }
+}
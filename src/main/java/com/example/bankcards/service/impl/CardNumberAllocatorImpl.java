@@ -0,0 +1,70 @@
+package com.example.bankcards.service.impl;
+
+import com.example.bankcards.repository.CardNumberRangeRepository;
+import com.example.bankcards.service.CardNumberAllocator;
+import com.example.bankcards.util.CardUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * Реализация сервиса выпуска номеров карт.
+ * Номер состоит из BIN (6 цифр), номера счета (9 цифр) и контрольной цифры.
+ * Номера счетов резервируются в БД блоками и выдаются из памяти;
+ * номера незавершенного блока теряются при перезапуске узла, что допустимо.
+ * Диапазоны начинаются за наибольшим номером, выданным до их введения (миграция 20261019_seed_card_number_ranges).
+ */
+@Service
+public class CardNumberAllocatorImpl implements CardNumberAllocator {
+
+    private static final long ACCOUNT_NUMBERS = 1_000_000_000L;
+
+    private final CardNumberRangeRepository cardNumberRangeRepository;
+
+    private final String bin;
+
+    private final long binPrefix;
+
+    private final long blockSize;
+
+    private long nextAccount;
+
+    private long accountLimit;
+
+    public CardNumberAllocatorImpl(
+            CardNumberRangeRepository cardNumberRangeRepository,
+            @Value("${card_number.bin:400000}") String bin,
+            @Value("${card_number.block_size:1000}") long blockSize) {
+        if (bin.length() != 6 || !bin.chars().allMatch(Character::isDigit)) {
+            throw new IllegalArgumentException("BIN must consist of 6 digits: " + bin);
+        }
+        if (blockSize <= 0) {
+            throw new IllegalArgumentException("Block size must be positive: " + blockSize);
+        }
+        this.cardNumberRangeRepository = cardNumberRangeRepository;
+        this.bin = bin;
+        this.binPrefix = Long.parseLong(bin) * ACCOUNT_NUMBERS;
+        this.blockSize = blockSize;
+    }
+
+    /**
+     * Выдает новый уникальный номер карты с настроенным BIN и корректной контрольной цифрой по алгоритму Луна.
+     * Номера уникальны между узлами без проверки по таблице cards.
+     *
+     * @return номер карты из 16 цифр
+     * @throws IllegalStateException если номера для BIN исчерпаны
+     */
+    @Override
+    public synchronized String allocate() {
+        if (nextAccount >= accountLimit) {
+            long end = cardNumberRangeRepository.reserveBlock(bin, blockSize);
+            nextAccount = end - blockSize;
+            accountLimit = Math.min(end, ACCOUNT_NUMBERS);
+            if (nextAccount >= accountLimit) {
+                throw new IllegalStateException("Card numbers for BIN " + bin + " are exhausted");
+            }
+        }
+
+        long payload = binPrefix + nextAccount++;
+        return CardUtils.unpackCardNumber(payload * 10 + CardUtils.luhnCheckDigit(payload));
+    }
+}
@@ -1,23 +1,38 @@
 package com.example.bankcards.service.impl;
 
+import com.example.bankcards.cache.CardSnapshot;
+import com.example.bankcards.cache.CardSnapshotCache;
+import com.example.bankcards.dto.card.CardBlockDecisionDtoResponse;
+import com.example.bankcards.dto.card.CardBlockRequestDtoResponse;
 import com.example.bankcards.dto.card.CardCreateDtoRequest;
 import com.example.bankcards.dto.card.CardDtoResponse;
 import com.example.bankcards.dto.card.TotalBalanceDtoResponse;
+import com.example.bankcards.dto.page.KeysetPageDtoResponse;
 import com.example.bankcards.dto.page.PageDtoResponse;
 import com.example.bankcards.entity.card.Card;
 import com.example.bankcards.entity.card.CardStatus;
+import com.example.bankcards.entity.money.Money;
 import com.example.bankcards.entity.user.User;
+import com.example.bankcards.event.CardEvent;
+import com.example.bankcards.event.CardEventType;
 import com.example.bankcards.exception.exceptions.ConflictRequestException;
 import com.example.bankcards.exception.exceptions.InvalidRequestException;
 import com.example.bankcards.exception.exceptions.ResourceNotFoundException;
+import com.example.bankcards.repository.CardBalanceRepository;
 import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.CardStatusRepository;
+import com.example.bankcards.repository.UserBalanceVersionRepository;
 import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.service.CardNumberAllocator;
 import com.example.bankcards.service.CardService;
+import com.example.bankcards.service.LedgerService;
 import com.example.bankcards.util.CardUtils;
 import com.example.bankcards.util.UserUtils;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Service;
@@ -25,7 +40,9 @@ import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
 
 /**
  * Реализация сервиса для управления банковскими картами.
@@ -35,60 +52,78 @@ import java.util.List;
 @RequiredArgsConstructor
 public class CardServiceImpl implements CardService {
 
+    private static final int COMPACT_BATCH_SIZE = 500;
+
     private final CardRepository cardRepository;
+    private final CardStatusRepository cardStatusRepository;
     private final UserRepository userRepository;
+    private final CardSnapshotCache cardSnapshotCache;
+    private final CardNumberAllocator cardNumberAllocator;
+    private final ApplicationEventPublisher eventPublisher;
+    private final LedgerService ledgerService;
+    private final CardBalanceRepository cardBalanceRepository;
+    private final UserBalanceVersionRepository userBalanceVersionRepository;
 
     /**
-     * Создает новую банковскую карту.
+     * Создает новую банковскую карту с номером, выпущенным сервером.
+     * Номер уникален по построению, поэтому карта сохраняется одним INSERT без проверки существования.
+     * Начальный баланс записывается в журнал проводок.
      * Метод доступен только для администраторов.
      *
      * @param request объект CardCreateDtoRequest с данными для создания карты
      * @return CardDtoResponse с информацией о созданной карте
      * @throws com.example.bankcards.exception.exceptions.ResourceNotFoundException если пользователь не найден
-     * @throws com.example.bankcards.exception.exceptions.InvalidRequestException если номер карты не валиден
-     * @throws com.example.bankcards.exception.exceptions.ConflictRequestException  если карта с таким номером уже существует
      */
     @Override
     @Transactional
     public CardDtoResponse create(CardCreateDtoRequest request) {
         User user = findUserByEmail(request.getUserEmail());
 
-        if (!CardUtils.validateCardNumber(request.getNumber())) {
-            throw new InvalidRequestException("Invalid card number");
-        }
-
-        checkUniqueCardNumber(request.getNumber());
-
         Card card = new Card(
-                request.getNumber(),
+                cardNumberAllocator.allocate(),
                 user,
                 UserUtils.getFullName(user),
                 LocalDate.now().plusMonths(request.getCountMonth()),
                 CardStatus.ACTIVE,
-                request.getAmount()
+                request.getAmount() == null ? Money.ZERO : toMoney(request.getAmount())
         );
 
         Card saveCard = cardRepository.save(card);
+        ledgerService.recordOpening(saveCard.getNumber(), saveCard.getBalance(), LocalDateTime.now());
+        userRepository.incrementCardsVersion(user.getEmail());
 
-        return mapperToDto(saveCard);
+        CardDtoResponse response = mapperToDto(saveCard);
+        eventPublisher.publishEvent(new CardEvent(user.getEmail(), saveCard.getNumber(), CardEventType.CREATED, response));
+
+        return response;
     }
 
     /**
-     * Блокирует карту по её номеру.
+     * Блокирует карту по её номеру одним запросом к БД.
+     * Ожидающий запрос на блокировку карты при этом снимается.
+     * Повторная блокировка ничего не изменяет и не публикует событие.
      * Метод доступен только для администраторов.
      *
      * @param number номер карты для блокировки
      * @throws com.example.bankcards.exception.exceptions.ResourceNotFoundException если карта не найдена
+     * @throws com.example.bankcards.exception.exceptions.ConflictRequestException если карта с истекшим сроком
      */
     @Override
+    @Transactional
     public void blocked(String number) {
-        Card card = findCardByNumber(number);
-        card.setStatus(CardStatus.BLOCKED);
-        cardRepository.save(card);
+        Optional<Card> card = cardStatusRepository.block(number);
+        if (card.isEmpty()) {
+            rejectStatusChange(number, CardStatus.BLOCKED, "blocked");
+            return;
+        }
+
+        cardSnapshotCache.evict(number);
+        publishCardEvent(card.get(), CardEventType.STATUS_CHANGED);
     }
 
     /**
-     * Активирует карту по её номеру.
+     * Активирует карту по её номеру одним запросом к БД.
+     * Повторная активация ничего не изменяет и не публикует событие.
      * Метод доступен только для администраторов.
      *
      * @param number номер карты для активации
@@ -96,16 +131,16 @@ public class CardServiceImpl implements CardService {
      * @throws com.example.bankcards.exception.exceptions.ConflictRequestException если карта с истекшим сроком
      */
     @Override
+    @Transactional
     public void activation(String number) {
-        Card card = findCardByNumber(number);
-
-        if (checkExpiredCard(card)) {
-            throw new ConflictRequestException("Card with number= " +
-                    number + " has status expired and cannot be activated");
+        Optional<Card> card = cardStatusRepository.activate(number, LocalDate.now());
+        if (card.isEmpty()) {
+            rejectStatusChange(number, CardStatus.ACTIVE, "activated");
+            return;
         }
 
-        card.setStatus(CardStatus.ACTIVE);
-        cardRepository.save(card);
+        cardSnapshotCache.evict(number);
+        publishCardEvent(card.get(), CardEventType.STATUS_CHANGED);
     }
 
     /**
@@ -116,8 +151,13 @@ public class CardServiceImpl implements CardService {
      * @throws com.example.bankcards.exception.exceptions.ResourceNotFoundException если карта не найдена
      */
     @Override
+    @Transactional
     public void delete(String number) {
-        cardRepository.delete(findCardByNumber(number));
+        Card card = findCardByNumber(number);
+        cardRepository.delete(card);
+        userRepository.incrementCardsVersion(card.getUser().getEmail());
+        cardSnapshotCache.evict(number);
+        publishCardEvent(card, CardEventType.DELETED);
     }
 
     /**
@@ -173,6 +213,7 @@ public class CardServiceImpl implements CardService {
     /**
      * Получает информацию о карте по её номеру.
      * Пользователь может получить информацию только о своей карте.
+     * Карта загружается из БД в любом случае, поэтому принадлежность проверяется по ней, без снимка из кэша.
      *
      * @param cardNumber номер карты
      * @return CardDtoResponse с информацией о карте
@@ -183,7 +224,6 @@ public class CardServiceImpl implements CardService {
     public CardDtoResponse getByNumber(String cardNumber) {
         Card card = findCardByNumber(cardNumber);
         UserDetails principal = (UserDetails) SecurityContextHolder.getContext().getAuthentication().getPrincipal();
-
         checkBelongCardUser(card, principal);
         checkExpiredCard(card);
 
@@ -191,28 +231,28 @@ public class CardServiceImpl implements CardService {
     }
 
     /**
-     * Отправляет запрос на блокировку карты.
-     * Пользователь может запросить блокировку только своих карт.
+     * Отправляет запрос на блокировку карты одним запросом к БД.
+     * Пользователь может запросить блокировку только своих карт с действующим сроком.
      *
      * @param cardNumber номер карты для блокировки
-     * @throws com.example.bankcards.exception.exceptions.ResourceNotFoundException если карта не найдена
-     * @throws com.example.bankcards.exception.exceptions.InvalidRequestException   если карта не принадлежит пользователю
+     * @throws com.example.bankcards.exception.exceptions.ResourceNotFoundException если карта не найдена или не принадлежит пользователю
+     * @throws com.example.bankcards.exception.exceptions.ConflictRequestException если карта с истекшим сроком
      */
     @Override
     public void requestToBlocked(String cardNumber) {
-        Card card = findCardByNumber(cardNumber);
         UserDetails principal = (UserDetails) SecurityContextHolder.getContext().getAuthentication().getPrincipal();
 
-        checkBelongCardUser(card, principal);
-        checkExpiredCard(card);
-
-        card.setRequestToBlocked(true);
-        cardRepository.save(card);
+        if (!cardStatusRepository.requestBlock(cardNumber, principal.getUsername(), LocalDate.now())) {
+            CardSnapshot snapshot = findFreshSnapshotByNumber(cardNumber);
+            checkBelongCardUser(snapshot, principal);
+            throw new ConflictRequestException("Card with number= " +
+                    cardNumber + " has status expired and cannot be requested to block");
+        }
     }
 
     /**
      * Получает общий баланс со всех карт текущего пользователя.
-     * Суммирует балансы всех активных карт пользователя.
+     * Суммирует балансы всех активных карт пользователя в минимальных единицах без промежуточных объектов.
      *
      * @return TotalBalanceDtoResponse с общей суммой баланса всех активных карт
      */
@@ -220,21 +260,164 @@ public class CardServiceImpl implements CardService {
     public TotalBalanceDtoResponse getTotalBalanceUser() {
         UserDetails principal = (UserDetails) SecurityContextHolder.getContext().getAuthentication().getPrincipal();
 
-        BigDecimal totalBalance = cardRepository.findAllByUser_Email(principal.getUsername()).stream()
-                .filter(card -> card.getStatus() == CardStatus.ACTIVE)
-                .map(Card::getBalance)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        long totalBalance = 0;
+        for (Card card : cardRepository.findAllByUser_Email(principal.getUsername())) {
+            if (card.getStatus() == CardStatus.ACTIVE) {
+                totalBalance = Math.addExact(totalBalance, card.getTotalBalance().minorUnits());
+            }
+        }
 
         return TotalBalanceDtoResponse.builder()
                 .email(principal.getUsername())
-                .totalBalance(totalBalance)
+                .totalBalance(Money.ofMinor(totalBalance))
                 .build();
     }
 
     /**
-     * Проверяет принадлежность карты пользователю.
+     * Получает метку версии карт и балансов текущего пользователя для построения ETag.
+     * Версия из таблицы users увеличивается при изменении состава и статусов карт, версия балансов -
+     * при каждом переводе; обе читаются по первичному ключу без обращения к таблице cards.
+     * Версия балансов хранится отдельно от users, поэтому переводы не выстраиваются в очередь на строке пользователя.
+     * Метка включает хэш email, чтобы ответы разных пользователей на одном устройстве не совпадали.
      *
-     * @param card карта для проверки
+     * @return метка версии карт пользователя
+     * @throws com.example.bankcards.exception.exceptions.ResourceNotFoundException если пользователь не найден
+     */
+    @Override
+    public String getCardsVersionTag() {
+        UserDetails principal = (UserDetails) SecurityContextHolder.getContext().getAuthentication().getPrincipal();
+        String email = principal.getUsername();
+
+        long version = userRepository.findCardsVersionByEmail(email)
+                .orElseThrow(() -> new ResourceNotFoundException("User with email= " + email + " not found"));
+
+        return Integer.toHexString(email.hashCode()) + "-" + version + "-"
+                + userBalanceVersionRepository.findVersion(email);
+    }
+
+    /**
+     * Получает очередь карт с ожидающими запросами на блокировку.
+     * Страницы продолжаются по курсору (номер последней карты предыдущей страницы),
+     * выборка идет по частичному индексу, поэтому не зависит от общего количества карт.
+     * Метод доступен только для администраторов.
+     *
+     * @param afterCardNumber номер карты, после которой начинается страница (null для первой страницы)
+     * @param pageSize        количество карт на странице
+     * @return KeysetPageDtoResponse<CardBlockRequestDtoResponse> страница очереди запросов
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public KeysetPageDtoResponse<CardBlockRequestDtoResponse> getBlockRequests(String afterCardNumber, int pageSize) {
+        List<Card> cards = cardRepository.findBlockRequestsAfter(
+                afterCardNumber == null ? "" : afterCardNumber,
+                PageRequest.of(0, pageSize + 1));
+
+        boolean hasNext = cards.size() > pageSize;
+        List<CardBlockRequestDtoResponse> content = cards.stream()
+                .limit(pageSize)
+                .map(this::mapperToBlockRequestDto)
+                .toList();
+
+        return new KeysetPageDtoResponse<>(
+                content,
+                hasNext ? content.get(content.size() - 1).getCardNumber() : null);
+    }
+
+    /**
+     * Одобряет или отклоняет запросы на блокировку карт одним запросом к БД.
+     * Одобрение блокирует карты, в обоих случаях отметка о запросе снимается.
+     * Карты без ожидающего запроса пропускаются: версии карт и события затрагивают только измененные строки.
+     * Метод доступен только для администраторов.
+     *
+     * @param cardNumbers номера карт
+     * @param approve     true для блокировки, false для отклонения
+     * @return CardBlockDecisionDtoResponse с количеством обработанных запросов
+     */
+    @Override
+    @Transactional
+    public CardBlockDecisionDtoResponse processBlockRequests(List<String> cardNumbers, boolean approve) {
+        int processed;
+        if (approve) {
+            List<Card> blocked = cardStatusRepository.approveBlockRequests(cardNumbers);
+            processed = blocked.size();
+            cardSnapshotCache.evictAll(blocked.stream().map(Card::getNumber).toList());
+            blocked.forEach(card -> publishCardEvent(card, CardEventType.STATUS_CHANGED));
+        } else {
+            processed = cardRepository.rejectBlockRequests(cardNumbers);
+        }
+
+        return CardBlockDecisionDtoResponse.builder()
+                .processed(processed)
+                .build();
+    }
+
+    /**
+     * Задает количество слотов зачислений карты.
+     * Остатки слотов переносятся в основной баланс, после чего слоты пересоздаются с нулевым балансом.
+     * Метод доступен только для администраторов.
+     *
+     * @param number номер карты
+     * @param slots  количество слотов (0 отключает слоты)
+     * @throws ResourceNotFoundException если карта не найдена
+     */
+    @Override
+    @Transactional
+    public void changeBalanceSlots(String number, int slots) {
+        if (!cardBalanceRepository.resizeSlots(number, slots)) {
+            throw new ResourceNotFoundException("Card with number= " + number + " was not found");
+        }
+
+        cardSnapshotCache.evict(number);
+    }
+
+    /**
+     * Периодически переносит остатки слотов зачислений в основной баланс карт.
+     * Каждая карта переносится отдельным запросом, поэтому блокировки строк удерживаются недолго.
+     */
+    @Scheduled(fixedDelayString = "${card_balance_slots.compact_interval:60000}")
+    public void compactBalanceSlots() {
+        cardBalanceRepository.findCardsWithSlotBalance(COMPACT_BATCH_SIZE)
+                .forEach(cardBalanceRepository::sweepSlots);
+    }
+
+    /**
+     * Определяет причину, по которой изменение статуса не затронуло ни одной строки.
+     * Вызывается только при отказе, поэтому успешные изменения обходятся одним запросом.
+     * Карта, уже имеющая требуемый статус, не считается отказом.
+     *
+     * @param number номер карты
+     * @param target требуемый статус
+     * @param action выполняемое действие для текста ошибки
+     * @throws ResourceNotFoundException если карта не найдена
+     * @throws ConflictRequestException  если срок действия карты истек
+     */
+    private void rejectStatusChange(String number, CardStatus target, String action) {
+        CardSnapshot snapshot = findFreshSnapshotByNumber(number);
+        boolean expired = snapshot.status() == CardStatus.EXPIRED || snapshot.expirationDate().isBefore(LocalDate.now());
+        if (snapshot.status() == target && (target == CardStatus.BLOCKED || !expired)) {
+            return;
+        }
+        throw new ConflictRequestException("Card with number= " +
+                number + " has status expired and cannot be " + action);
+    }
+
+    /**
+     * Проверяет принадлежность карты пользователю по снимку из кэша, без запроса к БД.
+     *
+     * @param snapshot снимок карты для проверки
+     * @param principal данные аутентифицированного пользователя
+     * @throws ResourceNotFoundException если карта не принадлежит пользователю
+     */
+    private void checkBelongCardUser(CardSnapshot snapshot, UserDetails principal) {
+        if (!snapshot.isOwnedBy(principal.getUsername())) {
+            throw new ResourceNotFoundException("You has not card with number= " + snapshot.number());
+        }
+    }
+
+    /**
+     * Проверяет принадлежность загруженной карты пользователю.
+     *
+     * @param card      карта для проверки
      * @param principal данные аутентифицированного пользователя
      * @throws ResourceNotFoundException если карта не принадлежит пользователю
      */
@@ -255,10 +438,25 @@ public class CardServiceImpl implements CardService {
         if (card.getExpirationDate().isBefore(LocalDate.now()) && card.getStatus() != CardStatus.EXPIRED) {
             card.setStatus(CardStatus.EXPIRED);
             cardRepository.save(card);
+            userRepository.incrementCardsVersion(card.getUser().getEmail());
+            cardSnapshotCache.evict(card.getNumber());
+            publishCardEvent(card, CardEventType.STATUS_CHANGED);
         }
         return card.getStatus() == CardStatus.EXPIRED;
     }
 
+    /**
+     * Публикует событие изменения карты для её владельца.
+     * Событие рассылается подписчикам только после фиксации транзакции.
+     *
+     * @param card измененная карта
+     * @param type тип изменения
+     */
+    private void publishCardEvent(Card card, CardEventType type) {
+        eventPublisher.publishEvent(new CardEvent(card.getUser().getEmail(), card.getNumber(), type,
+                mapperToDto(card)));
+    }
+
     /**
      * Находит карту по её номеру в репозитории.
      *
@@ -272,17 +470,44 @@ public class CardServiceImpl implements CardService {
     }
 
     /**
-     * Проверяет уникальность номера карты в системе.
+     * Преобразует сумму из запроса в минимальные единицы.
      *
-     * @param cardNumber номер карты для проверки
-     * @throws ConflictRequestException если карта с таким номером уже существует
+     * @param amount сумма из запроса
+     * @return сумма
+     * @throws InvalidRequestException если у суммы больше двух знаков после запятой
      */
-    private void checkUniqueCardNumber(String cardNumber) {
-        if (cardRepository.existsByNumber(cardNumber)) {
-            throw new ConflictRequestException("Card already exist");
+    private Money toMoney(BigDecimal amount) {
+        try {
+            return Money.of(amount);
+        } catch (ArithmeticException e) {
+            throw new InvalidRequestException("The amount must have no more than two decimal places");
         }
     }
 
+    /**
+     * Находит актуальный снимок карты, предварительно удаляя его из кэша.
+     *
+     * @param cardNumber номер карты для поиска
+     * @return снимок карты
+     * @throws ResourceNotFoundException если карта с указанным номером не найдена
+     */
+    private CardSnapshot findFreshSnapshotByNumber(String cardNumber) {
+        cardSnapshotCache.evict(cardNumber);
+        return findSnapshotByNumber(cardNumber);
+    }
+
+    /**
+     * Находит снимок карты по её номеру через кэш.
+     *
+     * @param cardNumber номер карты для поиска
+     * @return снимок карты
+     * @throws ResourceNotFoundException если карта с указанным номером не найдена
+     */
+    private CardSnapshot findSnapshotByNumber(String cardNumber) {
+        return cardSnapshotCache.get(cardNumber)
+                .orElseThrow(() -> new ResourceNotFoundException("Card not found"));
+    }
+
     /**
      * Находит пользователя по email в репозитории.
      *
@@ -310,7 +535,23 @@ public class CardServiceImpl implements CardService {
                 .fullNameUser(card.getFullNameUser())
                 .expirationDate(card.getExpirationDate())
                 .status(card.getStatus())
-                .balance(card.getBalance())
+                .balance(card.getTotalBalance())
+                .build();
+    }
+
+    /**
+     * Преобразует сущность Card в DTO объект CardBlockRequestDtoResponse для очереди запросов на блокировку.
+     *
+     * @param card сущность карты
+     * @return CardBlockRequestDtoResponse с данными карты
+     */
+    private CardBlockRequestDtoResponse mapperToBlockRequestDto(Card card) {
+        return CardBlockRequestDtoResponse.builder()
+                .cardNumber(card.getNumber())
+                .email(card.getUser().getEmail())
+                .fullNameUser(card.getFullNameUser())
+                .expirationDate(card.getExpirationDate())
+                .status(card.getStatus())
                 .build();
     }
 }
@@ -0,0 +1,295 @@
+package com.example.bankcards.service.impl;
+
+import com.example.bankcards.event.UserEvent;
+import com.example.bankcards.service.EventService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Реализация сервиса доставки событий через Server-Sent Events.
+ * Соединения удерживаются асинхронным режимом сервлетов и не занимают потоков в простое.
+ * У каждого подписчика ограниченный буфер событий, отправку выполняет общий пул потоков;
+ * подписчик, чей буфер переполнен или чья отправка длится дольше времени записи, отключается
+ * и должен переподключиться. Зависшая запись занимает поток до таймаута записи контейнера,
+ * поэтому пул расширяется сверх основного размера, чтобы остальные подписчики не ждали ее.
+ */
+@Service
+public class EventServiceImpl implements EventService {
+
+    private final Map<String, Set<Subscriber>> subscribers = new ConcurrentHashMap<>();
+
+    private final AtomicInteger subscriberCount = new AtomicInteger();
+
+    private final Executor executor;
+
+    private final int bufferSize;
+
+    private final long timeout;
+
+    private final long writeTimeoutNanos;
+
+    private final Counter droppedCounter;
+
+    private final Counter stalledCounter;
+
+    @Autowired
+    public EventServiceImpl(
+            MeterRegistry meterRegistry,
+            @Value("${sse.buffer_size:64}") int bufferSize,
+            @Value("${sse.timeout:1800000}") long timeout,
+            @Value("${sse.write_timeout:5000}") long writeTimeout,
+            @Value("${sse.send_threads:4}") int sendThreads,
+            @Value("${sse.send_threads_max:64}") int sendThreadsMax) {
+        this(meterRegistry, bufferSize, timeout, writeTimeout, new ThreadPoolExecutor(sendThreads, sendThreadsMax,
+                60, TimeUnit.SECONDS, new SynchronousQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "sse-send");
+            thread.setDaemon(true);
+            return thread;
+        }));
+    }
+
+    EventServiceImpl(MeterRegistry meterRegistry, int bufferSize, long timeout, long writeTimeout, Executor executor) {
+        this.bufferSize = bufferSize;
+        this.timeout = timeout;
+        this.writeTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(writeTimeout);
+        this.executor = executor;
+        this.droppedCounter = Counter.builder("sse.subscribers.dropped")
+                .description("Подписчики SSE, отключенные из-за переполнения буфера")
+                .register(meterRegistry);
+        this.stalledCounter = Counter.builder("sse.subscribers.stalled")
+                .description("Подписчики SSE, отключенные из-за превышения времени записи")
+                .register(meterRegistry);
+        Gauge.builder("sse.subscribers", subscriberCount, AtomicInteger::get)
+                .description("Активные подписчики SSE")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Подписывает текущего пользователя на события его карт и переводов.
+     * Соединение не занимает поток, пока нет событий для отправки.
+     *
+     * @return SseEmitter для потока событий
+     */
+    @Override
+    public SseEmitter subscribe() {
+        UserDetails principal = (UserDetails) SecurityContextHolder.getContext().getAuthentication().getPrincipal();
+
+        Subscriber subscriber = new Subscriber(principal.getUsername(), new SseEmitter(timeout),
+                new ArrayBlockingQueue<>(bufferSize));
+        subscriber.emitter.onCompletion(() -> remove(subscriber));
+        subscriber.emitter.onTimeout(() -> remove(subscriber));
+        subscriber.emitter.onError(e -> remove(subscriber));
+
+        subscribers.computeIfAbsent(subscriber.email, email -> ConcurrentHashMap.newKeySet()).add(subscriber);
+        subscriberCount.incrementAndGet();
+
+        return subscriber.emitter;
+    }
+
+    /**
+     * Рассылает событие всем подключениям пользователя после фиксации транзакции,
+     * в которой оно опубликовано (или сразу, если транзакции нет).
+     *
+     * @param event событие пользователя
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUserEvent(UserEvent event) {
+        Set<Subscriber> userSubscribers = subscribers.get(event.userEmail());
+        if (userSubscribers == null) {
+            return;
+        }
+
+        Set<ResponseBodyEmitter.DataWithMediaType> data = SseEmitter.event()
+                .name(event.eventName())
+                .data(event.payload())
+                .build();
+        userSubscribers.forEach(subscriber -> enqueue(subscriber, data));
+    }
+
+    /**
+     * Периодически отправляет комментарий всем подписчикам,
+     * чтобы прокси не закрывали простаивающие соединения, а разорванные обнаруживались.
+     */
+    @Scheduled(fixedDelayString = "${sse.heartbeat_interval:15000}")
+    public void sendHeartbeats() {
+        Set<ResponseBodyEmitter.DataWithMediaType> heartbeat = SseEmitter.event().comment("heartbeat").build();
+        subscribers.values().forEach(userSubscribers ->
+                userSubscribers.forEach(subscriber -> enqueue(subscriber, heartbeat)));
+    }
+
+    /**
+     * Отключает подписчиков, отправка которым длится дольше времени записи.
+     * Эмиттер занят зависшей записью, поэтому его закрывает поток отправки, когда запись завершится;
+     * до этого новые события подписчику не буферизуются.
+     */
+    @Scheduled(fixedDelayString = "${sse.write_timeout_check_interval:1000}")
+    public void dropStalledSubscribers() {
+        long now = System.nanoTime();
+        subscribers.values().forEach(userSubscribers -> userSubscribers.forEach(subscriber -> {
+            long sendStartedAt = subscriber.sendStartedAt;
+            if (sendStartedAt != 0 && now - sendStartedAt > writeTimeoutNanos && remove(subscriber)) {
+                stalledCounter.increment();
+                subscriber.queue.clear();
+            }
+        }));
+    }
+
+    /**
+     * Возвращает количество активных подписчиков.
+     *
+     * @return количество подписчиков
+     */
+    public int getSubscriberCount() {
+        return subscriberCount.get();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        subscribers.values().forEach(userSubscribers ->
+                userSubscribers.forEach(subscriber -> subscriber.emitter.complete()));
+        if (executor instanceof ExecutorService executorService) {
+            executorService.shutdown();
+        }
+    }
+
+    /**
+     * Помещает событие в буфер подписчика и запускает отправку, если она еще не идет.
+     * При переполненном буфере подписчик отключается.
+     *
+     * @param subscriber подписчик
+     * @param data       подготовленные данные события
+     */
+    private void enqueue(Subscriber subscriber, Set<ResponseBodyEmitter.DataWithMediaType> data) {
+        if (!subscriber.queue.offer(data)) {
+            if (remove(subscriber)) {
+                droppedCounter.increment();
+                subscriber.emitter.complete();
+            }
+            return;
+        }
+
+        schedule(subscriber);
+    }
+
+    /**
+     * Запускает отправку подписчику, если она еще не идет.
+     * Если все потоки пула заняты, события остаются в буфере до следующего события или heartbeat.
+     *
+     * @param subscriber подписчик
+     */
+    private void schedule(Subscriber subscriber) {
+        if (!subscriber.sending.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            executor.execute(() -> send(subscriber));
+        } catch (RejectedExecutionException e) {
+            subscriber.sending.set(false);
+        }
+    }
+
+    /**
+     * Отправляет накопленные события подписчику в пуле потоков отправки.
+     *
+     * @param subscriber подписчик
+     */
+    private void send(Subscriber subscriber) {
+        try {
+            Set<ResponseBodyEmitter.DataWithMediaType> data;
+            while (!subscriber.removed && (data = subscriber.queue.poll()) != null) {
+                subscriber.sendStartedAt = System.nanoTime();
+                subscriber.emitter.send(data);
+                subscriber.sendStartedAt = 0;
+            }
+        } catch (IOException | IllegalStateException e) {
+            remove(subscriber);
+            subscriber.emitter.completeWithError(e);
+            return;
+        } finally {
+            subscriber.sendStartedAt = 0;
+            subscriber.sending.set(false);
+        }
+
+        // подписчик отключен по времени записи, пока запись шла
+        if (subscriber.removed) {
+            subscriber.emitter.complete();
+            return;
+        }
+
+        // событие могло попасть в буфер между последним poll и сбросом флага
+        if (!subscriber.queue.isEmpty()) {
+            schedule(subscriber);
+        }
+    }
+
+    /**
+     * Удаляет подписчика из реестра.
+     *
+     * @param subscriber подписчик
+     * @return true если подписчик был зарегистрирован
+     */
+    private boolean remove(Subscriber subscriber) {
+        AtomicBoolean removed = new AtomicBoolean();
+        subscribers.computeIfPresent(subscriber.email, (email, userSubscribers) -> {
+            removed.set(userSubscribers.remove(subscriber));
+            subscriber.removed = true;
+            return userSubscribers.isEmpty() ? null : userSubscribers;
+        });
+        if (removed.get()) {
+            subscriberCount.decrementAndGet();
+        }
+        return removed.get();
+    }
+
+    /**
+     * Подключение пользователя с собственным ограниченным буфером событий.
+     */
+    private static final class Subscriber {
+
+        private final String email;
+
+        private final SseEmitter emitter;
+
+        private final BlockingQueue<Set<ResponseBodyEmitter.DataWithMediaType>> queue;
+
+        private final AtomicBoolean sending = new AtomicBoolean();
+
+        // System.nanoTime() начала текущей записи, 0 если запись не идет
+        private volatile long sendStartedAt;
+
+        private volatile boolean removed;
+
+        private Subscriber(String email, SseEmitter emitter,
+                           BlockingQueue<Set<ResponseBodyEmitter.DataWithMediaType>> queue) {
+            this.email = email;
+            this.emitter = emitter;
+            this.queue = queue;
+        }
+    }
+}
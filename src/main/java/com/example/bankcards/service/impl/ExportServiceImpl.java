@@ -0,0 +1,309 @@
+package com.example.bankcards.service.impl;
+
+import com.example.bankcards.dto.export.ExportFormat;
+import com.example.bankcards.exception.exceptions.InvalidRequestException;
+import com.example.bankcards.repository.CardExportRepository;
+import com.example.bankcards.repository.TransferExportRepository;
+import com.example.bankcards.service.ExportService;
+import com.example.bankcards.util.CardUtils;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Isolation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Реализация сервиса потоковой выгрузки данных.
+ * Каждая строка результата сразу записывается в буферизованный поток ответа,
+ * поэтому в памяти находится не более одной порции строк (fetch size) независимо от размера таблицы.
+ * Запись в поток медленного клиента блокируется, и следующая порция строк не читается из курсора,
+ * пока не записана предыдущая: выгрузка идет со скоростью клиента, не накапливая данные в памяти.
+ */
+@Service
+@RequiredArgsConstructor
+public class ExportServiceImpl implements ExportService {
+
+    private static final int LINE_BUFFER_SIZE = 1024;
+
+    private static final int GZIP_BUFFER_SIZE = 8192;
+
+    private static final String CARDS_CSV_HEADER = "maskedCardNumber,email,fullNameUser,expirationDate,status,balance\n";
+
+    private static final String TRANSFERS_CSV_HEADER = "id,userEmail,fromCardNumber,toCardNumber,amount,time\n";
+
+    private final CardExportRepository cardExportRepository;
+    private final ObjectMapper objectMapper;
+    private final TransferExportRepository transferExportRepository;
+
+    /**
+     * Выгружает все карты системы в выходной поток.
+     * Номера карт выгружаются в маскированном виде.
+     * Метод доступен только для администраторов.
+     *
+     * @param format       формат выгрузки
+     * @param outputStream поток для записи
+     * @throws IOException при ошибке записи в поток
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public void exportCards(ExportFormat format, OutputStream outputStream) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+
+        try {
+            switch (format) {
+                case CSV -> writeCardsCsv(writer);
+                case NDJSON -> writeCardsNdjson(writer);
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        writer.flush();
+    }
+
+    /**
+     * Выгружает переводы за период в выходной поток в порядке времени выполнения.
+     * Выгрузка выполняется в транзакции REPEATABLE READ только для чтения: все порции курсора
+     * читаются из снимка данных на момент начала выгрузки.
+     * Метод доступен только для администраторов.
+     *
+     * @param format       формат выгрузки
+     * @param fromTime     начало периода (включительно), может отсутствовать
+     * @param toTime       конец периода (не включительно), может отсутствовать
+     * @param gzip         сжимать ли выгрузку в формате gzip
+     * @param outputStream поток для записи
+     * @throws IOException             при ошибке записи в поток
+     * @throws InvalidRequestException если начало периода не раньше конца
+     */
+    @Override
+    @Transactional(readOnly = true, isolation = Isolation.REPEATABLE_READ)
+    public void exportTransfers(ExportFormat format, LocalDateTime fromTime, LocalDateTime toTime, boolean gzip,
+                                OutputStream outputStream) throws IOException {
+        // контроллер проверяет период до начала ответа; повторная проверка защищает других вызывающих
+        validateTransfersPeriod(fromTime, toTime);
+
+        GZIPOutputStream gzipStream = gzip ? new GZIPOutputStream(outputStream, GZIP_BUFFER_SIZE) : null;
+        Writer writer = new BufferedWriter(new OutputStreamWriter(
+                gzipStream != null ? gzipStream : outputStream, StandardCharsets.UTF_8));
+
+        try {
+            switch (format) {
+                case CSV -> writeTransfersCsv(writer, fromTime, toTime);
+                case NDJSON -> writeTransfersNdjson(writer, fromTime, toTime);
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        writer.flush();
+        if (gzipStream != null) {
+            // завершает сжатие, не закрывая поток ответа
+            gzipStream.finish();
+        }
+    }
+
+    @Override
+    public void validateTransfersPeriod(LocalDateTime fromTime, LocalDateTime toTime) {
+        if (fromTime != null && toTime != null && !fromTime.isBefore(toTime)) {
+            throw new InvalidRequestException("The start of the period must be before its end");
+        }
+    }
+
+    /**
+     * Записывает карты в формате CSV, переиспользуя один буфер строки для всех записей.
+     *
+     * @param writer поток для записи
+     * @throws IOException при ошибке записи в поток
+     */
+    private void writeCardsCsv(Writer writer) throws IOException {
+        writer.write(CARDS_CSV_HEADER);
+        StringBuilder line = new StringBuilder(128);
+        char[] buffer = new char[LINE_BUFFER_SIZE];
+
+        cardExportRepository.forEachCard(rs -> {
+            line.setLength(0);
+            CardUtils.appendMaskedCardNumber(line, rs.getString("number")).append(',');
+            appendCsvField(line, rs.getString("user_email")).append(',');
+            appendCsvField(line, rs.getString("full_name_user")).append(',');
+            line.append(getExpirationDate(rs)).append(',')
+                    .append(rs.getString("status")).append(',')
+                    .append(rs.getString("balance")).append('\n');
+            write(writer, line, buffer);
+        });
+    }
+
+    /**
+     * Записывает карты в формате NDJSON (один JSON-объект на строку) с теми же полями, что и CardDtoResponse.
+     *
+     * @param writer поток для записи
+     * @throws IOException при ошибке записи в поток
+     */
+    private void writeCardsNdjson(Writer writer) throws IOException {
+        JsonGenerator generator = objectMapper.getFactory().createGenerator(writer);
+        generator.setRootValueSeparator(null);
+
+        cardExportRepository.forEachCard(rs -> {
+            try {
+                generator.writeStartObject();
+                generator.writeStringField("maskedCardNumber", CardUtils.getMaskedCardNumber(rs.getString("number")));
+                generator.writeStringField("email", rs.getString("user_email"));
+                generator.writeStringField("fullNameUser", rs.getString("full_name_user"));
+                generator.writeStringField("expirationDate", getExpirationDate(rs));
+                generator.writeStringField("status", rs.getString("status"));
+                generator.writeFieldName("balance");
+                generator.writeNumber(rs.getString("balance"));
+                generator.writeEndObject();
+                generator.writeRaw('\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+
+        generator.flush();
+    }
+
+    /**
+     * Записывает переводы в формате CSV, переиспользуя один буфер строки для всех записей.
+     *
+     * @param writer   поток для записи
+     * @param fromTime начало периода (включительно)
+     * @param toTime   конец периода (не включительно)
+     * @throws IOException при ошибке записи в поток
+     */
+    private void writeTransfersCsv(Writer writer, LocalDateTime fromTime, LocalDateTime toTime) throws IOException {
+        writer.write(TRANSFERS_CSV_HEADER);
+        StringBuilder line = new StringBuilder(128);
+        char[] buffer = new char[LINE_BUFFER_SIZE];
+
+        transferExportRepository.forEachTransfer(fromTime, toTime, rs -> {
+            line.setLength(0);
+            line.append(rs.getLong("id")).append(',');
+            appendCsvField(line, rs.getString("user_email")).append(',');
+            line.append(rs.getString("from_card_number")).append(',')
+                    .append(rs.getString("to_card_number")).append(',')
+                    .append(rs.getString("amount")).append(',')
+                    .append(getTime(rs)).append('\n');
+            write(writer, line, buffer);
+        });
+    }
+
+    /**
+     * Записывает переводы в формате NDJSON (один JSON-объект на строку) с полями TransferDtoResponse
+     * и идентификатором перевода.
+     *
+     * @param writer   поток для записи
+     * @param fromTime начало периода (включительно)
+     * @param toTime   конец периода (не включительно)
+     * @throws IOException при ошибке записи в поток
+     */
+    private void writeTransfersNdjson(Writer writer, LocalDateTime fromTime, LocalDateTime toTime)
+            throws IOException {
+        JsonGenerator generator = objectMapper.getFactory().createGenerator(writer);
+        generator.setRootValueSeparator(null);
+
+        transferExportRepository.forEachTransfer(fromTime, toTime, rs -> {
+            try {
+                generator.writeStartObject();
+                generator.writeNumberField("id", rs.getLong("id"));
+                generator.writeStringField("userEmail", rs.getString("user_email"));
+                generator.writeStringField("fromCardNumber", rs.getString("from_card_number"));
+                generator.writeStringField("toCardNumber", rs.getString("to_card_number"));
+                generator.writeFieldName("amount");
+                generator.writeNumber(rs.getString("amount"));
+                generator.writeStringField("time", getTime(rs));
+                generator.writeEndObject();
+                generator.writeRaw('\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+
+        generator.flush();
+    }
+
+    /**
+     * Возвращает время перевода в формате ISO (yyyy-MM-ddTHH:mm:ss).
+     *
+     * @param rs текущая строка результата
+     * @return время перевода
+     * @throws SQLException при ошибке чтения столбца
+     */
+    private static String getTime(ResultSet rs) throws SQLException {
+        return DateTimeFormatter.ISO_LOCAL_DATE_TIME.format(rs.getObject("time", LocalDateTime.class));
+    }
+
+    /**
+     * Возвращает дату окончания действия карты в формате ISO (yyyy-MM-dd).
+     *
+     * @param rs текущая строка результата
+     * @return дата окончания действия карты
+     * @throws SQLException при ошибке чтения столбца
+     */
+    private static String getExpirationDate(ResultSet rs) throws SQLException {
+        return rs.getObject("expiration_date", LocalDateTime.class).toLocalDate().toString();
+    }
+
+    /**
+     * Дописывает значение в строку CSV, экранируя его при наличии разделителей или кавычек.
+     *
+     * @param line  буфер строки
+     * @param value значение поля
+     * @return переданный буфер
+     */
+    private static StringBuilder appendCsvField(StringBuilder line, String value) {
+        boolean quote = false;
+        for (int i = 0; i < value.length() && !quote; i++) {
+            char c = value.charAt(i);
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!quote) {
+            return line.append(value);
+        }
+
+        line.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                line.append('"');
+            }
+            line.append(c);
+        }
+        return line.append('"');
+    }
+
+    /**
+     * Записывает содержимое буфера строки в поток через переиспользуемый массив символов.
+     * IOException преобразуется для использования внутри обработчика строк.
+     *
+     * @param writer поток для записи
+     * @param line   буфер строки
+     * @param buffer переиспользуемый массив символов
+     */
+    private static void write(Writer writer, StringBuilder line, char[] buffer) {
+        try {
+            int length = line.length();
+            if (length <= buffer.length) {
+                line.getChars(0, length, buffer, 0);
+                writer.write(buffer, 0, length);
+            } else {
+                writer.write(line.toString());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.example.bankcards.service.impl;
+
+import com.example.bankcards.dto.card.LedgerBalanceDtoResponse;
+import com.example.bankcards.entity.card.Card;
+import com.example.bankcards.entity.ledger.LedgerEntry;
+import com.example.bankcards.entity.ledger.LedgerEntryType;
+import com.example.bankcards.entity.money.Money;
+import com.example.bankcards.entity.transfer.Transfer;
+import com.example.bankcards.exception.exceptions.ResourceNotFoundException;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.LedgerEntryRepository;
+import com.example.bankcards.service.LedgerService;
+import com.example.bankcards.util.CardUtils;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Isolation;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Реализация сервиса журнала проводок.
+ * Перевод записывается двумя проводками с общим идентификатором операции: списание с отрицательной суммой
+ * и зачисление с положительной, поэтому сумма проводок каждой операции равна нулю.
+ * Проводки пишутся только в транзакции, изменяющей баланс, и вставляются пакетами JDBC.
+ */
+@Service
+@RequiredArgsConstructor
+public class LedgerServiceImpl implements LedgerService {
+
+    private final LedgerEntryRepository ledgerEntryRepository;
+    private final CardRepository cardRepository;
+
+    @Override
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordOpening(String cardNumber, Money amount, LocalDateTime time) {
+        if (amount.equals(Money.ZERO)) {
+            return;
+        }
+
+        ledgerEntryRepository.save(
+                new LedgerEntry(UUID.randomUUID(), cardNumber, LedgerEntryType.OPENING, amount, time));
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordTransfer(Transfer transfer) {
+        ledgerEntryRepository.saveAll(entriesOf(transfer));
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordTransfers(List<Transfer> transfers) {
+        List<LedgerEntry> entries = new ArrayList<>(transfers.size() * 2);
+        transfers.forEach(transfer -> entries.addAll(entriesOf(transfer)));
+        ledgerEntryRepository.saveAll(entries);
+    }
+
+    /**
+     * Восстанавливает баланс карты по журналу и сверяет его с текущим балансом.
+     * Баланс и журнал читаются в одном снимке данных без блокировки строки карты.
+     *
+     * @param cardNumber номер карты
+     * @return LedgerBalanceDtoResponse с текущим и восстановленным балансом
+     * @throws ResourceNotFoundException если карта не найдена
+     */
+    @Override
+    @Transactional(readOnly = true, isolation = Isolation.REPEATABLE_READ)
+    public LedgerBalanceDtoResponse getLedgerBalance(String cardNumber) {
+        Card card = cardRepository.findByNumber(cardNumber)
+                .orElseThrow(() -> new ResourceNotFoundException("Card with number= " + cardNumber + " was not found"));
+        Money ledgerBalance = Money.of(ledgerEntryRepository.sumAmountByCardNumber(cardNumber));
+
+        return LedgerBalanceDtoResponse.builder()
+                .maskedCardNumber(CardUtils.getMaskedCardNumber(cardNumber))
+                .balance(card.getTotalBalance())
+                .ledgerBalance(ledgerBalance)
+                .consistent(card.getTotalBalance().equals(ledgerBalance))
+                .build();
+    }
+
+    /**
+     * Создает проводки списания и зачисления перевода.
+     *
+     * @param transfer перевод
+     * @return проводки перевода
+     */
+    private List<LedgerEntry> entriesOf(Transfer transfer) {
+        UUID transactionId = UUID.randomUUID();
+        return List.of(
+                new LedgerEntry(transactionId, transfer.getFromCardNumber(), LedgerEntryType.DEBIT,
+                        Money.ZERO.minus(transfer.getAmount()), transfer.getTime()),
+                new LedgerEntry(transactionId, transfer.getToCardNumber(), LedgerEntryType.CREDIT,
+                        transfer.getAmount(), transfer.getTime()));
+    }
+}
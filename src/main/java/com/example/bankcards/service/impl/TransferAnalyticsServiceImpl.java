@@ -0,0 +1,170 @@
+package com.example.bankcards.service.impl;
+
+import com.example.bankcards.cache.CardSnapshot;
+import com.example.bankcards.cache.CardSnapshotCache;
+import com.example.bankcards.dto.analytics.CardTransferRollupDtoResponse;
+import com.example.bankcards.dto.analytics.RollupPeriod;
+import com.example.bankcards.dto.analytics.RollupRebuildDtoResponse;
+import com.example.bankcards.dto.analytics.TransferRollupDtoResponse;
+import com.example.bankcards.entity.transfer.Transfer;
+import com.example.bankcards.exception.exceptions.InvalidRequestException;
+import com.example.bankcards.exception.exceptions.ResourceNotFoundException;
+import com.example.bankcards.repository.TransferRollupRepository;
+import com.example.bankcards.repository.TransferRollupRepository.RollupItem;
+import com.example.bankcards.service.TransferAnalyticsService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Реализация сервиса аналитики переводов.
+ * Переводы транзакции накапливаются и добавляются к итогам одним пакетом перед её фиксацией:
+ * строки итогов блокируются последними и в порядке ключей, поэтому транзакции переводов
+ * не взаимоблокируются на итогах и удерживают их блокировки только на время фиксации.
+ */
+@Service
+@RequiredArgsConstructor
+public class TransferAnalyticsServiceImpl implements TransferAnalyticsService {
+
+    private final TransferRollupRepository transferRollupRepository;
+    private final CardSnapshotCache cardSnapshotCache;
+    private final TransactionTemplate transactionTemplate;
+
+    @Override
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordTransfers(List<Transfer> transfers, int slot) {
+        List<RollupItem> pending = pendingItems();
+        transfers.forEach(transfer -> pending.add(new RollupItem(transfer, slot)));
+    }
+
+    @Override
+    public List<TransferRollupDtoResponse> getMyRollups(RollupPeriod period, LocalDate from, LocalDate to) {
+        UserDetails principal = (UserDetails) SecurityContextHolder.getContext().getAuthentication().getPrincipal();
+        checkInterval(period, from, to);
+
+        return transferRollupRepository.findUserRollups(principal.getUsername(), period, from, to);
+    }
+
+    @Override
+    public List<CardTransferRollupDtoResponse> getMyCardRollups(String cardNumber, RollupPeriod period,
+                                                                LocalDate from, LocalDate to) {
+        UserDetails principal = (UserDetails) SecurityContextHolder.getContext().getAuthentication().getPrincipal();
+        CardSnapshot snapshot = cardSnapshotCache.get(cardNumber)
+                .orElseThrow(() -> new ResourceNotFoundException("Card with number= " + cardNumber + " was not found"));
+        if (!snapshot.isOwnedBy(principal.getUsername())) {
+            throw new InvalidRequestException("The card does not belong to the user");
+        }
+        checkInterval(period, from, to);
+
+        return transferRollupRepository.findCardRollups(cardNumber, period, from, to);
+    }
+
+    @Override
+    public List<TransferRollupDtoResponse> getUserRollups(String email, RollupPeriod period, LocalDate from,
+                                                          LocalDate to) {
+        checkInterval(period, from, to);
+
+        return transferRollupRepository.findUserRollups(email, period, from, to);
+    }
+
+    @Override
+    public List<CardTransferRollupDtoResponse> getCardRollups(String cardNumber, RollupPeriod period,
+                                                              LocalDate from, LocalDate to) {
+        checkInterval(period, from, to);
+
+        return transferRollupRepository.findCardRollups(cardNumber, period, from, to);
+    }
+
+    @Override
+    public RollupRebuildDtoResponse rebuild() {
+        // перевод со временем прошлого месяца может фиксироваться уже в новом, поэтому месяц вчерашней даты
+        // пересчитывается под блокировкой вместе с текущим
+        LocalDate openFrom = TransferRollupRepository.periodStart(RollupPeriod.MONTH, LocalDate.now().minusDays(1));
+        LocalDate openTo = TransferRollupRepository.periodStart(RollupPeriod.MONTH, LocalDate.now()).plusMonths(1);
+
+        int[] total = new int[2];
+        LocalDate first = transferRollupRepository.findFirstMonth().orElse(openFrom);
+        for (LocalDate month = first; month.isBefore(openFrom); month = month.plusMonths(1)) {
+            LocalDate closedMonth = month;
+            add(total, transactionTemplate.execute(status -> transferRollupRepository.rebuildMonth(closedMonth)));
+        }
+        add(total, transactionTemplate.execute(status -> transferRollupRepository.rebuildLocked(openFrom, openTo)));
+
+        return RollupRebuildDtoResponse.builder()
+                .userRows(total[0])
+                .cardRows(total[1])
+                .build();
+    }
+
+    private static void add(int[] total, int[] rows) {
+        total[0] += rows[0];
+        total[1] += rows[1];
+    }
+
+    /**
+     * Возвращает переводы текущей транзакции, ожидающие записи в итоги.
+     * При первом обращении в транзакции регистрирует их запись перед фиксацией.
+     *
+     * @return изменяемый список переводов транзакции
+     */
+    @SuppressWarnings("unchecked")
+    private List<RollupItem> pendingItems() {
+        List<RollupItem> pending = (List<RollupItem>) TransactionSynchronizationManager.getResource(this);
+        if (pending != null) {
+            return pending;
+        }
+
+        List<RollupItem> items = new ArrayList<>();
+        TransactionSynchronizationManager.bindResource(this, items);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+
+            @Override
+            public void beforeCommit(boolean readOnly) {
+                if (!items.isEmpty()) {
+                    transferRollupRepository.addAll(items);
+                }
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                TransactionSynchronizationManager.unbindResourceIfPossible(TransferAnalyticsServiceImpl.this);
+            }
+        });
+        return items;
+    }
+
+    /**
+     * Проверяет интервал запроса итогов. Количество периодов ограничено,
+     * поэтому время ответа не зависит от запрошенного интервала.
+     *
+     * @param period период агрегации
+     * @param from   начало интервала
+     * @param to     конец интервала
+     * @throws InvalidRequestException если интервал пуст или содержит слишком много периодов
+     */
+    private void checkInterval(RollupPeriod period, LocalDate from, LocalDate to) {
+        if (!from.isBefore(to)) {
+            throw new InvalidRequestException("The start of the period must be before its end");
+        }
+        // учитываются все периоды, которые затрагивает интервал, включая неполные
+        long periods = period == RollupPeriod.MONTH
+                ? ChronoUnit.MONTHS.between(TransferRollupRepository.periodStart(period, from),
+                TransferRollupRepository.periodStart(period, to.minusDays(1))) + 1
+                : ChronoUnit.DAYS.between(from, to);
+        if (periods > period.getMaxPeriods()) {
+            throw new InvalidRequestException("The interval must contain no more than " +
+                    period.getMaxPeriods() + " periods");
+        }
+    }
+}
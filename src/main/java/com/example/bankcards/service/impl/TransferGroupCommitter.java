@@ -0,0 +1,313 @@
+package com.example.bankcards.service.impl;
+
+import com.example.bankcards.dto.transfer.TransferDtoRequest;
+import com.example.bankcards.dto.transfer.TransferDtoResponse;
+import com.example.bankcards.entity.money.Money;
+import com.example.bankcards.exception.exceptions.TooManyRequestsException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * Стадия группового подтверждения переводов.
+ * Переводы, поступившие в течение короткого окна (или до достижения размера группы), передаются
+ * обработчику вместе, чтобы выполниться в одной транзакции и одном подтверждении записи.
+ * В группу попадают только переводы без общих блокируемых карт; остальные откладываются до следующей группы
+ * в порядке поступления. Карта со слотами зачислений, на которую выполняется зачисление, не блокируется
+ * и не считается общей, поэтому зачисления на неё попадают в одну группу.
+ * Переводы распределяются по нескольким независимым потокам сбора по карте списания, поэтому переводы
+ * с одной карты собираются одним потоком в порядке поступления. Очередь каждого потока ограничена:
+ * при её переполнении перевод сразу отклоняется. Перевод, не попавший в группу за время ожидания,
+ * отменяется и не выполняется, поэтому задержка ограничена временем ожидания и временем выполнения группы.
+ */
+@Slf4j
+@Component
+public class TransferGroupCommitter {
+
+    private static final long IDLE_POLL_MILLIS = 100;
+
+    private final boolean enabled;
+
+    private final long windowNanos;
+
+    private final int maxSize;
+
+    private final long timeoutNanos;
+
+    private final List<BlockingQueue<Entry>> queues = new ArrayList<>();
+
+    private final DistributionSummary groupSize;
+
+    private final Counter rejectedCounter;
+
+    private volatile boolean running;
+
+    private final List<Thread> flushers = new ArrayList<>();
+
+    public TransferGroupCommitter(
+            MeterRegistry meterRegistry,
+            @Value("${transfers.group_commit.enabled:false}") boolean enabled,
+            @Value("${transfers.group_commit.window:2ms}") Duration window,
+            @Value("${transfers.group_commit.max_size:64}") int maxSize,
+            @Value("${transfers.group_commit.flushers:1}") int flushers,
+            @Value("${transfers.group_commit.queue_capacity:1000}") int queueCapacity,
+            @Value("${transfers.group_commit.timeout:2s}") Duration timeout) {
+        this.enabled = enabled;
+        this.windowNanos = window.toNanos();
+        this.maxSize = maxSize;
+        this.timeoutNanos = timeout.toNanos();
+        for (int i = 0; i < flushers; i++) {
+            queues.add(new LinkedBlockingQueue<>(queueCapacity));
+        }
+        this.groupSize = DistributionSummary.builder("transfers.group_commit.size")
+                .description("Количество переводов в одной транзакции группового подтверждения")
+                .register(meterRegistry);
+        this.rejectedCounter = Counter.builder("transfers.group_commit.rejected")
+                .description("Переводы, отклоненные из-за переполнения очереди или истечения ожидания группы")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Проверяет, включено ли групповое подтверждение.
+     *
+     * @return true если переводы следует передавать через {@link #submit}
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Запускает потоки сбора групп, если групповое подтверждение включено.
+     *
+     * @param applier обработчик группы; должен завершить результат каждого перевода группы
+     */
+    public synchronized void start(Consumer<List<Entry>> applier) {
+        if (!enabled || !flushers.isEmpty()) {
+            return;
+        }
+        running = true;
+        for (int i = 0; i < queues.size(); i++) {
+            BlockingQueue<Entry> queue = queues.get(i);
+            Thread flusher = new Thread(() -> run(applier, queue), "transfer-group-commit-" + i);
+            flusher.setDaemon(true);
+            flusher.start();
+            flushers.add(flusher);
+        }
+    }
+
+    @PreDestroy
+    public synchronized void stop() throws InterruptedException {
+        running = false;
+        for (Thread flusher : flushers) {
+            flusher.join(TimeUnit.SECONDS.toMillis(10));
+        }
+    }
+
+    /**
+     * Передает перевод в очередь группового подтверждения и ожидает его результат.
+     *
+     * @param request        данные перевода
+     * @param idempotencyKey ключ идемпотентности (может отсутствовать)
+     * @param email          email пользователя
+     * @param amount         сумма перевода
+     * @param lockedCards    карты, которые перевод блокирует исключительно
+     * @return результат перевода
+     * @throws TooManyRequestsException если очередь переполнена или перевод не попал в группу за время ожидания;
+     *                                  в этом случае перевод не выполняется
+     */
+    public TransferDtoResponse submit(TransferDtoRequest request, String idempotencyKey, String email,
+                                      Money amount, List<String> lockedCards) {
+        Entry entry = new Entry(request, idempotencyKey, email, amount, lockedCards, new CompletableFuture<>());
+        BlockingQueue<Entry> queue = queues.get(Math.floorMod(request.getFromCardNumber().hashCode(), queues.size()));
+        if (!queue.offer(entry)) {
+            rejectedCounter.increment();
+            throw new TooManyRequestsException("Too many transfers are waiting, try again later");
+        }
+
+        try {
+            return entry.result().get(timeoutNanos, TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            if (entry.cancel()) {
+                rejectedCounter.increment();
+                throw new TooManyRequestsException("The transfer was not started in time, try again later");
+            }
+            // перевод уже выполняется в группе, поэтому ожидается его результат
+            return entry.result().join();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            if (entry.cancel()) {
+                throw new TooManyRequestsException("The transfer was interrupted, try again later");
+            }
+            return entry.result().join();
+        }
+    }
+
+    /**
+     * Собирает группы из очереди и передает их обработчику, пока стадия запущена и в очереди остаются переводы.
+     *
+     * @param applier обработчик группы
+     * @param queue   очередь потока сбора
+     */
+    private void run(Consumer<List<Entry>> applier, BlockingQueue<Entry> queue) {
+        List<Entry> deferred = new ArrayList<>();
+        while (running || !deferred.isEmpty() || !queue.isEmpty()) {
+            try {
+                List<Entry> collected = collect(queue, deferred);
+                if (collected.isEmpty()) {
+                    continue;
+                }
+                deferred = new ArrayList<>();
+                List<Entry> group = split(collected, deferred);
+                if (group.isEmpty()) {
+                    continue;
+                }
+                groupSize.record(group.size());
+                apply(applier, group);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Собирает переводы, поступившие в течение окна после первого из них.
+     *
+     * @param queue    очередь потока сбора
+     * @param deferred переводы, отложенные из предыдущей группы
+     * @return собранные переводы в порядке поступления
+     */
+    private List<Entry> collect(BlockingQueue<Entry> queue, List<Entry> deferred) throws InterruptedException {
+        List<Entry> collected = new ArrayList<>(deferred);
+        if (collected.isEmpty()) {
+            Entry first = queue.poll(IDLE_POLL_MILLIS, TimeUnit.MILLISECONDS);
+            if (first == null) {
+                return collected;
+            }
+            collected.add(first);
+        }
+
+        long deadline = System.nanoTime() + windowNanos;
+        while (collected.size() < maxSize) {
+            Entry next = queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+            if (next == null) {
+                break;
+            }
+            collected.add(next);
+        }
+        return collected;
+    }
+
+    /**
+     * Выбирает из собранных переводов группу без общих блокируемых карт.
+     * Перевод, блокирующий карту уже выбранного или отложенного перевода, откладывается,
+     * поэтому переводы по одной карте выполняются в порядке поступления.
+     * Отмененные по истечении ожидания переводы отбрасываются.
+     *
+     * @param collected собранные переводы
+     * @param deferred  список, в который добавляются отложенные переводы
+     * @return переводы группы
+     */
+    private List<Entry> split(List<Entry> collected, List<Entry> deferred) {
+        Set<String> cards = new HashSet<>();
+        List<Entry> group = new ArrayList<>();
+        for (Entry entry : collected) {
+            if (entry.result().isDone()) {
+                continue;
+            }
+            boolean free = true;
+            for (String number : entry.lockedCards()) {
+                // карты отложенного перевода тоже занимаются, чтобы следующие переводы по ним не обогнали его
+                free &= cards.add(number);
+            }
+            if (!free || group.size() >= maxSize) {
+                deferred.add(entry);
+            } else if (entry.start()) {
+                group.add(entry);
+            }
+        }
+        return group;
+    }
+
+    /**
+     * Передает группу обработчику. Если обработчик завершился ошибкой, она возвращается
+     * всем переводам группы, результат которых еще не завершен.
+     *
+     * @param applier обработчик группы
+     * @param group   переводы группы
+     */
+    private void apply(Consumer<List<Entry>> applier, List<Entry> group) {
+        try {
+            applier.accept(group);
+        } catch (RuntimeException e) {
+            log.error("Group of {} transfers failed", group.size(), e);
+            group.forEach(entry -> entry.result().completeExceptionally(e));
+        }
+    }
+
+    /**
+     * Перевод, ожидающий группового подтверждения.
+     *
+     * @param request        данные перевода
+     * @param idempotencyKey ключ идемпотентности (может отсутствовать)
+     * @param email          email пользователя
+     * @param amount         сумма перевода
+     * @param lockedCards    карты, которые перевод блокирует исключительно
+     * @param result         результат перевода, который ожидает вызывающий поток
+     * @param taken          признак того, что перевод взят в группу или отменен
+     */
+    public record Entry(TransferDtoRequest request, String idempotencyKey, String email, Money amount,
+                        List<String> lockedCards, CompletableFuture<TransferDtoResponse> result,
+                        AtomicBoolean taken) {
+
+        public Entry(TransferDtoRequest request, String idempotencyKey, String email, Money amount,
+                     List<String> lockedCards, CompletableFuture<TransferDtoResponse> result) {
+            this(request, idempotencyKey, email, amount, lockedCards, result, new AtomicBoolean());
+        }
+
+        /**
+         * Берет перевод в группу, если он еще не отменен.
+         *
+         * @return true если перевод взят в группу
+         */
+        boolean start() {
+            return taken.compareAndSet(false, true);
+        }
+
+        /**
+         * Отменяет перевод, если он еще не взят в группу.
+         *
+         * @return true если перевод отменен и не будет выполнен
+         */
+        boolean cancel() {
+            if (!taken.compareAndSet(false, true)) {
+                return false;
+            }
+            result.cancel(false);
+            return true;
+        }
+    }
+}
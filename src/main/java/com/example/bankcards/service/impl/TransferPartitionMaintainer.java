@@ -0,0 +1,82 @@
+package com.example.bankcards.service.impl;
+
+import com.example.bankcards.repository.TransferPartitionRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.YearMonth;
+import java.util.List;
+
+/**
+ * Обслуживание месячных секций таблицы переводов.
+ * Секции текущего и нескольких следующих месяцев создаются заранее, поэтому запись перевода
+ * никогда не ожидает создания секции. Если задан срок хранения, секции старше него отсоединяются:
+ * запросы истории перестают их затрагивать, а данные остаются в отдельных таблицах для архивации.
+ * Задача выполняется на каждом узле; операции повторяемы, и ошибка одного узла исправляется следующим запуском.
+ */
+@Slf4j
+@Component
+public class TransferPartitionMaintainer {
+
+    private final TransferPartitionRepository transferPartitionRepository;
+
+    private final int premakeMonths;
+
+    private final int retentionMonths;
+
+    public TransferPartitionMaintainer(
+            TransferPartitionRepository transferPartitionRepository,
+            @Value("${transfers.partitions.premake_months:3}") int premakeMonths,
+            @Value("${transfers.partitions.retention_months:0}") int retentionMonths) {
+        this.transferPartitionRepository = transferPartitionRepository;
+        this.premakeMonths = premakeMonths;
+        this.retentionMonths = retentionMonths;
+    }
+
+    @Scheduled(fixedDelayString = "${transfers.partitions.maintenance_interval:3600000}")
+    public void maintainPartitions() {
+        maintainPartitions(YearMonth.now());
+    }
+
+    /**
+     * Создает недостающие секции и отсоединяет секции старше срока хранения.
+     *
+     * @param current текущий месяц
+     */
+    void maintainPartitions(YearMonth current) {
+        List<YearMonth> attached = transferPartitionRepository.findAttached();
+
+        for (int i = 0; i <= premakeMonths; i++) {
+            YearMonth month = current.plusMonths(i);
+            if (!attached.contains(month)) {
+                apply("create", month, () -> transferPartitionRepository.create(month));
+            }
+        }
+
+        if (retentionMonths > 0) {
+            YearMonth oldestKept = current.minusMonths(retentionMonths);
+            attached.stream()
+                    .filter(month -> month.isBefore(oldestKept))
+                    .forEach(month -> apply("detach", month, () -> transferPartitionRepository.detach(month)));
+        }
+    }
+
+    /**
+     * Выполняет операцию над секцией. Ошибка записывается в журнал и не прерывает обслуживание остальных секций.
+     *
+     * @param action    название операции для журнала
+     * @param month     месяц секции
+     * @param operation операция
+     */
+    private void apply(String action, YearMonth month, Runnable operation) {
+        try {
+            operation.run();
+            log.info("Transfer partition {}: {}", action, TransferPartitionRepository.name(month));
+        } catch (DataAccessException e) {
+            log.warn("Transfer partition {} failed: {}", action, TransferPartitionRepository.name(month), e);
+        }
+    }
+}
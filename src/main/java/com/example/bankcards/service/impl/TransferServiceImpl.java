@@ -1,28 +1,71 @@
 package com.example.bankcards.service.impl;
 
+import com.example.bankcards.cache.CardSnapshot;
+import com.example.bankcards.cache.CardSnapshotCache;
+import com.example.bankcards.dto.card.CardDtoResponse;
+import com.example.bankcards.dto.page.KeysetPageDtoResponse;
 import com.example.bankcards.dto.page.PageDtoResponse;
+import com.example.bankcards.dto.transfer.TransferBatchDtoRequest;
+import com.example.bankcards.dto.transfer.TransferBatchDtoResponse;
+import com.example.bankcards.dto.transfer.TransferBatchItemDtoResponse;
 import com.example.bankcards.dto.transfer.TransferDtoRequest;
 import com.example.bankcards.dto.transfer.TransferDtoResponse;
+import com.example.bankcards.dto.transfer.TransferFilterDtoRequest;
 import com.example.bankcards.entity.card.Card;
 import com.example.bankcards.entity.card.CardStatus;
+import com.example.bankcards.entity.money.Money;
 import com.example.bankcards.entity.transfer.Transfer;
 import com.example.bankcards.entity.user.User;
+import com.example.bankcards.event.CardEvent;
+import com.example.bankcards.event.CardEventType;
+import com.example.bankcards.event.TransferEvent;
+import com.example.bankcards.exception.exceptions.ConflictRequestException;
 import com.example.bankcards.exception.exceptions.InvalidRequestException;
 import com.example.bankcards.exception.exceptions.ResourceNotFoundException;
-import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.lock.CardLockManager;
+import com.example.bankcards.repository.CardBalanceRepository;
+import com.example.bankcards.repository.IdempotencyKeyRepository;
+import com.example.bankcards.repository.TransferBatchRepository;
 import com.example.bankcards.repository.TransferRepository;
+import com.example.bankcards.repository.TransferSpecifications;
+import com.example.bankcards.repository.UserBalanceVersionRepository;
 import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.service.LedgerService;
+import com.example.bankcards.service.TransferAnalyticsService;
 import com.example.bankcards.service.TransferService;
+import com.example.bankcards.util.CardUtils;
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.Savepoint;
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Реализация сервиса для управления переводами между картами.
@@ -32,102 +75,529 @@ import java.util.List;
 @RequiredArgsConstructor
 public class TransferServiceImpl implements TransferService {
 
+    private static final int MAX_IDEMPOTENCY_KEY_LENGTH = 64;
+
+    private static final int PURGE_BATCH_SIZE = 1000;
+
+    private static final Sort HISTORY_ORDER = Sort.by(Sort.Direction.DESC, "time", "id");
+
     private final TransferRepository transferRepository;
-    private final CardRepository cardRepository;
+    private final CardBalanceRepository cardBalanceRepository;
     private final UserRepository userRepository;
+    private final CardSnapshotCache cardSnapshotCache;
+    private final ApplicationEventPublisher eventPublisher;
+    private final IdempotencyKeyRepository idempotencyKeyRepository;
+    private final TransferBatchRepository transferBatchRepository;
+    private final CardLockManager cardLockManager;
+    private final TransactionTemplate transactionTemplate;
+    private final TransferGroupCommitter transferGroupCommitter;
+    private final LedgerService ledgerService;
+    private final TransferAnalyticsService transferAnalyticsService;
+    private final UserBalanceVersionRepository userBalanceVersionRepository;
+
+    @Value("${idempotency.ttl:24h}")
+    private Duration idempotencyKeyTtl;
 
     /**
      * Выполняет перевод между двумя картами одного пользователя.
      * Проверяет принадлежность карт пользователю и достаточность средств на карте-отправителе.
+     * Владелец и статус карт проверяются по снимкам из кэша до изменения балансов.
+     * Списание и зачисление выполняются условными запросами без загрузки сущностей:
+     * достаточность средств и статус проверяются в том же запросе, что изменяет баланс,
+     * поэтому параллельные переводы с одной карты не теряют списаний.
+     * Ключ идемпотентности занимается в той же транзакции: повторный запрос с тем же ключом
+     * получает сохраненный результат без повторного перевода, а параллельный дубликат ожидает
+     * завершения первого запроса на уникальном индексе, не блокируя строки карт.
+     * Перед открытием транзакции захватываются локальные блокировки обеих карт, поэтому переводы
+     * по одной карте ожидают друг друга в JVM, не занимая соединения пула. Карта-получатель со слотами
+     * зачислений не блокируется: зачисление в слот не изменяет строку карты, и зачисления на неё
+     * выполняются параллельно.
+     * Если включено групповое подтверждение, перевод выполняется вместе с другими переводами,
+     * поступившими за короткое окно, в одной общей транзакции.
      *
-     * @param request объект TransferDtoRequest с данными для перевода
+     * @param request        объект TransferDtoRequest с данными для перевода
+     * @param idempotencyKey ключ идемпотентности (может отсутствовать)
      * @return TransferDtoResponse с информацией о выполненном переводе
-     * @throws com.example.bankcards.exception.exceptions.ResourceNotFoundException если карта не найдена
-     * @throws com.example.bankcards.exception.exceptions.InvalidRequestException   если карты не принадлежат пользователю
-     * @throws com.example.bankcards.exception.exceptions.ConflictRequestException  если попытка перевода на ту же карту
+     * @throws com.example.bankcards.exception.exceptions.ResourceNotFoundException  если карта не найдена
+     * @throws com.example.bankcards.exception.exceptions.InvalidRequestException    если карты не принадлежат пользователю
+     * @throws com.example.bankcards.exception.exceptions.ConflictRequestException   если ключ использован для другого перевода
+     * @throws com.example.bankcards.exception.exceptions.TooManyRequestsException  если карта долго занята другими операциями
      */
     @Override
-    @Transactional
-    public TransferDtoResponse transferBetweenCardsOneUser(TransferDtoRequest request) {
-        Card fromCard = findCardByNumber(request.getFromCardNumber());
-        Card toCard = findCardByNumber(request.getToCardNumber());
-
+    public TransferDtoResponse transferBetweenCardsOneUser(TransferDtoRequest request, String idempotencyKey) {
+        if (!CardUtils.isDigits16(request.getFromCardNumber()) || !CardUtils.isDigits16(request.getToCardNumber())) {
+            throw new InvalidRequestException("Card number must contain 16 digits");
+        }
         if (request.getFromCardNumber().equals(request.getToCardNumber())) {
             throw new InvalidRequestException("You can't make a transfer between the same card");
         }
 
+        Money amount = toMoney(request.getAmount());
+
         UserDetails principal = (UserDetails) SecurityContextHolder.getContext().getAuthentication().getPrincipal();
-        User user = userRepository
-                .findByEmail(principal.getUsername())
-                .orElseThrow(() -> new ResourceNotFoundException("User not found"));
+        String email = principal.getUsername();
+
+        if (idempotencyKey != null) {
+            checkIdempotencyKey(idempotencyKey);
+        }
+
+        if (transferGroupCommitter.isEnabled()) {
+            return transferGroupCommitter.submit(request, idempotencyKey, email, amount, lockedCards(request));
+        }
+
+        return transferLocked(request, idempotencyKey, email, amount);
+    }
+
+    /**
+     * Передает стадии группового подтверждения обработчик групп переводов.
+     */
+    @PostConstruct
+    public void startGroupCommit() {
+        transferGroupCommitter.start(this::commitGroup);
+    }
+
+    /**
+     * Выполняет перевод в отдельной транзакции при захваченных блокировках карт.
+     *
+     * @param request        объект TransferDtoRequest с данными для перевода
+     * @param idempotencyKey ключ идемпотентности (может отсутствовать)
+     * @param email          email пользователя
+     * @param amount         сумма перевода
+     * @return TransferDtoResponse с информацией о выполненном переводе
+     */
+    private TransferDtoResponse transferLocked(TransferDtoRequest request, String idempotencyKey, String email,
+                                               Money amount) {
+        try (CardLockManager.Locks ignored = cardLockManager.lock(lockedCards(request))) {
+            return transactionTemplate.execute(status -> {
+                TransferDtoResponse response = transfer(request, idempotencyKey, email, amount);
+                userBalanceVersionRepository.bump(List.of(email));
+                return response;
+            });
+        }
+    }
+
+    /**
+     * Возвращает карты перевода, которые блокируются локально на время его транзакции.
+     * Зачисление на карту со слотами не блокирует её строку, поэтому такая карта не блокируется;
+     * если снимок устарел, порядок изменений карты по-прежнему обеспечивают блокировки строк в БД.
+     *
+     * @param request данные перевода
+     * @return номера блокируемых карт
+     */
+    private List<String> lockedCards(TransferDtoRequest request) {
+        boolean creditToSlots = cardSnapshotCache.get(request.getToCardNumber())
+                .map(snapshot -> snapshot.balanceSlots() > 0)
+                .orElse(false);
+        return creditToSlots
+                ? List.of(request.getFromCardNumber())
+                : List.of(request.getFromCardNumber(), request.getToCardNumber());
+    }
 
-        if (!user.equals(fromCard.getUser()) || !user.equals(toCard.getUser())) {
+    /**
+     * Выполняет группу переводов без общих блокируемых карт в одной транзакции.
+     * Каждый перевод выполняется после точки сохранения: отклоненный перевод отменяется до нее
+     * и не влияет на остальные. Результаты передаются ожидающим потокам только после подтверждения транзакции.
+     * Если группа не удалась до подтверждения (блокировки, непредвиденная ошибка перевода), транзакция
+     * откатывается и переводы выполняются по одному. Если не удалось само подтверждение, транзакция могла быть применена,
+     * поэтому переводы не повторяются, чтобы не списать средства дважды, а ожидающие потоки получают ошибку.
+     *
+     * @param group переводы группы
+     */
+    private void commitGroup(List<TransferGroupCommitter.Entry> group) {
+        Set<String> numbers = new TreeSet<>();
+        group.forEach(entry -> numbers.addAll(entry.lockedCards()));
+
+        AtomicBoolean committing = new AtomicBoolean();
+        List<Runnable> completions;
+        try (CardLockManager.Locks ignored = cardLockManager.lock(numbers)) {
+            completions = transactionTemplate.execute(status -> {
+                List<Runnable> results = applyGroup(group, status);
+                // исключение до этой точки откатывает транзакцию, после нее исход подтверждения неизвестен
+                committing.set(true);
+                return results;
+            });
+        } catch (RuntimeException e) {
+            if (committing.get()) {
+                group.forEach(entry -> entry.result().completeExceptionally(e));
+                return;
+            }
+            group.forEach(entry -> {
+                try {
+                    entry.result().complete(
+                            transferLocked(entry.request(), entry.idempotencyKey(), entry.email(), entry.amount()));
+                } catch (RuntimeException transferException) {
+                    entry.result().completeExceptionally(transferException);
+                }
+            });
+            return;
+        }
+
+        completions.forEach(Runnable::run);
+    }
+
+    /**
+     * Выполняет переводы группы в открытой транзакции, каждый после своей точки сохранения.
+     *
+     * @param group  переводы группы
+     * @param status статус транзакции группы
+     * @return действия, передающие результаты ожидающим потокам
+     */
+    private List<Runnable> applyGroup(List<TransferGroupCommitter.Entry> group, TransactionStatus status) {
+        List<Runnable> results = new ArrayList<>(group.size());
+        Set<String> emails = new TreeSet<>();
+        for (TransferGroupCommitter.Entry entry : group) {
+            // записи предыдущих переводов сбрасываются до точки сохранения, иначе откат до нее
+            // мог бы отменить их отложенные INSERT
+            status.flush();
+            Savepoint savepoint = transferBatchRepository.setSavepoint();
+            try {
+                TransferDtoResponse response =
+                        transfer(entry.request(), entry.idempotencyKey(), entry.email(), entry.amount());
+                results.add(() -> entry.result().complete(response));
+                emails.add(entry.email());
+            } catch (InvalidRequestException | ResourceNotFoundException | ConflictRequestException e) {
+                transferBatchRepository.rollbackToSavepoint(savepoint);
+                results.add(() -> entry.result().completeExceptionally(e));
+            }
+        }
+        // версии всех пользователей группы увеличиваются в конце транзакции в порядке email
+        userBalanceVersionRepository.bump(emails);
+        return results;
+    }
+
+    /**
+     * Выполняет перевод в открытой транзакции при захваченных блокировках карт.
+     *
+     * @param request        объект TransferDtoRequest с данными для перевода
+     * @param idempotencyKey ключ идемпотентности (может отсутствовать)
+     * @param email          email пользователя
+     * @param amount         сумма перевода
+     * @return TransferDtoResponse с информацией о выполненном переводе
+     */
+    private TransferDtoResponse transfer(TransferDtoRequest request, String idempotencyKey, String email,
+                                         Money amount) {
+        if (idempotencyKey != null) {
+            if (!idempotencyKeyRepository.claim(email, idempotencyKey, request.getFromCardNumber(),
+                    request.getToCardNumber(), amount)) {
+                return replay(email, idempotencyKey, request, amount);
+            }
+        }
+
+        CardSnapshot fromSnapshot = findSnapshotByNumber(request.getFromCardNumber());
+        CardSnapshot toSnapshot = findSnapshotByNumber(request.getToCardNumber());
+
+        if (!fromSnapshot.isOwnedBy(email) || !toSnapshot.isOwnedBy(email)) {
             throw new InvalidRequestException("One or both of the cards do not belong to the user");
         }
 
-        if (fromCard.getStatus() != CardStatus.ACTIVE || toCard.getStatus() != CardStatus.ACTIVE) {
+        if (fromSnapshot.status() != CardStatus.ACTIVE || toSnapshot.status() != CardStatus.ACTIVE) {
             throw new InvalidRequestException("The cards have no active status");
         }
 
-        if (fromCard.getBalance().compareTo(request.getAmount()) < 0) {
-            throw new InvalidRequestException("There are not enough funds on the card from " +
-                    "which the transfer is being made");
+        Card fromCard;
+        Card toCard;
+        // строки изменяются в порядке номеров карт, поэтому встречные переводы не взаимоблокируются
+        if (request.getFromCardNumber().compareTo(request.getToCardNumber()) < 0) {
+            fromCard = debit(request.getFromCardNumber(), email, amount);
+            toCard = credit(toSnapshot, email, amount);
+        } else {
+            toCard = credit(toSnapshot, email, amount);
+            fromCard = debit(request.getFromCardNumber(), email, amount);
         }
 
-        fromCard.setBalance(fromCard.getBalance().subtract(request.getAmount()));
-        toCard.setBalance(toCard.getBalance().add(request.getAmount()));
-
         Transfer transfer = new Transfer(
-                user,
+                userRepository.getReferenceById(email),
                 fromCard.getNumber(),
                 toCard.getNumber(),
-                request.getAmount(),
+                amount,
                 LocalDateTime.now());
 
-        cardRepository.save(fromCard);
-        cardRepository.save(toCard);
         Transfer saveTransfer = transferRepository.save(transfer);
+        ledgerService.recordTransfer(saveTransfer);
+        // итоги карты со слотами распределяются по слотам, как и её зачисления
+        transferAnalyticsService.recordTransfers(List.of(saveTransfer), toSnapshot.balanceSlots() > 0
+                ? ThreadLocalRandom.current().nextInt(toSnapshot.balanceSlots()) : 0);
+        if (idempotencyKey != null) {
+            idempotencyKeyRepository.complete(email, idempotencyKey, saveTransfer.getTime());
+        }
 
-        return mapperToDto(saveTransfer);
+        TransferDtoResponse response = mapperToDto(saveTransfer);
+        eventPublisher.publishEvent(new CardEvent(email, fromCard.getNumber(), CardEventType.BALANCE_CHANGED,
+                mapperToCardDto(fromCard)));
+        eventPublisher.publishEvent(new CardEvent(email, toCard.getNumber(), CardEventType.BALANCE_CHANGED,
+                mapperToCardDto(toCard)));
+        eventPublisher.publishEvent(new TransferEvent(email, response));
+
+        return response;
     }
 
     /**
-     * Получает записи о всех переводах в системе с пагинацией.
+     * Выполняет пакет переводов между картами пользователя в одной транзакции.
+     * Все карты пакета блокируются одним запросом в порядке номеров, переводы проверяются последовательно
+     * по балансам в памяти, после чего итоговое изменение каждой карты применяется одним запросом,
+     * а записи о переводах вставляются пакетами JDBC.
+     * В атомарном режиме первый отклоненный перевод отменяет весь пакет,
+     * иначе отклоненные переводы пропускаются, а остальные выполняются.
+     * О каждой карте с изменившимся балансом публикуется одно событие.
+     * Как и одиночный перевод, пакет захватывает локальные блокировки своих карт до открытия транзакции.
+     * Блокируются только карты пользователя по снимкам из кэша: номера чужих и несуществующих карт
+     * не блокируются ни в JVM, ни в БД, а переводы с ними отклоняются.
+     *
+     * @param request объект TransferBatchDtoRequest с переводами и режимом выполнения
+     * @return TransferBatchDtoResponse с результатом каждого перевода
+     * @throws InvalidRequestException  если в атомарном режиме какой-либо перевод отклонен
+     * @throws com.example.bankcards.exception.exceptions.TooManyRequestsException если карты долго заняты
+     */
+    @Override
+    public TransferBatchDtoResponse transferBatch(TransferBatchDtoRequest request) {
+        UserDetails principal = (UserDetails) SecurityContextHolder.getContext().getAuthentication().getPrincipal();
+        String email = principal.getUsername();
+
+        Set<String> numbers = new TreeSet<>();
+        request.getTransfers().forEach(item -> {
+            numbers.add(item.getFromCardNumber());
+            numbers.add(item.getToCardNumber());
+        });
+        // чужие карты отсеиваются до захвата блокировок, чтобы пакет не мог заблокировать их строки
+        numbers.removeIf(number -> cardSnapshotCache.get(number)
+                .filter(snapshot -> snapshot.isOwnedBy(email))
+                .isEmpty());
+
+        try (CardLockManager.Locks ignored = cardLockManager.lock(numbers)) {
+            return transactionTemplate.execute(status -> transferBatch(request, numbers, email));
+        }
+    }
+
+    /**
+     * Выполняет пакет переводов в открытой транзакции при захваченных блокировках карт.
+     *
+     * @param request объект TransferBatchDtoRequest с переводами и режимом выполнения
+     * @param numbers номера карт пакета, принадлежащих пользователю, в порядке возрастания
+     * @param email   email пользователя
+     * @return TransferBatchDtoResponse с результатом каждого перевода
+     */
+    private TransferBatchDtoResponse transferBatch(TransferBatchDtoRequest request, Set<String> numbers,
+                                                   String email) {
+        boolean atomic = request.getAtomic();
+
+        Map<String, Card> cards = new HashMap<>();
+        cardBalanceRepository.findAllForUpdate(numbers, email).forEach(card -> cards.put(card.getNumber(), card));
+
+        Map<String, Money> balances = new HashMap<>();
+        cards.values().forEach(card -> balances.put(card.getNumber(), card.getTotalBalance()));
+        Map<String, Money> deltas = new TreeMap<>();
+
+        User user = userRepository.getReferenceById(email);
+        LocalDateTime time = LocalDateTime.now();
+        List<Transfer> transfers = new ArrayList<>();
+        List<TransferBatchItemDtoResponse> items = new ArrayList<>();
+
+        for (int i = 0; i < request.getTransfers().size(); i++) {
+            TransferDtoRequest item = request.getTransfers().get(i);
+            String error = checkBatchItem(item, cards, balances, email);
+            if (error != null) {
+                if (atomic) {
+                    throw new InvalidRequestException("Transfer #" + i + ": " + error);
+                }
+                items.add(TransferBatchItemDtoResponse.builder().index(i).error(error).build());
+                continue;
+            }
+
+            Money amount = Money.of(item.getAmount());
+            balances.merge(item.getFromCardNumber(), amount, Money::minus);
+            balances.merge(item.getToCardNumber(), amount, Money::plus);
+            deltas.merge(item.getFromCardNumber(), Money.ZERO.minus(amount), Money::plus);
+            deltas.merge(item.getToCardNumber(), amount, Money::plus);
+
+            Transfer transfer = new Transfer(user, item.getFromCardNumber(), item.getToCardNumber(), amount, time);
+            transfers.add(transfer);
+            items.add(TransferBatchItemDtoResponse.builder().index(i).transfer(mapperToDto(transfer)).build());
+        }
+
+        deltas.values().removeIf(Money.ZERO::equals);
+        if (!transfers.isEmpty()) {
+            // переводы проверены по балансу вместе со слотами, поэтому перед списанием слоты переносятся в баланс
+            deltas.forEach((number, delta) -> {
+                Money slotsBalance = cards.get(number).getSlotsBalance();
+                if (delta.isLessThan(Money.ZERO) && slotsBalance != null && !slotsBalance.equals(Money.ZERO)) {
+                    cardBalanceRepository.sweepSlots(number);
+                }
+            });
+            cardBalanceRepository.addBalances(deltas);
+            transferBatchRepository.insertAll(transfers);
+            ledgerService.recordTransfers(transfers);
+            transferAnalyticsService.recordTransfers(transfers, 0);
+            userBalanceVersionRepository.bump(List.of(email));
+
+            deltas.keySet().forEach(number -> {
+                Card card = cards.get(number);
+                // итоговый баланс с учетом слотов
+                card.setBalance(balances.get(number));
+                card.setSlotsBalance(Money.ZERO);
+                eventPublisher.publishEvent(new CardEvent(email, number, CardEventType.BALANCE_CHANGED,
+                        mapperToCardDto(card)));
+            });
+            // каждый выполненный перевод пакета попадает в outbox так же, как одиночный
+            items.stream()
+                    .filter(item -> item.getTransfer() != null)
+                    .forEach(item -> eventPublisher.publishEvent(new TransferEvent(email, item.getTransfer())));
+        }
+
+        return TransferBatchDtoResponse.builder()
+                .completed(transfers.size())
+                .rejected(items.size() - transfers.size())
+                .items(items)
+                .build();
+    }
+
+    /**
+     * Периодически удаляет ключи идемпотентности старше срока хранения.
+     * Ключи удаляются порциями, чтобы не удерживать блокировки долго.
+     */
+    @Scheduled(fixedDelayString = "${idempotency.purge_interval:3600000}")
+    public void purgeExpiredIdempotencyKeys() {
+        LocalDateTime expiredBefore = LocalDateTime.now().minus(idempotencyKeyTtl);
+        int deleted;
+        do {
+            deleted = idempotencyKeyRepository.deleteCreatedBefore(expiredBefore, PURGE_BATCH_SIZE);
+        } while (deleted == PURGE_BATCH_SIZE);
+    }
+
+    /**
+     * Получает записи о всех переводах в системе с пагинацией и фильтрами.
      * Метод доступен только для администраторов.
      *
+     * @param filter     фильтры истории
      * @param pageNumber номер страницы (начинается с 0)
      * @param pageSize   количество записей на странице
      * @return PageDtoResponse<TransferDtoResponse> страница с историей переводов
+     * @throws InvalidRequestException если фильтры противоречат друг другу
      */
     @Override
-    public PageDtoResponse<TransferDtoResponse> getAll(int pageNumber, int pageSize) {
-        Page<Transfer> pageTransfers = transferRepository.findAll(PageRequest.of(pageNumber, pageSize));
+    public PageDtoResponse<TransferDtoResponse> getAll(TransferFilterDtoRequest filter, int pageNumber, int pageSize) {
+        Page<Transfer> pageTransfers = transferRepository.findAll(
+                historySpecification(filter), PageRequest.of(pageNumber, pageSize, HISTORY_ORDER));
 
-        List<TransferDtoResponse> content = pageTransfers.getContent().stream()
-                .map(this::mapperToDto)
-                .toList();
-
-        return new PageDtoResponse<>(
-                content,
-                pageTransfers.getTotalElements(),
-                pageTransfers.getTotalPages(),
-                pageTransfers.getNumber());
+        return toPage(pageTransfers);
     }
 
     /**
-     * Получает записи о всех переводах текущего пользователя с пагинацией.
+     * Получает записи о всех переводах текущего пользователя с пагинацией и фильтрами.
      * Пользователь может видеть только свои собственные переводы.
      *
+     * @param filter     фильтры истории
      * @param pageNumber номер страницы (начинается с 0)
      * @param pageSize   количество записей на странице
      * @return PageDtoResponse<TransferDtoResponse> страница с историей переводов пользователя
+     * @throws InvalidRequestException если фильтры противоречат друг другу
+     */
+    @Override
+    public PageDtoResponse<TransferDtoResponse> getAllByUser(TransferFilterDtoRequest filter, int pageNumber,
+                                                             int pageSize) {
+        UserDetails principal = (UserDetails) SecurityContextHolder.getContext().getAuthentication().getPrincipal();
+        Page<Transfer> pageTransfers = transferRepository.findAll(
+                historySpecification(filter).and(TransferSpecifications.ownedBy(principal.getUsername())),
+                PageRequest.of(pageNumber, pageSize, HISTORY_ORDER));
+
+        return toPage(pageTransfers);
+    }
+
+    /**
+     * Получает записи о всех переводах в системе, начиная с самых новых, с фильтрами.
+     * Страницы продолжаются по курсору (время и идентификатор последнего перевода предыдущей страницы),
+     * поэтому время выдачи страницы не зависит от её глубины.
+     * Метод доступен только для администраторов.
+     *
+     * @param filter   фильтры истории
+     * @param cursor   курсор из предыдущего ответа (null для первой страницы)
+     * @param pageSize количество записей на странице
+     * @return KeysetPageDtoResponse<TransferDtoResponse> страница с историей переводов
+     * @throws InvalidRequestException если курсор некорректен или фильтры противоречат друг другу
+     */
+    @Override
+    public KeysetPageDtoResponse<TransferDtoResponse> getHistory(TransferFilterDtoRequest filter, String cursor,
+                                                                 int pageSize) {
+        return findHistoryPage(historySpecification(filter), cursor, pageSize);
+    }
+
+    /**
+     * Получает записи о переводах текущего пользователя, начиная с самых новых, с фильтрами.
+     * Страницы продолжаются по курсору (время и идентификатор последнего перевода предыдущей страницы),
+     * выборка идет по индексу (user_email, time, id), поэтому время выдачи страницы не зависит от её глубины.
+     *
+     * @param filter   фильтры истории
+     * @param cursor   курсор из предыдущего ответа (null для первой страницы)
+     * @param pageSize количество записей на странице
+     * @return KeysetPageDtoResponse<TransferDtoResponse> страница с историей переводов пользователя
+     * @throws InvalidRequestException если курсор некорректен или фильтры противоречат друг другу
      */
     @Override
-    public PageDtoResponse<TransferDtoResponse> getAllByUser(int pageNumber, int pageSize) {
+    public KeysetPageDtoResponse<TransferDtoResponse> getHistoryByUser(TransferFilterDtoRequest filter, String cursor,
+                                                                       int pageSize) {
         UserDetails principal = (UserDetails) SecurityContextHolder.getContext().getAuthentication().getPrincipal();
-        Page<Transfer> pageTransfers = transferRepository
-                .findAllByUser_Email(principal.getUsername(), PageRequest.of(pageNumber, pageSize));
 
+        return findHistoryPage(
+                historySpecification(filter).and(TransferSpecifications.ownedBy(principal.getUsername())),
+                cursor, pageSize);
+    }
+
+    /**
+     * Проверяет фильтры истории и строит по ним условие выборки.
+     *
+     * @param filter фильтры истории
+     * @return условие выборки с загрузкой пользователя
+     * @throws InvalidRequestException если фильтры противоречат друг другу
+     */
+    private Specification<Transfer> historySpecification(TransferFilterDtoRequest filter) {
+        if (filter.getFromTime() != null && filter.getToTime() != null
+                && !filter.getFromTime().isBefore(filter.getToTime())) {
+            throw new InvalidRequestException("The start of the period must be before its end");
+        }
+        if (filter.getMinAmount() != null && filter.getMaxAmount() != null
+                && filter.getMinAmount().compareTo(filter.getMaxAmount()) > 0) {
+            throw new InvalidRequestException("The minimum amount must not exceed the maximum amount");
+        }
+        if (filter.getDirection() != null && filter.getCardNumber() == null) {
+            throw new InvalidRequestException("The direction filter requires a card number");
+        }
+        try {
+            Optional.ofNullable(filter.getMinAmount()).ifPresent(Money::of);
+            Optional.ofNullable(filter.getMaxAmount()).ifPresent(Money::of);
+        } catch (ArithmeticException e) {
+            throw new InvalidRequestException("The amount must have no more than two decimal places");
+        }
+
+        return TransferSpecifications.fetchUser().and(TransferSpecifications.matching(filter));
+    }
+
+    /**
+     * Выбирает страницу истории по курсору, запрашивая одну лишнюю запись для определения следующей страницы.
+     *
+     * @param specification условие выборки
+     * @param cursor        курсор из предыдущего ответа (null для первой страницы)
+     * @param pageSize      количество записей на странице
+     * @return страница истории
+     * @throws InvalidRequestException если курсор некорректен
+     */
+    private KeysetPageDtoResponse<TransferDtoResponse> findHistoryPage(Specification<Transfer> specification,
+                                                                       String cursor, int pageSize) {
+        HistoryCursor after = HistoryCursor.decode(cursor);
+        if (after != null) {
+            specification = specification.and(TransferSpecifications.before(after.time(), after.id()));
+        }
+        List<Transfer> transfers = transferRepository.findBy(specification,
+                query -> query.sortBy(HISTORY_ORDER).limit(pageSize + 1).all());
+
+        return toHistoryPage(transfers, pageSize);
+    }
+
+    /**
+     * Преобразует страницу переводов в DTO.
+     *
+     * @param pageTransfers страница переводов
+     * @return PageDtoResponse<TransferDtoResponse> страница с историей переводов
+     */
+    private PageDtoResponse<TransferDtoResponse> toPage(Page<Transfer> pageTransfers) {
         List<TransferDtoResponse> content = pageTransfers.getContent().stream()
                 .map(this::mapperToDto)
                 .toList();
@@ -140,17 +610,216 @@ public class TransferServiceImpl implements TransferService {
     }
 
     /**
-     * Находит карту по её номеру в репозитории.
+     * Формирует страницу истории из выборки, запрошенной с одной лишней записью.
+     *
+     * @param transfers переводы, не более pageSize + 1
+     * @param pageSize  количество записей на странице
+     * @return страница истории с курсором, если есть следующая страница
+     */
+    private KeysetPageDtoResponse<TransferDtoResponse> toHistoryPage(List<Transfer> transfers, int pageSize) {
+        boolean hasNext = transfers.size() > pageSize;
+        List<Transfer> page = hasNext ? transfers.subList(0, pageSize) : transfers;
+
+        return new KeysetPageDtoResponse<>(
+                page.stream().map(this::mapperToDto).toList(),
+                hasNext ? HistoryCursor.of(page.get(page.size() - 1)).encode() : null);
+    }
+
+    /**
+     * Проверяет перевод из пакета по заблокированным картам и текущим балансам пакета.
+     *
+     * @param item     перевод
+     * @param cards    заблокированные карты по номеру
+     * @param balances балансы карт с учетом уже выполненных переводов пакета
+     * @param email    email пользователя
+     * @return причина отклонения или null, если перевод может быть выполнен
+     */
+    private String checkBatchItem(TransferDtoRequest item, Map<String, Card> cards, Map<String, Money> balances,
+                                  String email) {
+        if (!CardUtils.isDigits16(item.getFromCardNumber()) || !CardUtils.isDigits16(item.getToCardNumber())) {
+            return "Card number must contain 16 digits";
+        }
+        if (item.getFromCardNumber().equals(item.getToCardNumber())) {
+            return "You can't make a transfer between the same card";
+        }
+
+        Money amount;
+        try {
+            amount = Money.of(item.getAmount());
+        } catch (ArithmeticException e) {
+            return "The amount must have no more than two decimal places";
+        }
+
+        Card fromCard = cards.get(item.getFromCardNumber());
+        Card toCard = cards.get(item.getToCardNumber());
+        if (fromCard == null || toCard == null) {
+            String number = fromCard == null ? item.getFromCardNumber() : item.getToCardNumber();
+            return "Card with number= " + number + " was not found";
+        }
+
+        if (!fromCard.getUser().getEmail().equals(email) || !toCard.getUser().getEmail().equals(email)) {
+            return "One or both of the cards do not belong to the user";
+        }
+
+        if (fromCard.getStatus() != CardStatus.ACTIVE || toCard.getStatus() != CardStatus.ACTIVE) {
+            return "The cards have no active status";
+        }
+
+        if (balances.get(item.getFromCardNumber()).isLessThan(amount)) {
+            return "There are not enough funds on the card from which the transfer is being made";
+        }
+
+        return null;
+    }
+
+    /**
+     * Проверяет формат ключа идемпотентности.
+     *
+     * @param idempotencyKey ключ идемпотентности
+     * @throws InvalidRequestException если ключ пустой или длиннее допустимого
+     */
+    private void checkIdempotencyKey(String idempotencyKey) {
+        if (idempotencyKey.isBlank() || idempotencyKey.length() > MAX_IDEMPOTENCY_KEY_LENGTH) {
+            throw new InvalidRequestException("Idempotency-Key must contain from 1 to " +
+                    MAX_IDEMPOTENCY_KEY_LENGTH + " characters");
+        }
+    }
+
+    /**
+     * Возвращает сохраненный результат перевода, ранее выполненного с тем же ключом.
+     *
+     * @param email          email пользователя
+     * @param idempotencyKey ключ идемпотентности
+     * @param request        повторный запрос
+     * @param amount         сумма повторного запроса
+     * @return сохраненный результат перевода
+     * @throws ConflictRequestException если ключ использован для другого перевода
+     */
+    private TransferDtoResponse replay(String email, String idempotencyKey, TransferDtoRequest request,
+                                       Money amount) {
+        TransferDtoResponse stored = idempotencyKeyRepository.find(email, idempotencyKey)
+                .orElseThrow(() -> new ConflictRequestException("The transfer with this Idempotency-Key " +
+                        "is still being processed"));
+
+        if (!stored.getFromCardNumber().equals(request.getFromCardNumber())
+                || !stored.getToCardNumber().equals(request.getToCardNumber())
+                || !stored.getAmount().equals(amount)) {
+            throw new ConflictRequestException("Idempotency-Key has already been used for another transfer");
+        }
+
+        if (stored.getTime() == null) {
+            throw new ConflictRequestException("The transfer with this Idempotency-Key is still being processed");
+        }
+
+        return stored;
+    }
+
+    /**
+     * Списывает сумму с карты пользователя.
+     * Если основного баланса не хватает, в него переносятся зачисления из слотов и списание повторяется.
+     * Если списание не выполнено, причина определяется по свежему снимку карты.
+     *
+     * @param cardNumber номер карты
+     * @param email      email владельца карты
+     * @param amount     сумма списания
+     * @return карта после списания
+     * @throws ResourceNotFoundException если карта была удалена
+     * @throws InvalidRequestException   если карта не активна или на ней недостаточно средств
+     */
+    private Card debit(String cardNumber, String email, Money amount) {
+        Optional<Card> card = cardBalanceRepository.debit(cardNumber, email, amount);
+        if (card.isEmpty() && cardBalanceRepository.sweepSlots(cardNumber)) {
+            card = cardBalanceRepository.debit(cardNumber, email, amount);
+        }
+
+        return card.orElseThrow(() -> {
+            checkActive(findFreshSnapshotByNumber(cardNumber));
+            return new InvalidRequestException("There are not enough funds on the card from " +
+                    "which the transfer is being made");
+        });
+    }
+
+    /**
+     * Зачисляет сумму на карту пользователя.
+     * На карту со слотами сумма зачисляется в случайный слот, не блокируя строку карты.
+     * Если зачисление не выполнено, причина определяется по свежему снимку карты;
+     * при изменившемся количестве слотов зачисление повторяется по свежему снимку.
+     *
+     * @param snapshot снимок карты
+     * @param email    email владельца карты
+     * @param amount   сумма зачисления
+     * @return карта после зачисления
+     * @throws ResourceNotFoundException если карта была удалена
+     * @throws InvalidRequestException   если карта не активна
+     */
+    private Card credit(CardSnapshot snapshot, String email, Money amount) {
+        Optional<Card> card = snapshot.balanceSlots() > 0
+                ? cardBalanceRepository.creditSlot(snapshot.number(), email,
+                ThreadLocalRandom.current().nextInt(snapshot.balanceSlots()), amount)
+                : cardBalanceRepository.credit(snapshot.number(), email, amount);
+
+        return card.orElseGet(() -> {
+            CardSnapshot fresh = findFreshSnapshotByNumber(snapshot.number());
+            checkActive(fresh);
+            if (fresh.balanceSlots() != snapshot.balanceSlots()) {
+                return credit(fresh, email, amount);
+            }
+            throw new InvalidRequestException("The cards have no active status");
+        });
+    }
+
+    /**
+     * Проверяет, что карта активна.
+     *
+     * @param snapshot снимок карты
+     * @throws InvalidRequestException если карта не активна
+     */
+    private void checkActive(CardSnapshot snapshot) {
+        if (snapshot.status() != CardStatus.ACTIVE) {
+            throw new InvalidRequestException("The cards have no active status");
+        }
+    }
+
+    /**
+     * Преобразует сумму из запроса в минимальные единицы.
+     *
+     * @param amount сумма из запроса
+     * @return сумма перевода
+     * @throws InvalidRequestException если у суммы больше двух знаков после запятой
+     */
+    private Money toMoney(BigDecimal amount) {
+        try {
+            return Money.of(amount);
+        } catch (ArithmeticException e) {
+            throw new InvalidRequestException("The amount must have no more than two decimal places");
+        }
+    }
+
+    /**
+     * Находит снимок карты по её номеру через кэш.
      *
      * @param cardNumber номер карты для поиска
-     * @return сущность Card
+     * @return снимок карты
      * @throws ResourceNotFoundException если карта с указанным номером не найдена
      */
-    private Card findCardByNumber(String cardNumber) {
-        return cardRepository.findByNumber(cardNumber)
+    private CardSnapshot findSnapshotByNumber(String cardNumber) {
+        return cardSnapshotCache.get(cardNumber)
                 .orElseThrow(() -> new ResourceNotFoundException("Card with number= " + cardNumber + " was not found"));
     }
 
+    /**
+     * Находит снимок карты по её номеру в обход кэшированного значения.
+     * Используется для определения причины отказа, когда кэш мог устареть.
+     *
+     * @param cardNumber номер карты для поиска
+     * @return снимок карты
+     * @throws ResourceNotFoundException если карта с указанным номером не найдена
+     */
+    private CardSnapshot findFreshSnapshotByNumber(String cardNumber) {
+        cardSnapshotCache.evict(cardNumber);
+        return findSnapshotByNumber(cardNumber);
+    }
+
     /**
      * Преобразует сущность Transfer в DTO объект TransferDtoResponse.
      *
@@ -167,4 +836,53 @@ public class TransferServiceImpl implements TransferService {
                 .time(transfer.getTime())
                 .build();
     }
+
+    /**
+     * Преобразует сущность Card в DTO объект CardDtoResponse для события изменения баланса.
+     * Маскирует номер карты для безопасности.
+     *
+     * @param card сущность карты
+     * @return CardDtoResponse с данными карты
+     */
+    private CardDtoResponse mapperToCardDto(Card card) {
+        return CardDtoResponse.builder()
+                .maskedCardNumber(CardUtils.getMaskedCardNumber(card.getNumber()))
+                .email(card.getUser().getEmail())
+                .fullNameUser(card.getFullNameUser())
+                .expirationDate(card.getExpirationDate())
+                .status(card.getStatus())
+                .balance(card.getTotalBalance())
+                .build();
+    }
+
+    /**
+     * Позиция в истории переводов: время и идентификатор последнего перевода страницы.
+     * Передается клиенту в виде непрозрачной строки.
+     *
+     * @param time время перевода
+     * @param id   идентификатор перевода
+     */
+    private record HistoryCursor(LocalDateTime time, long id) {
+
+        private static HistoryCursor of(Transfer transfer) {
+            return new HistoryCursor(transfer.getTime(), transfer.getId());
+        }
+
+        private static HistoryCursor decode(String cursor) {
+            if (cursor == null || cursor.isEmpty()) {
+                return null;
+            }
+            try {
+                String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split("_");
+                return new HistoryCursor(LocalDateTime.parse(parts[0]), Long.parseLong(parts[1]));
+            } catch (IllegalArgumentException | DateTimeParseException | ArrayIndexOutOfBoundsException e) {
+                throw new InvalidRequestException("Invalid cursor");
+            }
+        }
+
+        private String encode() {
+            return Base64.getUrlEncoder().withoutPadding()
+                    .encodeToString((time + "_" + id).getBytes(StandardCharsets.UTF_8));
+        }
+    }
 }
@@ -1,5 +1,6 @@
 package com.example.bankcards.service.impl;
 
+import com.example.bankcards.cache.CardSnapshotCache;
 import com.example.bankcards.dto.page.PageDtoResponse;
 import com.example.bankcards.dto.user.UserDtoResponse;
 import com.example.bankcards.entity.user.User;
@@ -22,6 +23,7 @@ import java.util.List;
 public class UserServiceImpl implements UserService {
 
     private final UserRepository userRepository;
+    private final CardSnapshotCache cardSnapshotCache;
 
     /**
      * Получает информацию о пользователе по email.
@@ -61,6 +63,7 @@ public class UserServiceImpl implements UserService {
 
     /**
      * Удаляет пользователя по email.
+     * Карты пользователя удаляются каскадно и вытесняются из кэша снимков карт.
      * Метод доступен только для администраторов.
      *
      * @param email email пользователя для удаления
@@ -69,7 +72,11 @@ public class UserServiceImpl implements UserService {
     @Override
     @Transactional
     public void deleteByEmail(String email) {
-        userRepository.delete(findUserByEmail(email));
+        User user = findUserByEmail(email);
+        if (user.getCards() != null) {
+            user.getCards().forEach(card -> cardSnapshotCache.evict(card.getNumber()));
+        }
+        userRepository.delete(user);
     }
 
     /**
@@ -2,30 +2,195 @@ package com.example.bankcards.util;
 
 /**
  * Утилитарный класс для работы с банковскими картами.
- * Содержит методы для валидации и маскировки номеров карт.
+ * Содержит методы для проверки, вычисления контрольной цифры, упаковки и маскировки номеров карт.
+ * Все методы работают без регулярных выражений и промежуточных строк.
  */
 public final class CardUtils {
 
     /**
-     * Проверяет валидность номера банковской карты.
-     * Номер карты должен состоять ровно из 16 цифр.
+     * Длина номера карты в цифрах.
+     */
+    public static final int CARD_NUMBER_LENGTH = 16;
+
+    /**
+     * Длина маскированного номера карты в формате "**** **** **** XXXX".
+     */
+    public static final int MASKED_CARD_NUMBER_LENGTH = 19;
+
+    private static final String MASK_PREFIX = "**** **** **** ";
+
+    private static final int VISIBLE_DIGITS = 4;
+
+    /**
+     * Кэш маскированных номеров: маска зависит только от последних 4 цифр,
+     * поэтому вариантов всего 10 000 и каждый создается не более одного раза.
+     */
+    private static final String[] MASKED_CACHE = new String[10_000];
+
+    private CardUtils() {
+    }
+
+    /**
+     * Проверяет, что номер карты состоит ровно из 16 цифр.
+     * Используется для проверки входящих номеров: карты, выпущенные до перехода на алгоритм Луна,
+     * не имеют корректной контрольной цифры, но остаются действительными.
+     * Проверка выполняется за один проход по строке без выделения памяти.
+     *
+     * @param cardNumber номер карты для проверки
+     * @return true если номер состоит из 16 цифр, иначе false
+     */
+    public static boolean isDigits16(CharSequence cardNumber) {
+        if (cardNumber == null || cardNumber.length() != CARD_NUMBER_LENGTH) {
+            return false;
+        }
+        for (int i = 0; i < CARD_NUMBER_LENGTH; i++) {
+            char c = cardNumber.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Проверяет, что номер карты состоит из 16 цифр и имеет корректную контрольную цифру по алгоритму Луна.
+     * Применим к номерам, выпущенным сервером, но не ко входящим номерам (см. {@link #isDigits16(CharSequence)}).
+     * Проверка выполняется за один проход по строке без выделения памяти.
      *
      * @param cardNumber номер карты для проверки
      * @return true если номер карты валиден, иначе false
      */
-    public static boolean validateCardNumber(String cardNumber) {
-        return cardNumber.matches("[0-9]{16}");
+    public static boolean isLuhnValid(CharSequence cardNumber) {
+        if (cardNumber == null || cardNumber.length() != CARD_NUMBER_LENGTH) {
+            return false;
+        }
+
+        int sum = 0;
+        for (int i = CARD_NUMBER_LENGTH - 1, position = 0; i >= 0; i--, position++) {
+            int digit = cardNumber.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return false;
+            }
+            if ((position & 1) == 1) {
+                digit <<= 1;
+                if (digit > 9) {
+                    digit -= 9;
+                }
+            }
+            sum += digit;
+        }
+        return sum % 10 == 0;
+    }
+
+    /**
+     * Вычисляет контрольную цифру по алгоритму Луна для 15 первых цифр номера карты.
+     *
+     * @param payload первые 15 цифр номера карты в виде числа
+     * @return контрольная цифра (0-9)
+     */
+    public static int luhnCheckDigit(long payload) {
+        int sum = 0;
+        // крайняя правая цифра payload стоит перед контрольной и удваивается
+        for (int position = 1; position < CARD_NUMBER_LENGTH; position++, payload /= 10) {
+            int digit = (int) (payload % 10);
+            if ((position & 1) == 1) {
+                digit <<= 1;
+                if (digit > 9) {
+                    digit -= 9;
+                }
+            }
+            sum += digit;
+        }
+        return (10 - sum % 10) % 10;
+    }
+
+    /**
+     * Упаковывает 16-значный номер карты в число long.
+     * Используется как компактный ключ для хранения номеров в памяти.
+     *
+     * @param cardNumber номер карты из 16 цифр
+     * @return номер карты в виде числа
+     * @throws IllegalArgumentException если строка не является 16-значным номером
+     */
+    public static long packCardNumber(CharSequence cardNumber) {
+        if (!isDigits16(cardNumber)) {
+            throw new IllegalArgumentException("Card number must contain " + CARD_NUMBER_LENGTH + " digits");
+        }
+
+        long packed = 0;
+        for (int i = 0; i < CARD_NUMBER_LENGTH; i++) {
+            packed = packed * 10 + (cardNumber.charAt(i) - '0');
+        }
+        return packed;
+    }
+
+    /**
+     * Восстанавливает строковое представление номера карты из упакованного числа.
+     * Ведущие нули сохраняются.
+     *
+     * @param packed номер карты, полученный из {@link #packCardNumber(CharSequence)}
+     * @return номер карты из 16 цифр
+     */
+    public static String unpackCardNumber(long packed) {
+        char[] digits = new char[CARD_NUMBER_LENGTH];
+        for (int i = CARD_NUMBER_LENGTH - 1; i >= 0; i--, packed /= 10) {
+            digits[i] = (char) ('0' + packed % 10);
+        }
+        return new String(digits);
     }
 
     /**
      * Маскирует номер банковской карты для безопасного отображения.
      * Заменяет первые 12 цифр на звездочки, оставляя видимыми последние 4 цифры.
      * Формат маскировки: "**** **** **** XXXX", где XXXX - последние 4 цифры номера карты.
+     * Маскированные строки кэшируются, повторный вызов для тех же 4 цифр не выделяет память.
      *
      * @param cardNumber номер карты для маскировки
      * @return маскированный номер карты в формате "**** **** **** XXXX"
      */
     public static String getMaskedCardNumber(String cardNumber) {
-        return "**** **** **** " + cardNumber.substring(12);
+        int suffix = parseVisibleDigits(cardNumber);
+        if (suffix < 0) {
+            return MASK_PREFIX + cardNumber.substring(cardNumber.length() - VISIBLE_DIGITS);
+        }
+
+        String masked = MASKED_CACHE[suffix];
+        if (masked == null) {
+            masked = MASK_PREFIX + cardNumber.substring(cardNumber.length() - VISIBLE_DIGITS);
+            MASKED_CACHE[suffix] = masked;
+        }
+        return masked;
+    }
+
+    /**
+     * Дописывает маскированный номер карты в переданный буфер.
+     * Позволяет формировать вывод (например, выгрузку) без создания промежуточных строк.
+     *
+     * @param target     буфер для записи
+     * @param cardNumber номер карты для маскировки
+     * @return переданный буфер
+     */
+    public static StringBuilder appendMaskedCardNumber(StringBuilder target, CharSequence cardNumber) {
+        int length = cardNumber.length();
+        return target.append(MASK_PREFIX).append(cardNumber, length - VISIBLE_DIGITS, length);
+    }
+
+    /**
+     * Извлекает последние 4 цифры номера карты в виде числа для индексации кэша.
+     *
+     * @param cardNumber номер карты
+     * @return число от 0 до 9999 или -1, если последние 4 символа не цифры
+     */
+    private static int parseVisibleDigits(String cardNumber) {
+        int length = cardNumber.length();
+        int value = 0;
+        for (int i = length - VISIBLE_DIGITS; i < length; i++) {
+            int digit = cardNumber.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return -1;
+            }
+            value = value * 10 + digit;
+        }
+        return value;
     }
 }
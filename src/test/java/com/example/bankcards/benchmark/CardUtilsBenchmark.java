@@ -0,0 +1,86 @@
+package com.example.bankcards.benchmark;
+
+import com.example.bankcards.util.CardUtils;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сравнение {@link CardUtils} с прежней реализацией на регулярном выражении и конкатенации строк.
+ * Запуск: {@code mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.example.bankcards.benchmark.CardUtilsBenchmark}
+ * (аллокации видны в колонке gc.alloc.rate.norm).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CardUtilsBenchmark {
+
+    private final String[] numbers = {
+            "4111111111111111",
+            "1234567812345670",
+            "5500000000000004",
+            "4000056655665556"
+    };
+
+    private final StringBuilder buffer = new StringBuilder(CardUtils.MASKED_CARD_NUMBER_LENGTH);
+
+    private int index;
+
+    private String next() {
+        index = (index + 1) & 3;
+        return numbers[index];
+    }
+
+    @Benchmark
+    public boolean validateRegex() {
+        return next().matches("[0-9]{16}");
+    }
+
+    @Benchmark
+    public boolean validateDigits() {
+        return CardUtils.isDigits16(next());
+    }
+
+    @Benchmark
+    public boolean validateLuhn() {
+        return CardUtils.isLuhnValid(next());
+    }
+
+    @Benchmark
+    public String maskConcat() {
+        return "**** **** **** " + next().substring(12);
+    }
+
+    @Benchmark
+    public String maskCached() {
+        return CardUtils.getMaskedCardNumber(next());
+    }
+
+    @Benchmark
+    public void maskIntoBuffer(Blackhole blackhole) {
+        buffer.setLength(0);
+        blackhole.consume(CardUtils.appendMaskedCardNumber(buffer, next()));
+    }
+
+    @Benchmark
+    public long pack() {
+        return CardUtils.packCardNumber(next());
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(CardUtilsBenchmark.class.getSimpleName())
+                .addProfiler("gc")
+                .build();
+        new Runner(options).run();
+    }
+}
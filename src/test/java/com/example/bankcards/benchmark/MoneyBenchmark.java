@@ -0,0 +1,97 @@
+package com.example.bankcards.benchmark;
+
+import com.example.bankcards.entity.money.Money;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сравнение пути перевода и подсчета общего баланса на {@link BigDecimal} и на {@link Money}.
+ * Запуск: {@code mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.example.bankcards.benchmark.MoneyBenchmark}
+ * (аллокации видны в колонке gc.alloc.rate.norm).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MoneyBenchmark {
+
+    private static final int CARDS = 8;
+
+    private final BigDecimal[] decimalBalances = new BigDecimal[CARDS];
+
+    private final Money[] moneyBalances = new Money[CARDS];
+
+    private BigDecimal decimalAmount;
+
+    private Money moneyAmount;
+
+    private int direction;
+
+    @Setup
+    public void setUp() {
+        for (int i = 0; i < CARDS; i++) {
+            decimalBalances[i] = new BigDecimal("1000000.00").add(BigDecimal.valueOf(i * 137, 2));
+            moneyBalances[i] = Money.of(decimalBalances[i]);
+        }
+        decimalAmount = new BigDecimal("0.01");
+        moneyAmount = Money.of(decimalAmount);
+    }
+
+    @Benchmark
+    public BigDecimal transferBigDecimal() {
+        // направление перевода чередуется, чтобы балансы не исчерпывались за время измерения
+        int from = direction;
+        int to = direction ^= 1;
+        if (decimalBalances[from].compareTo(decimalAmount) >= 0) {
+            decimalBalances[from] = decimalBalances[from].subtract(decimalAmount);
+            decimalBalances[to] = decimalBalances[to].add(decimalAmount);
+        }
+        return decimalBalances[to];
+    }
+
+    @Benchmark
+    public Money transferMoney() {
+        int from = direction;
+        int to = direction ^= 1;
+        if (!moneyBalances[from].isLessThan(moneyAmount)) {
+            moneyBalances[from] = moneyBalances[from].minus(moneyAmount);
+            moneyBalances[to] = moneyBalances[to].plus(moneyAmount);
+        }
+        return moneyBalances[to];
+    }
+
+    @Benchmark
+    public BigDecimal totalBalanceBigDecimal() {
+        BigDecimal total = BigDecimal.ZERO;
+        for (BigDecimal balance : decimalBalances) {
+            total = total.add(balance);
+        }
+        return total;
+    }
+
+    @Benchmark
+    public long totalBalanceMoney() {
+        long total = 0;
+        for (Money balance : moneyBalances) {
+            total = Math.addExact(total, balance.minorUnits());
+        }
+        return total;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(MoneyBenchmark.class.getSimpleName())
+                .addProfiler("gc")
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,138 @@
+package com.example.bankcards.cache;
+
+import com.example.bankcards.entity.card.Card;
+import com.example.bankcards.entity.card.CardStatus;
+import com.example.bankcards.entity.user.User;
+import com.example.bankcards.repository.CardRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CardSnapshotCacheTest {
+
+    private static final String NUMBER = "4111111111111111";
+
+    @Mock
+    private CardRepository cardRepository;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private CardSnapshotCache cache;
+
+    private CardSnapshot snapshot;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        cache = new CardSnapshotCache(cardRepository, meterRegistry, 100, Duration.ofMinutes(5));
+        snapshot = new CardSnapshot(NUMBER, "test@example.com", CardStatus.ACTIVE, LocalDate.now().plusYears(1), 0);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void get_RepeatedReads_ShouldQueryOnce() {
+        when(cardRepository.findSnapshotByNumber(NUMBER)).thenReturn(Optional.of(snapshot));
+
+        assertEquals(Optional.of(snapshot), cache.get(NUMBER));
+        assertEquals(Optional.of(snapshot), cache.get(NUMBER));
+
+        verify(cardRepository, times(1)).findSnapshotByNumber(NUMBER);
+    }
+
+    @Test
+    void get_MissingCard_ShouldNotBeCached() {
+        when(cardRepository.findSnapshotByNumber(NUMBER)).thenReturn(Optional.empty());
+
+        assertTrue(cache.get(NUMBER).isEmpty());
+        assertTrue(cache.get(NUMBER).isEmpty());
+
+        verify(cardRepository, times(2)).findSnapshotByNumber(NUMBER);
+    }
+
+    @Test
+    void evict_AfterStatusChange_ShouldReloadFreshSnapshot() {
+        CardSnapshot blocked = new CardSnapshot(NUMBER, "test@example.com", CardStatus.BLOCKED, snapshot.expirationDate(), 0);
+        when(cardRepository.findSnapshotByNumber(NUMBER))
+                .thenReturn(Optional.of(snapshot))
+                .thenReturn(Optional.of(blocked));
+        cache.get(NUMBER);
+
+        cache.evict(NUMBER);
+
+        assertEquals(CardStatus.BLOCKED, cache.get(NUMBER).orElseThrow().status());
+    }
+
+    @Test
+    void evict_InsideTransaction_ShouldEvictAgainAfterCompletion() {
+        TransactionSynchronizationManager.initSynchronization();
+        when(cardRepository.findSnapshotByNumber(NUMBER)).thenReturn(Optional.of(snapshot));
+
+        cache.evict(NUMBER);
+        // параллельное чтение до фиксации транзакции возвращает старое состояние в кэш
+        cache.get(NUMBER);
+
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        synchronizations.forEach(s -> s.afterCompletion(TransactionSynchronization.STATUS_COMMITTED));
+        cache.get(NUMBER);
+
+        verify(cardRepository, times(2)).findSnapshotByNumber(NUMBER);
+    }
+
+    @Test
+    void put_LoadedCard_ShouldServeWithoutQuery() {
+        User user = new User();
+        user.setEmail("test@example.com");
+        Card card = new Card();
+        card.setNumber(NUMBER);
+        card.setUser(user);
+        card.setStatus(CardStatus.ACTIVE);
+        card.setExpirationDate(snapshot.expirationDate());
+
+        cache.put(card);
+
+        assertEquals(Optional.of(snapshot), cache.get(NUMBER));
+        verify(cardRepository, never()).findSnapshotByNumber(NUMBER);
+    }
+
+    @Test
+    void get_ShouldRecordHitAndMissMetrics() {
+        when(cardRepository.findSnapshotByNumber(NUMBER)).thenReturn(Optional.of(snapshot));
+
+        cache.get(NUMBER);
+        cache.get(NUMBER);
+
+        assertEquals(1.0, meterRegistry.get("cache.gets").tag("cache", "cards").tag("result", "hit")
+                .functionCounter().count());
+        assertEquals(1.0, meterRegistry.get("cache.gets").tag("cache", "cards").tag("result", "miss")
+                .functionCounter().count());
+    }
+
+    @Test
+    void snapshot_ShouldDetectOwnerAndExpiration() {
+        assertTrue(snapshot.isOwnedBy("test@example.com"));
+        assertFalse(snapshot.isOwnedBy("other@example.com"));
+        assertFalse(snapshot.isExpired(LocalDate.now()));
+        assertTrue(snapshot.isExpired(LocalDate.now().plusYears(2)));
+    }
+}
@@ -1,21 +1,40 @@
 package com.example.bankcards.controller;
 
+import com.example.bankcards.dto.card.CardBalanceSlotsDtoRequest;
+import com.example.bankcards.dto.card.CardBlockDecisionDtoRequest;
+import com.example.bankcards.dto.card.CardBlockDecisionDtoResponse;
+import com.example.bankcards.dto.card.CardBlockRequestDtoResponse;
 import com.example.bankcards.dto.card.CardCreateDtoRequest;
 import com.example.bankcards.dto.card.CardDtoResponse;
 import com.example.bankcards.dto.card.CardNumberDtoRequest;
+import com.example.bankcards.dto.card.LedgerBalanceDtoResponse;
 import com.example.bankcards.dto.card.TotalBalanceDtoResponse;
+import com.example.bankcards.dto.export.ExportFormat;
+import com.example.bankcards.dto.page.KeysetPageDtoResponse;
 import com.example.bankcards.dto.page.PageDtoResponse;
 import com.example.bankcards.entity.card.CardStatus;
+import com.example.bankcards.entity.money.Money;
 import com.example.bankcards.service.CardService;
+import com.example.bankcards.service.ExportService;
+import com.example.bankcards.service.LedgerService;
+import jakarta.validation.ConstraintViolationException;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.validation.beanvalidation.MethodValidationInterceptor;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.ByteArrayOutputStream;
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.util.List;
@@ -30,6 +49,12 @@ class CardControllerTest {
     @Mock
     private CardService cardService;
 
+    @Mock
+    private ExportService exportService;
+
+    @Mock
+    private LedgerService ledgerService;
+
     @InjectMocks
     private CardController cardController;
 
@@ -42,7 +67,6 @@ class CardControllerTest {
     @BeforeEach
     void setUp() {
         createRequest = new CardCreateDtoRequest();
-        createRequest.setNumber("1234567812345678");
         createRequest.setUserEmail("user@example.com");
         createRequest.setCountMonth(36);
         createRequest.setAmount(new BigDecimal("1000.00"));
@@ -56,12 +80,12 @@ class CardControllerTest {
                 .fullNameUser("John Doe")
                 .expirationDate(LocalDate.now().plusMonths(36))
                 .status(CardStatus.ACTIVE)
-                .balance(new BigDecimal("1000.00"))
+                .balance(Money.of(new BigDecimal("1000.00")))
                 .build();
 
         balanceResponse = TotalBalanceDtoResponse.builder()
                 .email("user@example.com")
-                .totalBalance(new BigDecimal("1500.50"))
+                .totalBalance(Money.of(new BigDecimal("1500.50")))
                 .build();
 
         pageResponse = new PageDtoResponse<>(
@@ -126,6 +150,34 @@ class CardControllerTest {
         verify(cardService).delete("1234567812345678");
     }
 
+    @Test
+    void getLedgerBalance_ValidRequest_ShouldReturnOk() {
+        LedgerBalanceDtoResponse ledgerResponse = LedgerBalanceDtoResponse.builder()
+                .maskedCardNumber("**** **** **** 5678")
+                .balance(Money.of(new BigDecimal("1000.00")))
+                .ledgerBalance(Money.of(new BigDecimal("1000.00")))
+                .consistent(true)
+                .build();
+        when(ledgerService.getLedgerBalance("1234567812345678")).thenReturn(ledgerResponse);
+
+        ResponseEntity<LedgerBalanceDtoResponse> response = cardController.getLedgerBalance(numberRequest);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertSame(ledgerResponse, response.getBody());
+    }
+
+    @Test
+    void changeBalanceSlots_ValidRequest_ShouldReturnOk() {
+        CardBalanceSlotsDtoRequest slotsRequest = new CardBalanceSlotsDtoRequest();
+        slotsRequest.setNumber("1234567812345678");
+        slotsRequest.setSlots(8);
+
+        ResponseEntity<Void> response = cardController.changeBalanceSlots(slotsRequest);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        verify(cardService).changeBalanceSlots("1234567812345678", 8);
+    }
+
     @Test
     void getAllCards_ShouldReturnOk() {
         when(cardService.getAll(anyInt(), anyInt())).thenReturn(pageResponse);
@@ -142,18 +194,35 @@ class CardControllerTest {
 
     @Test
     void getMyCards_ShouldReturnOk() {
+        when(cardService.getCardsVersionTag()).thenReturn("1a2b-7");
         when(cardService.getAllByUser(anyInt(), anyInt())).thenReturn(pageResponse);
 
-        ResponseEntity<PageDtoResponse<CardDtoResponse>> response = cardController.getMyCards(0, 10);
+        ResponseEntity<PageDtoResponse<CardDtoResponse>> response = cardController.getMyCards(0, 10, webRequest());
 
         assertNotNull(response);
         assertEquals(HttpStatus.OK, response.getStatusCode());
         assertNotNull(response.getBody());
         assertEquals(1, response.getBody().getContent().size());
 
+        assertEquals("\"1a2b-7-0-10\"", response.getHeaders().getETag());
+
         verify(cardService).getAllByUser(0, 10);
     }
 
+    @Test
+    void getMyCards_MatchingETag_ShouldReturnNotModifiedWithoutQuery() {
+        when(cardService.getCardsVersionTag()).thenReturn("1a2b-7");
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/cards/my/all");
+        request.addHeader("If-None-Match", "\"1a2b-7-0-10\"");
+
+        ResponseEntity<PageDtoResponse<CardDtoResponse>> response = cardController.getMyCards(0, 10,
+                new ServletWebRequest(request, new MockHttpServletResponse()));
+
+        assertEquals(HttpStatus.NOT_MODIFIED, response.getStatusCode());
+        assertNull(response.getBody());
+        verify(cardService, never()).getAllByUser(anyInt(), anyInt());
+    }
+
     @Test
     void getCardByNumber_ValidRequest_ShouldReturnOk() {
         when(cardService.getByNumber(anyString())).thenReturn(cardResponse);
@@ -195,9 +264,10 @@ class CardControllerTest {
 
     @Test
     void getMyCards_WithCustomPagination_ShouldUseCorrectParameters() {
+        when(cardService.getCardsVersionTag()).thenReturn("1a2b-7");
         when(cardService.getAllByUser(anyInt(), anyInt())).thenReturn(pageResponse);
 
-        ResponseEntity<PageDtoResponse<CardDtoResponse>> response = cardController.getMyCards(1, 5);
+        ResponseEntity<PageDtoResponse<CardDtoResponse>> response = cardController.getMyCards(1, 5, webRequest());
 
         assertNotNull(response);
         assertEquals(HttpStatus.OK, response.getStatusCode());
@@ -227,16 +297,105 @@ class CardControllerTest {
 
     @Test
     void getTotalBalance_ShouldReturnOk() {
+        when(cardService.getCardsVersionTag()).thenReturn("1a2b-7");
         when(cardService.getTotalBalanceUser()).thenReturn(balanceResponse);
 
-        ResponseEntity<TotalBalanceDtoResponse> response = cardController.getTotalBalance();
+        ResponseEntity<TotalBalanceDtoResponse> response = cardController.getTotalBalance(webRequest());
 
         assertNotNull(response);
         assertEquals(HttpStatus.OK, response.getStatusCode());
         assertNotNull(response.getBody());
         assertEquals("user@example.com", response.getBody().getEmail());
-        assertEquals(new BigDecimal("1500.50"), response.getBody().getTotalBalance());
+        assertEquals(Money.of(new BigDecimal("1500.50")), response.getBody().getTotalBalance());
+
+        assertEquals("\"1a2b-7\"", response.getHeaders().getETag());
 
         verify(cardService).getTotalBalanceUser();
     }
+
+    @Test
+    void getTotalBalance_StaleETag_ShouldReturnBody() {
+        when(cardService.getCardsVersionTag()).thenReturn("1a2b-8");
+        when(cardService.getTotalBalanceUser()).thenReturn(balanceResponse);
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/cards/my/total-balance");
+        request.addHeader("If-None-Match", "\"1a2b-7\"");
+
+        ResponseEntity<TotalBalanceDtoResponse> response = cardController.getTotalBalance(
+                new ServletWebRequest(request, new MockHttpServletResponse()));
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals("\"1a2b-8\"", response.getHeaders().getETag());
+        verify(cardService).getTotalBalanceUser();
+    }
+
+    @Test
+    void getBlockRequests_ShouldReturnOk() {
+        CardBlockRequestDtoResponse blockRequest = CardBlockRequestDtoResponse.builder()
+                .cardNumber("1234567812345678")
+                .email("user@example.com")
+                .status(CardStatus.ACTIVE)
+                .build();
+        when(cardService.getBlockRequests("1111222233334444", 50))
+                .thenReturn(new KeysetPageDtoResponse<>(List.of(blockRequest), "1234567812345678"));
+
+        ResponseEntity<KeysetPageDtoResponse<CardBlockRequestDtoResponse>> response =
+                cardController.getBlockRequests("1111222233334444", 50);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertNotNull(response.getBody());
+        assertEquals(1, response.getBody().getContent().size());
+        assertEquals("1234567812345678", response.getBody().getNextCursor());
+
+        verify(cardService).getBlockRequests("1111222233334444", 50);
+    }
+
+    @Test
+    void getBlockRequests_SizeOutOfRange_ShouldRejectBeforeService() {
+        ProxyFactory proxyFactory = new ProxyFactory(cardController);
+        proxyFactory.setProxyTargetClass(true);
+        proxyFactory.addAdvice(new MethodValidationInterceptor());
+        CardController validatedController = (CardController) proxyFactory.getProxy();
+
+        assertThrows(ConstraintViolationException.class, () -> validatedController.getBlockRequests(null, 0));
+        assertThrows(ConstraintViolationException.class, () -> validatedController.getBlockRequests(null, 101));
+        verifyNoInteractions(cardService);
+    }
+
+    @Test
+    void processBlockRequests_ValidRequest_ShouldReturnOk() {
+        CardBlockDecisionDtoRequest request = new CardBlockDecisionDtoRequest();
+        request.setCardNumbers(List.of("1234567812345678"));
+        request.setApprove(true);
+        when(cardService.processBlockRequests(List.of("1234567812345678"), true))
+                .thenReturn(CardBlockDecisionDtoResponse.builder().processed(1).build());
+
+        ResponseEntity<CardBlockDecisionDtoResponse> response = cardController.processBlockRequests(request);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertNotNull(response.getBody());
+        assertEquals(1, response.getBody().getProcessed());
+
+        verify(cardService).processBlockRequests(List.of("1234567812345678"), true);
+    }
+
+    @Test
+    void exportCards_Ndjson_ShouldStreamWithAttachmentHeaders() throws Exception {
+        ResponseEntity<StreamingResponseBody> response = cardController.exportCards(ExportFormat.NDJSON);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals("application/x-ndjson", String.valueOf(response.getHeaders().getContentType()));
+        assertEquals("attachment; filename=cards.ndjson",
+                response.getHeaders().getFirst(HttpHeaders.CONTENT_DISPOSITION));
+        assertNotNull(response.getBody());
+        verify(exportService, never()).exportCards(any(), any());
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        response.getBody().writeTo(outputStream);
+
+        verify(exportService).exportCards(ExportFormat.NDJSON, outputStream);
+    }
+
+    private static ServletWebRequest webRequest() {
+        return new ServletWebRequest(new MockHttpServletRequest("GET", "/api/cards/my"), new MockHttpServletResponse());
+    }
 }
@@ -0,0 +1,83 @@
+package com.example.bankcards.controller;
+
+import com.example.bankcards.dto.analytics.CardTransferRollupDtoResponse;
+import com.example.bankcards.dto.analytics.RollupPeriod;
+import com.example.bankcards.dto.analytics.RollupRebuildDtoResponse;
+import com.example.bankcards.dto.analytics.TransferRollupDtoResponse;
+import com.example.bankcards.entity.money.Money;
+import com.example.bankcards.service.TransferAnalyticsService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class TransferAnalyticsControllerTest {
+
+    private static final LocalDate FROM = LocalDate.of(2024, 1, 1);
+
+    private static final LocalDate TO = LocalDate.of(2024, 2, 1);
+
+    @Mock
+    private TransferAnalyticsService transferAnalyticsService;
+
+    @InjectMocks
+    private TransferAnalyticsController transferAnalyticsController;
+
+    @Test
+    void getMyRollups_ShouldReturnOk() {
+        List<TransferRollupDtoResponse> rollups = List.of(TransferRollupDtoResponse.builder()
+                .periodStart(FROM)
+                .transferCount(3)
+                .amount(Money.of(new BigDecimal("1500.00")))
+                .build());
+        when(transferAnalyticsService.getMyRollups(RollupPeriod.DAY, FROM, TO)).thenReturn(rollups);
+
+        ResponseEntity<List<TransferRollupDtoResponse>> response =
+                transferAnalyticsController.getMyRollups(RollupPeriod.DAY, FROM, TO);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertSame(rollups, response.getBody());
+    }
+
+    @Test
+    void getCardRollups_ShouldReturnOk() {
+        List<CardTransferRollupDtoResponse> rollups = List.of(CardTransferRollupDtoResponse.builder()
+                .periodStart(FROM)
+                .outgoingCount(1)
+                .outgoingAmount(Money.of(new BigDecimal("100.00")))
+                .incomingCount(0)
+                .incomingAmount(Money.ZERO)
+                .build());
+        when(transferAnalyticsService.getCardRollups("1234567812345678", RollupPeriod.MONTH, FROM, TO))
+                .thenReturn(rollups);
+
+        ResponseEntity<List<CardTransferRollupDtoResponse>> response =
+                transferAnalyticsController.getCardRollups("1234567812345678", RollupPeriod.MONTH, FROM, TO);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertSame(rollups, response.getBody());
+    }
+
+    @Test
+    void rebuildRollups_ShouldReturnOk() {
+        RollupRebuildDtoResponse rebuild = RollupRebuildDtoResponse.builder().userRows(12).cardRows(34).build();
+        when(transferAnalyticsService.rebuild()).thenReturn(rebuild);
+
+        ResponseEntity<RollupRebuildDtoResponse> response = transferAnalyticsController.rebuildRollups();
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertSame(rebuild, response.getBody());
+    }
+}
@@ -1,8 +1,21 @@
 package com.example.bankcards.controller;
 
+import com.example.bankcards.dto.export.ExportFormat;
+import com.example.bankcards.dto.page.KeysetPageDtoResponse;
 import com.example.bankcards.dto.page.PageDtoResponse;
+import com.example.bankcards.dto.transfer.AsyncTransferStatus;
+import com.example.bankcards.dto.transfer.TransferBatchDtoRequest;
+import com.example.bankcards.dto.transfer.TransferBatchDtoResponse;
+import com.example.bankcards.dto.transfer.TransferBatchItemDtoResponse;
 import com.example.bankcards.dto.transfer.TransferDtoRequest;
 import com.example.bankcards.dto.transfer.TransferDtoResponse;
+import com.example.bankcards.dto.transfer.TransferFilterDtoRequest;
+import com.example.bankcards.dto.transfer.TransferStatusDtoResponse;
+import com.example.bankcards.entity.money.Money;
+import com.example.bankcards.exception.GlobalExceptionHandler;
+import com.example.bankcards.exception.exceptions.InvalidRequestException;
+import com.example.bankcards.service.AsyncTransferService;
+import com.example.bankcards.service.ExportService;
 import com.example.bankcards.service.TransferService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -10,19 +23,38 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.validation.beanvalidation.MethodValidationInterceptor;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.ByteArrayOutputStream;
 import java.math.BigDecimal;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
 import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @ExtendWith(MockitoExtension.class)
 class TransferControllerTest {
@@ -30,12 +62,19 @@ class TransferControllerTest {
     @Mock
     private TransferService transferService;
 
+    @Mock
+    private AsyncTransferService asyncTransferService;
+
+    @Mock
+    private ExportService exportService;
+
     @InjectMocks
     private TransferController transferController;
 
     private TransferDtoRequest transferRequest;
     private TransferDtoResponse transferResponse;
     private PageDtoResponse<TransferDtoResponse> pageResponse;
+    private TransferFilterDtoRequest filter;
 
     @BeforeEach
     void setUp() {
@@ -48,7 +87,7 @@ class TransferControllerTest {
                 .userEmail("user@example.com")
                 .fromCardNumber("1234567812345678")
                 .toCardNumber("8765432187654321")
-                .amount(new BigDecimal("1000.00"))
+                .amount(Money.of(new BigDecimal("1000.00")))
                 .time(LocalDateTime.now())
                 .build();
 
@@ -58,29 +97,76 @@ class TransferControllerTest {
                 1,
                 0
         );
+
+        filter = new TransferFilterDtoRequest();
     }
 
     @Test
     void transferBetweenOwnCards_ValidRequest_ShouldReturnCreated() {
-        when(transferService.transferBetweenCardsOneUser(any(TransferDtoRequest.class)))
+        when(transferService.transferBetweenCardsOneUser(any(TransferDtoRequest.class), eq("key-1")))
                 .thenReturn(transferResponse);
 
-        ResponseEntity<TransferDtoResponse> response = transferController.transferBetweenOwnCards(transferRequest);
+        ResponseEntity<TransferDtoResponse> response =
+                transferController.transferBetweenOwnCards(transferRequest, "key-1");
 
         assertNotNull(response);
         assertEquals(HttpStatus.CREATED, response.getStatusCode());
         assertNotNull(response.getBody());
         assertEquals("user@example.com", response.getBody().getUserEmail());
-        assertEquals(new BigDecimal("1000.00"), response.getBody().getAmount());
+        assertEquals(Money.of(new BigDecimal("1000.00")), response.getBody().getAmount());
 
-        verify(transferService).transferBetweenCardsOneUser(transferRequest);
+        verify(transferService).transferBetweenCardsOneUser(transferRequest, "key-1");
+    }
+
+    @Test
+    void submitTransferBetweenOwnCards_ShouldReturnAcceptedWithLocation() {
+        TransferStatusDtoResponse pending = TransferStatusDtoResponse.builder()
+                .id("3f1c9a52-8d2e-4b7a-9c61-5e0f2d4a7b13")
+                .status(AsyncTransferStatus.PENDING)
+                .build();
+        when(asyncTransferService.submit(transferRequest)).thenReturn(pending);
+
+        ResponseEntity<TransferStatusDtoResponse> response =
+                transferController.submitTransferBetweenOwnCards(transferRequest);
+
+        assertEquals(HttpStatus.ACCEPTED, response.getStatusCode());
+        assertEquals("/api/transfers/my/async/3f1c9a52-8d2e-4b7a-9c61-5e0f2d4a7b13",
+                response.getHeaders().getLocation().toString());
+        assertEquals(pending, response.getBody());
+    }
+
+    @Test
+    void getTransferStatus_ShouldClampWait() {
+        DeferredResult<TransferStatusDtoResponse> result = new DeferredResult<>();
+        when(asyncTransferService.getStatus("id", Duration.ofSeconds(30))).thenReturn(result);
+
+        assertSame(result, transferController.getTransferStatus("id", 600));
+    }
+
+    @Test
+    void transferBatch_ShouldReturnOk() {
+        TransferBatchDtoRequest batchRequest = new TransferBatchDtoRequest();
+        batchRequest.setTransfers(List.of(transferRequest));
+        batchRequest.setAtomic(true);
+        TransferBatchDtoResponse batchResponse = TransferBatchDtoResponse.builder()
+                .completed(1)
+                .rejected(0)
+                .items(List.of(TransferBatchItemDtoResponse.builder().index(0).transfer(transferResponse).build()))
+                .build();
+        when(transferService.transferBatch(batchRequest)).thenReturn(batchResponse);
+
+        ResponseEntity<TransferBatchDtoResponse> response = transferController.transferBatch(batchRequest);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(batchResponse, response.getBody());
+        verify(transferService).transferBatch(batchRequest);
     }
 
     @Test
     void getAllTransfers_ShouldReturnOk() {
-        when(transferService.getAll(anyInt(), anyInt())).thenReturn(pageResponse);
+        when(transferService.getAll(any(TransferFilterDtoRequest.class), anyInt(), anyInt())).thenReturn(pageResponse);
 
-        ResponseEntity<PageDtoResponse<TransferDtoResponse>> response = transferController.getAllTransfers(0, 10);
+        ResponseEntity<PageDtoResponse<TransferDtoResponse>> response = transferController.getAllTransfers(filter, 0, 10);
 
         assertNotNull(response);
         assertEquals(HttpStatus.OK, response.getStatusCode());
@@ -88,14 +174,14 @@ class TransferControllerTest {
         assertEquals(1, response.getBody().getContent().size());
         assertEquals(1L, response.getBody().getTotalElements());
 
-        verify(transferService).getAll(0, 10);
+        verify(transferService).getAll(filter, 0, 10);
     }
 
     @Test
     void getMyTransfers_ShouldReturnOk() {
-        when(transferService.getAllByUser(anyInt(), anyInt())).thenReturn(pageResponse);
+        when(transferService.getAllByUser(any(TransferFilterDtoRequest.class), anyInt(), anyInt())).thenReturn(pageResponse);
 
-        ResponseEntity<PageDtoResponse<TransferDtoResponse>> response = transferController.getMyTransfers(0, 10);
+        ResponseEntity<PageDtoResponse<TransferDtoResponse>> response = transferController.getMyTransfers(filter, 0, 10);
 
         assertNotNull(response);
         assertEquals(HttpStatus.OK, response.getStatusCode());
@@ -103,6 +189,78 @@ class TransferControllerTest {
         assertEquals(1, response.getBody().getContent().size());
         assertEquals(1L, response.getBody().getTotalElements());
 
-        verify(transferService).getAllByUser(0, 10);
+        verify(transferService).getAllByUser(filter, 0, 10);
+    }
+
+    @Test
+    void getMyTransferHistory_ShouldPassCursor() {
+        KeysetPageDtoResponse<TransferDtoResponse> historyResponse =
+                new KeysetPageDtoResponse<>(List.of(transferResponse), "next");
+        when(transferService.getHistoryByUser(filter, "cursor", 10)).thenReturn(historyResponse);
+
+        ResponseEntity<KeysetPageDtoResponse<TransferDtoResponse>> response =
+                transferController.getMyTransferHistory(filter, "cursor", 10);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertSame(historyResponse, response.getBody());
+    }
+
+    @Test
+    void getMyTransferHistory_ZeroSize_ShouldReturnBadRequestJson() throws Exception {
+        // проверка параметров выполняется прокси @Validated, как в контексте приложения
+        ProxyFactory proxyFactory = new ProxyFactory(transferController);
+        proxyFactory.setProxyTargetClass(true);
+        proxyFactory.addAdvice(new MethodValidationInterceptor());
+        MockMvc mockMvc = MockMvcBuilders.standaloneSetup(proxyFactory.getProxy())
+                .setControllerAdvice(new GlobalExceptionHandler())
+                .build();
+
+        mockMvc.perform(get("/api/transfers/my/history").param("size", "0"))
+                .andExpect(status().isBadRequest())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$.code").value(400));
+
+        verify(transferService, never()).getHistoryByUser(any(), any(), anyInt());
+    }
+
+    @Test
+    void exportTransfers_Gzip_ShouldStreamWithAttachmentHeaders() throws Exception {
+        LocalDateTime fromTime = LocalDateTime.of(2024, 1, 1, 0, 0);
+        LocalDateTime toTime = LocalDateTime.of(2024, 2, 1, 0, 0);
+
+        ResponseEntity<StreamingResponseBody> response =
+                transferController.exportTransfers(ExportFormat.CSV, fromTime, toTime, true);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals("application/gzip", String.valueOf(response.getHeaders().getContentType()));
+        assertEquals("attachment; filename=transfers.csv.gz",
+                response.getHeaders().getFirst(HttpHeaders.CONTENT_DISPOSITION));
+        assertNotNull(response.getBody());
+        verify(exportService, never()).exportTransfers(any(), any(), any(), anyBoolean(), any());
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        response.getBody().writeTo(outputStream);
+
+        verify(exportService).exportTransfers(ExportFormat.CSV, fromTime, toTime, true, outputStream);
+    }
+
+    @Test
+    void exportTransfers_InvalidPeriod_ShouldReturnBadRequestJson() throws Exception {
+        LocalDateTime time = LocalDateTime.of(2024, 1, 1, 0, 0);
+        doThrow(new InvalidRequestException("The start of the period must be before its end"))
+                .when(exportService).validateTransfersPeriod(time, time);
+        MockMvc mockMvc = MockMvcBuilders.standaloneSetup(transferController)
+                .setControllerAdvice(new GlobalExceptionHandler())
+                .build();
+
+        mockMvc.perform(get("/api/transfers/all/export")
+                        .param("fromTime", "2024-01-01T00:00:00")
+                        .param("toTime", "2024-01-01T00:00:00")
+                        .param("gzip", "true"))
+                .andExpect(status().isBadRequest())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$.message").value("The start of the period must be before its end"));
+
+        verify(exportService, never()).exportTransfers(any(), any(), any(), anyBoolean(), any());
     }
 }
@@ -0,0 +1,68 @@
+package com.example.bankcards.entity.money;
+
+import com.example.bankcards.dto.card.TotalBalanceDtoResponse;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MoneyTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void of_DecimalAmount_ShouldStoreMinorUnits() {
+        assertEquals(100050, Money.of(new BigDecimal("1000.50")).minorUnits());
+        assertEquals(100000, Money.of(new BigDecimal("1000")).minorUnits());
+        assertEquals(Money.of(new BigDecimal("1.5")), Money.of(new BigDecimal("1.500")));
+    }
+
+    @Test
+    void of_MoreThanTwoDecimalPlaces_ShouldThrowException() {
+        assertThrows(ArithmeticException.class, () -> Money.of(new BigDecimal("10.005")));
+    }
+
+    @Test
+    void arithmetic_ShouldAddSubtractAndCompare() {
+        Money balance = Money.of(new BigDecimal("1000.00"));
+        Money amount = Money.of(new BigDecimal("100.25"));
+
+        assertEquals(Money.of(new BigDecimal("899.75")), balance.minus(amount));
+        assertEquals(Money.of(new BigDecimal("1100.25")), balance.plus(amount));
+        assertTrue(amount.isLessThan(balance));
+        assertFalse(balance.isLessThan(balance));
+        assertEquals("-0.01", Money.ZERO.minus(Money.ofMinor(1)).toString());
+    }
+
+    @Test
+    void arithmetic_Overflow_ShouldThrowException() {
+        Money max = Money.ofMinor(Long.MAX_VALUE);
+
+        assertThrows(ArithmeticException.class, () -> max.plus(Money.ofMinor(1)));
+        assertThrows(ArithmeticException.class, () -> Money.ofMinor(Long.MIN_VALUE).minus(Money.ofMinor(1)));
+    }
+
+    @Test
+    void json_ShouldSerializeAsDecimalNumber() throws Exception {
+        TotalBalanceDtoResponse response = TotalBalanceDtoResponse.builder()
+                .email("user@example.com")
+                .totalBalance(Money.of(new BigDecimal("1500.50")))
+                .build();
+
+        assertEquals("{\"email\":\"user@example.com\",\"totalBalance\":1500.50}",
+                objectMapper.writeValueAsString(response));
+        assertEquals(Money.ofMinor(150050), objectMapper.readValue("1500.5", Money.class));
+    }
+
+    @Test
+    void converter_ShouldMapToNumericColumn() {
+        MoneyConverter converter = new MoneyConverter();
+
+        assertEquals(new BigDecimal("1000.50"), converter.convertToDatabaseColumn(Money.ofMinor(100050)));
+        assertEquals(Money.ofMinor(100050), converter.convertToEntityAttribute(new BigDecimal("1000.50")));
+        assertNull(converter.convertToDatabaseColumn(null));
+        assertNull(converter.convertToEntityAttribute(null));
+    }
+}
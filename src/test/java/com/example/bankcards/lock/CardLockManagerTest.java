@@ -0,0 +1,108 @@
+package com.example.bankcards.lock;
+
+import com.example.bankcards.exception.exceptions.InvalidRequestException;
+import com.example.bankcards.exception.exceptions.TooManyRequestsException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CardLockManagerTest {
+
+    private static final String FIRST = "4000000000000010";
+
+    private static final String SECOND = "4000000000000011";
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private CardLockManager cardLockManager;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        cardLockManager = new CardLockManager(meterRegistry, 1024, Duration.ofMillis(50), 64);
+    }
+
+    @Test
+    void lock_CardHeldByAnotherThread_ShouldFailAfterTimeout() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        CountDownLatch locked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Future<?> holder = executor.submit(() -> {
+            try (CardLockManager.Locks ignored = cardLockManager.lock(List.of(SECOND))) {
+                locked.countDown();
+                release.await();
+            }
+            return null;
+        });
+        locked.await();
+
+        try {
+            assertThrows(TooManyRequestsException.class, () -> cardLockManager.lock(List.of(FIRST, SECOND)));
+        } finally {
+            release.countDown();
+            holder.get(5, TimeUnit.SECONDS);
+            executor.shutdown();
+        }
+
+        assertEquals(1.0, meterRegistry.get("cards.lock.timeouts").counter().count());
+        assertEquals(0.0, meterRegistry.get("cards.lock.waiting").gauge().value());
+
+        // после отказа первая карта не остается заблокированной
+        try (CardLockManager.Locks ignored = cardLockManager.lock(List.of(FIRST, SECOND))) {
+            assertEquals(3, meterRegistry.get("cards.lock.wait").timer().count());
+        }
+    }
+
+    @Test
+    void lock_SameStripeTwice_ShouldLockOnce() {
+        CardLockManager singleStripe = new CardLockManager(new SimpleMeterRegistry(), 1, Duration.ofMillis(50), 64);
+
+        try (CardLockManager.Locks ignored = singleStripe.lock(List.of(FIRST, SECOND))) {
+            assertDoesNotThrow(() -> singleStripe.lock(List.of(FIRST)).close());
+        }
+    }
+
+    @Test
+    void lock_TooManyCards_ShouldRejectWithoutLocking() {
+        CardLockManager limited = new CardLockManager(new SimpleMeterRegistry(), 1024, Duration.ofMillis(50), 1);
+
+        assertThrows(InvalidRequestException.class, () -> limited.lock(List.of(FIRST, SECOND)));
+        assertDoesNotThrow(() -> limited.lock(List.of(FIRST)).close());
+    }
+
+    @Test
+    void lock_OpposingOrder_ShouldNotDeadlock() throws Exception {
+        cardLockManager = new CardLockManager(meterRegistry, 1024, Duration.ofSeconds(10), 64);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<?>> futures = new ArrayList<>();
+
+        for (int t = 0; t < 8; t++) {
+            List<String> numbers = t % 2 == 0 ? List.of(FIRST, SECOND) : List.of(SECOND, FIRST);
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < 1000; i++) {
+                    cardLockManager.lock(numbers).close();
+                }
+                return null;
+            }));
+        }
+
+        for (Future<?> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        assertEquals(0.0, meterRegistry.get("cards.lock.timeouts").counter().count());
+        assertEquals(8000, meterRegistry.get("cards.lock.wait").timer().count());
+    }
+}
@@ -0,0 +1,113 @@
+package com.example.bankcards.outbox;
+
+import com.example.bankcards.event.OutboxMessage;
+import com.example.bankcards.repository.OutboxRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class OutboxRelayTest {
+
+    private static final int SHARD = 3;
+
+    @Mock
+    private OutboxRepository outboxRepository;
+
+    @Mock
+    private OutboxSink firstSink;
+
+    @Mock
+    private OutboxSink secondSink;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private MeterRegistry meterRegistry;
+
+    private OutboxRelay outboxRelay;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        outboxRelay = new OutboxRelay(outboxRepository, List.of(firstSink, secondSink),
+                new TransactionTemplate(transactionManager), meterRegistry, false, Duration.ofMillis(200), 100,
+                Duration.ofSeconds(1), Duration.ofMinutes(5));
+    }
+
+    @Test
+    void relayBatch_ShouldSendToAllSinksAndDeleteDelivered() {
+        List<OutboxMessage> batch = List.of(message(10), message(12));
+        when(outboxRepository.claimShard()).thenReturn(Optional.of(SHARD));
+        when(outboxRepository.findBatch(SHARD, 100)).thenReturn(batch);
+
+        assertEquals(2, outboxRelay.relayBatch());
+
+        InOrder inOrder = inOrder(firstSink, secondSink, outboxRepository);
+        inOrder.verify(firstSink).send(batch);
+        inOrder.verify(secondSink).send(batch);
+        inOrder.verify(outboxRepository).markRelayed(SHARD, List.of(10L, 12L));
+        verify(transactionManager).commit(any());
+        assertEquals(2, meterRegistry.counter("outbox.relayed").count());
+    }
+
+    @Test
+    void relayBatch_FailedSink_ShouldKeepEventsAndPostponeShard() {
+        List<OutboxMessage> batch = List.of(message(10));
+        when(outboxRepository.claimShard()).thenReturn(Optional.of(SHARD));
+        when(outboxRepository.findBatch(SHARD, 100)).thenReturn(batch);
+        doThrow(new IllegalStateException("webhook returned 503")).when(secondSink).send(batch);
+
+        assertEquals(0, outboxRelay.relayBatch());
+
+        verify(outboxRepository, never()).markRelayed(anyInt(), any());
+        verify(transactionManager).rollback(any());
+        // сегмент откладывается в отдельной, подтвержденной транзакции
+        verify(outboxRepository).markFailed(SHARD, 1000, 300000);
+        verify(transactionManager).commit(any());
+        assertEquals(1, meterRegistry.counter("outbox.failed_batches").count());
+        assertEquals(0, meterRegistry.counter("outbox.relayed").count());
+    }
+
+    @Test
+    void relayBatch_NoFreeShard_ShouldDoNothing() {
+        when(outboxRepository.claimShard()).thenReturn(Optional.empty());
+
+        assertEquals(0, outboxRelay.relayBatch());
+
+        verifyNoInteractions(firstSink, secondSink);
+        verify(outboxRepository, never()).findBatch(anyInt(), anyInt());
+    }
+
+    @Test
+    void lagGauge_ShouldReportOldestPendingEvent() {
+        when(outboxRepository.findLagSeconds()).thenReturn(4.5)
+                .thenThrow(new DataAccessResourceFailureException("connection refused"));
+
+        assertEquals(4.5, meterRegistry.get("outbox.lag").gauge().value());
+        assertTrue(Double.isNaN(meterRegistry.get("outbox.lag").gauge().value()));
+    }
+
+    private OutboxMessage message(long id) {
+        return new OutboxMessage(id, "1111222233334444", "test@example.com", "card-balance",
+                "{}", LocalDateTime.of(2026, 10, 19, 12, 0));
+    }
+}
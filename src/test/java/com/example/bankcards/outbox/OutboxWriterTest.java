@@ -0,0 +1,97 @@
+package com.example.bankcards.outbox;
+
+import com.example.bankcards.dto.card.CardDtoResponse;
+import com.example.bankcards.event.CardEvent;
+import com.example.bankcards.event.CardEventType;
+import com.example.bankcards.event.OutboxMessage;
+import com.example.bankcards.repository.OutboxRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class OutboxWriterTest {
+
+    private static final String EMAIL = "test@example.com";
+
+    @Mock
+    private OutboxRepository outboxRepository;
+
+    private OutboxWriter outboxWriter;
+
+    @BeforeEach
+    void setUp() {
+        outboxWriter = new OutboxWriter(outboxRepository, new ObjectMapper());
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void onUserEvent_ShouldWriteOnceBeforeCommit() {
+        TransactionSynchronizationManager.initSynchronization();
+
+        outboxWriter.onUserEvent(cardEvent("1111222233334444", CardEventType.STATUS_CHANGED));
+        outboxWriter.onUserEvent(cardEvent("5555666677778888", CardEventType.BALANCE_CHANGED));
+        verify(outboxRepository, never()).saveAll(any());
+
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        assertEquals(1, synchronizations.size());
+        synchronizations.get(0).beforeCommit(false);
+        synchronizations.get(0).afterCompletion(TransactionSynchronization.STATUS_COMMITTED);
+
+        ArgumentCaptor<List<OutboxMessage>> captor = ArgumentCaptor.forClass(List.class);
+        verify(outboxRepository).saveAll(captor.capture());
+        List<OutboxMessage> messages = captor.getValue();
+        assertEquals(List.of("1111222233334444", "5555666677778888"),
+                messages.stream().map(OutboxMessage::orderingKey).toList());
+        assertEquals(EMAIL, messages.get(0).userEmail());
+        assertEquals(CardEventType.STATUS_CHANGED.getEventName(), messages.get(0).eventName());
+        assertTrue(messages.get(0).payload().contains("**** **** **** 4444"));
+        assertNull(TransactionSynchronizationManager.getResource(outboxWriter));
+    }
+
+    @Test
+    void onUserEvent_Rollback_ShouldNotWrite() {
+        TransactionSynchronizationManager.initSynchronization();
+
+        outboxWriter.onUserEvent(cardEvent("1111222233334444", CardEventType.STATUS_CHANGED));
+        TransactionSynchronizationManager.getSynchronizations().get(0)
+                .afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK);
+
+        verify(outboxRepository, never()).saveAll(any());
+        assertNull(TransactionSynchronizationManager.getResource(outboxWriter));
+    }
+
+    @Test
+    void onUserEvent_WithoutTransaction_ShouldWriteImmediately() {
+        outboxWriter.onUserEvent(cardEvent("1111222233334444", CardEventType.DELETED));
+
+        verify(outboxRepository).saveAll(argThat(messages -> messages.size() == 1));
+    }
+
+    private CardEvent cardEvent(String number, CardEventType type) {
+        CardDtoResponse card = CardDtoResponse.builder()
+                .maskedCardNumber("**** **** **** " + number.substring(12))
+                .build();
+        return new CardEvent(EMAIL, number, type, card);
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.bankcards.outbox;
+
+import com.example.bankcards.event.OutboxMessage;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.web.client.RestClient;
+import org.springframework.web.client.RestClientResponseException;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WebhookOutboxSinkTest {
+
+    private final AtomicInteger status = new AtomicInteger(204);
+
+    private final AtomicReference<String> received = new AtomicReference<>();
+
+    private HttpServer server;
+
+    private WebhookOutboxSink sink;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/outbox", exchange -> {
+            received.set(new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8));
+            exchange.sendResponseHeaders(status.get(), -1);
+            exchange.close();
+        });
+        server.start();
+        // как у построителя Spring Boot: даты в ISO-формате
+        ObjectMapper objectMapper = JsonMapper.builder()
+                .findAndAddModules()
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .build();
+        RestClient.Builder restClientBuilder = RestClient.builder().messageConverters(converters -> {
+            converters.clear();
+            converters.add(new MappingJackson2HttpMessageConverter(objectMapper));
+        });
+        sink = new WebhookOutboxSink(restClientBuilder,
+                "http://localhost:" + server.getAddress().getPort() + "/outbox", Duration.ofSeconds(2));
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    void send_ShouldPostBatchAsJsonArray() {
+        sink.send(List.of(new OutboxMessage(7, "1111222233334444", "test@example.com", "card-status",
+                "{\"status\":\"BLOCKED\"}", LocalDateTime.of(2026, 10, 19, 12, 0))));
+
+        String body = received.get();
+        assertTrue(body.startsWith("["));
+        assertTrue(body.contains("\"id\":7"));
+        assertTrue(body.contains("\"orderingKey\":\"1111222233334444\""));
+        assertTrue(body.contains("\"payload\":{\"status\":\"BLOCKED\"}"));
+        assertTrue(body.contains("\"createdAt\":\"2026-10-19T12:00:00\""));
+    }
+
+    @Test
+    void send_ErrorResponse_ShouldThrow() {
+        status.set(503);
+
+        assertThrows(RestClientResponseException.class, () -> sink.send(List.of(new OutboxMessage(
+                1, "1111222233334444", "test@example.com", "card-status", "{}", LocalDateTime.now()))));
+    }
+}
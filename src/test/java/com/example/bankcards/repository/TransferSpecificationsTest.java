@@ -0,0 +1,102 @@
+package com.example.bankcards.repository;
+
+import com.example.bankcards.dto.transfer.TransferDirection;
+import com.example.bankcards.dto.transfer.TransferFilterDtoRequest;
+import com.example.bankcards.entity.money.Money;
+import com.example.bankcards.entity.transfer.Transfer;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.Root;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+/**
+ * Проверяет, что условия истории переводов сравнивают столбцы напрямую, без функций над ними,
+ * поэтому PostgreSQL может выполнять их по индексам.
+ */
+@ExtendWith(MockitoExtension.class)
+class TransferSpecificationsTest {
+
+    @Mock
+    private Root<Transfer> root;
+
+    @Mock
+    private CriteriaQuery<?> query;
+
+    @Mock
+    private CriteriaBuilder cb;
+
+    @Mock
+    private Path<Object> timePath;
+
+    @Mock
+    private Path<Object> fromCardPath;
+
+    @Mock
+    private Path<Object> toCardPath;
+
+    @Mock
+    private Path<Object> amountPath;
+
+    @BeforeEach
+    void setUp() {
+        lenient().when(root.get("time")).thenReturn(timePath);
+        lenient().when(root.get("fromCardNumber")).thenReturn(fromCardPath);
+        lenient().when(root.get("toCardNumber")).thenReturn(toCardPath);
+        lenient().when(root.get("amount")).thenReturn(amountPath);
+    }
+
+    @Test
+    void matching_AllFilters_ShouldCompareColumnsDirectly() {
+        TransferFilterDtoRequest filter = new TransferFilterDtoRequest();
+        filter.setFromTime(LocalDateTime.of(2024, 1, 1, 0, 0));
+        filter.setToTime(LocalDateTime.of(2024, 2, 1, 0, 0));
+        filter.setCardNumber("1234567812345678");
+        filter.setDirection(TransferDirection.INCOMING);
+        filter.setMinAmount(new BigDecimal("100.00"));
+        filter.setMaxAmount(new BigDecimal("500.00"));
+
+        TransferSpecifications.matching(filter).toPredicate(root, query, cb);
+
+        verify(cb).greaterThanOrEqualTo(any(Path.class), eq(filter.getFromTime()));
+        verify(cb).lessThan(any(Path.class), eq(filter.getToTime()));
+        verify(cb).equal(toCardPath, "1234567812345678");
+        verify(cb, never()).equal(eq(fromCardPath), anyString());
+        verify(cb).greaterThanOrEqualTo(any(Path.class), eq(Money.of(new BigDecimal("100.00"))));
+        verify(cb).lessThanOrEqualTo(any(Path.class), eq(Money.of(new BigDecimal("500.00"))));
+        verify(cb, never()).function(anyString(), any(), any());
+        verify(cb, never()).lower(any());
+    }
+
+    @Test
+    void matching_CardWithoutDirection_ShouldMatchEitherSide() {
+        TransferFilterDtoRequest filter = new TransferFilterDtoRequest();
+        filter.setCardNumber("1234567812345678");
+
+        TransferSpecifications.matching(filter).toPredicate(root, query, cb);
+
+        verify(cb).equal(toCardPath, "1234567812345678");
+        verify(cb).equal(fromCardPath, "1234567812345678");
+        verify(cb).or(any(), any());
+    }
+
+    @Test
+    void fetchUser_CountQuery_ShouldNotFetch() {
+        doReturn(Long.class).when(query).getResultType();
+
+        TransferSpecifications.fetchUser().toPredicate(root, query, cb);
+
+        verify(root, never()).fetch(anyString());
+    }
+}
@@ -0,0 +1,252 @@
+package com.example.bankcards.service.impl;
+
+import com.example.bankcards.cache.CardSnapshot;
+import com.example.bankcards.cache.CardSnapshotCache;
+import com.example.bankcards.dto.transfer.AsyncTransferStatus;
+import com.example.bankcards.dto.transfer.TransferDtoRequest;
+import com.example.bankcards.dto.transfer.TransferDtoResponse;
+import com.example.bankcards.dto.transfer.TransferStatusDtoResponse;
+import com.example.bankcards.entity.card.CardStatus;
+import com.example.bankcards.exception.exceptions.InvalidRequestException;
+import com.example.bankcards.exception.exceptions.ResourceNotFoundException;
+import com.example.bankcards.exception.exceptions.TooManyRequestsException;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.IdempotencyKeyRepository;
+import com.example.bankcards.service.TransferService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class AsyncTransferServiceImplTest {
+
+    private static final String FROM = "1234567812345678";
+
+    private static final String TO = "8765432187654321";
+
+    @Mock
+    private TransferService transferService;
+
+    @Mock
+    private CardRepository cardRepository;
+
+    @Mock
+    private IdempotencyKeyRepository idempotencyKeyRepository;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    // задачи полос не выполняются до явного запуска в тесте
+    private final List<List<Runnable>> laneTasks = List.of(new ArrayList<>(), new ArrayList<>());
+
+    private AsyncTransferServiceImpl asyncTransferService;
+
+    private Authentication authentication;
+
+    private TransferDtoRequest request;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        CardSnapshotCache cardSnapshotCache =
+                new CardSnapshotCache(cardRepository, meterRegistry, 100, Duration.ofMinutes(5));
+        List<Executor> lanes = laneTasks.stream().<Executor>map(tasks -> tasks::add).toList();
+        asyncTransferService = new AsyncTransferServiceImpl(transferService, cardSnapshotCache, idempotencyKeyRepository,
+                meterRegistry, lanes,
+                Duration.ofMinutes(10), 1000);
+
+        authenticate("test@example.com");
+
+        request = new TransferDtoRequest();
+        request.setFromCardNumber(FROM);
+        request.setToCardNumber(TO);
+        request.setAmount(new BigDecimal("100.00"));
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void submit_ValidRequest_ShouldReturnPendingAndExecuteInLane() {
+        stubSnapshots();
+        AtomicReference<Authentication> laneAuthentication = new AtomicReference<>();
+        when(transferService.transferBetweenCardsOneUser(eq(request), any())).thenAnswer(invocation -> {
+            laneAuthentication.set(SecurityContextHolder.getContext().getAuthentication());
+            return transferResponse();
+        });
+
+        TransferStatusDtoResponse submitted = asyncTransferService.submit(request);
+
+        assertEquals(AsyncTransferStatus.PENDING, submitted.getStatus());
+        assertEquals(1, queuedTasks());
+        assertEquals(1.0, meterRegistry.get("transfers.async.pending").gauge().value());
+
+        runQueuedTasks();
+
+        verify(transferService).transferBetweenCardsOneUser(request, submitted.getId());
+        assertSame(authentication, laneAuthentication.get());
+        TransferStatusDtoResponse status = getStatus(submitted.getId(), Duration.ZERO);
+        assertEquals(AsyncTransferStatus.COMPLETED, status.getStatus());
+        assertEquals(FROM, status.getTransfer().getFromCardNumber());
+        assertEquals(0.0, meterRegistry.get("transfers.async.pending").gauge().value());
+    }
+
+    @Test
+    void submit_SameSourceCard_ShouldUseSameLane() {
+        stubSnapshots();
+
+        asyncTransferService.submit(request);
+        asyncTransferService.submit(request);
+
+        assertTrue(laneTasks.stream().anyMatch(tasks -> tasks.size() == 2));
+    }
+
+    @Test
+    void submit_SameCard_ShouldThrowWithoutQueueing() {
+        request.setToCardNumber(FROM);
+
+        assertThrows(InvalidRequestException.class, () -> asyncTransferService.submit(request));
+
+        assertEquals(0, queuedTasks());
+    }
+
+    @Test
+    void submit_LaneFull_ShouldThrowTooManyRequests() {
+        stubSnapshots();
+        Executor rejecting = task -> {
+            throw new RejectedExecutionException();
+        };
+        asyncTransferService = new AsyncTransferServiceImpl(transferService,
+                new CardSnapshotCache(cardRepository, new SimpleMeterRegistry(), 100, Duration.ofMinutes(5)),
+                idempotencyKeyRepository, new SimpleMeterRegistry(), List.of(rejecting), Duration.ofMinutes(10), 1000);
+
+        assertThrows(TooManyRequestsException.class, () -> asyncTransferService.submit(request));
+    }
+
+    @Test
+    void getStatus_Pending_ShouldCompleteWhenTransferFinishes() {
+        stubSnapshots();
+        when(transferService.transferBetweenCardsOneUser(eq(request), any())).thenReturn(transferResponse());
+        TransferStatusDtoResponse submitted = asyncTransferService.submit(request);
+
+        DeferredResult<TransferStatusDtoResponse> result =
+                asyncTransferService.getStatus(submitted.getId(), Duration.ofSeconds(30));
+        assertFalse(result.hasResult());
+
+        runQueuedTasks();
+
+        assertTrue(result.hasResult());
+        assertEquals(AsyncTransferStatus.COMPLETED, ((TransferStatusDtoResponse) result.getResult()).getStatus());
+    }
+
+    @Test
+    void getStatus_FailedTransfer_ShouldReturnError() {
+        stubSnapshots();
+        when(transferService.transferBetweenCardsOneUser(eq(request), any()))
+                .thenThrow(new InvalidRequestException("There are not enough funds on the card from " +
+                        "which the transfer is being made"));
+        TransferStatusDtoResponse submitted = asyncTransferService.submit(request);
+
+        runQueuedTasks();
+
+        TransferStatusDtoResponse status = getStatus(submitted.getId(), Duration.ZERO);
+        assertEquals(AsyncTransferStatus.FAILED, status.getStatus());
+        assertEquals("There are not enough funds on the card from which the transfer is being made",
+                status.getError());
+        assertNull(status.getTransfer());
+    }
+
+    @Test
+    void getStatus_OtherUser_ShouldThrowNotFound() {
+        stubSnapshots();
+        TransferStatusDtoResponse submitted = asyncTransferService.submit(request);
+
+        authenticate("other@example.com");
+
+        assertThrows(ResourceNotFoundException.class,
+                () -> asyncTransferService.getStatus(submitted.getId(), Duration.ZERO));
+    }
+
+    @Test
+    void getStatus_CompletedOnOtherNode_ShouldReadIdempotencyKey() {
+        TransferDtoResponse transfer = transferResponse();
+        transfer.setTime(LocalDateTime.now());
+        when(idempotencyKeyRepository.find("test@example.com", "transfer-id")).thenReturn(Optional.of(transfer));
+
+        TransferStatusDtoResponse status = getStatus("transfer-id", Duration.ofSeconds(30));
+
+        assertEquals(AsyncTransferStatus.COMPLETED, status.getStatus());
+        assertSame(transfer, status.getTransfer());
+    }
+
+    @Test
+    void getStatus_UnknownTransfer_ShouldThrowNotFound() {
+        when(idempotencyKeyRepository.find("test@example.com", "transfer-id")).thenReturn(Optional.empty());
+
+        assertThrows(ResourceNotFoundException.class,
+                () -> asyncTransferService.getStatus("transfer-id", Duration.ZERO));
+    }
+
+    private void authenticate(String email) {
+        UserDetails principal = User.withUsername(email).password("").roles("USER").build();
+        authentication = new UsernamePasswordAuthenticationToken(principal, null, principal.getAuthorities());
+        SecurityContextHolder.getContext().setAuthentication(authentication);
+    }
+
+    private void stubSnapshots() {
+        LocalDate expirationDate = LocalDate.now().plusYears(1);
+        when(cardRepository.findSnapshotByNumber(FROM)).thenReturn(Optional.of(
+                new CardSnapshot(FROM, "test@example.com", CardStatus.ACTIVE, expirationDate, 0)));
+        when(cardRepository.findSnapshotByNumber(TO)).thenReturn(Optional.of(
+                new CardSnapshot(TO, "test@example.com", CardStatus.ACTIVE, expirationDate, 0)));
+    }
+
+    private TransferDtoResponse transferResponse() {
+        return TransferDtoResponse.builder()
+                .userEmail("test@example.com")
+                .fromCardNumber(FROM)
+                .toCardNumber(TO)
+                .build();
+    }
+
+    private TransferStatusDtoResponse getStatus(String id, Duration wait) {
+        return (TransferStatusDtoResponse) asyncTransferService.getStatus(id, wait).getResult();
+    }
+
+    private int queuedTasks() {
+        return laneTasks.stream().mapToInt(List::size).sum();
+    }
+
+    private void runQueuedTasks() {
+        laneTasks.forEach(tasks -> {
+            tasks.forEach(Runnable::run);
+            tasks.clear();
+        });
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.bankcards.service.impl;
+
+import com.example.bankcards.repository.CardNumberRangeRepository;
+import com.example.bankcards.util.CardUtils;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CardNumberAllocatorImplTest {
+
+    @Mock
+    private CardNumberRangeRepository cardNumberRangeRepository;
+
+    @Test
+    void allocate_ShouldIssueLuhnValidNumbersWithBin() {
+        when(cardNumberRangeRepository.reserveBlock("400000", 3)).thenReturn(3L);
+        CardNumberAllocatorImpl allocator = new CardNumberAllocatorImpl(cardNumberRangeRepository, "400000", 3);
+
+        String first = allocator.allocate();
+        String second = allocator.allocate();
+
+        assertEquals("4000000000000002", first);
+        assertTrue(second.startsWith("400000"));
+        assertTrue(CardUtils.isLuhnValid(first));
+        assertTrue(CardUtils.isLuhnValid(second));
+        assertNotEquals(first, second);
+    }
+
+    @Test
+    void allocate_ShouldReserveBlockOnlyWhenExhausted() {
+        when(cardNumberRangeRepository.reserveBlock("400000", 2)).thenReturn(2L, 10L);
+        CardNumberAllocatorImpl allocator = new CardNumberAllocatorImpl(cardNumberRangeRepository, "400000", 2);
+
+        Set<String> numbers = new HashSet<>();
+        for (int i = 0; i < 4; i++) {
+            numbers.add(allocator.allocate());
+        }
+
+        assertEquals(4, numbers.size());
+        long lastPayload = 400000000000009L;
+        assertTrue(numbers.contains(CardUtils.unpackCardNumber(lastPayload * 10 + CardUtils.luhnCheckDigit(lastPayload))));
+        verify(cardNumberRangeRepository, times(2)).reserveBlock("400000", 2);
+    }
+
+    @Test
+    void allocate_AccountNumbersExhausted_ShouldThrowException() {
+        when(cardNumberRangeRepository.reserveBlock("400000", 10)).thenReturn(1_000_000_010L);
+        CardNumberAllocatorImpl allocator = new CardNumberAllocatorImpl(cardNumberRangeRepository, "400000", 10);
+
+        assertThrows(IllegalStateException.class, allocator::allocate);
+    }
+
+    @Test
+    void constructor_InvalidBin_ShouldThrowException() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new CardNumberAllocatorImpl(cardNumberRangeRepository, "40000A", 10));
+    }
+}
@@ -1,24 +1,37 @@
 package com.example.bankcards.service.impl;
 
+import com.example.bankcards.cache.CardSnapshot;
+import com.example.bankcards.cache.CardSnapshotCache;
+import com.example.bankcards.dto.card.CardBlockDecisionDtoResponse;
+import com.example.bankcards.dto.card.CardBlockRequestDtoResponse;
 import com.example.bankcards.dto.card.CardCreateDtoRequest;
 import com.example.bankcards.dto.card.CardDtoResponse;
 import com.example.bankcards.dto.card.TotalBalanceDtoResponse;
+import com.example.bankcards.dto.page.KeysetPageDtoResponse;
 import com.example.bankcards.dto.page.PageDtoResponse;
 import com.example.bankcards.entity.card.Card;
 import com.example.bankcards.entity.card.CardStatus;
+import com.example.bankcards.entity.money.Money;
 import com.example.bankcards.entity.user.Role;
 import com.example.bankcards.entity.user.User;
+import com.example.bankcards.event.CardEvent;
 import com.example.bankcards.exception.exceptions.ConflictRequestException;
-import com.example.bankcards.exception.exceptions.InvalidRequestException;
 import com.example.bankcards.exception.exceptions.ResourceNotFoundException;
+import com.example.bankcards.repository.CardBalanceRepository;
 import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.CardStatusRepository;
+import com.example.bankcards.repository.UserBalanceVersionRepository;
 import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.service.CardNumberAllocator;
+import com.example.bankcards.service.LedgerService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
@@ -28,7 +41,9 @@ import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
 
 import java.math.BigDecimal;
+import java.time.Duration;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
@@ -42,9 +57,27 @@ class CardServiceImplTest {
     @Mock
     private CardRepository cardRepository;
 
+    @Mock
+    private CardStatusRepository cardStatusRepository;
+
     @Mock
     private UserRepository userRepository;
 
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private CardNumberAllocator cardNumberAllocator;
+
+    @Mock
+    private LedgerService ledgerService;
+
+    @Mock
+    private CardBalanceRepository cardBalanceRepository;
+
+    @Mock
+    private UserBalanceVersionRepository userBalanceVersionRepository;
+
     @Mock
     private SecurityContext securityContext;
 
@@ -54,7 +87,8 @@ class CardServiceImplTest {
     @Mock
     private UserDetails userDetails;
 
-    @InjectMocks
+    private CardSnapshotCache cardSnapshotCache;
+
     private CardServiceImpl cardService;
 
     private User testUser;
@@ -63,6 +97,11 @@ class CardServiceImplTest {
 
     @BeforeEach
     void setUp() {
+        cardSnapshotCache = new CardSnapshotCache(cardRepository, new SimpleMeterRegistry(), 100, Duration.ofMinutes(5));
+        cardService = new CardServiceImpl(cardRepository, cardStatusRepository, userRepository, cardSnapshotCache,
+                cardNumberAllocator, eventPublisher, ledgerService, cardBalanceRepository,
+                userBalanceVersionRepository);
+
         testUser = new User();
         testUser.setEmail("test@example.com");
         testUser.setName("John");
@@ -75,10 +114,9 @@ class CardServiceImplTest {
         testCard.setFullNameUser("John Doe");
         testCard.setExpirationDate(LocalDate.now().plusMonths(12));
         testCard.setStatus(CardStatus.ACTIVE);
-        testCard.setBalance(new BigDecimal("1000.00"));
+        testCard.setBalance(Money.of(new BigDecimal("1000.00")));
 
         createRequest = new CardCreateDtoRequest();
-        createRequest.setNumber("1234567812345678");
         createRequest.setUserEmail("test@example.com");
         createRequest.setCountMonth(12);
         createRequest.setAmount(new BigDecimal("1000.00"));
@@ -87,7 +125,7 @@ class CardServiceImplTest {
     @Test
     void create_ValidRequest_ShouldCreateCard() {
         when(userRepository.findByEmail("test@example.com")).thenReturn(Optional.of(testUser));
-        when(cardRepository.existsByNumber("1234567812345678")).thenReturn(false);
+        when(cardNumberAllocator.allocate()).thenReturn("1234567812345678");
         when(cardRepository.save(any(Card.class))).thenReturn(testCard);
 
         CardDtoResponse response = cardService.create(createRequest);
@@ -97,78 +135,127 @@ class CardServiceImplTest {
         assertEquals("test@example.com", response.getEmail());
         assertEquals("John Doe", response.getFullNameUser());
         assertEquals(CardStatus.ACTIVE, response.getStatus());
-        assertEquals(new BigDecimal("1000.00"), response.getBalance());
+        assertEquals(Money.of(new BigDecimal("1000.00")), response.getBalance());
 
         verify(userRepository).findByEmail("test@example.com");
-        verify(cardRepository).existsByNumber("1234567812345678");
         verify(cardRepository).save(any(Card.class));
+        verify(ledgerService).recordOpening(eq("1234567812345678"), eq(Money.of(new BigDecimal("1000.00"))),
+                any(LocalDateTime.class));
     }
 
     @Test
-    void create_InvalidCardNumber_ShouldThrowException() {
-        createRequest.setNumber("invalid");
+    void create_ShouldInsertCardWithAllocatedNumber() {
         when(userRepository.findByEmail("test@example.com")).thenReturn(Optional.of(testUser));
+        when(cardNumberAllocator.allocate()).thenReturn("4000000000000002");
+        when(cardRepository.save(any(Card.class))).thenAnswer(invocation -> invocation.getArgument(0));
 
-        assertThrows(InvalidRequestException.class, () -> {
-            cardService.create(createRequest);
-        });
+        cardService.create(createRequest);
 
-        verify(userRepository).findByEmail(any());
-        verify(cardRepository, never()).existsByNumber(any());
-        verify(cardRepository, never()).save(any());
+        ArgumentCaptor<Card> saved = ArgumentCaptor.forClass(Card.class);
+        verify(cardRepository).save(saved.capture());
+        assertEquals("4000000000000002", saved.getValue().getNumber());
+        assertTrue(saved.getValue().isNew());
+        verify(cardRepository, never()).findByNumber(any());
     }
 
     @Test
-    void create_DuplicateCardNumber_ShouldThrowException() {
-        when(userRepository.findByEmail("test@example.com")).thenReturn(Optional.of(testUser));
-        when(cardRepository.existsByNumber("1234567812345678")).thenReturn(true);
+    void blocked_CardExists_ShouldBlockInSingleStatement() {
+        testCard.setStatus(CardStatus.BLOCKED);
+        when(cardStatusRepository.block("1234567812345678")).thenReturn(Optional.of(testCard));
 
-        assertThrows(ConflictRequestException.class, () -> {
-            cardService.create(createRequest);
+        cardService.blocked("1234567812345678");
+
+        verify(cardStatusRepository).block("1234567812345678");
+        verifyNoInteractions(cardRepository, userRepository);
+
+        ArgumentCaptor<CardEvent> event = ArgumentCaptor.forClass(CardEvent.class);
+        verify(eventPublisher).publishEvent(event.capture());
+        assertEquals("test@example.com", event.getValue().userEmail());
+        assertEquals("card-status", event.getValue().eventName());
+        assertEquals("1234567812345678", event.getValue().orderingKey());
+        assertEquals(CardStatus.BLOCKED, event.getValue().card().getStatus());
+    }
+
+    @Test
+    void blocked_CardNotFound_ShouldThrowException() {
+        when(cardStatusRepository.block("1234567812345678")).thenReturn(Optional.empty());
+        when(cardRepository.findSnapshotByNumber("1234567812345678")).thenReturn(Optional.empty());
+
+        assertThrows(ResourceNotFoundException.class, () -> {
+            cardService.blocked("1234567812345678");
         });
 
-        verify(userRepository).findByEmail("test@example.com");
-        verify(cardRepository).existsByNumber("1234567812345678");
-        verify(cardRepository, never()).save(any());
+        verify(eventPublisher, never()).publishEvent(any());
     }
 
     @Test
-    void blocked_CardExists_ShouldBlockCard() {
-        when(cardRepository.findByNumber("1234567812345678")).thenReturn(Optional.of(testCard));
-        when(cardRepository.save(any(Card.class))).thenReturn(testCard);
+    void blocked_CachedCard_ShouldEvictSnapshot() {
+        when(cardRepository.findSnapshotByNumber("1234567812345678")).thenReturn(Optional.of(CardSnapshot.of(testCard)));
+        cardSnapshotCache.get("1234567812345678");
+        when(cardStatusRepository.block("1234567812345678")).thenReturn(Optional.of(testCard));
 
         cardService.blocked("1234567812345678");
+        cardSnapshotCache.get("1234567812345678");
 
-        assertEquals(CardStatus.BLOCKED, testCard.getStatus());
-        verify(cardRepository).findByNumber("1234567812345678");
-        verify(cardRepository).save(testCard);
+        verify(cardRepository, times(2)).findSnapshotByNumber("1234567812345678");
     }
 
     @Test
-    void activation_ValidCard_ShouldActivateCard() {
-        testCard.setStatus(CardStatus.BLOCKED);
-        when(cardRepository.findByNumber("1234567812345678")).thenReturn(Optional.of(testCard));
-        when(cardRepository.save(any(Card.class))).thenReturn(testCard);
+    void activation_ValidCard_ShouldActivateInSingleStatement() {
+        when(cardStatusRepository.activate("1234567812345678", LocalDate.now())).thenReturn(Optional.of(testCard));
 
         cardService.activation("1234567812345678");
 
-        assertEquals(CardStatus.ACTIVE, testCard.getStatus());
-        verify(cardRepository).findByNumber("1234567812345678");
-        verify(cardRepository).save(testCard);
+        verify(cardStatusRepository).activate("1234567812345678", LocalDate.now());
+        verifyNoInteractions(cardRepository, userRepository);
+        verify(eventPublisher).publishEvent(any(CardEvent.class));
     }
 
     @Test
     void activation_ExpiredCard_ShouldThrowException() {
         testCard.setExpirationDate(LocalDate.now().minusDays(1));
         testCard.setStatus(CardStatus.EXPIRED);
-        when(cardRepository.findByNumber("1234567812345678")).thenReturn(Optional.of(testCard));
+        when(cardStatusRepository.activate("1234567812345678", LocalDate.now())).thenReturn(Optional.empty());
+        when(cardRepository.findSnapshotByNumber("1234567812345678")).thenReturn(Optional.of(CardSnapshot.of(testCard)));
 
         assertThrows(ConflictRequestException.class, () -> {
             cardService.activation("1234567812345678");
         });
 
-        verify(cardRepository).findByNumber("1234567812345678");
         verify(cardRepository, never()).save(any());
+        verify(eventPublisher, never()).publishEvent(any());
+    }
+
+    @Test
+    void activation_AlreadyActive_ShouldNotPublishEvent() {
+        testCard.setStatus(CardStatus.ACTIVE);
+        when(cardStatusRepository.activate("1234567812345678", LocalDate.now())).thenReturn(Optional.empty());
+        when(cardRepository.findSnapshotByNumber("1234567812345678")).thenReturn(Optional.of(CardSnapshot.of(testCard)));
+
+        cardService.activation("1234567812345678");
+
+        verify(eventPublisher, never()).publishEvent(any());
+    }
+
+    @Test
+    void activation_ActiveCardPastExpiration_ShouldThrowException() {
+        testCard.setStatus(CardStatus.ACTIVE);
+        testCard.setExpirationDate(LocalDate.now().minusDays(1));
+        when(cardStatusRepository.activate("1234567812345678", LocalDate.now())).thenReturn(Optional.empty());
+        when(cardRepository.findSnapshotByNumber("1234567812345678")).thenReturn(Optional.of(CardSnapshot.of(testCard)));
+
+        assertThrows(ConflictRequestException.class, () -> cardService.activation("1234567812345678"));
+    }
+
+    @Test
+    void blocked_AlreadyBlocked_ShouldNotPublishEvent() {
+        testCard.setStatus(CardStatus.BLOCKED);
+        when(cardStatusRepository.block("1234567812345678")).thenReturn(Optional.empty());
+        when(cardRepository.findSnapshotByNumber("1234567812345678")).thenReturn(Optional.of(CardSnapshot.of(testCard)));
+
+        cardService.blocked("1234567812345678");
+
+        verify(eventPublisher, never()).publishEvent(any());
     }
 
     @Test
@@ -180,6 +267,22 @@ class CardServiceImplTest {
 
         verify(cardRepository).findByNumber("1234567812345678");
         verify(cardRepository).delete(testCard);
+        verify(userRepository).incrementCardsVersion("test@example.com");
+    }
+
+    @Test
+    void getCardsVersionTag_ShouldCombineCardsAndBalancesVersions() {
+        when(securityContext.getAuthentication()).thenReturn(authentication);
+        SecurityContextHolder.setContext(securityContext);
+        when(authentication.getPrincipal()).thenReturn(userDetails);
+        when(userDetails.getUsername()).thenReturn("test@example.com");
+        when(userRepository.findCardsVersionByEmail("test@example.com")).thenReturn(Optional.of(7L));
+        when(userBalanceVersionRepository.findVersion("test@example.com")).thenReturn(42L);
+
+        String tag = cardService.getCardsVersionTag();
+
+        assertEquals(Integer.toHexString("test@example.com".hashCode()) + "-7-42", tag);
+        verifyNoInteractions(cardRepository, cardBalanceRepository);
     }
 
     @Test
@@ -225,6 +328,7 @@ class CardServiceImplTest {
         assertNotNull(result);
         assertEquals("**** **** **** 5678", result.getMaskedCardNumber());
         verify(cardRepository).findByNumber("1234567812345678");
+        verify(cardRepository, never()).findSnapshotByNumber(any());
     }
 
     @Test
@@ -244,24 +348,39 @@ class CardServiceImplTest {
             cardService.getByNumber("1234567812345678");
         });
 
-        verify(cardRepository).findByNumber("1234567812345678");
+        verify(cardRepository, never()).findSnapshotByNumber(any());
+        verify(cardRepository, never()).save(any());
     }
 
     @Test
-    void requestToBlocked_ValidCard_ShouldSetRequestToBlocked() {
+    void requestToBlocked_ValidCard_ShouldUpdateInSingleStatement() {
         when(securityContext.getAuthentication()).thenReturn(authentication);
         SecurityContextHolder.setContext(securityContext);
         when(authentication.getPrincipal()).thenReturn(userDetails);
         when(userDetails.getUsername()).thenReturn("test@example.com");
-
-        when(cardRepository.findByNumber("1234567812345678")).thenReturn(Optional.of(testCard));
-        when(cardRepository.save(any(Card.class))).thenReturn(testCard);
+        when(cardStatusRepository.requestBlock("1234567812345678", "test@example.com", LocalDate.now()))
+                .thenReturn(true);
 
         cardService.requestToBlocked("1234567812345678");
 
-        assertTrue(testCard.getRequestToBlocked());
-        verify(cardRepository).findByNumber("1234567812345678");
-        verify(cardRepository).save(testCard);
+        verify(cardStatusRepository).requestBlock("1234567812345678", "test@example.com", LocalDate.now());
+        verifyNoInteractions(cardRepository, userRepository);
+    }
+
+    @Test
+    void requestToBlocked_ExpiredCard_ShouldThrowConflict() {
+        when(securityContext.getAuthentication()).thenReturn(authentication);
+        SecurityContextHolder.setContext(securityContext);
+        when(authentication.getPrincipal()).thenReturn(userDetails);
+        when(userDetails.getUsername()).thenReturn("test@example.com");
+        testCard.setStatus(CardStatus.EXPIRED);
+        when(cardStatusRepository.requestBlock("1234567812345678", "test@example.com", LocalDate.now()))
+                .thenReturn(false);
+        when(cardRepository.findSnapshotByNumber("1234567812345678")).thenReturn(Optional.of(CardSnapshot.of(testCard)));
+
+        assertThrows(ConflictRequestException.class, () -> {
+            cardService.requestToBlocked("1234567812345678");
+        });
     }
 
     @Test
@@ -273,15 +392,15 @@ class CardServiceImplTest {
 
         Card card1 = new Card();
         card1.setStatus(CardStatus.ACTIVE);
-        card1.setBalance(new BigDecimal("500.00"));
+        card1.setBalance(Money.of(new BigDecimal("500.00")));
 
         Card card2 = new Card();
         card2.setStatus(CardStatus.ACTIVE);
-        card2.setBalance(new BigDecimal("300.00"));
+        card2.setBalance(Money.of(new BigDecimal("300.00")));
 
         Card inactiveCard = new Card();
         inactiveCard.setStatus(CardStatus.BLOCKED);
-        inactiveCard.setBalance(new BigDecimal("200.00"));
+        inactiveCard.setBalance(Money.of(new BigDecimal("200.00")));
 
         when(cardRepository.findAllByUser_Email("test@example.com")).thenReturn(List.of(card1, card2, inactiveCard));
 
@@ -289,7 +408,7 @@ class CardServiceImplTest {
 
         assertNotNull(result);
         assertEquals("test@example.com", result.getEmail());
-        assertEquals(new BigDecimal("800.00"), result.getTotalBalance());
+        assertEquals(Money.of(new BigDecimal("800.00")), result.getTotalBalance());
         verify(cardRepository).findAllByUser_Email("test@example.com");
     }
 
@@ -319,4 +438,89 @@ class CardServiceImplTest {
             cardService.getByNumber("9999999999999999");
         });
     }
+
+    @Test
+    void getBlockRequests_MorePending_ShouldReturnNextCursor() {
+        Card secondCard = new Card();
+        secondCard.setNumber("4111111111111111");
+        secondCard.setUser(testUser);
+        when(cardRepository.findBlockRequestsAfter(eq(""), any(PageRequest.class)))
+                .thenReturn(List.of(testCard, secondCard));
+
+        KeysetPageDtoResponse<CardBlockRequestDtoResponse> result = cardService.getBlockRequests(null, 1);
+
+        assertEquals(1, result.getContent().size());
+        assertEquals("1234567812345678", result.getContent().get(0).getCardNumber());
+        assertEquals("1234567812345678", result.getNextCursor());
+        verify(cardRepository).findBlockRequestsAfter("", PageRequest.of(0, 2));
+    }
+
+    @Test
+    void getBlockRequests_LastPage_ShouldReturnNullCursor() {
+        when(cardRepository.findBlockRequestsAfter(eq("1234567812345678"), any(PageRequest.class)))
+                .thenReturn(List.of());
+
+        KeysetPageDtoResponse<CardBlockRequestDtoResponse> result =
+                cardService.getBlockRequests("1234567812345678", 50);
+
+        assertTrue(result.getContent().isEmpty());
+        assertNull(result.getNextCursor());
+    }
+
+    @Test
+    void processBlockRequests_Approve_ShouldPublishOnlyChangedCards() {
+        List<String> numbers = List.of("1234567812345678", "4111111111111111");
+        testCard.setStatus(CardStatus.BLOCKED);
+        when(cardStatusRepository.approveBlockRequests(numbers)).thenReturn(List.of(testCard));
+
+        CardBlockDecisionDtoResponse result = cardService.processBlockRequests(numbers, true);
+
+        assertEquals(1, result.getProcessed());
+        verifyNoInteractions(cardRepository, userRepository);
+
+        ArgumentCaptor<CardEvent> event = ArgumentCaptor.forClass(CardEvent.class);
+        verify(eventPublisher).publishEvent(event.capture());
+        assertEquals("1234567812345678", event.getValue().orderingKey());
+        assertEquals(CardStatus.BLOCKED, event.getValue().card().getStatus());
+    }
+
+    @Test
+    void processBlockRequests_Reject_ShouldClearFlags() {
+        List<String> numbers = List.of("1234567812345678");
+        when(cardRepository.rejectBlockRequests(numbers)).thenReturn(1);
+
+        CardBlockDecisionDtoResponse result = cardService.processBlockRequests(numbers, false);
+
+        assertEquals(1, result.getProcessed());
+        verify(cardRepository).rejectBlockRequests(numbers);
+        verifyNoInteractions(cardStatusRepository, eventPublisher);
+    }
+
+    @Test
+    void changeBalanceSlots_ExistingCard_ShouldFoldSlotsInResize() {
+        when(cardBalanceRepository.resizeSlots("1234567812345678", 8)).thenReturn(true);
+
+        cardService.changeBalanceSlots("1234567812345678", 8);
+
+        verify(cardBalanceRepository).resizeSlots("1234567812345678", 8);
+        verify(cardBalanceRepository, never()).sweepSlots(any());
+    }
+
+    @Test
+    void changeBalanceSlots_CardNotExists_ShouldThrowException() {
+        when(cardBalanceRepository.resizeSlots("1234567812345678", 8)).thenReturn(false);
+
+        assertThrows(ResourceNotFoundException.class, () -> cardService.changeBalanceSlots("1234567812345678", 8));
+    }
+
+    @Test
+    void compactBalanceSlots_ShouldSweepEachCardWithSlotBalance() {
+        when(cardBalanceRepository.findCardsWithSlotBalance(anyInt()))
+                .thenReturn(List.of("1234567812345678", "8765432187654321"));
+
+        cardService.compactBalanceSlots();
+
+        verify(cardBalanceRepository).sweepSlots("1234567812345678");
+        verify(cardBalanceRepository).sweepSlots("8765432187654321");
+    }
 }
@@ -0,0 +1,147 @@
+package com.example.bankcards.service.impl;
+
+import com.example.bankcards.dto.transfer.TransferDtoResponse;
+import com.example.bankcards.event.TransferEvent;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class EventServiceImplTest {
+
+    @Mock
+    private SecurityContext securityContext;
+
+    @Mock
+    private Authentication authentication;
+
+    @Mock
+    private UserDetails userDetails;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    // задачи отправки не выполняются, чтобы буфер подписчика заполнялся
+    private final List<Runnable> pendingSends = new ArrayList<>();
+
+    private EventServiceImpl eventService;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        eventService = new EventServiceImpl(meterRegistry, 2, 60_000, 0, pendingSends::add);
+
+        when(securityContext.getAuthentication()).thenReturn(authentication);
+        SecurityContextHolder.setContext(securityContext);
+        when(authentication.getPrincipal()).thenReturn(userDetails);
+        when(userDetails.getUsername()).thenReturn("test@example.com");
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void subscribe_ShouldRegisterSubscriber() {
+        SseEmitter emitter = eventService.subscribe();
+
+        assertNotNull(emitter);
+        assertEquals(1, eventService.getSubscriberCount());
+        assertEquals(1.0, meterRegistry.get("sse.subscribers").gauge().value());
+    }
+
+    @Test
+    void onUserEvent_OtherUser_ShouldNotScheduleSend() {
+        eventService.subscribe();
+
+        eventService.onUserEvent(transferEvent("other@example.com"));
+
+        assertTrue(pendingSends.isEmpty());
+    }
+
+    @Test
+    void onUserEvent_ShouldScheduleSingleSendPerSubscriber() {
+        eventService.subscribe();
+
+        eventService.onUserEvent(transferEvent("test@example.com"));
+        eventService.onUserEvent(transferEvent("test@example.com"));
+
+        assertEquals(1, pendingSends.size());
+        assertEquals(1, eventService.getSubscriberCount());
+    }
+
+    @Test
+    void onUserEvent_BufferFull_ShouldDropSlowSubscriber() {
+        eventService.subscribe();
+
+        for (int i = 0; i < 3; i++) {
+            eventService.onUserEvent(transferEvent("test@example.com"));
+        }
+
+        assertEquals(0, eventService.getSubscriberCount());
+        assertEquals(1.0, meterRegistry.get("sse.subscribers.dropped").counter().count());
+    }
+
+    @Test
+    void sendHeartbeats_ShouldReachEverySubscriber() {
+        eventService.subscribe();
+        eventService.subscribe();
+
+        eventService.sendHeartbeats();
+
+        assertEquals(2, pendingSends.size());
+    }
+
+    @Test
+    void dropStalledSubscribers_WriteInFlight_ShouldDropSubscriber() throws InterruptedException {
+        SseEmitter emitter = eventService.subscribe();
+        eventService.onUserEvent(transferEvent("test@example.com"));
+        Thread sender = new Thread(pendingSends.get(0));
+
+        // монитор эмиттера удерживается тестом, поэтому запись зависает так же, как на медленном клиенте
+        synchronized (emitter) {
+            sender.start();
+            while (sender.getState() != Thread.State.BLOCKED) {
+                Thread.onSpinWait();
+            }
+
+            eventService.dropStalledSubscribers();
+
+            assertEquals(0, eventService.getSubscriberCount());
+            assertEquals(1.0, meterRegistry.get("sse.subscribers.stalled").counter().count());
+        }
+        sender.join();
+
+        eventService.onUserEvent(transferEvent("test@example.com"));
+        assertEquals(1, pendingSends.size());
+    }
+
+    @Test
+    void dropStalledSubscribers_NoWriteInFlight_ShouldKeepSubscriber() {
+        eventService.subscribe();
+        eventService.onUserEvent(transferEvent("test@example.com"));
+
+        eventService.dropStalledSubscribers();
+
+        assertEquals(1, eventService.getSubscriberCount());
+    }
+
+    private static TransferEvent transferEvent(String email) {
+        return new TransferEvent(email, TransferDtoResponse.builder().userEmail(email).build());
+    }
+}
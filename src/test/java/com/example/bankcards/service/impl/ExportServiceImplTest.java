@@ -0,0 +1,150 @@
+package com.example.bankcards.service.impl;
+
+import com.example.bankcards.dto.export.ExportFormat;
+import com.example.bankcards.exception.exceptions.InvalidRequestException;
+import com.example.bankcards.repository.CardExportRepository;
+import com.example.bankcards.repository.TransferExportRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.time.LocalDateTime;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ExportServiceImplTest {
+
+    @Mock
+    private CardExportRepository cardExportRepository;
+
+    @Mock
+    private TransferExportRepository transferExportRepository;
+
+    @Mock
+    private ResultSet resultSet;
+
+    private ExportServiceImpl exportService;
+
+    @BeforeEach
+    void setUp() {
+        exportService = new ExportServiceImpl(cardExportRepository, new ObjectMapper(), transferExportRepository);
+    }
+
+    @Test
+    void exportCards_Csv_ShouldWriteHeaderAndEscapedRows() throws Exception {
+        stubCards();
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        exportService.exportCards(ExportFormat.CSV, outputStream);
+
+        String row = "**** **** **** 5670,user@example.com,\"Doe, \"\"John\"\"\",2027-01-15,ACTIVE,1000.00\n";
+        assertEquals("maskedCardNumber,email,fullNameUser,expirationDate,status,balance\n" + row + row,
+                outputStream.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void exportCards_Ndjson_ShouldWriteOneObjectPerLine() throws Exception {
+        stubCards();
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        exportService.exportCards(ExportFormat.NDJSON, outputStream);
+
+        String row = "{\"maskedCardNumber\":\"**** **** **** 5670\",\"email\":\"user@example.com\"," +
+                "\"fullNameUser\":\"Doe, \\\"John\\\"\",\"expirationDate\":\"2027-01-15\"," +
+                "\"status\":\"ACTIVE\",\"balance\":1000.00}\n";
+        assertEquals(row + row, outputStream.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void exportTransfers_Csv_ShouldWriteRowsInPeriod() throws Exception {
+        LocalDateTime fromTime = LocalDateTime.of(2024, 1, 1, 0, 0);
+        LocalDateTime toTime = LocalDateTime.of(2024, 2, 1, 0, 0);
+        stubTransfers(fromTime, toTime);
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        exportService.exportTransfers(ExportFormat.CSV, fromTime, toTime, false, outputStream);
+
+        assertEquals("id,userEmail,fromCardNumber,toCardNumber,amount,time\n" +
+                        "1024,user@example.com,1234567812345678,8765432187654321,1000.00,2024-01-15T14:30:00\n",
+                outputStream.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void exportTransfers_NdjsonGzip_ShouldWriteCompressedObjects() throws Exception {
+        stubTransfers(null, null);
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        exportService.exportTransfers(ExportFormat.NDJSON, null, null, true, outputStream);
+
+        try (GZIPInputStream inputStream = new GZIPInputStream(new ByteArrayInputStream(outputStream.toByteArray()))) {
+            assertEquals("{\"id\":1024,\"userEmail\":\"user@example.com\",\"fromCardNumber\":\"1234567812345678\"," +
+                            "\"toCardNumber\":\"8765432187654321\",\"amount\":1000.00,\"time\":\"2024-01-15T14:30:00\"}\n",
+                    new String(inputStream.readAllBytes(), StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    void exportTransfers_InvalidPeriod_ShouldThrowBeforeWriting() {
+        LocalDateTime time = LocalDateTime.of(2024, 1, 1, 0, 0);
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        assertThrows(InvalidRequestException.class,
+                () -> exportService.exportTransfers(ExportFormat.CSV, time, time, true, outputStream));
+
+        assertEquals(0, outputStream.size());
+        verifyNoInteractions(transferExportRepository);
+    }
+
+    @Test
+    void validateTransfersPeriod_OpenPeriod_ShouldPass() {
+        LocalDateTime time = LocalDateTime.of(2024, 1, 1, 0, 0);
+
+        assertDoesNotThrow(() -> exportService.validateTransfersPeriod(time, null));
+        assertDoesNotThrow(() -> exportService.validateTransfersPeriod(null, time));
+        assertThrows(InvalidRequestException.class, () -> exportService.validateTransfersPeriod(time.plusDays(1), time));
+    }
+
+    private void stubCards() throws Exception {
+        when(resultSet.getString("number")).thenReturn("1234567812345670");
+        when(resultSet.getString("user_email")).thenReturn("user@example.com");
+        when(resultSet.getString("full_name_user")).thenReturn("Doe, \"John\"");
+        when(resultSet.getObject("expiration_date", LocalDateTime.class))
+                .thenReturn(LocalDateTime.of(2027, 1, 15, 0, 0));
+        when(resultSet.getString("status")).thenReturn("ACTIVE");
+        when(resultSet.getString("balance")).thenReturn("1000.00");
+
+        doAnswer(invocation -> {
+            RowCallbackHandler handler = invocation.getArgument(0);
+            handler.processRow(resultSet);
+            handler.processRow(resultSet);
+            return null;
+        }).when(cardExportRepository).forEachCard(any());
+    }
+
+    private void stubTransfers(LocalDateTime fromTime, LocalDateTime toTime) throws Exception {
+        when(resultSet.getLong("id")).thenReturn(1024L);
+        when(resultSet.getString("user_email")).thenReturn("user@example.com");
+        when(resultSet.getString("from_card_number")).thenReturn("1234567812345678");
+        when(resultSet.getString("to_card_number")).thenReturn("8765432187654321");
+        when(resultSet.getString("amount")).thenReturn("1000.00");
+        when(resultSet.getObject("time", LocalDateTime.class)).thenReturn(LocalDateTime.of(2024, 1, 15, 14, 30));
+
+        doAnswer(invocation -> {
+            RowCallbackHandler handler = invocation.getArgument(2);
+            handler.processRow(resultSet);
+            return null;
+        }).when(transferExportRepository).forEachTransfer(eq(fromTime), eq(toTime), any());
+    }
+}
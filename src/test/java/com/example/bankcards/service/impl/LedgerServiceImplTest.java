@@ -0,0 +1,122 @@
+package com.example.bankcards.service.impl;
+
+import com.example.bankcards.dto.card.LedgerBalanceDtoResponse;
+import com.example.bankcards.entity.card.Card;
+import com.example.bankcards.entity.card.CardStatus;
+import com.example.bankcards.entity.ledger.LedgerEntry;
+import com.example.bankcards.entity.ledger.LedgerEntryType;
+import com.example.bankcards.entity.money.Money;
+import com.example.bankcards.entity.transfer.Transfer;
+import com.example.bankcards.entity.user.User;
+import com.example.bankcards.exception.exceptions.ResourceNotFoundException;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.LedgerEntryRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class LedgerServiceImplTest {
+
+    private static final String FROM = "1234567812345678";
+
+    private static final String TO = "8765432187654321";
+
+    @Mock
+    private LedgerEntryRepository ledgerEntryRepository;
+
+    @Mock
+    private CardRepository cardRepository;
+
+    @InjectMocks
+    private LedgerServiceImpl ledgerService;
+
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        user = new User();
+        user.setEmail("test@example.com");
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void recordTransfer_ShouldWriteBalancedDebitAndCredit() {
+        Transfer transfer = new Transfer(user, FROM, TO, Money.of(new BigDecimal("100.00")), LocalDateTime.now());
+
+        ledgerService.recordTransfer(transfer);
+
+        ArgumentCaptor<List<LedgerEntry>> entries = ArgumentCaptor.forClass(List.class);
+        verify(ledgerEntryRepository).saveAll(entries.capture());
+        LedgerEntry debit = entries.getValue().get(0);
+        LedgerEntry credit = entries.getValue().get(1);
+        assertEquals(FROM, debit.getCardNumber());
+        assertEquals(LedgerEntryType.DEBIT, debit.getEntryType());
+        assertEquals(Money.of(new BigDecimal("-100.00")), debit.getAmount());
+        assertEquals(TO, credit.getCardNumber());
+        assertEquals(LedgerEntryType.CREDIT, credit.getEntryType());
+        assertEquals(Money.ZERO, debit.getAmount().plus(credit.getAmount()));
+        assertEquals(debit.getTransactionId(), credit.getTransactionId());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void recordTransfers_ShouldWriteAllEntriesInOneCall() {
+        Money amount = Money.of(new BigDecimal("10.00"));
+        List<Transfer> transfers = List.of(
+                new Transfer(user, FROM, TO, amount, LocalDateTime.now()),
+                new Transfer(user, TO, FROM, amount, LocalDateTime.now()));
+
+        ledgerService.recordTransfers(transfers);
+
+        ArgumentCaptor<List<LedgerEntry>> entries = ArgumentCaptor.forClass(List.class);
+        verify(ledgerEntryRepository).saveAll(entries.capture());
+        assertEquals(4, entries.getValue().size());
+        assertNotEquals(entries.getValue().get(0).getTransactionId(), entries.getValue().get(2).getTransactionId());
+    }
+
+    @Test
+    void recordOpening_ZeroBalance_ShouldNotWriteEntry() {
+        ledgerService.recordOpening(FROM, Money.ZERO, LocalDateTime.now());
+
+        verifyNoInteractions(ledgerEntryRepository);
+    }
+
+    @Test
+    void getLedgerBalance_DivergedBalance_ShouldReportInconsistency() {
+        Card card = new Card(FROM, user, "John Doe", LocalDate.now().plusYears(1), CardStatus.ACTIVE,
+                Money.of(new BigDecimal("1000.00")));
+        when(cardRepository.findByNumber(FROM)).thenReturn(Optional.of(card));
+        when(ledgerEntryRepository.sumAmountByCardNumber(FROM)).thenReturn(new BigDecimal("900.00"));
+
+        LedgerBalanceDtoResponse response = ledgerService.getLedgerBalance(FROM);
+
+        assertEquals("**** **** **** 5678", response.getMaskedCardNumber());
+        assertEquals(Money.of(new BigDecimal("1000.00")), response.getBalance());
+        assertEquals(Money.of(new BigDecimal("900.00")), response.getLedgerBalance());
+        assertFalse(response.isConsistent());
+    }
+
+    @Test
+    void getLedgerBalance_CardNotFound_ShouldThrowException() {
+        when(cardRepository.findByNumber(FROM)).thenReturn(Optional.empty());
+
+        assertThrows(ResourceNotFoundException.class, () -> ledgerService.getLedgerBalance(FROM));
+
+        verify(ledgerEntryRepository, never()).sumAmountByCardNumber(any());
+    }
+}
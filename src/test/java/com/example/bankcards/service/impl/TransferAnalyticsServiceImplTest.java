@@ -0,0 +1,226 @@
+package com.example.bankcards.service.impl;
+
+import com.example.bankcards.cache.CardSnapshot;
+import com.example.bankcards.cache.CardSnapshotCache;
+import com.example.bankcards.dto.analytics.CardTransferRollupDtoResponse;
+import com.example.bankcards.dto.analytics.RollupPeriod;
+import com.example.bankcards.dto.analytics.RollupRebuildDtoResponse;
+import com.example.bankcards.dto.analytics.TransferRollupDtoResponse;
+import com.example.bankcards.entity.card.CardStatus;
+import com.example.bankcards.entity.money.Money;
+import com.example.bankcards.entity.transfer.Transfer;
+import com.example.bankcards.entity.user.User;
+import com.example.bankcards.exception.exceptions.InvalidRequestException;
+import com.example.bankcards.exception.exceptions.ResourceNotFoundException;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.TransferRollupRepository;
+import com.example.bankcards.repository.TransferRollupRepository.RollupItem;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class TransferAnalyticsServiceImplTest {
+
+    private static final String CARD = "1234567812345678";
+
+    private static final LocalDate FROM = LocalDate.of(2024, 1, 1);
+
+    @Mock
+    private TransferRollupRepository transferRollupRepository;
+
+    @Mock
+    private CardRepository cardRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private TransferAnalyticsServiceImpl transferAnalyticsService;
+
+    @BeforeEach
+    void setUp() {
+        CardSnapshotCache cardSnapshotCache =
+                new CardSnapshotCache(cardRepository, new SimpleMeterRegistry(), 100, Duration.ofMinutes(5));
+        transferAnalyticsService = new TransferAnalyticsServiceImpl(transferRollupRepository, cardSnapshotCache,
+                new TransactionTemplate(transactionManager));
+
+        UserDetails principal = org.springframework.security.core.userdetails.User
+                .withUsername("test@example.com").password("").roles("USER").build();
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken(principal, null, principal.getAuthorities()));
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void recordTransfers_ShouldWriteOnceBeforeCommit() {
+        TransactionSynchronizationManager.initSynchronization();
+        Transfer first = transfer();
+        Transfer second = transfer();
+
+        transferAnalyticsService.recordTransfers(List.of(first), 2);
+        transferAnalyticsService.recordTransfers(List.of(second), 0);
+
+        verify(transferRollupRepository, never()).addAll(any());
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        assertEquals(1, synchronizations.size());
+
+        synchronizations.forEach(synchronization -> synchronization.beforeCommit(false));
+        synchronizations.forEach(synchronization ->
+                synchronization.afterCompletion(TransactionSynchronization.STATUS_COMMITTED));
+
+        verify(transferRollupRepository).addAll(List.of(new RollupItem(first, 2), new RollupItem(second, 0)));
+        assertNull(TransactionSynchronizationManager.getResource(transferAnalyticsService));
+    }
+
+    @Test
+    void recordTransfers_RolledBack_ShouldNotWrite() {
+        TransactionSynchronizationManager.initSynchronization();
+
+        transferAnalyticsService.recordTransfers(List.of(transfer()), 0);
+        TransactionSynchronizationManager.getSynchronizations().forEach(synchronization ->
+                synchronization.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+
+        verify(transferRollupRepository, never()).addAll(any());
+        assertNull(TransactionSynchronizationManager.getResource(transferAnalyticsService));
+    }
+
+    @Test
+    void getMyRollups_ShouldUseCurrentUser() {
+        List<TransferRollupDtoResponse> rollups = List.of(TransferRollupDtoResponse.builder()
+                .periodStart(FROM)
+                .transferCount(3)
+                .amount(Money.of(new BigDecimal("1500.00")))
+                .build());
+        when(transferRollupRepository.findUserRollups("test@example.com", RollupPeriod.DAY, FROM,
+                FROM.plusDays(31))).thenReturn(rollups);
+
+        assertSame(rollups, transferAnalyticsService.getMyRollups(RollupPeriod.DAY, FROM, FROM.plusDays(31)));
+    }
+
+    @Test
+    void getMyRollups_EmptyInterval_ShouldThrow() {
+        assertThrows(InvalidRequestException.class,
+                () -> transferAnalyticsService.getMyRollups(RollupPeriod.DAY, FROM, FROM));
+
+        verifyNoInteractions(transferRollupRepository);
+    }
+
+    @Test
+    void getUserRollups_TooManyPeriods_ShouldThrow() {
+        assertThrows(InvalidRequestException.class, () -> transferAnalyticsService.getUserRollups(
+                "test@example.com", RollupPeriod.DAY, FROM, FROM.plusDays(367)));
+        // неполные месяцы в начале и конце интервала считаются целыми
+        assertThrows(InvalidRequestException.class, () -> transferAnalyticsService.getUserRollups(
+                "test@example.com", RollupPeriod.MONTH, FROM.plusDays(14), FROM.plusMonths(120).plusDays(1)));
+
+        verifyNoInteractions(transferRollupRepository);
+    }
+
+    @Test
+    void getMyCardRollups_OwnCard_ShouldReturnRollups() {
+        stubCard("test@example.com");
+        List<CardTransferRollupDtoResponse> rollups = List.of(CardTransferRollupDtoResponse.builder()
+                .periodStart(FROM)
+                .outgoingCount(1)
+                .outgoingAmount(Money.of(new BigDecimal("100.00")))
+                .incomingCount(0)
+                .incomingAmount(Money.ZERO)
+                .build());
+        when(transferRollupRepository.findCardRollups(CARD, RollupPeriod.MONTH, FROM, FROM.plusYears(1)))
+                .thenReturn(rollups);
+
+        assertSame(rollups,
+                transferAnalyticsService.getMyCardRollups(CARD, RollupPeriod.MONTH, FROM, FROM.plusYears(1)));
+    }
+
+    @Test
+    void getMyCardRollups_OtherUsersCard_ShouldThrow() {
+        stubCard("other@example.com");
+
+        assertThrows(InvalidRequestException.class,
+                () -> transferAnalyticsService.getMyCardRollups(CARD, RollupPeriod.DAY, FROM, FROM.plusDays(1)));
+
+        verifyNoInteractions(transferRollupRepository);
+    }
+
+    @Test
+    void getMyCardRollups_UnknownCard_ShouldThrowNotFound() {
+        when(cardRepository.findSnapshotByNumber(CARD)).thenReturn(Optional.empty());
+
+        assertThrows(ResourceNotFoundException.class,
+                () -> transferAnalyticsService.getMyCardRollups(CARD, RollupPeriod.DAY, FROM, FROM.plusDays(1)));
+    }
+
+    @Test
+    void rebuild_ShouldRebuildClosedMonthsOneByOneWithoutLock() {
+        LocalDate openFrom = TransferRollupRepository.periodStart(RollupPeriod.MONTH, LocalDate.now().minusDays(1));
+        LocalDate openTo = TransferRollupRepository.periodStart(RollupPeriod.MONTH, LocalDate.now()).plusMonths(1);
+        when(transferRollupRepository.findFirstMonth()).thenReturn(Optional.of(openFrom.minusMonths(2)));
+        when(transferRollupRepository.rebuildMonth(any())).thenReturn(new int[]{10, 30});
+        when(transferRollupRepository.rebuildLocked(openFrom, openTo)).thenReturn(new int[]{2, 4});
+
+        RollupRebuildDtoResponse response = transferAnalyticsService.rebuild();
+
+        assertEquals(22, response.getUserRows());
+        assertEquals(64, response.getCardRows());
+        InOrder inOrder = inOrder(transferRollupRepository);
+        inOrder.verify(transferRollupRepository).rebuildMonth(openFrom.minusMonths(2));
+        inOrder.verify(transferRollupRepository).rebuildMonth(openFrom.minusMonths(1));
+        inOrder.verify(transferRollupRepository).rebuildLocked(openFrom, openTo);
+        verify(transactionManager, times(3)).commit(any());
+    }
+
+    @Test
+    void rebuild_NoTransfers_ShouldRebuildOnlyOpenMonths() {
+        when(transferRollupRepository.findFirstMonth()).thenReturn(Optional.empty());
+        when(transferRollupRepository.rebuildLocked(any(), any())).thenReturn(new int[]{0, 0});
+
+        RollupRebuildDtoResponse response = transferAnalyticsService.rebuild();
+
+        assertEquals(0, response.getUserRows());
+        verify(transferRollupRepository, never()).rebuildMonth(any());
+    }
+
+    private void stubCard(String email) {
+        when(cardRepository.findSnapshotByNumber(CARD)).thenReturn(Optional.of(
+                new CardSnapshot(CARD, email, CardStatus.ACTIVE, LocalDate.now().plusYears(1), 0)));
+    }
+
+    private Transfer transfer() {
+        User user = new User();
+        user.setEmail("test@example.com");
+        return new Transfer(user, CARD, "8765432187654321", Money.of(new BigDecimal("100.00")),
+                LocalDateTime.of(2024, 1, 15, 14, 30));
+    }
+}
@@ -0,0 +1,168 @@
+package com.example.bankcards.service.impl;
+
+import com.example.bankcards.dto.transfer.TransferDtoRequest;
+import com.example.bankcards.dto.transfer.TransferDtoResponse;
+import com.example.bankcards.entity.money.Money;
+import com.example.bankcards.exception.exceptions.InvalidRequestException;
+import com.example.bankcards.exception.exceptions.TooManyRequestsException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TransferGroupCommitterTest {
+
+    private static final String EMAIL = "test@example.com";
+
+    private final List<List<String>> groups = new CopyOnWriteArrayList<>();
+
+    private final ExecutorService callers = Executors.newFixedThreadPool(4);
+
+    private TransferGroupCommitter committer;
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        callers.shutdownNow();
+        if (committer != null) {
+            committer.stop();
+        }
+    }
+
+    @Test
+    void submit_Disabled_ShouldNotStartFlusher() {
+        committer = new TransferGroupCommitter(new SimpleMeterRegistry(), false, Duration.ofMillis(5), 10, 1, 100,
+                Duration.ofSeconds(5));
+        committer.start(group -> fail("Group commit is disabled"));
+
+        assertFalse(committer.isEnabled());
+    }
+
+    @Test
+    void submit_TransfersWithinWindow_ShouldBeAppliedInOneGroup() throws Exception {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        start(meterRegistry, Duration.ofMillis(500), 3);
+
+        List<Future<TransferDtoResponse>> results = new ArrayList<>();
+        results.add(submitAsync("1000000000000001", "1000000000000002"));
+        results.add(submitAsync("1000000000000003", "1000000000000004"));
+        results.add(submitAsync("1000000000000005", "1000000000000006"));
+
+        for (Future<TransferDtoResponse> result : results) {
+            assertNotNull(result.get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(1, groups.size());
+        assertEquals(3, groups.get(0).size());
+        assertEquals(3.0, meterRegistry.get("transfers.group_commit.size").summary().totalAmount());
+    }
+
+    @Test
+    void submit_ConflictingTransfers_ShouldBeAppliedInSeparateGroupsInOrder() throws Exception {
+        start(new SimpleMeterRegistry(), Duration.ofMillis(200), 10);
+
+        Future<TransferDtoResponse> first = submitAsync("1000000000000001", "1000000000000002");
+        Thread.sleep(20);
+        Future<TransferDtoResponse> second = submitAsync("1000000000000002", "1000000000000001");
+
+        first.get(5, TimeUnit.SECONDS);
+        second.get(5, TimeUnit.SECONDS);
+        assertEquals(List.of(List.of("1000000000000001"), List.of("1000000000000002")), groups);
+    }
+
+    @Test
+    void submit_CreditsToSlotCard_ShouldBeAppliedInOneGroup() throws Exception {
+        start(new SimpleMeterRegistry(), Duration.ofMillis(300), 10);
+
+        Future<TransferDtoResponse> first =
+                submitAsync("1000000000000001", "1000000000000009", List.of("1000000000000001"));
+        Future<TransferDtoResponse> second =
+                submitAsync("1000000000000002", "1000000000000009", List.of("1000000000000002"));
+
+        first.get(5, TimeUnit.SECONDS);
+        second.get(5, TimeUnit.SECONDS);
+        assertEquals(1, groups.size());
+        assertEquals(2, groups.get(0).size());
+    }
+
+    @Test
+    void submit_RejectedTransfer_ShouldThrowToCaller() {
+        committer = new TransferGroupCommitter(new SimpleMeterRegistry(), true, Duration.ofMillis(1), 10, 1, 100,
+                Duration.ofSeconds(5));
+        committer.start(group -> group.forEach(entry ->
+                entry.result().completeExceptionally(new InvalidRequestException("rejected"))));
+
+        assertThrows(InvalidRequestException.class, () -> committer.submit(
+                request("1000000000000001", "1000000000000002"), null, EMAIL, Money.of(BigDecimal.ONE),
+                List.of("1000000000000001", "1000000000000002")));
+    }
+
+    @Test
+    void submit_QueueFull_ShouldRejectImmediately() throws Exception {
+        committer = new TransferGroupCommitter(new SimpleMeterRegistry(), true, Duration.ofMillis(1), 10, 1, 1,
+                Duration.ofSeconds(5));
+        // поток сбора не запущен, поэтому первый перевод занимает очередь
+        submitAsync("1000000000000001", "1000000000000002");
+        Thread.sleep(100);
+
+        // отказ без ожидания, а не по истечении времени ожидания группы
+        assertTimeout(Duration.ofSeconds(1), () -> assertThrows(TooManyRequestsException.class,
+                () -> committer.submit(request("1000000000000003", "1000000000000004"), null, EMAIL,
+                        Money.of(BigDecimal.ONE), List.of("1000000000000003", "1000000000000004"))));
+    }
+
+    @Test
+    void submit_NotStartedInTime_ShouldBeCancelledAndNeverApplied() throws Exception {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        committer = new TransferGroupCommitter(meterRegistry, true, Duration.ofMillis(1), 10, 1, 100,
+                Duration.ofMillis(50));
+
+        assertThrows(TooManyRequestsException.class, () -> committer.submit(
+                request("1000000000000001", "1000000000000002"), null, EMAIL, Money.of(BigDecimal.ONE),
+                List.of("1000000000000001", "1000000000000002")));
+
+        committer.start(group -> groups.add(group.stream().map(entry -> entry.request().getFromCardNumber()).toList()));
+        Thread.sleep(200);
+        assertTrue(groups.isEmpty());
+        assertEquals(1.0, meterRegistry.get("transfers.group_commit.rejected").counter().count());
+    }
+
+    private void start(SimpleMeterRegistry meterRegistry, Duration window, int maxSize) {
+        committer = new TransferGroupCommitter(meterRegistry, true, window, maxSize, 1, 100, Duration.ofSeconds(5));
+        committer.start(group -> {
+            groups.add(group.stream().map(entry -> entry.request().getFromCardNumber()).toList());
+            group.forEach(entry -> entry.result().complete(TransferDtoResponse.builder()
+                    .userEmail(entry.email())
+                    .fromCardNumber(entry.request().getFromCardNumber())
+                    .toCardNumber(entry.request().getToCardNumber())
+                    .amount(entry.amount())
+                    .build()));
+        });
+    }
+
+    private Future<TransferDtoResponse> submitAsync(String from, String to) {
+        return submitAsync(from, to, List.of(from, to));
+    }
+
+    private Future<TransferDtoResponse> submitAsync(String from, String to, List<String> lockedCards) {
+        return callers.submit(() -> committer.submit(request(from, to), null, EMAIL, Money.of(BigDecimal.ONE),
+                lockedCards));
+    }
+
+    private TransferDtoRequest request(String from, String to) {
+        TransferDtoRequest request = new TransferDtoRequest();
+        request.setFromCardNumber(from);
+        request.setToCardNumber(to);
+        request.setAmount(BigDecimal.ONE);
+        return request;
+    }
+}
@@ -0,0 +1,61 @@
+package com.example.bankcards.service.impl;
+
+import com.example.bankcards.repository.TransferPartitionRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
+
+import java.time.YearMonth;
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class TransferPartitionMaintainerTest {
+
+    private static final YearMonth CURRENT = YearMonth.of(2026, 10);
+
+    @Mock
+    private TransferPartitionRepository transferPartitionRepository;
+
+    @Test
+    void maintainPartitions_ShouldCreateMissingMonthsAhead() {
+        when(transferPartitionRepository.findAttached()).thenReturn(List.of(
+                YearMonth.of(2026, 9), YearMonth.of(2026, 10), YearMonth.of(2026, 11)));
+
+        new TransferPartitionMaintainer(transferPartitionRepository, 3, 0).maintainPartitions(CURRENT);
+
+        verify(transferPartitionRepository).create(YearMonth.of(2026, 12));
+        verify(transferPartitionRepository).create(YearMonth.of(2027, 1));
+        verify(transferPartitionRepository, times(2)).create(any());
+        verify(transferPartitionRepository, never()).detach(any());
+    }
+
+    @Test
+    void maintainPartitions_Retention_ShouldDetachOlderPartitions() {
+        when(transferPartitionRepository.findAttached()).thenReturn(List.of(
+                YearMonth.of(2024, 8), YearMonth.of(2024, 9), YearMonth.of(2024, 10), YearMonth.of(2024, 11),
+                CURRENT, CURRENT.plusMonths(1)));
+
+        new TransferPartitionMaintainer(transferPartitionRepository, 1, 24).maintainPartitions(CURRENT);
+
+        verify(transferPartitionRepository).detach(YearMonth.of(2024, 8));
+        verify(transferPartitionRepository).detach(YearMonth.of(2024, 9));
+        verify(transferPartitionRepository, times(2)).detach(any());
+        verify(transferPartitionRepository, never()).create(any());
+    }
+
+    @Test
+    void maintainPartitions_FailedCreate_ShouldContinue() {
+        when(transferPartitionRepository.findAttached()).thenReturn(List.of());
+        doThrow(new DataAccessResourceFailureException("relation already exists"))
+                .when(transferPartitionRepository).create(CURRENT);
+
+        new TransferPartitionMaintainer(transferPartitionRepository, 1, 0).maintainPartitions(CURRENT);
+
+        verify(transferPartitionRepository).create(CURRENT.plusMonths(1));
+    }
+}
@@ -0,0 +1,263 @@
+package com.example.bankcards.service.impl;
+
+import com.example.bankcards.cache.CardSnapshot;
+import com.example.bankcards.cache.CardSnapshotCache;
+import com.example.bankcards.dto.transfer.TransferDtoRequest;
+import com.example.bankcards.entity.card.Card;
+import com.example.bankcards.entity.card.CardStatus;
+import com.example.bankcards.entity.money.Money;
+import com.example.bankcards.entity.user.User;
+import com.example.bankcards.exception.exceptions.InvalidRequestException;
+import com.example.bankcards.lock.CardLockManager;
+import com.example.bankcards.repository.CardBalanceRepository;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.IdempotencyKeyRepository;
+import com.example.bankcards.repository.TransferBatchRepository;
+import com.example.bankcards.repository.TransferRepository;
+import com.example.bankcards.repository.UserBalanceVersionRepository;
+import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.service.LedgerService;
+import com.example.bankcards.service.TransferAnalyticsService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+/**
+ * Проверка переводов под конкуренцией: потоков больше, чем карт, и они переводят деньги между небольшим набором карт.
+ * Условные UPDATE списания и зачисления моделируются в памяти: запрос блокирует строку до завершения
+ * «транзакции», проверяет условие WHERE и изменяет баланс, а при откате изменения отменяются.
+ * Тест моделирует блокировки строк и не обращается к PostgreSQL: он проверяет порядок блокировок
+ * и сохранение суммы балансов, но не пропускную способность базы.
+ */
+class TransferServiceImplConcurrencyTest {
+
+    private static final int CARDS = 8;
+
+    private static final int THREADS = 16;
+
+    private static final int TRANSFERS_PER_THREAD = 100;
+
+    private static final int STRESS_THREADS = 512;
+
+    private static final int STRESS_TRANSFERS_PER_THREAD = 200;
+
+    private static final Money INITIAL_BALANCE = Money.of(new BigDecimal("1000.00"));
+
+    private static final String EMAIL = "test@example.com";
+
+    private final Map<String, Card> rows = new ConcurrentHashMap<>();
+
+    private final Map<String, ReentrantLock> rowLocks = new ConcurrentHashMap<>();
+
+    private final ThreadLocal<List<ReentrantLock>> heldLocks = ThreadLocal.withInitial(ArrayList::new);
+
+    private final ThreadLocal<List<Runnable>> undoLog = ThreadLocal.withInitial(ArrayList::new);
+
+    private TransferServiceImpl transferService;
+
+    private List<String> numbers;
+
+    @BeforeEach
+    void setUp() {
+        CardRepository cardRepository = mock(CardRepository.class, withSettings().stubOnly());
+        CardBalanceRepository cardBalanceRepository = mock(CardBalanceRepository.class, withSettings().stubOnly());
+        TransferRepository transferRepository = mock(TransferRepository.class, withSettings().stubOnly());
+        UserRepository userRepository = mock(UserRepository.class, withSettings().stubOnly());
+        ApplicationEventPublisher eventPublisher = mock(ApplicationEventPublisher.class, withSettings().stubOnly());
+
+        User user = new User();
+        user.setEmail(EMAIL);
+
+        numbers = new ArrayList<>();
+        for (int i = 0; i < CARDS; i++) {
+            String number = "40000000000000" + (10 + i);
+            Card card = new Card(number, user, "John Doe", LocalDate.now().plusYears(1), CardStatus.ACTIVE,
+                    INITIAL_BALANCE);
+            rows.put(number, card);
+            rowLocks.put(number, new ReentrantLock());
+            numbers.add(number);
+        }
+
+        when(cardRepository.findSnapshotByNumber(anyString()))
+                .thenAnswer(invocation -> Optional.of(CardSnapshot.of(rows.get(invocation.<String>getArgument(0)))));
+        when(cardBalanceRepository.debit(anyString(), anyString(), any())).thenAnswer(invocation ->
+                update(invocation.getArgument(0), invocation.getArgument(1), invocation.<Money>getArgument(2), true));
+        when(cardBalanceRepository.credit(anyString(), anyString(), any())).thenAnswer(invocation ->
+                update(invocation.getArgument(0), invocation.getArgument(1), invocation.<Money>getArgument(2), false));
+        when(transferRepository.save(any())).thenAnswer(invocation -> invocation.getArgument(0));
+        when(userRepository.getReferenceById(EMAIL)).thenReturn(user);
+
+        CardSnapshotCache cardSnapshotCache =
+                new CardSnapshotCache(cardRepository, new SimpleMeterRegistry(), 100, Duration.ofMinutes(5));
+        transferService = new TransferServiceImpl(transferRepository, cardBalanceRepository, userRepository,
+                cardSnapshotCache, eventPublisher, mock(IdempotencyKeyRepository.class),
+                mock(TransferBatchRepository.class),
+                new CardLockManager(new SimpleMeterRegistry(), 1024, Duration.ofSeconds(10), 64),
+                new TransactionTemplate(mock(PlatformTransactionManager.class, withSettings().stubOnly())),
+                mock(TransferGroupCommitter.class, withSettings().stubOnly()),
+                mock(LedgerService.class, withSettings().stubOnly()),
+                mock(TransferAnalyticsService.class, withSettings().stubOnly()),
+                mock(UserBalanceVersionRepository.class, withSettings().stubOnly()));
+    }
+
+    @Test
+    void transferBetweenCardsOneUser_ConcurrentTransfers_ShouldConserveMoney() throws Exception {
+        runTransfers(THREADS, TRANSFERS_PER_THREAD);
+    }
+
+    /**
+     * Нагрузочный прогон с сотнями потоков, выводящий пропускную способность.
+     * Как и основной тест, моделирует блокировки строк в памяти и не обращается к PostgreSQL,
+     * поэтому показывает накладные расходы сервиса и блокировок JVM, а не базы.
+     * Запуск: {@code mvn test -Pstress}.
+     */
+    @Test
+    @Tag("stress")
+    void transferBetweenCardsOneUser_HundredsOfThreads_ShouldConserveMoney() throws Exception {
+        long started = System.nanoTime();
+        int transfers = runTransfers(STRESS_THREADS, STRESS_TRANSFERS_PER_THREAD);
+        double seconds = (System.nanoTime() - started) / 1e9;
+
+        System.out.printf("%d threads, %d transfers in %.2f s: %.0f transfers/s%n",
+                STRESS_THREADS, transfers, seconds, transfers / seconds);
+    }
+
+    /**
+     * Выполняет случайные переводы из нескольких потоков и проверяет, что сумма балансов сохранилась.
+     *
+     * @param threads            количество потоков
+     * @param transfersPerThread количество переводов каждого потока
+     * @return количество выполненных и отклоненных переводов
+     */
+    private int runTransfers(int threads, int transfersPerThread) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger completed = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+        List<Future<?>> futures = new ArrayList<>();
+
+        for (int t = 0; t < threads; t++) {
+            futures.add(executor.submit(() -> {
+                UserDetails principal = org.springframework.security.core.userdetails.User
+                        .withUsername(EMAIL).password("").roles("USER").build();
+                SecurityContextHolder.getContext().setAuthentication(
+                        new UsernamePasswordAuthenticationToken(principal, null, principal.getAuthorities()));
+                start.await();
+
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int i = 0; i < transfersPerThread; i++) {
+                    int from = random.nextInt(CARDS);
+                    int to = (from + 1 + random.nextInt(CARDS - 1)) % CARDS;
+
+                    TransferDtoRequest request = new TransferDtoRequest();
+                    request.setFromCardNumber(numbers.get(from));
+                    request.setToCardNumber(numbers.get(to));
+                    request.setAmount(BigDecimal.valueOf(random.nextInt(1, 50_000), 2));
+
+                    try {
+                        transferService.transferBetweenCardsOneUser(request, null);
+                        completed.incrementAndGet();
+                        undoLog.get().clear();
+                    } catch (InvalidRequestException e) {
+                        rejected.incrementAndGet();
+                    } finally {
+                        complete();
+                    }
+                }
+                return null;
+            }));
+        }
+
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        long total = 0;
+        for (Card card : rows.values()) {
+            assertTrue(card.getBalance().minorUnits() >= 0, "Negative balance on card " + card.getNumber());
+            total += card.getBalance().minorUnits();
+        }
+        assertEquals(INITIAL_BALANCE.minorUnits() * CARDS, total);
+        assertEquals(threads * transfersPerThread, completed.get() + rejected.get());
+        assertTrue(completed.get() > 0);
+        return completed.get() + rejected.get();
+    }
+
+    /**
+     * Выполняет условное изменение баланса, как UPDATE ... WHERE ... RETURNING.
+     * Строка остается заблокированной до завершения транзакции; ожидание с ограничением
+     * превращает взаимоблокировку в падение теста.
+     *
+     * @param number номер карты
+     * @param email  email владельца
+     * @param amount сумма
+     * @param debit  true для списания, false для зачисления
+     * @return карта после изменения или пустой Optional, если условие не выполнено
+     */
+    private Optional<Card> update(String number, String email, Money amount, boolean debit)
+            throws InterruptedException {
+        ReentrantLock lock = rowLocks.get(number);
+        if (!lock.isHeldByCurrentThread()) {
+            if (!lock.tryLock(10, TimeUnit.SECONDS)) {
+                throw new IllegalStateException("Deadlock while updating card " + number);
+            }
+            heldLocks.get().add(lock);
+        }
+
+        Card row = rows.get(number);
+        if (!row.getUser().getEmail().equals(email) || row.getStatus() != CardStatus.ACTIVE
+                || debit && row.getBalance().isLessThan(amount)) {
+            return Optional.empty();
+        }
+
+        Money before = row.getBalance();
+        row.setBalance(debit ? before.minus(amount) : before.plus(amount));
+        undoLog.get().add(() -> row.setBalance(before));
+        return Optional.of(new Card(row.getNumber(), row.getUser(), row.getFullNameUser(), row.getExpirationDate(),
+                row.getStatus(), row.getBalance()));
+    }
+
+    /**
+     * Завершает транзакцию текущего потока: отменяет незафиксированные изменения и освобождает блокировки строк.
+     */
+    private void complete() {
+        List<Runnable> undo = undoLog.get();
+        for (int i = undo.size() - 1; i >= 0; i--) {
+            undo.get(i).run();
+        }
+        undo.clear();
+        heldLocks.get().forEach(ReentrantLock::unlock);
+        heldLocks.get().clear();
+    }
+}
@@ -1,34 +1,75 @@
 package com.example.bankcards.service.impl;
 
+import com.example.bankcards.cache.CardSnapshot;
+import com.example.bankcards.cache.CardSnapshotCache;
+import com.example.bankcards.dto.transfer.TransferBatchDtoRequest;
+import com.example.bankcards.dto.transfer.TransferBatchDtoResponse;
 import com.example.bankcards.dto.transfer.TransferDtoRequest;
+import com.example.bankcards.dto.transfer.TransferDirection;
 import com.example.bankcards.dto.transfer.TransferDtoResponse;
+import com.example.bankcards.dto.transfer.TransferFilterDtoRequest;
 import com.example.bankcards.entity.card.Card;
 import com.example.bankcards.entity.card.CardStatus;
+import com.example.bankcards.entity.money.Money;
 import com.example.bankcards.entity.transfer.Transfer;
 import com.example.bankcards.entity.user.User;
+import com.example.bankcards.event.CardEvent;
+import com.example.bankcards.event.TransferEvent;
+import com.example.bankcards.exception.exceptions.ConflictRequestException;
 import com.example.bankcards.exception.exceptions.InvalidRequestException;
 import com.example.bankcards.exception.exceptions.ResourceNotFoundException;
+import com.example.bankcards.exception.exceptions.TooManyRequestsException;
+import com.example.bankcards.lock.CardLockManager;
+import com.example.bankcards.repository.CardBalanceRepository;
 import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.IdempotencyKeyRepository;
+import com.example.bankcards.repository.TransferBatchRepository;
 import com.example.bankcards.repository.TransferRepository;
+import com.example.bankcards.repository.UserBalanceVersionRepository;
 import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.service.LedgerService;
+import com.example.bankcards.service.TransferAnalyticsService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.QueryTimeoutException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor.SpecificationFluentQuery;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContext;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionSystemException;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.sql.Savepoint;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
@@ -43,9 +84,36 @@ class TransferServiceImplTest {
     @Mock
     private CardRepository cardRepository;
 
+    @Mock
+    private CardBalanceRepository cardBalanceRepository;
+
     @Mock
     private UserRepository userRepository;
 
+    @Mock
+    private UserBalanceVersionRepository userBalanceVersionRepository;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private IdempotencyKeyRepository idempotencyKeyRepository;
+
+    @Mock
+    private TransferBatchRepository transferBatchRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Mock
+    private TransferGroupCommitter transferGroupCommitter;
+
+    @Mock
+    private LedgerService ledgerService;
+
+    @Mock
+    private TransferAnalyticsService transferAnalyticsService;
+
     @Mock
     private SecurityContext securityContext;
 
@@ -55,7 +123,8 @@ class TransferServiceImplTest {
     @Mock
     private UserDetails userDetails;
 
-    @InjectMocks
+    private CardLockManager cardLockManager;
+
     private TransferServiceImpl transferService;
 
     private User testUser;
@@ -65,6 +134,14 @@ class TransferServiceImplTest {
 
     @BeforeEach
     void setUp() {
+        CardSnapshotCache cardSnapshotCache =
+                new CardSnapshotCache(cardRepository, new SimpleMeterRegistry(), 100, Duration.ofMinutes(5));
+        cardLockManager = new CardLockManager(new SimpleMeterRegistry(), 1024, Duration.ofMillis(50), 64);
+        transferService = new TransferServiceImpl(transferRepository, cardBalanceRepository, userRepository, cardSnapshotCache,
+                eventPublisher, idempotencyKeyRepository, transferBatchRepository, cardLockManager,
+                new TransactionTemplate(transactionManager), transferGroupCommitter,
+                ledgerService, transferAnalyticsService, userBalanceVersionRepository);
+
         testUser = new User();
         testUser.setEmail("test@example.com");
         testUser.setName("John");
@@ -74,13 +151,15 @@ class TransferServiceImplTest {
         fromCard.setNumber("1234567812345678");
         fromCard.setUser(testUser);
         fromCard.setStatus(CardStatus.ACTIVE);
-        fromCard.setBalance(new BigDecimal("1000.00"));
+        fromCard.setExpirationDate(LocalDate.now().plusYears(1));
+        fromCard.setBalance(Money.of(new BigDecimal("1000.00")));
 
         toCard = new Card();
         toCard.setNumber("8765432187654321");
         toCard.setUser(testUser);
         toCard.setStatus(CardStatus.ACTIVE);
-        toCard.setBalance(new BigDecimal("500.00"));
+        toCard.setExpirationDate(LocalDate.now().plusYears(1));
+        toCard.setBalance(Money.of(new BigDecimal("500.00")));
 
         validRequest = new TransferDtoRequest();
         validRequest.setFromCardNumber("1234567812345678");
@@ -95,49 +174,76 @@ class TransferServiceImplTest {
         when(authentication.getPrincipal()).thenReturn(userDetails);
         when(userDetails.getUsername()).thenReturn("test@example.com");
 
-        when(cardRepository.findByNumber("1234567812345678")).thenReturn(Optional.of(fromCard));
-        when(cardRepository.findByNumber("8765432187654321")).thenReturn(Optional.of(toCard));
-        when(userRepository.findByEmail("test@example.com")).thenReturn(Optional.of(testUser));
+        stubSnapshots();
+        stubBalanceUpdates();
+        when(userRepository.getReferenceById("test@example.com")).thenReturn(testUser);
         when(transferRepository.save(any(Transfer.class))).thenAnswer(invocation -> invocation.getArgument(0));
 
-        TransferDtoResponse response = transferService.transferBetweenCardsOneUser(validRequest);
+        TransferDtoResponse response = transferService.transferBetweenCardsOneUser(validRequest, null);
 
         assertNotNull(response);
         assertEquals("test@example.com", response.getUserEmail());
         assertEquals("1234567812345678", response.getFromCardNumber());
         assertEquals("8765432187654321", response.getToCardNumber());
-        assertEquals(new BigDecimal("100.00"), response.getAmount());
+        assertEquals(Money.of(new BigDecimal("100.00")), response.getAmount());
         assertNotNull(response.getTime());
 
-        assertEquals(new BigDecimal("900.00"), fromCard.getBalance());
-        assertEquals(new BigDecimal("600.00"), toCard.getBalance());
+        InOrder inOrder = inOrder(cardBalanceRepository);
+        inOrder.verify(cardBalanceRepository).debit("1234567812345678", "test@example.com", Money.of(new BigDecimal("100.00")));
+        inOrder.verify(cardBalanceRepository).credit("8765432187654321", "test@example.com", Money.of(new BigDecimal("100.00")));
+        verify(cardRepository, never()).findByNumber(any());
+        verify(cardRepository, never()).save(any());
+        verify(userRepository, never()).incrementCardsVersion(any());
+        verify(userBalanceVersionRepository).bump(List.of("test@example.com"));
 
-        verify(cardRepository, times(2)).save(any(Card.class));
         verify(transferRepository).save(any(Transfer.class));
+        verify(ledgerService).recordTransfer(any(Transfer.class));
+        verify(transferAnalyticsService).recordTransfers(anyList(), eq(0));
+        ArgumentCaptor<CardEvent> events = ArgumentCaptor.forClass(CardEvent.class);
+        verify(eventPublisher, times(2)).publishEvent(events.capture());
+        assertEquals(Money.of(new BigDecimal("900.00")), events.getAllValues().get(0).card().getBalance());
+        assertEquals(Money.of(new BigDecimal("600.00")), events.getAllValues().get(1).card().getBalance());
+        verify(eventPublisher).publishEvent(any(TransferEvent.class));
     }
 
     @Test
     void transferBetweenCardsOneUser_SameCard_ShouldThrowException() {
         validRequest.setToCardNumber("1234567812345678");
 
-        when(cardRepository.findByNumber("1234567812345678")).thenReturn(Optional.of(fromCard));
-        when(cardRepository.findByNumber("1234567812345678")).thenReturn(Optional.of(toCard));
-
         assertThrows(InvalidRequestException.class, () -> {
-            transferService.transferBetweenCardsOneUser(validRequest);
+            transferService.transferBetweenCardsOneUser(validRequest, null);
         });
+
+        verifyNoInteractions(cardRepository);
+    }
+
+    @Test
+    void transferBetweenCardsOneUser_NonDigitCardNumber_ShouldThrowException() {
+        validRequest.setToCardNumber("8765 4321 876543");
+
+        InvalidRequestException exception = assertThrows(InvalidRequestException.class,
+                () -> transferService.transferBetweenCardsOneUser(validRequest, null));
+
+        assertEquals("Card number must contain 16 digits", exception.getMessage());
+        verifyNoInteractions(cardRepository, cardBalanceRepository);
     }
 
     @Test
     void transferBetweenCardsOneUser_CardNotFound_ShouldThrowException() {
-        when(cardRepository.findByNumber("1234567812345678")).thenReturn(Optional.empty());
+        when(securityContext.getAuthentication()).thenReturn(authentication);
+        SecurityContextHolder.setContext(securityContext);
+        when(authentication.getPrincipal()).thenReturn(userDetails);
+        when(userDetails.getUsername()).thenReturn("test@example.com");
+        when(cardRepository.findSnapshotByNumber("1234567812345678")).thenReturn(Optional.empty());
+        when(cardRepository.findSnapshotByNumber("8765432187654321")).thenReturn(Optional.of(CardSnapshot.of(toCard)));
 
         assertThrows(ResourceNotFoundException.class, () -> {
-            transferService.transferBetweenCardsOneUser(validRequest);
+            transferService.transferBetweenCardsOneUser(validRequest, null);
         });
 
-        verify(cardRepository).findByNumber("1234567812345678");
-        verify(cardRepository, never()).findByNumber("8765432187654321");
+        verify(cardRepository).findSnapshotByNumber("1234567812345678");
+        verifyNoInteractions(cardBalanceRepository);
+        verifyNoInteractions(cardBalanceRepository);
     }
 
     @Test
@@ -151,15 +257,13 @@ class TransferServiceImplTest {
         otherUser.setEmail("other@example.com");
         fromCard.setUser(otherUser);
 
-        when(cardRepository.findByNumber("1234567812345678")).thenReturn(Optional.of(fromCard));
-        when(cardRepository.findByNumber("8765432187654321")).thenReturn(Optional.of(toCard));
-        when(userRepository.findByEmail("test@example.com")).thenReturn(Optional.of(testUser));
+        stubSnapshots();
 
         assertThrows(InvalidRequestException.class, () -> {
-            transferService.transferBetweenCardsOneUser(validRequest);
+            transferService.transferBetweenCardsOneUser(validRequest, null);
         });
 
-        verify(cardRepository, never()).save(any());
+        verifyNoInteractions(cardBalanceRepository);
         verify(transferRepository, never()).save(any());
     }
 
@@ -172,15 +276,13 @@ class TransferServiceImplTest {
 
         fromCard.setStatus(CardStatus.BLOCKED);
 
-        when(cardRepository.findByNumber("1234567812345678")).thenReturn(Optional.of(fromCard));
-        when(cardRepository.findByNumber("8765432187654321")).thenReturn(Optional.of(toCard));
-        when(userRepository.findByEmail("test@example.com")).thenReturn(Optional.of(testUser));
+        stubSnapshots();
 
         assertThrows(InvalidRequestException.class, () -> {
-            transferService.transferBetweenCardsOneUser(validRequest);
+            transferService.transferBetweenCardsOneUser(validRequest, null);
         });
 
-        verify(cardRepository, never()).save(any());
+        verifyNoInteractions(cardBalanceRepository);
         verify(transferRepository, never()).save(any());
     }
 
@@ -193,25 +295,527 @@ class TransferServiceImplTest {
 
         validRequest.setAmount(new BigDecimal("1500.00"));
 
-        when(cardRepository.findByNumber("1234567812345678")).thenReturn(Optional.of(fromCard));
-        when(cardRepository.findByNumber("8765432187654321")).thenReturn(Optional.of(toCard));
-        when(userRepository.findByEmail("test@example.com")).thenReturn(Optional.of(testUser));
+        stubSnapshots();
+        when(cardBalanceRepository.debit("1234567812345678", "test@example.com", Money.of(new BigDecimal("1500.00"))))
+                .thenReturn(Optional.empty());
 
         assertThrows(InvalidRequestException.class, () -> {
-            transferService.transferBetweenCardsOneUser(validRequest);
+            transferService.transferBetweenCardsOneUser(validRequest, null);
         });
 
-        verify(cardRepository, never()).save(any());
+        verify(cardBalanceRepository, never()).credit(any(), any(), any());
+        verify(userRepository, never()).incrementCardsVersion(any());
         verify(transferRepository, never()).save(any());
     }
 
+    @Test
+    void transferBetweenCardsOneUser_CardWithSlots_ShouldCreditSlotWithoutLockingCard() throws Exception {
+        stubPrincipal();
+        toCard.setBalanceSlots(4);
+        stubSnapshots();
+        Card debited = new Card(fromCard.getNumber(), testUser, "John Doe", fromCard.getExpirationDate(),
+                CardStatus.ACTIVE, Money.of(new BigDecimal("900.00")));
+        Card credited = new Card(toCard.getNumber(), testUser, "John Doe", toCard.getExpirationDate(),
+                CardStatus.ACTIVE, Money.of(new BigDecimal("600.00")));
+        when(cardBalanceRepository.debit("1234567812345678", "test@example.com", Money.of(new BigDecimal("100.00"))))
+                .thenReturn(Optional.of(debited));
+        when(cardBalanceRepository.creditSlot(eq("8765432187654321"), eq("test@example.com"), anyInt(),
+                eq(Money.of(new BigDecimal("100.00"))))).thenReturn(Optional.of(credited));
+        when(userRepository.getReferenceById("test@example.com")).thenReturn(testUser);
+        when(transferRepository.save(any(Transfer.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        // другая операция удерживает локальную блокировку карты-получателя
+        CountDownLatch locked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Thread holder = new Thread(() -> {
+            try (CardLockManager.Locks ignored = cardLockManager.lock(List.of("8765432187654321"))) {
+                locked.countDown();
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        holder.start();
+        locked.await();
+
+        try {
+            transferService.transferBetweenCardsOneUser(validRequest, null);
+        } finally {
+            release.countDown();
+            holder.join();
+        }
+
+        ArgumentCaptor<Integer> slot = ArgumentCaptor.forClass(Integer.class);
+        verify(cardBalanceRepository).creditSlot(eq("8765432187654321"), eq("test@example.com"), slot.capture(),
+                eq(Money.of(new BigDecimal("100.00"))));
+        assertTrue(slot.getValue() >= 0 && slot.getValue() < 4);
+        verify(cardBalanceRepository, never()).credit(any(), any(), any());
+    }
+
+    @Test
+    void transferBetweenCardsOneUser_FundsInSlots_ShouldSweepAndRetryDebit() {
+        stubPrincipal();
+        stubSnapshots();
+        Card debited = new Card(fromCard.getNumber(), testUser, "John Doe", fromCard.getExpirationDate(),
+                CardStatus.ACTIVE, Money.of(new BigDecimal("900.00")));
+        Card credited = new Card(toCard.getNumber(), testUser, "John Doe", toCard.getExpirationDate(),
+                CardStatus.ACTIVE, Money.of(new BigDecimal("600.00")));
+        when(cardBalanceRepository.debit("1234567812345678", "test@example.com", Money.of(new BigDecimal("100.00"))))
+                .thenReturn(Optional.empty())
+                .thenReturn(Optional.of(debited));
+        when(cardBalanceRepository.sweepSlots("1234567812345678")).thenReturn(true);
+        when(cardBalanceRepository.credit("8765432187654321", "test@example.com", Money.of(new BigDecimal("100.00"))))
+                .thenReturn(Optional.of(credited));
+        when(userRepository.getReferenceById("test@example.com")).thenReturn(testUser);
+        when(transferRepository.save(any(Transfer.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        TransferDtoResponse response = transferService.transferBetweenCardsOneUser(validRequest, null);
+
+        assertEquals(Money.of(new BigDecimal("100.00")), response.getAmount());
+        InOrder inOrder = inOrder(cardBalanceRepository);
+        inOrder.verify(cardBalanceRepository).debit("1234567812345678", "test@example.com", Money.of(new BigDecimal("100.00")));
+        inOrder.verify(cardBalanceRepository).sweepSlots("1234567812345678");
+        inOrder.verify(cardBalanceRepository).debit("1234567812345678", "test@example.com", Money.of(new BigDecimal("100.00")));
+    }
+
+    @Test
+    void transferBetweenCardsOneUser_FractionalCents_ShouldThrowException() {
+        validRequest.setAmount(new BigDecimal("10.005"));
+
+        assertThrows(InvalidRequestException.class, () -> {
+            transferService.transferBetweenCardsOneUser(validRequest, null);
+        });
+
+        verify(cardRepository, never()).findSnapshotByNumber(any());
+        verify(transferRepository, never()).save(any());
+    }
+
+    @Test
+    void transferBetweenCardsOneUser_StaleSnapshot_ShouldRejectByUpdatedRow() {
+        when(securityContext.getAuthentication()).thenReturn(authentication);
+        SecurityContextHolder.setContext(securityContext);
+        when(authentication.getPrincipal()).thenReturn(userDetails);
+        when(userDetails.getUsername()).thenReturn("test@example.com");
+
+        CardSnapshot activeSnapshot = CardSnapshot.of(toCard);
+        toCard.setStatus(CardStatus.BLOCKED);
+        when(cardRepository.findSnapshotByNumber("1234567812345678")).thenReturn(Optional.of(CardSnapshot.of(fromCard)));
+        when(cardRepository.findSnapshotByNumber("8765432187654321"))
+                .thenReturn(Optional.of(activeSnapshot))
+                .thenReturn(Optional.of(CardSnapshot.of(toCard)));
+        when(cardBalanceRepository.debit("1234567812345678", "test@example.com", Money.of(new BigDecimal("100.00"))))
+                .thenReturn(Optional.of(fromCard));
+        when(cardBalanceRepository.credit("8765432187654321", "test@example.com", Money.of(new BigDecimal("100.00"))))
+                .thenReturn(Optional.empty());
+
+        assertThrows(InvalidRequestException.class, () -> {
+            transferService.transferBetweenCardsOneUser(validRequest, null);
+        });
+
+        verify(cardRepository, times(2)).findSnapshotByNumber("8765432187654321");
+        verify(transferRepository, never()).save(any());
+    }
+
+    @Test
+    void transferBetweenCardsOneUser_CardDeletedBeforeUpdate_ShouldThrowException() {
+        when(securityContext.getAuthentication()).thenReturn(authentication);
+        SecurityContextHolder.setContext(securityContext);
+        when(authentication.getPrincipal()).thenReturn(userDetails);
+        when(userDetails.getUsername()).thenReturn("test@example.com");
+
+        when(cardRepository.findSnapshotByNumber("1234567812345678"))
+                .thenReturn(Optional.of(CardSnapshot.of(fromCard)))
+                .thenReturn(Optional.empty());
+        when(cardRepository.findSnapshotByNumber("8765432187654321")).thenReturn(Optional.of(CardSnapshot.of(toCard)));
+        when(cardBalanceRepository.debit("1234567812345678", "test@example.com", Money.of(new BigDecimal("100.00"))))
+                .thenReturn(Optional.empty());
+
+        assertThrows(ResourceNotFoundException.class, () -> {
+            transferService.transferBetweenCardsOneUser(validRequest, null);
+        });
+
+        verify(transferRepository, never()).save(any());
+    }
+
+    @Test
+    void transferBetweenCardsOneUser_ReverseCardOrder_ShouldCreditFirst() {
+        when(securityContext.getAuthentication()).thenReturn(authentication);
+        SecurityContextHolder.setContext(securityContext);
+        when(authentication.getPrincipal()).thenReturn(userDetails);
+        when(userDetails.getUsername()).thenReturn("test@example.com");
+
+        validRequest.setFromCardNumber("8765432187654321");
+        validRequest.setToCardNumber("1234567812345678");
+        stubSnapshots();
+        when(cardBalanceRepository.debit("8765432187654321", "test@example.com", Money.of(new BigDecimal("100.00"))))
+                .thenReturn(Optional.of(toCard));
+        when(cardBalanceRepository.credit("1234567812345678", "test@example.com", Money.of(new BigDecimal("100.00"))))
+                .thenReturn(Optional.of(fromCard));
+        when(userRepository.getReferenceById("test@example.com")).thenReturn(testUser);
+        when(transferRepository.save(any(Transfer.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        transferService.transferBetweenCardsOneUser(validRequest, null);
+
+        InOrder inOrder = inOrder(cardBalanceRepository);
+        inOrder.verify(cardBalanceRepository).credit("1234567812345678", "test@example.com", Money.of(new BigDecimal("100.00")));
+        inOrder.verify(cardBalanceRepository).debit("8765432187654321", "test@example.com", Money.of(new BigDecimal("100.00")));
+    }
+
+    @Test
+    void transferBetweenCardsOneUser_CardBusy_ShouldThrowWithoutOpeningTransaction() throws Exception {
+        stubPrincipal();
+        CountDownLatch locked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Thread holder = new Thread(() -> {
+            try (CardLockManager.Locks ignored = cardLockManager.lock(List.of("8765432187654321"))) {
+                locked.countDown();
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        holder.start();
+        locked.await();
+
+        try {
+            assertThrows(TooManyRequestsException.class, () -> {
+                transferService.transferBetweenCardsOneUser(validRequest, null);
+            });
+        } finally {
+            release.countDown();
+            holder.join();
+        }
+
+        verifyNoInteractions(transactionManager, cardBalanceRepository, transferRepository);
+    }
+
+    @Test
+    void transferBetweenCardsOneUser_GroupCommitEnabled_ShouldSubmitToGroup() {
+        stubPrincipal();
+        TransferDtoResponse grouped = TransferDtoResponse.builder().userEmail("test@example.com").build();
+        when(transferGroupCommitter.isEnabled()).thenReturn(true);
+        when(transferGroupCommitter.submit(validRequest, "key-1", "test@example.com",
+                Money.of(new BigDecimal("100.00")), List.of("1234567812345678", "8765432187654321")))
+                .thenReturn(grouped);
+
+        TransferDtoResponse response = transferService.transferBetweenCardsOneUser(validRequest, "key-1");
+
+        assertSame(grouped, response);
+        verifyNoInteractions(transactionManager, cardBalanceRepository, idempotencyKeyRepository);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void commitGroup_RejectedTransfer_ShouldRollBackOnlyToItsSavepoint() {
+        ArgumentCaptor<Consumer<List<TransferGroupCommitter.Entry>>> applier = ArgumentCaptor.forClass(Consumer.class);
+        transferService.startGroupCommit();
+        verify(transferGroupCommitter).start(applier.capture());
+
+        stubSnapshots();
+        stubBalanceUpdates();
+        when(cardRepository.findSnapshotByNumber("1111222233334444")).thenReturn(Optional.empty());
+        when(userRepository.getReferenceById("test@example.com")).thenReturn(testUser);
+        when(transferRepository.save(any(Transfer.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        Savepoint first = mock(Savepoint.class);
+        Savepoint second = mock(Savepoint.class);
+        when(transferBatchRepository.setSavepoint()).thenReturn(first, second);
+        SimpleTransactionStatus transactionStatus = spy(new SimpleTransactionStatus());
+        when(transactionManager.getTransaction(any())).thenReturn(transactionStatus);
+
+        Money amount = Money.of(new BigDecimal("100.00"));
+        TransferGroupCommitter.Entry valid = new TransferGroupCommitter.Entry(validRequest, null,
+                "test@example.com", amount, List.of("1234567812345678", "8765432187654321"),
+                new CompletableFuture<>());
+        TransferGroupCommitter.Entry unknownCard = new TransferGroupCommitter.Entry(
+                transferRequest("1111222233334444", "5555666677778888", "100.00"), null,
+                "test@example.com", amount, List.of("1111222233334444", "5555666677778888"),
+                new CompletableFuture<>());
+
+        applier.getValue().accept(List.of(valid, unknownCard));
+
+        assertEquals("1234567812345678", valid.result().join().getFromCardNumber());
+        assertTrue(unknownCard.result().isCompletedExceptionally());
+        verify(transferBatchRepository).rollbackToSavepoint(second);
+        verify(transferBatchRepository, never()).rollbackToSavepoint(first);
+        verify(transferRepository, times(1)).save(any(Transfer.class));
+        verify(transactionStatus, times(2)).flush();
+        verify(transactionManager, times(1)).commit(transactionStatus);
+        verify(userBalanceVersionRepository).bump(Set.of("test@example.com"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void commitGroup_FailureBeforeCommit_ShouldRetryTransfersOneByOne() {
+        ArgumentCaptor<Consumer<List<TransferGroupCommitter.Entry>>> applier = ArgumentCaptor.forClass(Consumer.class);
+        transferService.startGroupCommit();
+        verify(transferGroupCommitter).start(applier.capture());
+
+        stubSnapshots();
+        stubBalanceUpdates();
+        when(userRepository.getReferenceById("test@example.com")).thenReturn(testUser);
+        when(transferRepository.save(any(Transfer.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(transferBatchRepository.setSavepoint()).thenThrow(new QueryTimeoutException("savepoint timeout"));
+        SimpleTransactionStatus transactionStatus = new SimpleTransactionStatus();
+        when(transactionManager.getTransaction(any())).thenReturn(transactionStatus);
+
+        TransferGroupCommitter.Entry entry = new TransferGroupCommitter.Entry(validRequest, null,
+                "test@example.com", Money.of(new BigDecimal("100.00")),
+                List.of("1234567812345678", "8765432187654321"), new CompletableFuture<>());
+
+        applier.getValue().accept(List.of(entry));
+
+        assertEquals("1234567812345678", entry.result().join().getFromCardNumber());
+        verify(transactionManager).rollback(transactionStatus);
+        verify(transactionManager).commit(transactionStatus);
+        verify(transferRepository, times(1)).save(any(Transfer.class));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void commitGroup_CommitFailure_ShouldNotRetryTransfers() {
+        ArgumentCaptor<Consumer<List<TransferGroupCommitter.Entry>>> applier = ArgumentCaptor.forClass(Consumer.class);
+        transferService.startGroupCommit();
+        verify(transferGroupCommitter).start(applier.capture());
+
+        stubSnapshots();
+        stubBalanceUpdates();
+        when(userRepository.getReferenceById("test@example.com")).thenReturn(testUser);
+        when(transferRepository.save(any(Transfer.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        SimpleTransactionStatus transactionStatus = new SimpleTransactionStatus();
+        when(transactionManager.getTransaction(any())).thenReturn(transactionStatus);
+        TransactionSystemException commitFailure = new TransactionSystemException("connection lost on commit");
+        doThrow(commitFailure).when(transactionManager).commit(transactionStatus);
+
+        TransferGroupCommitter.Entry entry = new TransferGroupCommitter.Entry(validRequest, null,
+                "test@example.com", Money.of(new BigDecimal("100.00")),
+                List.of("1234567812345678", "8765432187654321"), new CompletableFuture<>());
+
+        applier.getValue().accept(List.of(entry));
+
+        CompletionException exception = assertThrows(CompletionException.class, () -> entry.result().join());
+        assertSame(commitFailure, exception.getCause());
+        verify(cardBalanceRepository, times(1)).debit(any(), any(), any());
+        verify(transferRepository, times(1)).save(any(Transfer.class));
+    }
+
+    @Test
+    void transferBetweenCardsOneUser_NewIdempotencyKey_ShouldStoreResult() {
+        when(securityContext.getAuthentication()).thenReturn(authentication);
+        SecurityContextHolder.setContext(securityContext);
+        when(authentication.getPrincipal()).thenReturn(userDetails);
+        when(userDetails.getUsername()).thenReturn("test@example.com");
+
+        when(idempotencyKeyRepository.claim("test@example.com", "key-1", "1234567812345678", "8765432187654321",
+                Money.of(new BigDecimal("100.00")))).thenReturn(true);
+        stubSnapshots();
+        stubBalanceUpdates();
+        when(userRepository.getReferenceById("test@example.com")).thenReturn(testUser);
+        when(transferRepository.save(any(Transfer.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        TransferDtoResponse response = transferService.transferBetweenCardsOneUser(validRequest, "key-1");
+
+        verify(idempotencyKeyRepository).complete("test@example.com", "key-1", response.getTime());
+        verify(transferRepository).save(any(Transfer.class));
+    }
+
+    @Test
+    void transferBetweenCardsOneUser_RepeatedIdempotencyKey_ShouldReturnStoredResult() {
+        when(securityContext.getAuthentication()).thenReturn(authentication);
+        SecurityContextHolder.setContext(securityContext);
+        when(authentication.getPrincipal()).thenReturn(userDetails);
+        when(userDetails.getUsername()).thenReturn("test@example.com");
+
+        TransferDtoResponse stored = TransferDtoResponse.builder()
+                .userEmail("test@example.com")
+                .fromCardNumber("1234567812345678")
+                .toCardNumber("8765432187654321")
+                .amount(Money.of(new BigDecimal("100.00")))
+                .time(LocalDateTime.of(2026, 10, 19, 12, 0))
+                .build();
+        when(idempotencyKeyRepository.claim(any(), any(), any(), any(), any())).thenReturn(false);
+        when(idempotencyKeyRepository.find("test@example.com", "key-1")).thenReturn(Optional.of(stored));
+
+        TransferDtoResponse response = transferService.transferBetweenCardsOneUser(validRequest, "key-1");
+
+        assertSame(stored, response);
+        verifyNoInteractions(cardBalanceRepository, transferRepository, eventPublisher);
+        verify(cardRepository, never()).findSnapshotByNumber("1234567812345678");
+        verify(userRepository, never()).incrementCardsVersion(any());
+    }
+
+    @Test
+    void transferBetweenCardsOneUser_IdempotencyKeyOfAnotherTransfer_ShouldThrowConflict() {
+        when(securityContext.getAuthentication()).thenReturn(authentication);
+        SecurityContextHolder.setContext(securityContext);
+        when(authentication.getPrincipal()).thenReturn(userDetails);
+        when(userDetails.getUsername()).thenReturn("test@example.com");
+
+        TransferDtoResponse stored = TransferDtoResponse.builder()
+                .userEmail("test@example.com")
+                .fromCardNumber("1234567812345678")
+                .toCardNumber("8765432187654321")
+                .amount(Money.of(new BigDecimal("50.00")))
+                .time(LocalDateTime.of(2026, 10, 19, 12, 0))
+                .build();
+        when(idempotencyKeyRepository.claim(any(), any(), any(), any(), any())).thenReturn(false);
+        when(idempotencyKeyRepository.find("test@example.com", "key-1")).thenReturn(Optional.of(stored));
+
+        assertThrows(ConflictRequestException.class, () -> {
+            transferService.transferBetweenCardsOneUser(validRequest, "key-1");
+        });
+
+        verifyNoInteractions(cardBalanceRepository, transferRepository);
+    }
+
+    @Test
+    void transferBetweenCardsOneUser_TooLongIdempotencyKey_ShouldThrowException() {
+        when(securityContext.getAuthentication()).thenReturn(authentication);
+        SecurityContextHolder.setContext(securityContext);
+        when(authentication.getPrincipal()).thenReturn(userDetails);
+        when(userDetails.getUsername()).thenReturn("test@example.com");
+
+        assertThrows(InvalidRequestException.class, () -> {
+            transferService.transferBetweenCardsOneUser(validRequest, "k".repeat(65));
+        });
+
+        verifyNoInteractions(idempotencyKeyRepository);
+    }
+
+    @Test
+    void purgeExpiredIdempotencyKeys_ShouldDeleteInBatchesUntilExhausted() {
+        ReflectionTestUtils.setField(transferService, "idempotencyKeyTtl", Duration.ofHours(24));
+        when(idempotencyKeyRepository.deleteCreatedBefore(any(LocalDateTime.class), eq(1000)))
+                .thenReturn(1000, 1000, 17);
+
+        transferService.purgeExpiredIdempotencyKeys();
+
+        verify(idempotencyKeyRepository, times(3)).deleteCreatedBefore(any(LocalDateTime.class), eq(1000));
+    }
+
+    @Test
+    void transferBatch_PerItem_ShouldApplyNetDeltasOnceAndSkipRejected() {
+        stubPrincipal();
+        stubBatchLock();
+        when(userRepository.getReferenceById("test@example.com")).thenReturn(testUser);
+
+        TransferBatchDtoRequest request = batchRequest(false,
+                transferRequest("1234567812345678", "8765432187654321", "100.00"),
+                transferRequest("8765432187654321", "1234567812345678", "30.00"),
+                transferRequest("1234567812345678", "8765432187654321", "5000.00"));
+
+        TransferBatchDtoResponse response = transferService.transferBatch(request);
+
+        assertEquals(2, response.getCompleted());
+        assertEquals(1, response.getRejected());
+        assertNull(response.getItems().get(0).getError());
+        assertEquals("There are not enough funds on the card from which the transfer is being made",
+                response.getItems().get(2).getError());
+
+        verify(cardBalanceRepository).findAllForUpdate(Set.of("1234567812345678", "8765432187654321"),
+                "test@example.com");
+        verify(cardBalanceRepository).addBalances(Map.of(
+                "1234567812345678", Money.of(new BigDecimal("-70.00")),
+                "8765432187654321", Money.of(new BigDecimal("70.00"))));
+        ArgumentCaptor<List<Transfer>> transfers = ArgumentCaptor.forClass(List.class);
+        verify(transferBatchRepository).insertAll(transfers.capture());
+        assertEquals(2, transfers.getValue().size());
+        verify(ledgerService).recordTransfers(transfers.getValue());
+        verify(transferAnalyticsService).recordTransfers(transfers.getValue(), 0);
+        verify(userRepository, never()).incrementCardsVersion(any());
+        verify(userBalanceVersionRepository).bump(List.of("test@example.com"));
+        verify(transferRepository, never()).save(any());
+        verify(eventPublisher, times(2)).publishEvent(any(CardEvent.class));
+        ArgumentCaptor<TransferEvent> transferEvents = ArgumentCaptor.forClass(TransferEvent.class);
+        verify(eventPublisher, times(2)).publishEvent(transferEvents.capture());
+        assertEquals(List.of(Money.of(new BigDecimal("100.00")), Money.of(new BigDecimal("30.00"))),
+                transferEvents.getAllValues().stream().map(event -> event.transfer().getAmount()).toList());
+    }
+
+    @Test
+    void transferBatch_AtomicWithRejectedItem_ShouldThrowWithoutWrites() {
+        stubPrincipal();
+        stubBatchLock();
+        when(userRepository.getReferenceById("test@example.com")).thenReturn(testUser);
+        toCard.setStatus(CardStatus.BLOCKED);
+
+        TransferBatchDtoRequest request = batchRequest(true,
+                transferRequest("1234567812345678", "8765432187654321", "100.00"));
+
+        InvalidRequestException exception = assertThrows(InvalidRequestException.class, () -> {
+            transferService.transferBatch(request);
+        });
+
+        assertEquals("Transfer #0: The cards have no active status", exception.getMessage());
+        verify(cardBalanceRepository, never()).addBalances(any());
+        verifyNoInteractions(transferBatchRepository, eventPublisher);
+    }
+
+    @Test
+    void transferBatch_OpposingTransfers_ShouldNotUpdateBalances() {
+        stubPrincipal();
+        stubBatchLock();
+        when(userRepository.getReferenceById("test@example.com")).thenReturn(testUser);
+
+        TransferBatchDtoRequest request = batchRequest(true,
+                transferRequest("1234567812345678", "8765432187654321", "100.00"),
+                transferRequest("8765432187654321", "1234567812345678", "100.00"));
+
+        TransferBatchDtoResponse response = transferService.transferBatch(request);
+
+        assertEquals(2, response.getCompleted());
+        verify(cardBalanceRepository).addBalances(Map.of());
+        verify(transferBatchRepository).insertAll(any());
+        verify(eventPublisher, never()).publishEvent(any(CardEvent.class));
+        verify(eventPublisher, times(2)).publishEvent(any(TransferEvent.class));
+    }
+
+    @Test
+    void transferBatch_UnknownCard_ShouldRejectItem() {
+        stubPrincipal();
+        stubBatchLock();
+        when(userRepository.getReferenceById("test@example.com")).thenReturn(testUser);
+
+        TransferBatchDtoRequest request = batchRequest(false,
+                transferRequest("1234567812345678", "1111222233334444", "100.00"));
+
+        TransferBatchDtoResponse response = transferService.transferBatch(request);
+
+        assertEquals(0, response.getCompleted());
+        assertEquals("Card with number= 1111222233334444 was not found", response.getItems().get(0).getError());
+        verifyNoInteractions(transferBatchRepository);
+        verify(userRepository, never()).incrementCardsVersion(any());
+    }
+
+    @Test
+    void transferBatch_ForeignCard_ShouldNotLockIt() {
+        stubPrincipal();
+        stubBatchLock();
+        when(userRepository.getReferenceById("test@example.com")).thenReturn(testUser);
+        User stranger = new User();
+        stranger.setEmail("stranger@example.com");
+        Card foreignCard = new Card("1111222233334444", stranger, "Jane Roe", LocalDate.now().plusYears(1),
+                CardStatus.ACTIVE, Money.of(new BigDecimal("10.00")));
+        when(cardRepository.findSnapshotByNumber("1111222233334444"))
+                .thenReturn(Optional.of(CardSnapshot.of(foreignCard)));
+
+        TransferBatchDtoRequest request = batchRequest(false,
+                transferRequest("1111222233334444", "1234567812345678", "10.00"));
+
+        TransferBatchDtoResponse response = transferService.transferBatch(request);
+
+        assertEquals(0, response.getCompleted());
+        assertEquals("Card with number= 1111222233334444 was not found", response.getItems().get(0).getError());
+        verify(cardBalanceRepository).findAllForUpdate(Set.of("1234567812345678"), "test@example.com");
+        // локальная блокировка чужой карты свободна
+        assertDoesNotThrow(() -> cardLockManager.lock(List.of("1111222233334444")).close());
+    }
+
     @Test
     void getAll_ShouldReturnPageOfTransfers() {
-        Transfer transfer = new Transfer(testUser, "1234", "5678", new BigDecimal("100.00"), LocalDateTime.now());
+        Transfer transfer = new Transfer(testUser, "1234", "5678", Money.of(new BigDecimal("100.00")), LocalDateTime.now());
         Page<Transfer> page = new PageImpl<>(List.of(transfer));
-        when(transferRepository.findAll(any(PageRequest.class))).thenReturn(page);
+        when(transferRepository.findAll(any(Specification.class), any(PageRequest.class))).thenReturn(page);
 
-        var result = transferService.getAll(0, 10);
+        var result = transferService.getAll(new TransferFilterDtoRequest(), 0, 10);
 
         assertNotNull(result);
         assertEquals(1, result.getContent().size());
@@ -219,7 +823,8 @@ class TransferServiceImplTest {
         assertEquals(1, result.getTotalPages());
         assertEquals(0, result.getNumber());
 
-        verify(transferRepository).findAll(any(PageRequest.class));
+        verify(transferRepository).findAll(any(Specification.class),
+                eq(PageRequest.of(0, 10, Sort.by(Sort.Direction.DESC, "time", "id"))));
     }
 
     @Test
@@ -229,16 +834,141 @@ class TransferServiceImplTest {
         when(authentication.getPrincipal()).thenReturn(userDetails);
         when(userDetails.getUsername()).thenReturn("test@example.com");
 
-        Transfer transfer = new Transfer(testUser, "1234", "5678", new BigDecimal("100.00"), LocalDateTime.now());
+        Transfer transfer = new Transfer(testUser, "1234", "5678", Money.of(new BigDecimal("100.00")), LocalDateTime.now());
         Page<Transfer> page = new PageImpl<>(List.of(transfer));
-        when(transferRepository.findAllByUser_Email(eq("test@example.com"), any(PageRequest.class))).thenReturn(page);
+        when(transferRepository.findAll(any(Specification.class), any(PageRequest.class))).thenReturn(page);
 
-        var result = transferService.getAllByUser(0, 10);
+        var result = transferService.getAllByUser(new TransferFilterDtoRequest(), 0, 10);
 
         assertNotNull(result);
         assertEquals(1, result.getContent().size());
         assertEquals("test@example.com", result.getContent().get(0).getUserEmail());
 
-        verify(transferRepository).findAllByUser_Email(eq("test@example.com"), any(PageRequest.class));
+        verify(transferRepository).findAll(any(Specification.class), any(PageRequest.class));
+    }
+
+    @Test
+    void getHistoryByUser_MorePages_ShouldContinueFromCursor() {
+        stubPrincipal();
+        LocalDateTime time = LocalDateTime.of(2024, 1, 15, 14, 30);
+        Transfer newest = historyTransfer(3L, time.plusMinutes(1));
+        Transfer middle = historyTransfer(2L, time);
+        Transfer oldest = historyTransfer(1L, time);
+        SpecificationFluentQuery<Transfer> query = stubHistoryQuery();
+        when(query.all()).thenReturn(List.of(newest, middle, oldest), List.of(oldest));
+
+        var first = transferService.getHistoryByUser(new TransferFilterDtoRequest(), null, 2);
+        var second = transferService.getHistoryByUser(new TransferFilterDtoRequest(), first.getNextCursor(), 2);
+
+        assertEquals(2, first.getContent().size());
+        assertNotNull(first.getNextCursor());
+        assertEquals(1, second.getContent().size());
+        assertNull(second.getNextCursor());
+        verify(query, times(2)).sortBy(Sort.by(Sort.Direction.DESC, "time", "id"));
+        verify(query, times(2)).limit(3);
+    }
+
+    @Test
+    void getHistory_InvalidCursor_ShouldThrowException() {
+        assertThrows(InvalidRequestException.class,
+                () -> transferService.getHistory(new TransferFilterDtoRequest(), "not-a-cursor", 10));
+
+        verifyNoInteractions(transferRepository);
+    }
+
+    @Test
+    void getHistory_EmptyPeriod_ShouldThrowException() {
+        TransferFilterDtoRequest filter = new TransferFilterDtoRequest();
+        filter.setFromTime(LocalDateTime.of(2024, 2, 1, 0, 0));
+        filter.setToTime(LocalDateTime.of(2024, 1, 1, 0, 0));
+
+        assertThrows(InvalidRequestException.class, () -> transferService.getHistory(filter, null, 10));
+
+        verifyNoInteractions(transferRepository);
+    }
+
+    @Test
+    void getHistory_DirectionWithoutCard_ShouldThrowException() {
+        TransferFilterDtoRequest filter = new TransferFilterDtoRequest();
+        filter.setDirection(TransferDirection.INCOMING);
+
+        assertThrows(InvalidRequestException.class, () -> transferService.getHistory(filter, null, 10));
+
+        verifyNoInteractions(transferRepository);
+    }
+
+    @Test
+    void getHistory_MinAmountAboveMax_ShouldThrowException() {
+        TransferFilterDtoRequest filter = new TransferFilterDtoRequest();
+        filter.setMinAmount(new BigDecimal("500.00"));
+        filter.setMaxAmount(new BigDecimal("100.00"));
+
+        assertThrows(InvalidRequestException.class, () -> transferService.getHistory(filter, null, 10));
+
+        verifyNoInteractions(transferRepository);
+    }
+
+    private Transfer historyTransfer(Long id, LocalDateTime time) {
+        Transfer transfer = new Transfer(testUser, "1234567812345678", "8765432187654321",
+                Money.of(new BigDecimal("100.00")), time);
+        transfer.setId(id);
+        return transfer;
+    }
+
+    @SuppressWarnings("unchecked")
+    private SpecificationFluentQuery<Transfer> stubHistoryQuery() {
+        SpecificationFluentQuery<Transfer> query = mock(SpecificationFluentQuery.class, RETURNS_SELF);
+        when(transferRepository.findBy(any(Specification.class), any())).thenAnswer(invocation ->
+                invocation.<Function<SpecificationFluentQuery<Transfer>, ?>>getArgument(1).apply(query));
+        return query;
+    }
+
+    private void stubBalanceUpdates() {
+        Card debited = new Card(fromCard.getNumber(), testUser, "John Doe", fromCard.getExpirationDate(),
+                CardStatus.ACTIVE, Money.of(new BigDecimal("900.00")));
+        Card credited = new Card(toCard.getNumber(), testUser, "John Doe", toCard.getExpirationDate(),
+                CardStatus.ACTIVE, Money.of(new BigDecimal("600.00")));
+        when(cardBalanceRepository.debit("1234567812345678", "test@example.com", Money.of(new BigDecimal("100.00"))))
+                .thenReturn(Optional.of(debited));
+        when(cardBalanceRepository.credit("8765432187654321", "test@example.com", Money.of(new BigDecimal("100.00"))))
+                .thenReturn(Optional.of(credited));
+    }
+
+    private void stubPrincipal() {
+        when(securityContext.getAuthentication()).thenReturn(authentication);
+        SecurityContextHolder.setContext(securityContext);
+        when(authentication.getPrincipal()).thenReturn(userDetails);
+        when(userDetails.getUsername()).thenReturn("test@example.com");
+    }
+
+    private void stubBatchLock() {
+        when(cardRepository.findSnapshotByNumber(any())).thenAnswer(invocation -> Stream.of(fromCard, toCard)
+                .filter(card -> card.getNumber().equals(invocation.getArgument(0)))
+                .findFirst()
+                .map(CardSnapshot::of));
+        when(cardBalanceRepository.findAllForUpdate(any(), eq("test@example.com"))).thenAnswer(invocation -> {
+            Set<String> numbers = invocation.getArgument(0);
+            return Stream.of(fromCard, toCard).filter(card -> numbers.contains(card.getNumber())).toList();
+        });
+    }
+
+    private TransferBatchDtoRequest batchRequest(boolean atomic, TransferDtoRequest... transfers) {
+        TransferBatchDtoRequest request = new TransferBatchDtoRequest();
+        request.setAtomic(atomic);
+        request.setTransfers(List.of(transfers));
+        return request;
+    }
+
+    private TransferDtoRequest transferRequest(String from, String to, String amount) {
+        TransferDtoRequest request = new TransferDtoRequest();
+        request.setFromCardNumber(from);
+        request.setToCardNumber(to);
+        request.setAmount(new BigDecimal(amount));
+        return request;
+    }
+
+    private void stubSnapshots() {
+        when(cardRepository.findSnapshotByNumber("1234567812345678")).thenReturn(Optional.of(CardSnapshot.of(fromCard)));
+        when(cardRepository.findSnapshotByNumber("8765432187654321")).thenReturn(Optional.of(CardSnapshot.of(toCard)));
     }
-}
\ No newline at end of file
+}
@@ -1,7 +1,9 @@
 package com.example.bankcards.service.impl;
 
+import com.example.bankcards.cache.CardSnapshotCache;
 import com.example.bankcards.dto.page.PageDtoResponse;
 import com.example.bankcards.dto.user.UserDtoResponse;
+import com.example.bankcards.entity.card.Card;
 import com.example.bankcards.entity.user.Role;
 import com.example.bankcards.entity.user.User;
 import com.example.bankcards.exception.exceptions.ResourceNotFoundException;
@@ -29,6 +31,9 @@ class UserServiceImplTest {
     @Mock
     private UserRepository userRepository;
 
+    @Mock
+    private CardSnapshotCache cardSnapshotCache;
+
     @InjectMocks
     private UserServiceImpl userService;
 
@@ -136,6 +141,19 @@ class UserServiceImplTest {
         verify(userRepository).delete(testUser);
     }
 
+    @Test
+    void deleteByEmail_UserWithCards_ShouldEvictCards() {
+        Card card = new Card();
+        card.setNumber("1234567812345670");
+        testUser.setCards(List.of(card));
+        when(userRepository.findByEmail("test@example.com")).thenReturn(Optional.of(testUser));
+
+        userService.deleteByEmail("test@example.com");
+
+        verify(cardSnapshotCache).evict("1234567812345670");
+        verify(userRepository).delete(testUser);
+    }
+
     @Test
     void deleteByEmail_UserNotFound_ShouldThrowException() {
         when(userRepository.findByEmail("nonexistent@example.com")).thenReturn(Optional.empty());
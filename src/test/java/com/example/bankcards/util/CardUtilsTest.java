@@ -0,0 +1,92 @@
+package com.example.bankcards.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CardUtilsTest {
+
+    @Test
+    void isDigits16_ShouldAcceptAnySixteenDigits() {
+        assertTrue(CardUtils.isDigits16("4111111111111111"));
+        assertTrue(CardUtils.isDigits16("1234567812345678"));
+        assertTrue(CardUtils.isDigits16("0000000000000000"));
+    }
+
+    @Test
+    void isDigits16_InvalidFormat_ShouldReturnFalse() {
+        assertFalse(CardUtils.isDigits16(null));
+        assertFalse(CardUtils.isDigits16("411111111111111"));
+        assertFalse(CardUtils.isDigits16("41111111111111110"));
+        assertFalse(CardUtils.isDigits16("4111 1111 1111 1"));
+        assertFalse(CardUtils.isDigits16("411111111111111a"));
+    }
+
+    @Test
+    void isLuhnValid_ValidCheckDigit_ShouldReturnTrue() {
+        assertTrue(CardUtils.isLuhnValid("4111111111111111"));
+        assertTrue(CardUtils.isLuhnValid("1234567812345670"));
+        assertTrue(CardUtils.isLuhnValid("0000000000000000"));
+    }
+
+    @Test
+    void isLuhnValid_InvalidNumber_ShouldReturnFalse() {
+        assertFalse(CardUtils.isLuhnValid("4111111111111112"));
+        assertFalse(CardUtils.isLuhnValid("1234567812345678"));
+        assertFalse(CardUtils.isLuhnValid(null));
+        assertFalse(CardUtils.isLuhnValid("411111111111111a"));
+    }
+
+    @Test
+    void luhnCheckDigit_ShouldMatchKnownNumbers() {
+        assertEquals(1, CardUtils.luhnCheckDigit(411111111111111L));
+        assertEquals(0, CardUtils.luhnCheckDigit(123456781234567L));
+        assertEquals(4, CardUtils.luhnCheckDigit(550000000000000L));
+        assertEquals(6, CardUtils.luhnCheckDigit(400005665566555L));
+        assertEquals(0, CardUtils.luhnCheckDigit(0L));
+
+        for (long payload = 400000000000000L; payload < 400000000000100L; payload++) {
+            String number = CardUtils.unpackCardNumber(payload * 10 + CardUtils.luhnCheckDigit(payload));
+            assertTrue(CardUtils.isLuhnValid(number), number);
+        }
+    }
+
+    @Test
+    void packCardNumber_ShouldRoundTrip() {
+        assertEquals(4111111111111111L, CardUtils.packCardNumber("4111111111111111"));
+        assertEquals("4111111111111111", CardUtils.unpackCardNumber(CardUtils.packCardNumber("4111111111111111")));
+        assertEquals("0000000000001234", CardUtils.unpackCardNumber(CardUtils.packCardNumber("0000000000001234")));
+        assertEquals("9999999999999999", CardUtils.unpackCardNumber(CardUtils.packCardNumber("9999999999999999")));
+    }
+
+    @Test
+    void packCardNumber_InvalidNumber_ShouldThrowException() {
+        assertThrows(IllegalArgumentException.class, () -> CardUtils.packCardNumber("123"));
+        assertThrows(IllegalArgumentException.class, () -> CardUtils.packCardNumber("411111111111111a"));
+    }
+
+    @Test
+    void unpackCardNumber_ShouldKeepLeadingZeros() {
+        assertEquals("4111111111111111", CardUtils.unpackCardNumber(4111111111111111L));
+        assertEquals("0000000000001234", CardUtils.unpackCardNumber(1234L));
+    }
+
+    @Test
+    void getMaskedCardNumber_ShouldMaskAndReuseCachedValue() {
+        String masked = CardUtils.getMaskedCardNumber("1234567812345678");
+
+        assertEquals("**** **** **** 5678", masked);
+        assertSame(masked, CardUtils.getMaskedCardNumber("8765432187655678"));
+        assertEquals("**** **** **** 0001", CardUtils.getMaskedCardNumber("1111222233330001"));
+    }
+
+    @Test
+    void appendMaskedCardNumber_ShouldWriteIntoBuffer() {
+        StringBuilder buffer = new StringBuilder("card=");
+
+        CardUtils.appendMaskedCardNumber(buffer, "1234567812345678");
+
+        assertEquals("card=**** **** **** 5678", buffer.toString());
+        assertEquals(5 + CardUtils.MASKED_CARD_NUMBER_LENGTH, buffer.length());
+    }
+}